@@ -30,6 +30,7 @@ import com.google.android.exoplayer2.drm.ExoMediaCrypto;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.MimeTypes;
 import java.util.Collections;
+import java.util.concurrent.Executor;
 import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 
 /**
@@ -43,6 +44,7 @@ public final class FfmpegAudioRenderer extends SimpleDecoderAudioRenderer {
   private static final int DEFAULT_INPUT_BUFFER_SIZE = 960 * 6;
 
   private final boolean enableFloatOutput;
+  @Nullable private final Executor decodeExecutor;
 
   private @MonotonicNonNull FfmpegDecoder decoder;
 
@@ -82,6 +84,28 @@ public final class FfmpegAudioRenderer extends SimpleDecoderAudioRenderer {
       @Nullable AudioRendererEventListener eventListener,
       AudioSink audioSink,
       boolean enableFloatOutput) {
+    this(eventHandler, eventListener, audioSink, enableFloatOutput, /* decodeExecutor= */ null);
+  }
+
+  /**
+   * @param eventHandler A handler to use when delivering events to {@code eventListener}. May be
+   *     null if delivery of events is not required.
+   * @param eventListener A listener of events. May be null if delivery of events is not required.
+   * @param audioSink The sink to which audio will be output.
+   * @param enableFloatOutput Whether to enable 32-bit float audio format, if supported on the
+   *     device/build and if the input format may have bit depth higher than 16-bit. When using
+   *     32-bit float output, any audio processing will be disabled, including playback speed/pitch
+   *     adjustment.
+   * @param decodeExecutor An executor on which to decode, or null for the decoder to decode on its
+   *     own thread. Passing the same executor to the renderers of several players avoids starting a
+   *     decode thread per player.
+   */
+  public FfmpegAudioRenderer(
+      @Nullable Handler eventHandler,
+      @Nullable AudioRendererEventListener eventListener,
+      AudioSink audioSink,
+      boolean enableFloatOutput,
+      @Nullable Executor decodeExecutor) {
     super(
         eventHandler,
         eventListener,
@@ -89,6 +113,7 @@ public final class FfmpegAudioRenderer extends SimpleDecoderAudioRenderer {
         /* playClearSamplesWithoutKeys= */ false,
         audioSink);
     this.enableFloatOutput = enableFloatOutput;
+    this.decodeExecutor = decodeExecutor;
   }
 
   @Override
@@ -120,7 +145,12 @@ public final class FfmpegAudioRenderer extends SimpleDecoderAudioRenderer {
         format.maxInputSize != Format.NO_VALUE ? format.maxInputSize : DEFAULT_INPUT_BUFFER_SIZE;
     decoder =
         new FfmpegDecoder(
-            NUM_BUFFERS, NUM_BUFFERS, initialInputBufferSize, format, shouldUseFloatOutput(format));
+            NUM_BUFFERS,
+            NUM_BUFFERS,
+            initialInputBufferSize,
+            format,
+            shouldUseFloatOutput(format),
+            decodeExecutor);
     return decoder;
   }
 
@@ -27,6 +27,7 @@ import com.google.android.exoplayer2.util.ParsableByteArray;
 import com.google.android.exoplayer2.util.Util;
 import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * FFmpeg audio decoder.
@@ -57,9 +58,13 @@ import java.util.List;
       int numOutputBuffers,
       int initialInputBufferSize,
       Format format,
-      boolean outputFloat)
+      boolean outputFloat,
+      @Nullable Executor decodeExecutor)
       throws FfmpegDecoderException {
-    super(new DecoderInputBuffer[numInputBuffers], new SimpleOutputBuffer[numOutputBuffers]);
+    super(
+        new DecoderInputBuffer[numInputBuffers],
+        new SimpleOutputBuffer[numOutputBuffers],
+        decodeExecutor);
     if (!FfmpegLibrary.isAvailable()) {
       throw new FfmpegDecoderException("Failed to load decoder native libraries.");
     }
@@ -26,6 +26,7 @@ import com.google.android.exoplayer2.util.Util;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * Flac decoder.
@@ -45,15 +46,21 @@ import java.util.List;
    *     Format#NO_VALUE} otherwise.
    * @param initializationData Codec-specific initialization data. It should contain only one entry
    *     which is the flac file header.
+   * @param decodeExecutor An {@link Executor} on which to decode, or {@code null} to decode on a
+   *     thread owned by the decoder.
    * @throws FlacDecoderException Thrown if an exception occurs when initializing the decoder.
    */
   public FlacDecoder(
       int numInputBuffers,
       int numOutputBuffers,
       int maxInputBufferSize,
-      List<byte[]> initializationData)
+      List<byte[]> initializationData,
+      @Nullable Executor decodeExecutor)
       throws FlacDecoderException {
-    super(new DecoderInputBuffer[numInputBuffers], new SimpleOutputBuffer[numOutputBuffers]);
+    super(
+        new DecoderInputBuffer[numInputBuffers],
+        new SimpleOutputBuffer[numOutputBuffers],
+        decodeExecutor);
     if (initializationData.size() != 1) {
       throw new FlacDecoderException("Initialization data must be of length 1");
     }
@@ -30,6 +30,7 @@ import com.google.android.exoplayer2.util.FlacConstants;
 import com.google.android.exoplayer2.util.FlacStreamMetadata;
 import com.google.android.exoplayer2.util.MimeTypes;
 import com.google.android.exoplayer2.util.Util;
+import java.util.concurrent.Executor;
 import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 
 /** Decodes and renders audio using the native Flac decoder. */
@@ -37,6 +38,8 @@ public final class LibflacAudioRenderer extends SimpleDecoderAudioRenderer {
 
   private static final int NUM_BUFFERS = 16;
 
+  @Nullable private final Executor decodeExecutor;
+
   @MonotonicNonNull private FlacStreamMetadata streamMetadata;
 
   public LibflacAudioRenderer() {
@@ -54,6 +57,7 @@ public final class LibflacAudioRenderer extends SimpleDecoderAudioRenderer {
       @Nullable AudioRendererEventListener eventListener,
       AudioProcessor... audioProcessors) {
     super(eventHandler, eventListener, audioProcessors);
+    decodeExecutor = null;
   }
 
   /**
@@ -66,12 +70,30 @@ public final class LibflacAudioRenderer extends SimpleDecoderAudioRenderer {
       @Nullable Handler eventHandler,
       @Nullable AudioRendererEventListener eventListener,
       AudioSink audioSink) {
+    this(eventHandler, eventListener, audioSink, /* decodeExecutor= */ null);
+  }
+
+  /**
+   * @param eventHandler A handler to use when delivering events to {@code eventListener}. May be
+   *     null if delivery of events is not required.
+   * @param eventListener A listener of events. May be null if delivery of events is not required.
+   * @param audioSink The sink to which audio will be output.
+   * @param decodeExecutor An executor on which to decode, or null for the decoder to decode on its
+   *     own thread. Passing the same executor to the renderers of several players avoids starting a
+   *     decode thread per player.
+   */
+  public LibflacAudioRenderer(
+      @Nullable Handler eventHandler,
+      @Nullable AudioRendererEventListener eventListener,
+      AudioSink audioSink,
+      @Nullable Executor decodeExecutor) {
     super(
         eventHandler,
         eventListener,
         /* drmSessionManager= */ null,
         /* playClearSamplesWithoutKeys= */ false,
         audioSink);
+    this.decodeExecutor = decodeExecutor;
   }
 
   @Override
@@ -110,7 +132,12 @@ public final class LibflacAudioRenderer extends SimpleDecoderAudioRenderer {
   protected FlacDecoder createDecoder(Format format, @Nullable ExoMediaCrypto mediaCrypto)
       throws FlacDecoderException {
     FlacDecoder decoder =
-        new FlacDecoder(NUM_BUFFERS, NUM_BUFFERS, format.maxInputSize, format.initializationData);
+        new FlacDecoder(
+            NUM_BUFFERS,
+            NUM_BUFFERS,
+            format.maxInputSize,
+            format.initializationData,
+            decodeExecutor);
     streamMetadata = decoder.getStreamMetadata();
     return decoder;
   }
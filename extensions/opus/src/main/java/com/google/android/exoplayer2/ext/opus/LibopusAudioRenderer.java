@@ -21,11 +21,13 @@ import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.audio.AudioProcessor;
 import com.google.android.exoplayer2.audio.AudioRendererEventListener;
+import com.google.android.exoplayer2.audio.AudioSink;
 import com.google.android.exoplayer2.audio.SimpleDecoderAudioRenderer;
 import com.google.android.exoplayer2.drm.DrmSessionManager;
 import com.google.android.exoplayer2.drm.ExoMediaCrypto;
 import com.google.android.exoplayer2.source.MediaSource;
 import com.google.android.exoplayer2.util.MimeTypes;
+import java.util.concurrent.Executor;
 
 /** Decodes and renders audio using the native Opus decoder. */
 public class LibopusAudioRenderer extends SimpleDecoderAudioRenderer {
@@ -35,6 +37,8 @@ public class LibopusAudioRenderer extends SimpleDecoderAudioRenderer {
   /** The default input buffer size. */
   private static final int DEFAULT_INPUT_BUFFER_SIZE = 960 * 6;
 
+  @Nullable private final Executor decodeExecutor;
+
   private int channelCount;
   private int sampleRate;
 
@@ -53,6 +57,30 @@ public class LibopusAudioRenderer extends SimpleDecoderAudioRenderer {
       @Nullable AudioRendererEventListener eventListener,
       AudioProcessor... audioProcessors) {
     super(eventHandler, eventListener, audioProcessors);
+    decodeExecutor = null;
+  }
+
+  /**
+   * @param eventHandler A handler to use when delivering events to {@code eventListener}. May be
+   *     null if delivery of events is not required.
+   * @param eventListener A listener of events. May be null if delivery of events is not required.
+   * @param audioSink The sink to which audio will be output.
+   * @param decodeExecutor An executor on which to decode, or null for the decoder to decode on its
+   *     own thread. Passing the same executor to the renderers of several players avoids starting a
+   *     decode thread per player.
+   */
+  public LibopusAudioRenderer(
+      @Nullable Handler eventHandler,
+      @Nullable AudioRendererEventListener eventListener,
+      AudioSink audioSink,
+      @Nullable Executor decodeExecutor) {
+    super(
+        eventHandler,
+        eventListener,
+        /* drmSessionManager= */ null,
+        /* playClearSamplesWithoutKeys= */ false,
+        audioSink);
+    this.decodeExecutor = decodeExecutor;
   }
 
   /**
@@ -80,6 +108,7 @@ public class LibopusAudioRenderer extends SimpleDecoderAudioRenderer {
       AudioProcessor... audioProcessors) {
     super(eventHandler, eventListener, null, drmSessionManager, playClearSamplesWithoutKeys,
         audioProcessors);
+    decodeExecutor = null;
   }
 
   @Override
@@ -114,7 +143,8 @@ public class LibopusAudioRenderer extends SimpleDecoderAudioRenderer {
             NUM_BUFFERS,
             initialInputBufferSize,
             format.initializationData,
-            mediaCrypto);
+            mediaCrypto,
+            decodeExecutor);
     channelCount = decoder.getChannelCount();
     sampleRate = decoder.getSampleRate();
     return decoder;
@@ -27,6 +27,7 @@ import com.google.android.exoplayer2.util.Util;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * Opus decoder.
@@ -65,6 +66,8 @@ import java.util.List;
    *     the encoder delay and seek pre roll values in nanoseconds, encoded as longs.
    * @param exoMediaCrypto The {@link ExoMediaCrypto} object required for decoding encrypted
    *     content. Maybe null and can be ignored if decoder does not handle encrypted content.
+   * @param decodeExecutor An {@link Executor} on which to decode, or {@code null} to decode on a
+   *     thread owned by the decoder.
    * @throws OpusDecoderException Thrown if an exception occurs when initializing the decoder.
    */
   public OpusDecoder(
@@ -72,9 +75,13 @@ import java.util.List;
       int numOutputBuffers,
       int initialInputBufferSize,
       List<byte[]> initializationData,
-      @Nullable ExoMediaCrypto exoMediaCrypto)
+      @Nullable ExoMediaCrypto exoMediaCrypto,
+      @Nullable Executor decodeExecutor)
       throws OpusDecoderException {
-    super(new DecoderInputBuffer[numInputBuffers], new SimpleOutputBuffer[numOutputBuffers]);
+    super(
+        new DecoderInputBuffer[numInputBuffers],
+        new SimpleOutputBuffer[numOutputBuffers],
+        decodeExecutor);
     if (!OpusLibrary.isAvailable()) {
       throw new OpusDecoderException("Failed to load decoder native libraries.");
     }
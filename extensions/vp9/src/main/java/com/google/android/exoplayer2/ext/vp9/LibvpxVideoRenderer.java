@@ -39,6 +39,7 @@ import com.google.android.exoplayer2.video.VideoDecoderOutputBuffer;
 import com.google.android.exoplayer2.video.VideoDecoderOutputBufferRenderer;
 import com.google.android.exoplayer2.video.VideoFrameMetadataListener;
 import com.google.android.exoplayer2.video.VideoRendererEventListener;
+import java.util.concurrent.Executor;
 
 /**
  * Decodes and renders video using the native VP9 decoder.
@@ -70,6 +71,7 @@ public class LibvpxVideoRenderer extends SimpleDecoderVideoRenderer {
   private static final int DEFAULT_INPUT_BUFFER_SIZE = 768 * 1024;
 
   private final int threads;
+  @Nullable private final Executor decodeExecutor;
 
   @Nullable private VpxDecoder decoder;
   @Nullable private VideoFrameMetadataListener frameMetadataListener;
@@ -157,7 +159,6 @@ public class LibvpxVideoRenderer extends SimpleDecoderVideoRenderer {
    * @param numInputBuffers Number of input buffers.
    * @param numOutputBuffers Number of output buffers.
    */
-  @SuppressWarnings("deprecation")
   public LibvpxVideoRenderer(
       long allowedJoiningTimeMs,
       @Nullable Handler eventHandler,
@@ -171,11 +172,47 @@ public class LibvpxVideoRenderer extends SimpleDecoderVideoRenderer {
         eventHandler,
         eventListener,
         maxDroppedFramesToNotify,
-        /* drmSessionManager= */ null,
-        /* playClearSamplesWithoutKeys= */ false,
         threads,
         numInputBuffers,
-        numOutputBuffers);
+        numOutputBuffers,
+        /* decodeExecutor= */ null);
+  }
+
+  /**
+   * @param allowedJoiningTimeMs The maximum duration in milliseconds for which this video renderer
+   *     can attempt to seamlessly join an ongoing playback.
+   * @param eventHandler A handler to use when delivering events to {@code eventListener}. May be
+   *     null if delivery of events is not required.
+   * @param eventListener A listener of events. May be null if delivery of events is not required.
+   * @param maxDroppedFramesToNotify The maximum number of frames that can be dropped between
+   *     invocations of {@link VideoRendererEventListener#onDroppedFrames(int, long)}.
+   * @param threads Number of threads libvpx will use to decode.
+   * @param numInputBuffers Number of input buffers.
+   * @param numOutputBuffers Number of output buffers.
+   * @param decodeExecutor An executor on which to decode, or null for the decoder to decode on its
+   *     own thread. Passing the same executor to the renderers of several players avoids starting a
+   *     decode thread per player.
+   */
+  public LibvpxVideoRenderer(
+      long allowedJoiningTimeMs,
+      @Nullable Handler eventHandler,
+      @Nullable VideoRendererEventListener eventListener,
+      int maxDroppedFramesToNotify,
+      int threads,
+      int numInputBuffers,
+      int numOutputBuffers,
+      @Nullable Executor decodeExecutor) {
+    super(
+        allowedJoiningTimeMs,
+        eventHandler,
+        eventListener,
+        maxDroppedFramesToNotify,
+        /* drmSessionManager= */ null,
+        /* playClearSamplesWithoutKeys= */ false);
+    this.threads = threads;
+    this.numInputBuffers = numInputBuffers;
+    this.numOutputBuffers = numOutputBuffers;
+    this.decodeExecutor = decodeExecutor;
   }
 
   /**
@@ -221,6 +258,7 @@ public class LibvpxVideoRenderer extends SimpleDecoderVideoRenderer {
     this.threads = threads;
     this.numInputBuffers = numInputBuffers;
     this.numOutputBuffers = numOutputBuffers;
+    decodeExecutor = null;
   }
 
   @Override
@@ -253,7 +291,12 @@ public class LibvpxVideoRenderer extends SimpleDecoderVideoRenderer {
         format.maxInputSize != Format.NO_VALUE ? format.maxInputSize : DEFAULT_INPUT_BUFFER_SIZE;
     VpxDecoder decoder =
         new VpxDecoder(
-            numInputBuffers, numOutputBuffers, initialInputBufferSize, mediaCrypto, threads);
+            numInputBuffers,
+            numOutputBuffers,
+            initialInputBufferSize,
+            mediaCrypto,
+            threads,
+            decodeExecutor);
     this.decoder = decoder;
     TraceUtil.endSection();
     return decoder;
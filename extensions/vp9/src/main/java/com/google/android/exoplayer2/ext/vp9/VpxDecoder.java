@@ -27,6 +27,7 @@ import com.google.android.exoplayer2.util.Util;
 import com.google.android.exoplayer2.video.VideoDecoderInputBuffer;
 import com.google.android.exoplayer2.video.VideoDecoderOutputBuffer;
 import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
 
 /** Vpx decoder. */
 /* package */ final class VpxDecoder
@@ -54,6 +55,8 @@ import java.nio.ByteBuffer;
    * @param exoMediaCrypto The {@link ExoMediaCrypto} object required for decoding encrypted
    *     content. Maybe null and can be ignored if decoder does not handle encrypted content.
    * @param threads Number of threads libvpx will use to decode.
+   * @param decodeExecutor An {@link Executor} on which to decode, or {@code null} to decode on a
+   *     thread owned by the decoder.
    * @throws VpxDecoderException Thrown if an exception occurs when initializing the decoder.
    */
   public VpxDecoder(
@@ -61,11 +64,13 @@ import java.nio.ByteBuffer;
       int numOutputBuffers,
       int initialInputBufferSize,
       @Nullable ExoMediaCrypto exoMediaCrypto,
-      int threads)
+      int threads,
+      @Nullable Executor decodeExecutor)
       throws VpxDecoderException {
     super(
         new VideoDecoderInputBuffer[numInputBuffers],
-        new VideoDecoderOutputBuffer[numOutputBuffers]);
+        new VideoDecoderOutputBuffer[numOutputBuffers],
+        decodeExecutor);
     if (!VpxLibrary.isAvailable()) {
       throw new VpxDecoderException("Failed to load decoder native libraries.");
     }
@@ -974,6 +974,13 @@ public final class C {
    */
   public static final int PRIORITY_DOWNLOAD = PRIORITY_PLAYBACK - 1000;
 
+  /**
+   * Priority for prefetching the start of media that may be played.
+   *
+   * <p>Larger values indicate higher priorities.
+   */
+  public static final int PRIORITY_PREFETCH = PRIORITY_DOWNLOAD - 1000;
+
   /**
    * Network connection type. One of {@link #NETWORK_TYPE_UNKNOWN}, {@link #NETWORK_TYPE_OFFLINE},
    * {@link #NETWORK_TYPE_WIFI}, {@link #NETWORK_TYPE_2G}, {@link #NETWORK_TYPE_3G}, {@link
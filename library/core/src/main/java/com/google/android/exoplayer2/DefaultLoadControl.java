@@ -15,7 +15,9 @@
  */
 package com.google.android.exoplayer2;
 
+import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.TrackSelection;
 import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
 import com.google.android.exoplayer2.upstream.Allocator;
 import com.google.android.exoplayer2.upstream.DefaultAllocator;
@@ -67,6 +69,12 @@ public class DefaultLoadControl implements LoadControl {
   /** The default for whether the back buffer is retained from the previous keyframe. */
   public static final boolean DEFAULT_RETAIN_BACK_BUFFER_FROM_KEYFRAME = false;
 
+  /**
+   * The default maximum back buffer size in bytes. The value ({@link C#LENGTH_UNSET}) means that
+   * the back buffer is only limited by its duration.
+   */
+  public static final int DEFAULT_BACK_BUFFER_BYTES = C.LENGTH_UNSET;
+
   /** A default size in bytes for a video buffer. */
   public static final int DEFAULT_VIDEO_BUFFER_SIZE = 500 * C.DEFAULT_BUFFER_SEGMENT_SIZE;
 
@@ -86,10 +94,41 @@ public class DefaultLoadControl implements LoadControl {
   public static final int DEFAULT_MUXED_BUFFER_SIZE =
       DEFAULT_VIDEO_BUFFER_SIZE + DEFAULT_AUDIO_BUFFER_SIZE + DEFAULT_TEXT_BUFFER_SIZE;
 
+  /** The default number of media periods to prepare ahead of the loading media period. */
+  public static final int DEFAULT_PRELOAD_MEDIA_PERIOD_COUNT = 0;
+
+  /** The default for whether the buffer targets adapt to bitrate, rebuffers and memory pressure. */
+  public static final boolean DEFAULT_ADAPTIVE_BUFFERING_ENABLED = false;
+
+  /**
+   * The minimum target buffer size in bytes used in adaptive buffering mode, regardless of memory
+   * pressure.
+   */
+  public static final int ADAPTIVE_MIN_TARGET_BUFFER_SIZE = 4 * C.DEFAULT_BUFFER_SEGMENT_SIZE;
+
+  /**
+   * The maximum fraction of the available heap that the target buffer size may occupy in adaptive
+   * buffering mode.
+   */
+  public static final float ADAPTIVE_MAX_HEAP_FRACTION = 0.5f;
+
+  /**
+   * The fraction of the maximum heap size below which the available heap is considered to be under
+   * pressure in adaptive buffering mode.
+   */
+  public static final float ADAPTIVE_LOW_MEMORY_HEAP_FRACTION = 0.15f;
+
+  /**
+   * The duration by which the minimum buffer duration is increased after each rebuffer in adaptive
+   * buffering mode, in milliseconds.
+   */
+  public static final int ADAPTIVE_REBUFFER_MIN_BUFFER_INCREMENT_MS = 5000;
+
   /** Builder for {@link DefaultLoadControl}. */
   public static final class Builder {
 
     private DefaultAllocator allocator;
+    private boolean allocatorShared;
     private int minBufferAudioMs;
     private int minBufferVideoMs;
     private int maxBufferMs;
@@ -99,6 +138,9 @@ public class DefaultLoadControl implements LoadControl {
     private boolean prioritizeTimeOverSizeThresholds;
     private int backBufferDurationMs;
     private boolean retainBackBufferFromKeyframe;
+    private int backBufferBytes;
+    private int preloadMediaPeriodCount;
+    private boolean adaptiveBufferingEnabled;
     private boolean createDefaultLoadControlCalled;
 
     /** Constructs a new instance. */
@@ -112,6 +154,9 @@ public class DefaultLoadControl implements LoadControl {
       prioritizeTimeOverSizeThresholds = DEFAULT_PRIORITIZE_TIME_OVER_SIZE_THRESHOLDS;
       backBufferDurationMs = DEFAULT_BACK_BUFFER_DURATION_MS;
       retainBackBufferFromKeyframe = DEFAULT_RETAIN_BACK_BUFFER_FROM_KEYFRAME;
+      backBufferBytes = DEFAULT_BACK_BUFFER_BYTES;
+      preloadMediaPeriodCount = DEFAULT_PRELOAD_MEDIA_PERIOD_COUNT;
+      adaptiveBufferingEnabled = DEFAULT_ADAPTIVE_BUFFERING_ENABLED;
     }
 
     /**
@@ -124,6 +169,30 @@ public class DefaultLoadControl implements LoadControl {
     public Builder setAllocator(DefaultAllocator allocator) {
       Assertions.checkState(!createDefaultLoadControlCalled);
       this.allocator = allocator;
+      this.allocatorShared = false;
+      return this;
+    }
+
+    /**
+     * Sets a {@link DefaultAllocator} that's shared with the load controls of other players, so
+     * that all of the players buffer within a single memory budget. Each player stops loading once
+     * the total size of the buffers of all players reaches the budget. The load control never
+     * resets the shared allocator, so it should be created with {@code trimOnReset} set to false.
+     *
+     * <p>This overrides any target buffer size set with {@link #setTargetBufferBytes(int)}.
+     *
+     * @param allocator The shared {@link DefaultAllocator}.
+     * @param totalTargetBufferBytes The target size in bytes of the buffers of all players sharing
+     *     the allocator.
+     * @return This builder, for convenience.
+     * @throws IllegalStateException If {@link #createDefaultLoadControl()} has already been called.
+     */
+    public Builder setSharedAllocator(DefaultAllocator allocator, int totalTargetBufferBytes) {
+      Assertions.checkState(!createDefaultLoadControlCalled);
+      assertGreaterOrEqual(totalTargetBufferBytes, 0, "totalTargetBufferBytes", "0");
+      this.allocator = allocator;
+      this.allocatorShared = true;
+      this.targetBufferBytes = totalTargetBufferBytes;
       return this;
     }
 
@@ -213,6 +282,64 @@ public class DefaultLoadControl implements LoadControl {
       return this;
     }
 
+    /**
+     * Sets the maximum size of the back buffer in bytes. The back buffer duration set with {@link
+     * #setBackBuffer(int, boolean)} is reduced so that media in the back buffer, at the bitrates of
+     * the selected tracks, doesn't exceed this size. The size is added to the calculated target
+     * buffer size, so that retaining media for fast backward seeking doesn't reduce the amount of
+     * media buffered ahead of the playback position.
+     *
+     * <p>The size is only enforced if the bitrates of all selected tracks are known. Otherwise only
+     * the back buffer duration applies.
+     *
+     * @param backBufferBytes The maximum size of the back buffer in bytes, or {@link
+     *     C#LENGTH_UNSET} to only limit the back buffer by its duration.
+     * @return This builder, for convenience.
+     * @throws IllegalStateException If {@link #createDefaultLoadControl()} has already been called.
+     */
+    public Builder setBackBufferBytes(int backBufferBytes) {
+      Assertions.checkState(!createDefaultLoadControlCalled);
+      Assertions.checkArgument(backBufferBytes == C.LENGTH_UNSET || backBufferBytes >= 0);
+      this.backBufferBytes = backBufferBytes;
+      return this;
+    }
+
+    /**
+     * Sets the number of media periods (e.g. upcoming playlist items) to prepare ahead of the media
+     * period that's currently loading. Media periods are only preloaded while the buffer is below
+     * its target size. Preparing a media period may load some media, as described in {@link
+     * LoadControl#shouldPreloadMediaPeriod(int)}.
+     *
+     * @param preloadMediaPeriodCount The number of media periods to prepare ahead of time.
+     * @return This builder, for convenience.
+     * @throws IllegalStateException If {@link #createDefaultLoadControl()} has already been called.
+     */
+    public Builder setPreloadMediaPeriodCount(int preloadMediaPeriodCount) {
+      Assertions.checkState(!createDefaultLoadControlCalled);
+      assertGreaterOrEqual(preloadMediaPeriodCount, 0, "preloadMediaPeriodCount", "0");
+      this.preloadMediaPeriodCount = preloadMediaPeriodCount;
+      return this;
+    }
+
+    /**
+     * Sets whether the buffer targets adapt at runtime. If enabled, the target buffer size is
+     * derived from the bitrates of the selected tracks and capped by the available heap, the
+     * minimum buffer duration grows after each rebuffer, and the back buffer is dropped while the
+     * heap is under pressure. The configured buffer durations and back buffer act as the baseline.
+     *
+     * <p>A target buffer size set with {@link #setTargetBufferBytes(int)} is still capped by the
+     * available heap, but is otherwise respected.
+     *
+     * @param adaptiveBufferingEnabled Whether the buffer targets adapt at runtime.
+     * @return This builder, for convenience.
+     * @throws IllegalStateException If {@link #createDefaultLoadControl()} has already been called.
+     */
+    public Builder setAdaptiveBufferingEnabled(boolean adaptiveBufferingEnabled) {
+      Assertions.checkState(!createDefaultLoadControlCalled);
+      this.adaptiveBufferingEnabled = adaptiveBufferingEnabled;
+      return this;
+    }
+
     /** Creates a {@link DefaultLoadControl}. */
     public DefaultLoadControl createDefaultLoadControl() {
       Assertions.checkState(!createDefaultLoadControlCalled);
@@ -222,6 +349,7 @@ public class DefaultLoadControl implements LoadControl {
       }
       return new DefaultLoadControl(
           allocator,
+          allocatorShared,
           minBufferAudioMs,
           minBufferVideoMs,
           maxBufferMs,
@@ -230,11 +358,15 @@ public class DefaultLoadControl implements LoadControl {
           targetBufferBytes,
           prioritizeTimeOverSizeThresholds,
           backBufferDurationMs,
-          retainBackBufferFromKeyframe);
+          retainBackBufferFromKeyframe,
+          backBufferBytes,
+          preloadMediaPeriodCount,
+          adaptiveBufferingEnabled);
     }
   }
 
   private final DefaultAllocator allocator;
+  private final boolean allocatorShared;
 
   private final long minBufferAudioUs;
   private final long minBufferVideoUs;
@@ -245,10 +377,18 @@ public class DefaultLoadControl implements LoadControl {
   private final boolean prioritizeTimeOverSizeThresholds;
   private final long backBufferDurationUs;
   private final boolean retainBackBufferFromKeyframe;
+  private final int backBufferBytes;
+  private final int preloadMediaPeriodCount;
+  private final boolean adaptiveBufferingEnabled;
 
   private int targetBufferSize;
   private boolean isBuffering;
   private boolean hasVideo;
+  private int selectedTracksBitrate;
+  private int selectedTracksTargetBufferSize;
+  private int rebufferCount;
+  private boolean isRebuffering;
+  private boolean isUnderMemoryPressure;
 
   /** Constructs a new instance, using the {@code DEFAULT_*} constants defined in this class. */
   @SuppressWarnings("deprecation")
@@ -306,6 +446,38 @@ public class DefaultLoadControl implements LoadControl {
       boolean prioritizeTimeOverSizeThresholds,
       int backBufferDurationMs,
       boolean retainBackBufferFromKeyframe) {
+    this(
+        allocator,
+        /* allocatorShared= */ false,
+        minBufferAudioMs,
+        minBufferVideoMs,
+        maxBufferMs,
+        bufferForPlaybackMs,
+        bufferForPlaybackAfterRebufferMs,
+        targetBufferBytes,
+        prioritizeTimeOverSizeThresholds,
+        backBufferDurationMs,
+        retainBackBufferFromKeyframe,
+        DEFAULT_BACK_BUFFER_BYTES,
+        DEFAULT_PRELOAD_MEDIA_PERIOD_COUNT,
+        DEFAULT_ADAPTIVE_BUFFERING_ENABLED);
+  }
+
+  protected DefaultLoadControl(
+      DefaultAllocator allocator,
+      boolean allocatorShared,
+      int minBufferAudioMs,
+      int minBufferVideoMs,
+      int maxBufferMs,
+      int bufferForPlaybackMs,
+      int bufferForPlaybackAfterRebufferMs,
+      int targetBufferBytes,
+      boolean prioritizeTimeOverSizeThresholds,
+      int backBufferDurationMs,
+      boolean retainBackBufferFromKeyframe,
+      int backBufferBytes,
+      int preloadMediaPeriodCount,
+      boolean adaptiveBufferingEnabled) {
     assertGreaterOrEqual(bufferForPlaybackMs, 0, "bufferForPlaybackMs", "0");
     assertGreaterOrEqual(
         bufferForPlaybackAfterRebufferMs, 0, "bufferForPlaybackAfterRebufferMs", "0");
@@ -326,8 +498,10 @@ public class DefaultLoadControl implements LoadControl {
     assertGreaterOrEqual(maxBufferMs, minBufferAudioMs, "maxBufferMs", "minBufferAudioMs");
     assertGreaterOrEqual(maxBufferMs, minBufferVideoMs, "maxBufferMs", "minBufferVideoMs");
     assertGreaterOrEqual(backBufferDurationMs, 0, "backBufferDurationMs", "0");
+    Assertions.checkArgument(!allocatorShared || targetBufferBytes != C.LENGTH_UNSET);
 
     this.allocator = allocator;
+    this.allocatorShared = allocatorShared;
     this.minBufferAudioUs = C.msToUs(minBufferAudioMs);
     this.minBufferVideoUs = C.msToUs(minBufferVideoMs);
     this.maxBufferUs = C.msToUs(maxBufferMs);
@@ -337,6 +511,10 @@ public class DefaultLoadControl implements LoadControl {
     this.prioritizeTimeOverSizeThresholds = prioritizeTimeOverSizeThresholds;
     this.backBufferDurationUs = C.msToUs(backBufferDurationMs);
     this.retainBackBufferFromKeyframe = retainBackBufferFromKeyframe;
+    this.backBufferBytes = backBufferBytes;
+    this.preloadMediaPeriodCount = preloadMediaPeriodCount;
+    this.adaptiveBufferingEnabled = adaptiveBufferingEnabled;
+    selectedTracksBitrate = Format.NO_VALUE;
   }
 
   @Override
@@ -348,11 +526,24 @@ public class DefaultLoadControl implements LoadControl {
   public void onTracksSelected(Renderer[] renderers, TrackGroupArray trackGroups,
       TrackSelectionArray trackSelections) {
     hasVideo = hasVideo(renderers, trackSelections);
-    targetBufferSize =
-        targetBufferBytesOverwrite == C.LENGTH_UNSET
-            ? calculateTargetBufferSize(renderers, trackSelections)
-            : targetBufferBytesOverwrite;
-    allocator.setTargetBufferSize(targetBufferSize);
+    selectedTracksBitrate = getBitrate(renderers, trackSelections);
+    if (targetBufferBytesOverwrite != C.LENGTH_UNSET) {
+      selectedTracksTargetBufferSize = targetBufferBytesOverwrite;
+    } else {
+      selectedTracksTargetBufferSize =
+          adaptiveBufferingEnabled
+              ? calculateAdaptiveTargetBufferSize(renderers, trackSelections)
+              : calculateTargetBufferSize(renderers, trackSelections);
+      if (backBufferBytes != C.LENGTH_UNSET && backBufferDurationUs > 0) {
+        long sizeWithBackBuffer = (long) selectedTracksTargetBufferSize + backBufferBytes;
+        selectedTracksTargetBufferSize = (int) Math.min(Integer.MAX_VALUE, sizeWithBackBuffer);
+      }
+    }
+    targetBufferSize = selectedTracksTargetBufferSize;
+    if (adaptiveBufferingEnabled) {
+      updateMemoryPressure();
+    }
+    updateAllocatorTargetBufferSize();
   }
 
   @Override
@@ -372,6 +563,14 @@ public class DefaultLoadControl implements LoadControl {
 
   @Override
   public long getBackBufferDurationUs() {
+    if (isUnderMemoryPressure) {
+      return 0;
+    }
+    if (backBufferBytes != C.LENGTH_UNSET && selectedTracksBitrate != Format.NO_VALUE) {
+      long backBufferBytesDurationUs =
+          backBufferBytes * 8L * C.MICROS_PER_SECOND / Math.max(1, selectedTracksBitrate);
+      return Math.min(backBufferDurationUs, backBufferBytesDurationUs);
+    }
     return backBufferDurationUs;
   }
 
@@ -382,8 +581,11 @@ public class DefaultLoadControl implements LoadControl {
 
   @Override
   public boolean shouldContinueLoading(long bufferedDurationUs, float playbackSpeed) {
+    if (adaptiveBufferingEnabled) {
+      updateMemoryPressure();
+    }
     boolean targetBufferSizeReached = allocator.getTotalBytesAllocated() >= targetBufferSize;
-    long minBufferUs = hasVideo ? minBufferVideoUs : minBufferAudioUs;
+    long minBufferUs = getMinBufferUs();
     if (playbackSpeed > 1) {
       // The playback speed is faster than real time, so scale up the minimum required media
       // duration to keep enough media buffered for a playout duration of minBufferUs.
@@ -402,6 +604,12 @@ public class DefaultLoadControl implements LoadControl {
   @Override
   public boolean shouldStartPlayback(
       long bufferedDurationUs, float playbackSpeed, boolean rebuffering) {
+    if (adaptiveBufferingEnabled) {
+      if (rebuffering && !isRebuffering) {
+        rebufferCount++;
+      }
+      isRebuffering = rebuffering;
+    }
     bufferedDurationUs = Util.getPlayoutDurationForMediaDuration(bufferedDurationUs, playbackSpeed);
     long minBufferDurationUs = rebuffering ? bufferForPlaybackAfterRebufferUs : bufferForPlaybackUs;
     return minBufferDurationUs <= 0
@@ -410,6 +618,12 @@ public class DefaultLoadControl implements LoadControl {
             && allocator.getTotalBytesAllocated() >= targetBufferSize);
   }
 
+  @Override
+  public boolean shouldPreloadMediaPeriod(int preloadedPeriodCount) {
+    return preloadedPeriodCount < preloadMediaPeriodCount
+        && allocator.getTotalBytesAllocated() < targetBufferSize;
+  }
+
   /**
    * Calculate target buffer size in bytes based on the selected tracks. The player will try not to
    * exceed this target buffer. Only used when {@code targetBufferBytes} is {@link C#LENGTH_UNSET}.
@@ -429,11 +643,97 @@ public class DefaultLoadControl implements LoadControl {
     return targetBufferSize;
   }
 
+  /**
+   * Calculate target buffer size in bytes in adaptive buffering mode, based on the bitrates of the
+   * selected tracks. The size is chosen so that {@code maxBufferMs} of media at the highest
+   * selectable bitrate fits in the buffer. Tracks without a known bitrate fall back to the default
+   * buffer size of their type. The result is capped by the available heap in {@link
+   * #shouldContinueLoading(long, float)}, so it may exceed the heap here.
+   *
+   * @param renderers The renderers for which the track were selected.
+   * @param trackSelectionArray The selected tracks.
+   * @return The target buffer size in bytes.
+   */
+  protected int calculateAdaptiveTargetBufferSize(
+      Renderer[] renderers, TrackSelectionArray trackSelectionArray) {
+    long targetBufferSize = 0;
+    for (int i = 0; i < renderers.length; i++) {
+      @Nullable TrackSelection trackSelection = trackSelectionArray.get(i);
+      if (trackSelection == null) {
+        continue;
+      }
+      int maxBitrate = getMaxBitrate(trackSelection);
+      targetBufferSize +=
+          maxBitrate == Format.NO_VALUE
+              ? getDefaultBufferSize(renderers[i].getTrackType())
+              : maxBitrate * maxBufferUs / (8 * C.MICROS_PER_SECOND);
+    }
+    return (int)
+        Util.constrainValue(targetBufferSize, ADAPTIVE_MIN_TARGET_BUFFER_SIZE, Integer.MAX_VALUE);
+  }
+
+  /** Returns the maximum number of bytes the Java heap can grow to. */
+  protected long getMaxHeapBytes() {
+    return Runtime.getRuntime().maxMemory();
+  }
+
+  /** Returns the number of bytes the Java heap can still grow by before reaching its maximum. */
+  protected long getAvailableHeapBytes() {
+    Runtime runtime = Runtime.getRuntime();
+    return runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+  }
+
+  private long getMinBufferUs() {
+    long minBufferUs = hasVideo ? minBufferVideoUs : minBufferAudioUs;
+    if (adaptiveBufferingEnabled && rebufferCount > 0) {
+      // Each rebuffer indicates that the configured minimum buffer was insufficient to absorb
+      // fluctuations in network throughput, so keep more media buffered from now on.
+      minBufferUs += rebufferCount * C.msToUs(ADAPTIVE_REBUFFER_MIN_BUFFER_INCREMENT_MS);
+      minBufferUs = Math.min(minBufferUs, maxBufferUs);
+    }
+    return minBufferUs;
+  }
+
+  private void updateMemoryPressure() {
+    long availableHeapBytes = getAvailableHeapBytes();
+    isUnderMemoryPressure =
+        availableHeapBytes < getMaxHeapBytes() * ADAPTIVE_LOW_MEMORY_HEAP_FRACTION;
+    // Bytes already allocated are part of the used heap, so they count towards the budget.
+    long heapBudgetBytes =
+        (long)
+            ((allocator.getTotalBytesAllocated() + availableHeapBytes)
+                * ADAPTIVE_MAX_HEAP_FRACTION);
+    int newTargetBufferSize =
+        (int)
+            Math.min(
+                selectedTracksTargetBufferSize,
+                Math.max(ADAPTIVE_MIN_TARGET_BUFFER_SIZE, heapBudgetBytes));
+    if (newTargetBufferSize != targetBufferSize) {
+      targetBufferSize = newTargetBufferSize;
+      updateAllocatorTargetBufferSize();
+    }
+  }
+
+  private void updateAllocatorTargetBufferSize() {
+    // A shared allocator always keeps allocations for the budget of all players sharing it.
+    allocator.setTargetBufferSize(allocatorShared ? targetBufferBytesOverwrite : targetBufferSize);
+  }
+
   private void reset(boolean resetAllocator) {
     targetBufferSize = 0;
+    selectedTracksTargetBufferSize = 0;
+    selectedTracksBitrate = Format.NO_VALUE;
     isBuffering = false;
+    isRebuffering = false;
+    isUnderMemoryPressure = false;
     if (resetAllocator) {
-      allocator.reset();
+      rebufferCount = 0;
+      if (allocatorShared) {
+        // Other players may still be using the allocator.
+        allocator.trim();
+      } else {
+        allocator.reset();
+      }
     }
   }
 
@@ -458,6 +758,33 @@ public class DefaultLoadControl implements LoadControl {
     }
   }
 
+  /**
+   * Returns the sum of the highest bitrates of the selected tracks, or {@link Format#NO_VALUE} if
+   * the bitrate of any selected track is unknown.
+   */
+  private static int getBitrate(Renderer[] renderers, TrackSelectionArray trackSelectionArray) {
+    long bitrate = 0;
+    for (int i = 0; i < renderers.length; i++) {
+      @Nullable TrackSelection trackSelection = trackSelectionArray.get(i);
+      if (trackSelection != null) {
+        int maxBitrate = getMaxBitrate(trackSelection);
+        if (maxBitrate == Format.NO_VALUE) {
+          return Format.NO_VALUE;
+        }
+        bitrate += maxBitrate;
+      }
+    }
+    return (int) Math.min(Integer.MAX_VALUE, bitrate);
+  }
+
+  private static int getMaxBitrate(TrackSelection trackSelection) {
+    int maxBitrate = Format.NO_VALUE;
+    for (int i = 0; i < trackSelection.length(); i++) {
+      maxBitrate = Math.max(maxBitrate, trackSelection.getFormat(i).bitrate);
+    }
+    return maxBitrate;
+  }
+
   private static boolean hasVideo(Renderer[] renderers, TrackSelectionArray trackSelectionArray) {
     for (int i = 0; i < renderers.length; i++) {
       if (renderers[i].getTrackType() == C.TRACK_TYPE_VIDEO && trackSelectionArray.get(i) != null) {
@@ -95,7 +95,6 @@ import java.util.concurrent.atomic.AtomicBoolean;
   private final Handler eventHandler;
   private final Timeline.Window window;
   private final Timeline.Period period;
-  private final long backBufferDurationUs;
   private final boolean retainBackBufferFromKeyframe;
   private final DefaultMediaClock mediaClock;
   private final PlaybackInfoUpdate playbackInfoUpdate;
@@ -146,7 +145,6 @@ import java.util.concurrent.atomic.AtomicBoolean;
     this.clock = clock;
     this.queue = new MediaPeriodQueue();
 
-    backBufferDurationUs = loadControl.getBackBufferDurationUs();
     retainBackBufferFromKeyframe = loadControl.retainBackBufferFromKeyframe();
 
     seekParameters = SeekParameters.DEFAULT;
@@ -587,7 +585,8 @@ import java.util.concurrent.atomic.AtomicBoolean;
     if (playingPeriodHolder.prepared) {
       long rendererPositionElapsedRealtimeUs = SystemClock.elapsedRealtime() * 1000;
       playingPeriodHolder.mediaPeriod.discardBuffer(
-          playbackInfo.positionUs - backBufferDurationUs, retainBackBufferFromKeyframe);
+          playbackInfo.positionUs - loadControl.getBackBufferDurationUs(),
+          retainBackBufferFromKeyframe);
       for (int i = 0; i < renderers.length; i++) {
         Renderer renderer = renderers[i];
         if (renderer.getState() == Renderer.STATE_DISABLED) {
@@ -785,7 +784,8 @@ import java.util.concurrent.atomic.AtomicBoolean;
       if (newPlayingPeriodHolder.hasEnabledTracks) {
         periodPositionUs = newPlayingPeriodHolder.mediaPeriod.seekToUs(periodPositionUs);
         newPlayingPeriodHolder.mediaPeriod.discardBuffer(
-            periodPositionUs - backBufferDurationUs, retainBackBufferFromKeyframe);
+            periodPositionUs - loadControl.getBackBufferDurationUs(),
+            retainBackBufferFromKeyframe);
       }
       resetRendererPosition(periodPositionUs);
       maybeContinueLoading();
@@ -1138,6 +1138,8 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
   private void reselectTracksInternal() throws ExoPlaybackException {
     float playbackSpeed = mediaClock.getPlaybackParameters().speed;
+    // Preloading periods were prepared with the previous selection, so prepare them again.
+    queue.releasePreloadingPeriods();
     // Reselect tracks on each period in turn, until the selection changes.
     MediaPeriodHolder periodHolder = queue.getPlayingPeriod();
     MediaPeriodHolder readingPeriodHolder = queue.getReadingPeriod();
@@ -1545,12 +1547,20 @@ import java.util.concurrent.atomic.AtomicBoolean;
                 mediaSource,
                 info,
                 emptyTrackSelectorResult);
-        mediaPeriodHolder.mediaPeriod.prepare(this, info.startPositionUs);
+        if (!mediaPeriodHolder.preloaded) {
+          mediaPeriodHolder.mediaPeriod.prepare(this, info.startPositionUs);
+        }
         if (queue.getPlayingPeriod() == mediaPeriodHolder) {
           resetRendererPosition(mediaPeriodHolder.getStartPositionRendererTime());
         }
         handleLoadingMediaPeriodChanged(/* loadingTrackSelectionChanged= */ false);
+        if (mediaPeriodHolder.prepared) {
+          // The period was prepared ahead of time.
+          handleLoadingPeriodPrepared(mediaPeriodHolder);
+        }
       }
+    } else {
+      maybePreloadNextMediaPeriod();
     }
     if (shouldContinueLoading) {
       shouldContinueLoading = isLoadingPossible();
@@ -1560,6 +1570,28 @@ import java.util.concurrent.atomic.AtomicBoolean;
     }
   }
 
+  private void maybePreloadNextMediaPeriod() {
+    @Nullable IOException preloadError = queue.releaseFailedPreloadingPeriods();
+    if (preloadError != null) {
+      Log.w(TAG, "Failed to preload media period", preloadError);
+    }
+    if (!loadControl.shouldPreloadMediaPeriod(queue.getPreloadingPeriodCount())) {
+      return;
+    }
+    @Nullable MediaPeriodInfo info = queue.getNextPreloadingMediaPeriodInfo(rendererPositionUs);
+    if (info != null) {
+      MediaPeriodHolder mediaPeriodHolder =
+          queue.addPreloadingMediaPeriodHolder(
+              rendererCapabilities,
+              trackSelector,
+              loadControl.getAllocator(),
+              mediaSource,
+              info,
+              emptyTrackSelectorResult);
+      mediaPeriodHolder.mediaPeriod.prepare(this, info.startPositionUs);
+    }
+  }
+
   private void maybeUpdateReadingPeriod() throws ExoPlaybackException {
     MediaPeriodHolder readingPeriodHolder = queue.getReadingPeriod();
     if (readingPeriodHolder == null) {
@@ -1714,12 +1746,23 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
   private void handlePeriodPrepared(MediaPeriod mediaPeriod) throws ExoPlaybackException {
     if (!queue.isLoading(mediaPeriod)) {
-      // Stale event.
+      @Nullable MediaPeriodHolder preloadingPeriodHolder = queue.getPreloadingPeriod(mediaPeriod);
+      if (preloadingPeriodHolder != null) {
+        // Select tracks straight away, so that the period can start loading once it's enqueued.
+        preloadingPeriodHolder.handlePrepared(
+            mediaClock.getPlaybackParameters().speed, playbackInfo.timeline);
+      }
+      // Else stale event.
       return;
     }
     MediaPeriodHolder loadingPeriodHolder = queue.getLoadingPeriod();
     loadingPeriodHolder.handlePrepared(
         mediaClock.getPlaybackParameters().speed, playbackInfo.timeline);
+    handleLoadingPeriodPrepared(loadingPeriodHolder);
+  }
+
+  private void handleLoadingPeriodPrepared(MediaPeriodHolder loadingPeriodHolder)
+      throws ExoPlaybackException {
     updateLoadControlTrackSelection(
         loadingPeriodHolder.getTrackGroups(), loadingPeriodHolder.getTrackSelectorResult());
     if (loadingPeriodHolder == queue.getPlayingPeriod()) {
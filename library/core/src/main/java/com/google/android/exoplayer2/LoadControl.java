@@ -62,8 +62,9 @@ public interface LoadControl {
    * Note: If {@link #retainBackBufferFromKeyframe()} is false then seeking in the back-buffer will
    * only be fast if the back-buffer contains a keyframe prior to the seek position.
    * <p>
-   * Note: Implementations should return a single value. Dynamic changes to the back-buffer are not
-   * currently supported.
+   * Note: The player queries this value each time it discards media from the buffer, so
+   * implementations may change it dynamically (e.g. to shrink the back-buffer under memory
+   * pressure). Increasing the value does not restore media that has already been discarded.
    *
    * @return The duration of media to retain in the buffer prior to the current playback position,
    *     in microseconds.
@@ -110,4 +111,26 @@ public interface LoadControl {
    * @return Whether playback should be allowed to start or resume.
    */
   boolean shouldStartPlayback(long bufferedDurationUs, float playbackSpeed, boolean rebuffering);
+
+  /**
+   * Called by the player to determine whether it should prepare another media period ahead of the
+   * media period that's currently loading. Preparing media periods ahead of time means that media
+   * preparation (e.g. loading manifests and selecting tracks) for upcoming playlist items doesn't
+   * delay the transition to these items.
+   *
+   * <p>Preparing a media period may load some media. For example, a progressive media period
+   * loads up to its continue loading check interval (1 MB by default) to find its tracks, and an
+   * HLS media period loads the start of a segment unless chunkless preparation is allowed.
+   * Preloaded media periods don't continue loading after they're prepared until they become the
+   * loading media period.
+   *
+   * <p>The default implementation returns false.
+   *
+   * @param preloadedPeriodCount The number of media periods already being prepared ahead of the
+   *     loading media period.
+   * @return Whether another media period should be prepared ahead of time.
+   */
+  default boolean shouldPreloadMediaPeriod(int preloadedPeriodCount) {
+    return false;
+  }
 }
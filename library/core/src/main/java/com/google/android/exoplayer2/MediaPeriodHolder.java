@@ -48,6 +48,10 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
 
   /** Whether the media period has finished preparing. */
   public boolean prepared;
+  /**
+   * Whether the media period was prepared ahead of time, before it became the loading media period.
+   */
+  public boolean preloaded;
   /** Whether any of the tracks of this media period are enabled. */
   public boolean hasEnabledTracks;
   /** {@link MediaPeriodInfo} about this media period. */
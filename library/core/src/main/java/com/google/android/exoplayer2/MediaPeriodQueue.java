@@ -25,6 +25,8 @@ import com.google.android.exoplayer2.trackselection.TrackSelector;
 import com.google.android.exoplayer2.trackselection.TrackSelectorResult;
 import com.google.android.exoplayer2.upstream.Allocator;
 import com.google.android.exoplayer2.util.Assertions;
+import java.io.IOException;
+import java.util.ArrayList;
 
 /**
  * Holds a queue of media periods, from the currently playing media period at the front to the
@@ -42,8 +44,10 @@ import com.google.android.exoplayer2.util.Assertions;
 
   private final Timeline.Period period;
   private final Timeline.Window window;
+  private final ArrayList<MediaPeriodHolder> preloading;
 
   private long nextWindowSequenceNumber;
+  private boolean preloadFailed;
   private Timeline timeline;
   private @RepeatMode int repeatMode;
   private boolean shuffleModeEnabled;
@@ -58,12 +62,13 @@ import com.google.android.exoplayer2.util.Assertions;
   public MediaPeriodQueue() {
     period = new Timeline.Period();
     window = new Timeline.Window();
+    preloading = new ArrayList<>();
     timeline = Timeline.EMPTY;
   }
 
   /**
    * Sets the {@link Timeline}. Call {@link #updateQueuedPeriods(long, long)} to update the queued
-   * media periods to take into account the new timeline.
+   * and preloading media periods to take into account the new timeline.
    */
   public void setTimeline(Timeline timeline) {
     this.timeline = timeline;
@@ -112,6 +117,121 @@ import com.google.android.exoplayer2.util.Assertions;
             && length < MAXIMUM_BUFFER_AHEAD_PERIODS);
   }
 
+  /** Returns the number of media periods that are being prepared ahead of the loading period. */
+  public int getPreloadingPeriodCount() {
+    return preloading.size();
+  }
+
+  /**
+   * Returns the preloading period holder of {@code mediaPeriod}, or null if {@code mediaPeriod} is
+   * not being prepared ahead of the loading period.
+   */
+  @Nullable
+  public MediaPeriodHolder getPreloadingPeriod(MediaPeriod mediaPeriod) {
+    for (int i = 0; i < preloading.size(); i++) {
+      MediaPeriodHolder preloadingPeriod = preloading.get(i);
+      if (preloadingPeriod.mediaPeriod == mediaPeriod) {
+        return preloadingPeriod;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the {@link MediaPeriodInfo} for the next media period to prepare ahead of the loading
+   * period. Media periods are preloaded one at a time, once the previous media period has been
+   * prepared. No media periods are preloaded after a preloading period failed to prepare, until
+   * the next media period is enqueued.
+   *
+   * @param rendererPositionUs The current renderer position.
+   * @return The {@link MediaPeriodInfo} for the next media period to preload, or {@code null} if
+   *     not yet known.
+   */
+  @Nullable
+  public MediaPeriodInfo getNextPreloadingMediaPeriodInfo(long rendererPositionUs) {
+    MediaPeriodHolder last = preloading.isEmpty() ? loading : preloading.get(preloading.size() - 1);
+    if (last == null
+        || preloadFailed
+        || !last.prepared
+        || last.info.isFinal
+        || last.info.durationUs == C.TIME_UNSET
+        || length + preloading.size() >= MAXIMUM_BUFFER_AHEAD_PERIODS) {
+      return null;
+    }
+    return getFollowingMediaPeriodInfo(last, rendererPositionUs);
+  }
+
+  /**
+   * Creates a media period holder based on the specified information, to be prepared ahead of the
+   * loading period. The holder is not part of the queue until it's returned by {@link
+   * #enqueueNextMediaPeriodHolder}.
+   *
+   * @param rendererCapabilities The renderer capabilities.
+   * @param trackSelector The track selector.
+   * @param allocator The allocator.
+   * @param mediaSource The media source that produced the media period.
+   * @param info Information used to identify this media period in its timeline period.
+   * @param emptyTrackSelectorResult A {@link TrackSelectorResult} with empty selections for each
+   *     renderer.
+   */
+  public MediaPeriodHolder addPreloadingMediaPeriodHolder(
+      RendererCapabilities[] rendererCapabilities,
+      TrackSelector trackSelector,
+      Allocator allocator,
+      MediaSource mediaSource,
+      MediaPeriodInfo info,
+      TrackSelectorResult emptyTrackSelectorResult) {
+    MediaPeriodHolder last = preloading.isEmpty() ? loading : preloading.get(preloading.size() - 1);
+    Assertions.checkState(last != null);
+    long rendererPositionOffsetUs =
+        last.getRendererOffset() + last.info.durationUs - info.startPositionUs;
+    MediaPeriodHolder newPeriodHolder =
+        new MediaPeriodHolder(
+            rendererCapabilities,
+            rendererPositionOffsetUs,
+            trackSelector,
+            allocator,
+            mediaSource,
+            info,
+            emptyTrackSelectorResult);
+    newPeriodHolder.preloaded = true;
+    preloading.add(newPeriodHolder);
+    return newPeriodHolder;
+  }
+
+  /**
+   * Checks whether the media period being prepared ahead of the loading period has failed to
+   * prepare, by calling its {@link MediaPeriod#maybeThrowPrepareError()}. If it has, it's released
+   * along with any following preloading periods, and the error is returned. The media period is
+   * prepared again when it's enqueued, which throws the error in the usual way if it persists.
+   *
+   * @return The error that prevented a preloading period from being prepared, or null.
+   */
+  @Nullable
+  public IOException releaseFailedPreloadingPeriods() {
+    for (int i = 0; i < preloading.size(); i++) {
+      MediaPeriodHolder preloadingPeriod = preloading.get(i);
+      if (preloadingPeriod.prepared) {
+        continue;
+      }
+      try {
+        preloadingPeriod.mediaPeriod.maybeThrowPrepareError();
+      } catch (IOException e) {
+        releasePreloadingPeriods(/* fromIndex= */ i);
+        preloadFailed = true;
+        return e;
+      }
+      // Following periods are only preloaded once this one is prepared.
+      break;
+    }
+    return null;
+  }
+
+  /** Releases all media periods that are being prepared ahead of the loading period. */
+  public void releasePreloadingPeriods() {
+    releasePreloadingPeriods(/* fromIndex= */ 0);
+  }
+
   /**
    * Returns the {@link MediaPeriodInfo} for the next media period to load.
    *
@@ -129,7 +249,9 @@ import com.google.android.exoplayer2.util.Assertions;
 
   /**
    * Enqueues a new media period holder based on the specified information as the new loading media
-   * period, and returns it.
+   * period, and returns it. If a media period matching the information has been prepared ahead of
+   * time, its holder is enqueued and returned instead of creating a new one, in which case {@link
+   * MediaPeriodHolder#preloaded} is true.
    *
    * @param rendererCapabilities The renderer capabilities.
    * @param trackSelector The track selector.
@@ -152,15 +274,32 @@ import com.google.android.exoplayer2.util.Assertions;
                 ? info.contentPositionUs
                 : 0)
             : (loading.getRendererOffset() + loading.info.durationUs - info.startPositionUs);
-    MediaPeriodHolder newPeriodHolder =
-        new MediaPeriodHolder(
-            rendererCapabilities,
-            rendererPositionOffsetUs,
-            trackSelector,
-            allocator,
-            mediaSource,
-            info,
-            emptyTrackSelectorResult);
+    preloadFailed = false;
+    MediaPeriodHolder newPeriodHolder = null;
+    if (!preloading.isEmpty()) {
+      MediaPeriodHolder preloadedPeriodHolder = preloading.remove(0);
+      if (loading != null && canKeepMediaPeriodHolder(preloadedPeriodHolder.info, info)) {
+        newPeriodHolder = preloadedPeriodHolder;
+        // The info may have changed since the period was preloaded, for example its duration.
+        newPeriodHolder.info = info;
+        newPeriodHolder.setRendererOffset(rendererPositionOffsetUs);
+      } else {
+        // The preloaded periods no longer follow the loading period.
+        preloadedPeriodHolder.release();
+        releasePreloadingPeriods();
+      }
+    }
+    if (newPeriodHolder == null) {
+      newPeriodHolder =
+          new MediaPeriodHolder(
+              rendererCapabilities,
+              rendererPositionOffsetUs,
+              trackSelector,
+              allocator,
+              mediaSource,
+              info,
+              emptyTrackSelectorResult);
+    }
     if (loading != null) {
       loading.setNext(newPeriodHolder);
     } else {
@@ -243,6 +382,8 @@ import com.google.android.exoplayer2.util.Assertions;
    */
   public boolean removeAfter(MediaPeriodHolder mediaPeriodHolder) {
     Assertions.checkState(mediaPeriodHolder != null);
+    releasePreloadingPeriods();
+    preloadFailed = false;
     boolean removedReading = false;
     loading = mediaPeriodHolder;
     while (mediaPeriodHolder.getNext() != null) {
@@ -265,6 +406,8 @@ import com.google.android.exoplayer2.util.Assertions;
    *     of queue (typically the playing one) for later reuse.
    */
   public void clear(boolean keepFrontPeriodUid) {
+    releasePreloadingPeriods();
+    preloadFailed = false;
     MediaPeriodHolder front = playing;
     if (front != null) {
       oldFrontPeriodUid = keepFrontPeriodUid ? front.uid : null;
@@ -341,6 +484,7 @@ import com.google.android.exoplayer2.util.Assertions;
       previousPeriodHolder = periodHolder;
       periodHolder = periodHolder.getNext();
     }
+    updatePreloadingPeriods(rendererPositionUs);
     return true;
   }
 
@@ -582,7 +726,7 @@ import com.google.android.exoplayer2.util.Assertions;
         }
         nextPeriodUid = defaultPosition.first;
         startPositionUs = defaultPosition.second;
-        MediaPeriodHolder nextMediaPeriodHolder = mediaPeriodHolder.getNext();
+        MediaPeriodHolder nextMediaPeriodHolder = getNextOrPreloadingPeriod(mediaPeriodHolder);
         if (nextMediaPeriodHolder != null && nextMediaPeriodHolder.uid.equals(nextPeriodUid)) {
           windowSequenceNumber = nextMediaPeriodHolder.info.id.windowSequenceNumber;
         } else {
@@ -661,6 +805,66 @@ import com.google.android.exoplayer2.util.Assertions;
     }
   }
 
+  /**
+   * Updates the media periods that are being prepared ahead of the loading period to take into
+   * account the latest timeline, releasing those that no longer follow the loading period.
+   *
+   * @param rendererPositionUs The current renderer position in microseconds.
+   */
+  private void updatePreloadingPeriods(long rendererPositionUs) {
+    @Nullable MediaPeriodHolder previousPeriodHolder = loading;
+    for (int i = 0; i < preloading.size(); i++) {
+      MediaPeriodHolder periodHolder = preloading.get(i);
+      MediaPeriodInfo oldPeriodInfo = periodHolder.info;
+      @Nullable
+      MediaPeriodInfo newPeriodInfo =
+          previousPeriodHolder != null
+              ? getFollowingMediaPeriodInfo(previousPeriodHolder, rendererPositionUs)
+              : null;
+      if (newPeriodInfo == null || !canKeepMediaPeriodHolder(oldPeriodInfo, newPeriodInfo)) {
+        // The period is no longer next in the new timeline.
+        releasePreloadingPeriods(/* fromIndex= */ i);
+        return;
+      }
+      periodHolder.info = newPeriodInfo.copyWithContentPositionUs(oldPeriodInfo.contentPositionUs);
+      if (!areDurationsCompatible(oldPeriodInfo.durationUs, newPeriodInfo.durationUs)) {
+        // The following periods were preloaded for the old duration.
+        releasePreloadingPeriods(/* fromIndex= */ i + 1);
+        return;
+      }
+      previousPeriodHolder = periodHolder;
+    }
+  }
+
+  private void releasePreloadingPeriods(int fromIndex) {
+    for (int i = preloading.size() - 1; i >= fromIndex; i--) {
+      preloading.remove(i).release();
+    }
+  }
+
+  /**
+   * Returns the holder following {@code mediaPeriodHolder} in the queue or, if it's the last holder
+   * in the queue or a preloading holder, the preloading holder following it.
+   */
+  @Nullable
+  private MediaPeriodHolder getNextOrPreloadingPeriod(MediaPeriodHolder mediaPeriodHolder) {
+    MediaPeriodHolder next = mediaPeriodHolder.getNext();
+    if (next != null) {
+      return next;
+    }
+    int nextPreloadingIndex;
+    if (mediaPeriodHolder == loading) {
+      nextPreloadingIndex = 0;
+    } else {
+      int preloadingIndex = preloading.indexOf(mediaPeriodHolder);
+      if (preloadingIndex == C.INDEX_UNSET) {
+        return null;
+      }
+      nextPreloadingIndex = preloadingIndex + 1;
+    }
+    return nextPreloadingIndex < preloading.size() ? preloading.get(nextPreloadingIndex) : null;
+  }
+
   private MediaPeriodInfo getMediaPeriodInfo(
       MediaPeriodId id, long contentPositionUs, long startPositionUs) {
     timeline.getPeriodByUid(id.periodUid, period);
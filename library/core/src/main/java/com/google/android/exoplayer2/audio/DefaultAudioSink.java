@@ -239,10 +239,12 @@ public final class DefaultAudioSink implements AudioSink {
   @Nullable private final AudioCapabilities audioCapabilities;
   private final AudioProcessorChain audioProcessorChain;
   private final boolean enableFloatOutput;
-  private final ChannelMappingAudioProcessor channelMappingAudioProcessor;
+  private final FusedPcmAudioProcessor toIntPcmAudioProcessor;
+  private final FusedPcmAudioProcessor toFloatPcmAudioProcessor;
   private final TrimmingAudioProcessor trimmingAudioProcessor;
   private final AudioProcessor[] toIntPcmAvailableAudioProcessors;
   private final AudioProcessor[] toFloatPcmAvailableAudioProcessors;
+  private final boolean canApplyPlaybackParametersWithFloatOutput;
   private final ConditionVariable releasingConditionVariable;
   private final AudioTrackPositionTracker audioTrackPositionTracker;
   private final ArrayDeque<PlaybackParametersCheckpoint> playbackParametersCheckpoints;
@@ -311,8 +313,9 @@ public final class DefaultAudioSink implements AudioSink {
    *     output. May be empty.
    * @param enableFloatOutput Whether to enable 32-bit float output. Where possible, 32-bit float
    *     output will be used if the input is 32-bit float, and also if the input is high resolution
-   *     (24-bit or 32-bit) integer PCM. Audio processing (for example, speed adjustment) will not
-   *     be available when float output is in use.
+   *     (24-bit or 32-bit) integer PCM. When float output is in use, only speed and pitch
+   *     adjustment is applied and other audio processing (for example, silence skipping) is not
+   *     available.
    */
   public DefaultAudioSink(
       @Nullable AudioCapabilities audioCapabilities,
@@ -331,8 +334,10 @@ public final class DefaultAudioSink implements AudioSink {
    *     parameters adjustments. The instance passed in must not be reused in other sinks.
    * @param enableFloatOutput Whether to enable 32-bit float output. Where possible, 32-bit float
    *     output will be used if the input is 32-bit float, and also if the input is high resolution
-   *     (24-bit or 32-bit) integer PCM. Audio processing (for example, speed adjustment) will not
-   *     be available when float output is in use.
+   *     (24-bit or 32-bit) integer PCM. When float output is in use, only the chain's {@link
+   *     SonicAudioProcessor} is applied, so speed and pitch adjustment is only available if the
+   *     chain contains one. Other audio processing (for example, silence skipping) is not
+   *     available.
    */
   public DefaultAudioSink(
       @Nullable AudioCapabilities audioCapabilities,
@@ -343,17 +348,28 @@ public final class DefaultAudioSink implements AudioSink {
     this.enableFloatOutput = enableFloatOutput;
     releasingConditionVariable = new ConditionVariable(true);
     audioTrackPositionTracker = new AudioTrackPositionTracker(new PositionTrackerListener());
-    channelMappingAudioProcessor = new ChannelMappingAudioProcessor();
+    // Encoding conversion and channel mapping are applied in a single pass by one processor, so
+    // that each input buffer is only copied once before reaching the stateful processors.
+    toIntPcmAudioProcessor = new FusedPcmAudioProcessor(C.ENCODING_PCM_16BIT);
+    toFloatPcmAudioProcessor = new FusedPcmAudioProcessor(C.ENCODING_PCM_FLOAT);
     trimmingAudioProcessor = new TrimmingAudioProcessor();
     ArrayList<AudioProcessor> toIntPcmAudioProcessors = new ArrayList<>();
-    Collections.addAll(
-        toIntPcmAudioProcessors,
-        new ResamplingAudioProcessor(),
-        channelMappingAudioProcessor,
-        trimmingAudioProcessor);
+    Collections.addAll(toIntPcmAudioProcessors, toIntPcmAudioProcessor, trimmingAudioProcessor);
     Collections.addAll(toIntPcmAudioProcessors, audioProcessorChain.getAudioProcessors());
     toIntPcmAvailableAudioProcessors = toIntPcmAudioProcessors.toArray(new AudioProcessor[0]);
-    toFloatPcmAvailableAudioProcessors = new AudioProcessor[] {new FloatResamplingAudioProcessor()};
+    // Only Sonic handles float input, so the float path converts the input and then applies the
+    // chain's speed and pitch adjustment, skipping any other processors in the chain.
+    ArrayList<AudioProcessor> toFloatPcmAudioProcessors = new ArrayList<>();
+    toFloatPcmAudioProcessors.add(toFloatPcmAudioProcessor);
+    for (AudioProcessor audioProcessor : audioProcessorChain.getAudioProcessors()) {
+      if (audioProcessor instanceof SonicAudioProcessor) {
+        toFloatPcmAudioProcessors.add(audioProcessor);
+      }
+    }
+    toFloatPcmAvailableAudioProcessors = toFloatPcmAudioProcessors.toArray(new AudioProcessor[0]);
+    // If the chain has no Sonic processor, it applies playback parameters with processors that
+    // aren't part of the float path.
+    canApplyPlaybackParametersWithFloatOutput = toFloatPcmAvailableAudioProcessors.length > 1;
     volume = 1.0f;
     startMediaTimeState = START_NOT_SET;
     audioAttributes = AudioAttributes.DEFAULT;
@@ -431,7 +447,8 @@ public final class DefaultAudioSink implements AudioSink {
         useFloatOutput ? toFloatPcmAvailableAudioProcessors : toIntPcmAvailableAudioProcessors;
     if (processingEnabled) {
       trimmingAudioProcessor.setTrimFrameCount(trimStartFrames, trimEndFrames);
-      channelMappingAudioProcessor.setChannelMap(outputChannels);
+      toIntPcmAudioProcessor.setChannelMap(outputChannels);
+      toFloatPcmAudioProcessor.setChannelMap(outputChannels);
       AudioProcessor.AudioFormat outputFormat =
           new AudioProcessor.AudioFormat(sampleRate, channelCount, encoding);
       for (AudioProcessor audioProcessor : availableAudioProcessors) {
@@ -458,7 +475,8 @@ public final class DefaultAudioSink implements AudioSink {
         isInputPcm ? Util.getPcmFrameSize(inputEncoding, inputChannelCount) : C.LENGTH_UNSET;
     int outputPcmFrameSize =
         isInputPcm ? Util.getPcmFrameSize(encoding, channelCount) : C.LENGTH_UNSET;
-    boolean canApplyPlaybackParameters = processingEnabled && !useFloatOutput;
+    boolean canApplyPlaybackParameters =
+        processingEnabled && (!useFloatOutput || canApplyPlaybackParametersWithFloatOutput);
     Configuration pendingConfiguration =
         new Configuration(
             isInputPcm,
@@ -1029,6 +1047,12 @@ public final class DefaultAudioSink implements AudioSink {
 
   private void applyPlaybackParameters(
       PlaybackParameters playbackParameters, long presentationTimeUs) {
+    if (configuration.outputEncoding == C.ENCODING_PCM_FLOAT && playbackParameters.skipSilence) {
+      // Silence skipping is not part of the float processing path.
+      playbackParameters =
+          new PlaybackParameters(
+              playbackParameters.speed, playbackParameters.pitch, /* skipSilence= */ false);
+    }
     PlaybackParameters newPlaybackParameters =
         configuration.canApplyPlaybackParameters
             ? audioProcessorChain.applyPlaybackParameters(playbackParameters)
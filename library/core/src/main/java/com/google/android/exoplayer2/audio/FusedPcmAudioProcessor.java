@@ -0,0 +1,272 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.audio;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Util;
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link AudioProcessor} that converts PCM audio to a given output encoding and optionally
+ * applies a mapping from input channels onto output channels, in a single pass over the input.
+ *
+ * <p>When the output encoding is {@link C#ENCODING_PCM_16BIT}, the following encodings are
+ * supported as input:
+ *
+ * <ul>
+ *   <li>{@link C#ENCODING_PCM_8BIT}
+ *   <li>{@link C#ENCODING_PCM_16BIT}
+ *   <li>{@link C#ENCODING_PCM_16BIT_BIG_ENDIAN}
+ *   <li>{@link C#ENCODING_PCM_24BIT}
+ *   <li>{@link C#ENCODING_PCM_32BIT}
+ *   <li>{@link C#ENCODING_PCM_FLOAT}
+ * </ul>
+ *
+ * <p>When the output encoding is {@link C#ENCODING_PCM_FLOAT}, the following encodings are
+ * supported as input:
+ *
+ * <ul>
+ *   <li>{@link C#ENCODING_PCM_24BIT}
+ *   <li>{@link C#ENCODING_PCM_32BIT}
+ *   <li>{@link C#ENCODING_PCM_FLOAT}
+ * </ul>
+ *
+ * <p>{@link #isActive()} returns {@code false} if the input already has the output encoding and
+ * the channel mapping (if any) leaves the input unchanged.
+ */
+/* package */ final class FusedPcmAudioProcessor extends BaseAudioProcessor {
+
+  private static final int FLOAT_NAN_AS_INT = Float.floatToIntBits(Float.NaN);
+  private static final double PCM_32_BIT_INT_TO_PCM_32_BIT_FLOAT_FACTOR = 1.0 / 0x7FFFFFFF;
+
+  @C.PcmEncoding private final int outputEncoding;
+
+  @Nullable private int[] pendingOutputChannels;
+  @Nullable private int[] outputChannels;
+  @Nullable private int[] sampleOffsets;
+
+  /**
+   * Creates a new processor.
+   *
+   * @param outputEncoding The output encoding, which must be {@link C#ENCODING_PCM_16BIT} or
+   *     {@link C#ENCODING_PCM_FLOAT}.
+   */
+  public FusedPcmAudioProcessor(@C.PcmEncoding int outputEncoding) {
+    Assertions.checkArgument(
+        outputEncoding == C.ENCODING_PCM_16BIT || outputEncoding == C.ENCODING_PCM_FLOAT);
+    this.outputEncoding = outputEncoding;
+  }
+
+  /**
+   * Resets the channel mapping. After calling this method, call {@link #configure(AudioFormat)} to
+   * start using the new channel map.
+   *
+   * @param outputChannels The mapping from input to output channel indices, or {@code null} to
+   *     leave the input channels unchanged.
+   * @see AudioSink#configure(int, int, int, int, int[], int, int)
+   */
+  public void setChannelMap(@Nullable int[] outputChannels) {
+    pendingOutputChannels = outputChannels;
+  }
+
+  @Override
+  public AudioFormat onConfigure(AudioFormat inputAudioFormat)
+      throws UnhandledAudioFormatException {
+    @C.PcmEncoding int encoding = inputAudioFormat.encoding;
+    boolean supportedEncoding =
+        outputEncoding == C.ENCODING_PCM_FLOAT
+            ? Util.isEncodingHighResolutionPcm(encoding)
+            : Util.isEncodingLinearPcm(encoding);
+    if (!supportedEncoding) {
+      throw new UnhandledAudioFormatException(inputAudioFormat);
+    }
+
+    boolean active = encoding != outputEncoding;
+    int outputChannelCount = inputAudioFormat.channelCount;
+    @Nullable int[] outputChannels = pendingOutputChannels;
+    if (outputChannels != null) {
+      active |= inputAudioFormat.channelCount != outputChannels.length;
+      for (int i = 0; i < outputChannels.length; i++) {
+        int channelIndex = outputChannels[i];
+        if (channelIndex >= inputAudioFormat.channelCount) {
+          throw new UnhandledAudioFormatException(inputAudioFormat);
+        }
+        active |= (channelIndex != i);
+      }
+      outputChannelCount = outputChannels.length;
+    }
+    return active
+        ? new AudioFormat(inputAudioFormat.sampleRate, outputChannelCount, outputEncoding)
+        : AudioFormat.NOT_SET;
+  }
+
+  @Override
+  public void queueInput(ByteBuffer inputBuffer) {
+    int position = inputBuffer.position();
+    int limit = inputBuffer.limit();
+    int inputBytesPerFrame = inputAudioFormat.bytesPerFrame;
+    int frameCount = (limit - position) / inputBytesPerFrame;
+    int end = position + frameCount * inputBytesPerFrame;
+    int[] sampleOffsets = Assertions.checkNotNull(this.sampleOffsets);
+
+    ByteBuffer buffer = replaceOutputBuffer(frameCount * outputAudioFormat.bytesPerFrame);
+    // The conversion is selected once per buffer, so the loops don't branch on the encoding.
+    if (outputEncoding == C.ENCODING_PCM_16BIT) {
+      switch (inputAudioFormat.encoding) {
+        case C.ENCODING_PCM_8BIT:
+          for (int frame = position; frame < end; frame += inputBytesPerFrame) {
+            for (int sampleOffset : sampleOffsets) {
+              // Shift from [0, 256) to [-128, 128) and scale up.
+              int sample = inputBuffer.get(frame + sampleOffset) & 0xFF;
+              buffer.putShort((short) ((sample - 128) << 8));
+            }
+          }
+          break;
+        case C.ENCODING_PCM_16BIT:
+          for (int frame = position; frame < end; frame += inputBytesPerFrame) {
+            for (int sampleOffset : sampleOffsets) {
+              int index = frame + sampleOffset;
+              buffer.putShort(
+                  (short) ((inputBuffer.get(index) & 0xFF) | (inputBuffer.get(index + 1) << 8)));
+            }
+          }
+          break;
+        case C.ENCODING_PCM_16BIT_BIG_ENDIAN:
+          for (int frame = position; frame < end; frame += inputBytesPerFrame) {
+            for (int sampleOffset : sampleOffsets) {
+              int index = frame + sampleOffset;
+              buffer.putShort(
+                  (short) ((inputBuffer.get(index + 1) & 0xFF) | (inputBuffer.get(index) << 8)));
+            }
+          }
+          break;
+        case C.ENCODING_PCM_24BIT:
+          for (int frame = position; frame < end; frame += inputBytesPerFrame) {
+            for (int sampleOffset : sampleOffsets) {
+              // Drop the least significant byte.
+              int index = frame + sampleOffset;
+              int sample = (inputBuffer.get(index + 1) & 0xFF) | (inputBuffer.get(index + 2) << 8);
+              buffer.putShort((short) sample);
+            }
+          }
+          break;
+        case C.ENCODING_PCM_32BIT:
+          for (int frame = position; frame < end; frame += inputBytesPerFrame) {
+            for (int sampleOffset : sampleOffsets) {
+              // Drop the two least significant bytes.
+              int index = frame + sampleOffset;
+              int sample = (inputBuffer.get(index + 2) & 0xFF) | (inputBuffer.get(index + 3) << 8);
+              buffer.putShort((short) sample);
+            }
+          }
+          break;
+        case C.ENCODING_PCM_FLOAT:
+          for (int frame = position; frame < end; frame += inputBytesPerFrame) {
+            for (int sampleOffset : sampleOffsets) {
+              // Floating point values are in the range [-1.0, 1.0], so need to be scaled by
+              // Short.MAX_VALUE.
+              float sample = inputBuffer.getFloat(frame + sampleOffset);
+              buffer.putShort((short) (sample * Short.MAX_VALUE));
+            }
+          }
+          break;
+        case C.ENCODING_INVALID:
+        case Format.NO_VALUE:
+        default:
+          // Never happens.
+          throw new IllegalStateException();
+      }
+    } else {
+      switch (inputAudioFormat.encoding) {
+        case C.ENCODING_PCM_24BIT:
+          for (int frame = position; frame < end; frame += inputBytesPerFrame) {
+            for (int sampleOffset : sampleOffsets) {
+              int index = frame + sampleOffset;
+              int pcm32BitInteger =
+                  ((inputBuffer.get(index) & 0xFF) << 8)
+                      | ((inputBuffer.get(index + 1) & 0xFF) << 16)
+                      | ((inputBuffer.get(index + 2) & 0xFF) << 24);
+              buffer.putFloat(pcm32BitIntegerToFloat(pcm32BitInteger));
+            }
+          }
+          break;
+        case C.ENCODING_PCM_32BIT:
+          for (int frame = position; frame < end; frame += inputBytesPerFrame) {
+            for (int sampleOffset : sampleOffsets) {
+              int index = frame + sampleOffset;
+              int pcm32BitInteger =
+                  (inputBuffer.get(index) & 0xFF)
+                      | ((inputBuffer.get(index + 1) & 0xFF) << 8)
+                      | ((inputBuffer.get(index + 2) & 0xFF) << 16)
+                      | ((inputBuffer.get(index + 3) & 0xFF) << 24);
+              buffer.putFloat(pcm32BitIntegerToFloat(pcm32BitInteger));
+            }
+          }
+          break;
+        case C.ENCODING_PCM_FLOAT:
+          for (int frame = position; frame < end; frame += inputBytesPerFrame) {
+            for (int sampleOffset : sampleOffsets) {
+              buffer.putFloat(inputBuffer.getFloat(frame + sampleOffset));
+            }
+          }
+          break;
+        case C.ENCODING_PCM_8BIT:
+        case C.ENCODING_PCM_16BIT:
+        case C.ENCODING_PCM_16BIT_BIG_ENDIAN:
+        case C.ENCODING_INVALID:
+        case Format.NO_VALUE:
+        default:
+          // Never happens.
+          throw new IllegalStateException();
+      }
+    }
+    inputBuffer.position(limit);
+    buffer.flip();
+  }
+
+  @Override
+  protected void onFlush() {
+    outputChannels = pendingOutputChannels;
+    if (!isActive()) {
+      sampleOffsets = null;
+      return;
+    }
+    // Compute the offset within an input frame of the input sample for each output channel.
+    int inputBytesPerSample = inputAudioFormat.bytesPerFrame / inputAudioFormat.channelCount;
+    int outputChannelCount = outputAudioFormat.channelCount;
+    int[] sampleOffsets = new int[outputChannelCount];
+    for (int i = 0; i < outputChannelCount; i++) {
+      int channelIndex = outputChannels != null ? outputChannels[i] : i;
+      sampleOffsets[i] = channelIndex * inputBytesPerSample;
+    }
+    this.sampleOffsets = sampleOffsets;
+  }
+
+  @Override
+  protected void onReset() {
+    outputChannels = null;
+    pendingOutputChannels = null;
+    sampleOffsets = null;
+  }
+
+  private static float pcm32BitIntegerToFloat(int pcm32BitInteger) {
+    float pcm32BitFloat = (float) (PCM_32_BIT_INT_TO_PCM_32_BIT_FLOAT_FACTOR * pcm32BitInteger);
+    return Float.floatToIntBits(pcm32BitFloat) == FLOAT_NAN_AS_INT ? 0f : pcm32BitFloat;
+  }
+}
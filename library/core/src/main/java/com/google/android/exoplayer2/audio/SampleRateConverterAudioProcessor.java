@@ -0,0 +1,346 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.audio;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.util.Util;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * An {@link AudioProcessor} that converts the sample rate of 16-bit integer or 32-bit float PCM
+ * audio using a polyphase windowed-sinc FIR filter.
+ *
+ * <p>For a conversion from input rate {@code M * g} to output rate {@code L * g}, where {@code g}
+ * is the greatest common divisor of the two rates, the filter is split into {@code L} phases whose
+ * coefficients are computed once when the processor is flushed after being configured. Each output
+ * frame is then a single dot product of one phase with the surrounding input frames. Common ratios
+ * such as 44.1 kHz to 48 kHz ({@code L = 160}) use exact phases. Ratios with more than {@link
+ * #MAX_PHASE_COUNT} phases use {@link #MAX_PHASE_COUNT} precomputed phases, and each output frame
+ * uses the closest of them that doesn't come after its exact phase.
+ *
+ * <p>The processor can be passed to {@link DefaultAudioSink} as a user-defined audio processor, so
+ * that all PCM audio is output at one sample rate regardless of the rate of the content.
+ */
+public final class SampleRateConverterAudioProcessor extends BaseAudioProcessor {
+
+  /** Indicates that the output sample rate should be the same as the input. */
+  public static final int SAMPLE_RATE_NO_CHANGE = -1;
+
+  /** The number of filter taps either side of the output position. */
+  private static final int HALF_TAP_COUNT = 16;
+  /** The number of filter taps per phase. */
+  private static final int TAP_COUNT = 2 * HALF_TAP_COUNT;
+  /** The maximum number of precomputed filter phases. */
+  private static final int MAX_PHASE_COUNT = 1024;
+  /** The filter cutoff, as a fraction of the Nyquist frequency of the lower sample rate. */
+  private static final double CUTOFF_FRACTION = 0.9;
+
+  private int pendingOutputSampleRateHz;
+
+  private int upsamplingFactor;
+  private int downsamplingFactor;
+  private int phaseCount;
+  private float[] coefficients;
+  private float[][] history;
+  private int historyFrameCount;
+  private int inputFrameIndex;
+  private int phaseAccumulator;
+  /** The bytes of an incomplete frame at the end of the last input buffer. */
+  private byte[] partialFrame;
+  private int partialFrameSize;
+  private boolean endOfStreamQueued;
+
+  /** Creates a new sample rate converter that leaves the sample rate unchanged until configured. */
+  public SampleRateConverterAudioProcessor() {
+    pendingOutputSampleRateHz = SAMPLE_RATE_NO_CHANGE;
+    coefficients = new float[0];
+    history = new float[0][];
+    partialFrame = new byte[0];
+  }
+
+  /**
+   * Sets the sample rate for output audio, in Hertz. Pass {@link #SAMPLE_RATE_NO_CHANGE} to output
+   * audio at the same sample rate as the input. After calling this method, call {@link
+   * #configure(AudioFormat)} to configure the processor with the new sample rate.
+   *
+   * @param sampleRateHz The sample rate for output audio, in Hertz.
+   */
+  public void setOutputSampleRateHz(int sampleRateHz) {
+    pendingOutputSampleRateHz = sampleRateHz;
+  }
+
+  @Override
+  protected AudioFormat onConfigure(AudioFormat inputAudioFormat)
+      throws UnhandledAudioFormatException {
+    if (inputAudioFormat.encoding != C.ENCODING_PCM_16BIT
+        && inputAudioFormat.encoding != C.ENCODING_PCM_FLOAT) {
+      throw new UnhandledAudioFormatException(inputAudioFormat);
+    }
+    if (pendingOutputSampleRateHz == SAMPLE_RATE_NO_CHANGE
+        || pendingOutputSampleRateHz == inputAudioFormat.sampleRate) {
+      return AudioFormat.NOT_SET;
+    }
+    return new AudioFormat(
+        pendingOutputSampleRateHz, inputAudioFormat.channelCount, inputAudioFormat.encoding);
+  }
+
+  @Override
+  public void queueInput(ByteBuffer inputBuffer) {
+    int bytesPerFrame = inputAudioFormat.bytesPerFrame;
+    int appendedFrameCount = 0;
+    if (partialFrameSize > 0) {
+      // Complete the frame carried over from the previous input buffer.
+      int length = Math.min(bytesPerFrame - partialFrameSize, inputBuffer.remaining());
+      inputBuffer.get(partialFrame, partialFrameSize, length);
+      partialFrameSize += length;
+      if (partialFrameSize == bytesPerFrame) {
+        appendToHistory(ByteBuffer.wrap(partialFrame).order(inputBuffer.order()), 1);
+        partialFrameSize = 0;
+        appendedFrameCount++;
+      }
+    }
+    int frameCount = inputBuffer.remaining() / bytesPerFrame;
+    if (frameCount > 0) {
+      appendToHistory(inputBuffer, frameCount);
+      appendedFrameCount += frameCount;
+    }
+    if (inputBuffer.hasRemaining()) {
+      // Carry over the incomplete frame at the end of the buffer, so that the buffer is consumed.
+      partialFrameSize = inputBuffer.remaining();
+      inputBuffer.get(partialFrame, 0, partialFrameSize);
+    }
+    if (appendedFrameCount > 0) {
+      writeOutput();
+    }
+  }
+
+  @Override
+  public ByteBuffer getOutput() {
+    if (endOfStreamQueued && super.isEnded()) {
+      // Pad with silence so that the remaining input is fully filtered. As in
+      // TrimmingAudioProcessor, the final output is produced here as there may be no more input.
+      endOfStreamQueued = false;
+      ensureHistoryCapacity(historyFrameCount + HALF_TAP_COUNT);
+      for (float[] channelHistory : history) {
+        Arrays.fill(channelHistory, historyFrameCount, historyFrameCount + HALF_TAP_COUNT, 0f);
+      }
+      historyFrameCount += HALF_TAP_COUNT;
+      writeOutput();
+    }
+    return super.getOutput();
+  }
+
+  @Override
+  public boolean isEnded() {
+    return super.isEnded() && !endOfStreamQueued;
+  }
+
+  @Override
+  protected void onQueueEndOfStream() {
+    endOfStreamQueued = true;
+  }
+
+  @Override
+  protected void onFlush() {
+    endOfStreamQueued = false;
+    partialFrameSize = 0;
+    if (!isActive()) {
+      return;
+    }
+    int inputSampleRateHz = inputAudioFormat.sampleRate;
+    int outputSampleRateHz = outputAudioFormat.sampleRate;
+    int gcd = gcd(inputSampleRateHz, outputSampleRateHz);
+    int upsamplingFactor = outputSampleRateHz / gcd;
+    int downsamplingFactor = inputSampleRateHz / gcd;
+    if (upsamplingFactor != this.upsamplingFactor
+        || downsamplingFactor != this.downsamplingFactor) {
+      this.upsamplingFactor = upsamplingFactor;
+      this.downsamplingFactor = downsamplingFactor;
+      phaseCount = Math.min(upsamplingFactor, MAX_PHASE_COUNT);
+      coefficients = createCoefficients(phaseCount, upsamplingFactor, downsamplingFactor);
+    }
+    int channelCount = inputAudioFormat.channelCount;
+    if (history.length != channelCount) {
+      history = new float[channelCount][TAP_COUNT * 4];
+    }
+    if (partialFrame.length != inputAudioFormat.bytesPerFrame) {
+      partialFrame = new byte[inputAudioFormat.bytesPerFrame];
+    }
+    // Start with silence before the first input frame, so the first output frame is aligned with
+    // the first input frame.
+    for (float[] channelHistory : history) {
+      Arrays.fill(channelHistory, 0, HALF_TAP_COUNT - 1, 0f);
+    }
+    historyFrameCount = HALF_TAP_COUNT - 1;
+    inputFrameIndex = HALF_TAP_COUNT - 1;
+    phaseAccumulator = 0;
+  }
+
+  @Override
+  protected void onReset() {
+    // The output sample rate is kept, as it is set by the app rather than by the audio sink.
+    upsamplingFactor = 0;
+    downsamplingFactor = 0;
+    phaseCount = 0;
+    coefficients = new float[0];
+    history = new float[0][];
+    historyFrameCount = 0;
+    partialFrame = new byte[0];
+    partialFrameSize = 0;
+  }
+
+  // Internal methods.
+
+  private void appendToHistory(ByteBuffer inputBuffer, int frameCount) {
+    ensureHistoryCapacity(historyFrameCount + frameCount);
+    int channelCount = inputAudioFormat.channelCount;
+    int position = inputBuffer.position();
+    if (inputAudioFormat.encoding == C.ENCODING_PCM_16BIT) {
+      for (int frame = 0; frame < frameCount; frame++) {
+        for (int channel = 0; channel < channelCount; channel++) {
+          history[channel][historyFrameCount + frame] = inputBuffer.getShort(position) / 32768f;
+          position += 2;
+        }
+      }
+    } else {
+      for (int frame = 0; frame < frameCount; frame++) {
+        for (int channel = 0; channel < channelCount; channel++) {
+          history[channel][historyFrameCount + frame] = inputBuffer.getFloat(position);
+          position += 4;
+        }
+      }
+    }
+    inputBuffer.position(position);
+    historyFrameCount += frameCount;
+  }
+
+  private void ensureHistoryCapacity(int frameCount) {
+    for (int i = 0; i < history.length; i++) {
+      if (history[i].length < frameCount) {
+        history[i] = Arrays.copyOf(history[i], Math.max(frameCount, 3 * history[i].length / 2));
+      }
+    }
+  }
+
+  /** Writes all output frames that can be computed from the input history, then compacts it. */
+  private void writeOutput() {
+    // The filter for the output frame at inputFrameIndex (plus a fraction) reads HALF_TAP_COUNT - 1
+    // frames before inputFrameIndex and HALF_TAP_COUNT frames after it.
+    int availableFrameCount = historyFrameCount - HALF_TAP_COUNT - inputFrameIndex;
+    if (availableFrameCount <= 0) {
+      return;
+    }
+    int maxOutputFrameCount =
+        (int) ((long) availableFrameCount * upsamplingFactor / downsamplingFactor) + 2;
+    ByteBuffer buffer = replaceOutputBuffer(maxOutputFrameCount * outputAudioFormat.bytesPerFrame);
+    boolean floatOutput = outputAudioFormat.encoding == C.ENCODING_PCM_FLOAT;
+    int channelCount = history.length;
+    while (inputFrameIndex + HALF_TAP_COUNT < historyFrameCount) {
+      int phase =
+          phaseCount == upsamplingFactor
+              ? phaseAccumulator
+              : (int) ((long) phaseAccumulator * phaseCount / upsamplingFactor);
+      int coefficientOffset = phase * TAP_COUNT;
+      int start = inputFrameIndex - HALF_TAP_COUNT + 1;
+      for (int channel = 0; channel < channelCount; channel++) {
+        float value = dotProduct(history[channel], start, coefficients, coefficientOffset);
+        if (floatOutput) {
+          buffer.putFloat(value);
+        } else {
+          buffer.putShort(
+              (short)
+                  Util.constrainValue((int) (value * 32768f), Short.MIN_VALUE, Short.MAX_VALUE));
+        }
+      }
+      phaseAccumulator += downsamplingFactor;
+      inputFrameIndex += phaseAccumulator / upsamplingFactor;
+      phaseAccumulator %= upsamplingFactor;
+    }
+    buffer.flip();
+
+    // Discard history that is no longer needed.
+    int discardFrameCount = Math.min(inputFrameIndex - HALF_TAP_COUNT + 1, historyFrameCount);
+    if (discardFrameCount > 0) {
+      for (float[] channelHistory : history) {
+        System.arraycopy(
+            channelHistory,
+            discardFrameCount,
+            channelHistory,
+            0,
+            historyFrameCount - discardFrameCount);
+      }
+      historyFrameCount -= discardFrameCount;
+      inputFrameIndex -= discardFrameCount;
+    }
+  }
+
+  private static float dotProduct(float[] samples, int start, float[] coefficients, int offset) {
+    float sum = 0;
+    for (int i = 0; i < TAP_COUNT; i++) {
+      sum += samples[start + i] * coefficients[offset + i];
+    }
+    return sum;
+  }
+
+  /**
+   * Returns a table of {@code phaseCount} windowed-sinc low-pass filters with {@link #TAP_COUNT}
+   * taps each, normalized to unity gain.
+   */
+  private static float[] createCoefficients(
+      int phaseCount, int upsamplingFactor, int downsamplingFactor) {
+    double cutoff = CUTOFF_FRACTION * Math.min(1.0, (double) upsamplingFactor / downsamplingFactor);
+    float[] coefficients = new float[phaseCount * TAP_COUNT];
+    double[] phaseCoefficients = new double[TAP_COUNT];
+    for (int phase = 0; phase < phaseCount; phase++) {
+      double fraction = (double) phase / phaseCount;
+      double sum = 0;
+      for (int tap = 0; tap < TAP_COUNT; tap++) {
+        // The distance in input frames between the output position and this tap.
+        double distance = fraction + HALF_TAP_COUNT - 1 - tap;
+        double value = cutoff * sinc(cutoff * distance) * window(distance / HALF_TAP_COUNT);
+        phaseCoefficients[tap] = value;
+        sum += value;
+      }
+      for (int tap = 0; tap < TAP_COUNT; tap++) {
+        coefficients[phase * TAP_COUNT + tap] = (float) (phaseCoefficients[tap] / sum);
+      }
+    }
+    return coefficients;
+  }
+
+  private static double sinc(double x) {
+    return x == 0 ? 1 : Math.sin(Math.PI * x) / (Math.PI * x);
+  }
+
+  /** Returns the value of a Blackman-Harris window at {@code x}, which is in [-1, 1]. */
+  private static double window(double x) {
+    if (x <= -1 || x >= 1) {
+      return 0;
+    }
+    double n = 2 * Math.PI * (x + 1) / 2;
+    return 0.35875 - 0.48829 * Math.cos(n) + 0.14128 * Math.cos(2 * n) - 0.01168 * Math.cos(3 * n);
+  }
+
+  private static int gcd(int a, int b) {
+    while (b != 0) {
+      int temp = b;
+      b = a % b;
+      a = temp;
+    }
+    return a;
+  }
+}
@@ -22,10 +22,13 @@ import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Util;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 import java.nio.ShortBuffer;
 
 /**
  * An {@link AudioProcessor} that uses the Sonic library to modify audio speed/pitch/sample rate.
+ * Both 16-bit integer and 32-bit float PCM input are supported, and the output has the same
+ * encoding as the input.
  */
 public final class SonicAudioProcessor implements AudioProcessor {
 
@@ -72,8 +75,10 @@ public final class SonicAudioProcessor implements AudioProcessor {
 
   private boolean pendingSonicRecreation;
   @Nullable private Sonic sonic;
+  @Nullable private FloatSonic floatSonic;
   private ByteBuffer buffer;
   private ShortBuffer shortBuffer;
+  private FloatBuffer floatBuffer;
   private ByteBuffer outputBuffer;
   private long inputBytes;
   private long outputBytes;
@@ -91,6 +96,7 @@ public final class SonicAudioProcessor implements AudioProcessor {
     outputAudioFormat = AudioFormat.NOT_SET;
     buffer = EMPTY_BUFFER;
     shortBuffer = buffer.asShortBuffer();
+    floatBuffer = buffer.asFloatBuffer();
     outputBuffer = EMPTY_BUFFER;
     pendingOutputSampleRate = SAMPLE_RATE_NO_CHANGE;
   }
@@ -164,7 +170,8 @@ public final class SonicAudioProcessor implements AudioProcessor {
 
   @Override
   public AudioFormat configure(AudioFormat inputAudioFormat) throws UnhandledAudioFormatException {
-    if (inputAudioFormat.encoding != C.ENCODING_PCM_16BIT) {
+    if (inputAudioFormat.encoding != C.ENCODING_PCM_16BIT
+        && inputAudioFormat.encoding != C.ENCODING_PCM_FLOAT) {
       throw new UnhandledAudioFormatException(inputAudioFormat);
     }
     int outputSampleRateHz =
@@ -173,7 +180,8 @@ public final class SonicAudioProcessor implements AudioProcessor {
             : pendingOutputSampleRate;
     pendingInputAudioFormat = inputAudioFormat;
     pendingOutputAudioFormat =
-        new AudioFormat(outputSampleRateHz, inputAudioFormat.channelCount, C.ENCODING_PCM_16BIT);
+        new AudioFormat(
+            outputSampleRateHz, inputAudioFormat.channelCount, inputAudioFormat.encoding);
     pendingSonicRecreation = true;
     return pendingOutputAudioFormat;
   }
@@ -188,24 +196,35 @@ public final class SonicAudioProcessor implements AudioProcessor {
 
   @Override
   public void queueInput(ByteBuffer inputBuffer) {
-    Sonic sonic = Assertions.checkNotNull(this.sonic);
+    @Nullable Sonic sonic = this.sonic;
+    @Nullable FloatSonic floatSonic = this.floatSonic;
+    Assertions.checkState(sonic != null || floatSonic != null);
     if (inputBuffer.hasRemaining()) {
-      ShortBuffer shortBuffer = inputBuffer.asShortBuffer();
       int inputSize = inputBuffer.remaining();
       inputBytes += inputSize;
-      sonic.queueInput(shortBuffer);
+      if (floatSonic != null) {
+        floatSonic.queueInput(inputBuffer.asFloatBuffer());
+      } else {
+        Assertions.checkNotNull(sonic).queueInput(inputBuffer.asShortBuffer());
+      }
       inputBuffer.position(inputBuffer.position() + inputSize);
     }
-    int outputSize = sonic.getOutputSize();
+    int outputSize = getSonicOutputSize();
     if (outputSize > 0) {
       if (buffer.capacity() < outputSize) {
         buffer = ByteBuffer.allocateDirect(outputSize).order(ByteOrder.nativeOrder());
         shortBuffer = buffer.asShortBuffer();
+        floatBuffer = buffer.asFloatBuffer();
       } else {
         buffer.clear();
         shortBuffer.clear();
+        floatBuffer.clear();
+      }
+      if (floatSonic != null) {
+        floatSonic.getOutput(floatBuffer);
+      } else {
+        Assertions.checkNotNull(sonic).getOutput(shortBuffer);
       }
-      sonic.getOutput(shortBuffer);
       outputBytes += outputSize;
       buffer.limit(outputSize);
       outputBuffer = buffer;
@@ -214,9 +233,14 @@ public final class SonicAudioProcessor implements AudioProcessor {
 
   @Override
   public void queueEndOfStream() {
+    @Nullable Sonic sonic = this.sonic;
+    @Nullable FloatSonic floatSonic = this.floatSonic;
     if (sonic != null) {
       sonic.queueEndOfStream();
     }
+    if (floatSonic != null) {
+      floatSonic.queueEndOfStream();
+    }
     inputEnded = true;
   }
 
@@ -229,7 +253,7 @@ public final class SonicAudioProcessor implements AudioProcessor {
 
   @Override
   public boolean isEnded() {
-    return inputEnded && (sonic == null || sonic.getOutputSize() == 0);
+    return inputEnded && getSonicOutputSize() == 0;
   }
 
   @Override
@@ -238,15 +262,29 @@ public final class SonicAudioProcessor implements AudioProcessor {
       inputAudioFormat = pendingInputAudioFormat;
       outputAudioFormat = pendingOutputAudioFormat;
       if (pendingSonicRecreation) {
-        sonic =
-            new Sonic(
-                inputAudioFormat.sampleRate,
-                inputAudioFormat.channelCount,
-                speed,
-                pitch,
-                outputAudioFormat.sampleRate);
+        if (inputAudioFormat.encoding == C.ENCODING_PCM_FLOAT) {
+          sonic = null;
+          floatSonic =
+              new FloatSonic(
+                  inputAudioFormat.sampleRate,
+                  inputAudioFormat.channelCount,
+                  speed,
+                  pitch,
+                  outputAudioFormat.sampleRate);
+        } else {
+          floatSonic = null;
+          sonic =
+              new Sonic(
+                  inputAudioFormat.sampleRate,
+                  inputAudioFormat.channelCount,
+                  speed,
+                  pitch,
+                  outputAudioFormat.sampleRate);
+        }
       } else if (sonic != null) {
         sonic.flush();
+      } else if (floatSonic != null) {
+        floatSonic.flush();
       }
     }
     outputBuffer = EMPTY_BUFFER;
@@ -265,13 +303,24 @@ public final class SonicAudioProcessor implements AudioProcessor {
     outputAudioFormat = AudioFormat.NOT_SET;
     buffer = EMPTY_BUFFER;
     shortBuffer = buffer.asShortBuffer();
+    floatBuffer = buffer.asFloatBuffer();
     outputBuffer = EMPTY_BUFFER;
     pendingOutputSampleRate = SAMPLE_RATE_NO_CHANGE;
     pendingSonicRecreation = false;
     sonic = null;
+    floatSonic = null;
     inputBytes = 0;
     outputBytes = 0;
     inputEnded = false;
   }
 
+  private int getSonicOutputSize() {
+    @Nullable Sonic sonic = this.sonic;
+    @Nullable FloatSonic floatSonic = this.floatSonic;
+    if (floatSonic != null) {
+      return floatSonic.getOutputSize();
+    }
+    return sonic != null ? sonic.getOutputSize() : 0;
+  }
+
 }
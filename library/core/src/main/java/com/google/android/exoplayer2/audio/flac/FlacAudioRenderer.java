@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.audio.flac;
+
+import android.os.Handler;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.audio.AudioProcessor;
+import com.google.android.exoplayer2.audio.AudioRendererEventListener;
+import com.google.android.exoplayer2.audio.AudioSink;
+import com.google.android.exoplayer2.audio.SimpleDecoderAudioRenderer;
+import com.google.android.exoplayer2.drm.DrmSessionManager;
+import com.google.android.exoplayer2.drm.ExoMediaCrypto;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.FlacStreamMetadata;
+import com.google.android.exoplayer2.util.MimeTypes;
+import java.util.concurrent.Executor;
+import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
+
+/**
+ * Decodes and renders FLAC audio using a decoder implemented in Java, which doesn't depend on a
+ * native library or on a platform FLAC codec.
+ *
+ * <p>Bit depths of up to 24 bits are supported. Samples with a bit depth that is not a multiple of
+ * 8 are output at the next multiple of 8.
+ */
+public final class FlacAudioRenderer extends SimpleDecoderAudioRenderer {
+
+  private static final int NUM_BUFFERS = 16;
+
+  @Nullable private final Executor decodeExecutor;
+
+  @MonotonicNonNull private FlacDecoder decoder;
+
+  public FlacAudioRenderer() {
+    this(/* eventHandler= */ null, /* eventListener= */ null);
+  }
+
+  /**
+   * @param eventHandler A handler to use when delivering events to {@code eventListener}. May be
+   *     null if delivery of events is not required.
+   * @param eventListener A listener of events. May be null if delivery of events is not required.
+   * @param audioProcessors Optional {@link AudioProcessor}s that will process audio before output.
+   */
+  public FlacAudioRenderer(
+      @Nullable Handler eventHandler,
+      @Nullable AudioRendererEventListener eventListener,
+      AudioProcessor... audioProcessors) {
+    super(eventHandler, eventListener, audioProcessors);
+    decodeExecutor = null;
+  }
+
+  /**
+   * @param eventHandler A handler to use when delivering events to {@code eventListener}. May be
+   *     null if delivery of events is not required.
+   * @param eventListener A listener of events. May be null if delivery of events is not required.
+   * @param audioSink The sink to which audio will be output.
+   */
+  public FlacAudioRenderer(
+      @Nullable Handler eventHandler,
+      @Nullable AudioRendererEventListener eventListener,
+      AudioSink audioSink) {
+    this(eventHandler, eventListener, audioSink, /* decodeExecutor= */ null);
+  }
+
+  /**
+   * @param eventHandler A handler to use when delivering events to {@code eventListener}. May be
+   *     null if delivery of events is not required.
+   * @param eventListener A listener of events. May be null if delivery of events is not required.
+   * @param audioSink The sink to which audio will be output.
+   * @param decodeExecutor An executor on which to decode, or null for the decoder to decode on its
+   *     own thread. Passing the same executor to the renderers of several players avoids starting a
+   *     decode thread per player.
+   */
+  public FlacAudioRenderer(
+      @Nullable Handler eventHandler,
+      @Nullable AudioRendererEventListener eventListener,
+      AudioSink audioSink,
+      @Nullable Executor decodeExecutor) {
+    super(
+        eventHandler,
+        eventListener,
+        /* drmSessionManager= */ null,
+        /* playClearSamplesWithoutKeys= */ false,
+        audioSink);
+    this.decodeExecutor = decodeExecutor;
+  }
+
+  @Override
+  @FormatSupport
+  protected int supportsFormatInternal(
+      @Nullable DrmSessionManager<ExoMediaCrypto> drmSessionManager, Format format) {
+    if (!MimeTypes.AUDIO_FLAC.equalsIgnoreCase(format.sampleMimeType)) {
+      return FORMAT_UNSUPPORTED_TYPE;
+    }
+    // Decoding requires the stream info, which is only available if the format was obtained
+    // directly from the media.
+    if (format.initializationData.size() != 1) {
+      return FORMAT_UNSUPPORTED_SUBTYPE;
+    }
+    FlacStreamMetadata streamMetadata;
+    try {
+      streamMetadata = FlacDecoder.parseStreamMetadata(format.initializationData.get(0));
+    } catch (FlacDecoderException e) {
+      return FORMAT_UNSUPPORTED_SUBTYPE;
+    }
+    if (streamMetadata.bitsPerSample > FlacFrameDecoder.MAX_BITS_PER_SAMPLE) {
+      return FORMAT_UNSUPPORTED_SUBTYPE;
+    }
+    // Compute the PCM encoding that the decoder will output.
+    int outputBitsPerSample = (streamMetadata.bitsPerSample + 7) / 8 * 8;
+    @C.PcmEncoding
+    int pcmEncoding = outputBitsPerSample == 8
+        ? C.ENCODING_PCM_8BIT
+        : outputBitsPerSample == 16 ? C.ENCODING_PCM_16BIT : C.ENCODING_PCM_24BIT;
+    if (!supportsOutput(streamMetadata.channels, pcmEncoding)) {
+      return FORMAT_UNSUPPORTED_SUBTYPE;
+    } else if (!supportsFormatDrm(drmSessionManager, format.drmInitData)) {
+      return FORMAT_UNSUPPORTED_DRM;
+    } else {
+      return FORMAT_HANDLED;
+    }
+  }
+
+  @Override
+  protected FlacDecoder createDecoder(Format format, @Nullable ExoMediaCrypto mediaCrypto)
+      throws FlacDecoderException {
+    decoder =
+        new FlacDecoder(
+            NUM_BUFFERS,
+            NUM_BUFFERS,
+            format.maxInputSize,
+            format.initializationData,
+            decodeExecutor);
+    return decoder;
+  }
+
+  @Override
+  protected Format getOutputFormat() {
+    Assertions.checkNotNull(decoder);
+    FlacStreamMetadata streamMetadata = decoder.getStreamMetadata();
+    return Format.createAudioSampleFormat(
+        /* id= */ null,
+        MimeTypes.AUDIO_RAW,
+        /* codecs= */ null,
+        /* bitrate= */ Format.NO_VALUE,
+        /* maxInputSize= */ Format.NO_VALUE,
+        streamMetadata.channels,
+        streamMetadata.sampleRate,
+        decoder.getOutputPcmEncoding(),
+        /* initializationData= */ null,
+        /* drmInitData= */ null,
+        /* selectionFlags= */ 0,
+        /* language= */ null);
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.audio.flac;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.ParserException;
+import com.google.android.exoplayer2.decoder.DecoderInputBuffer;
+import com.google.android.exoplayer2.decoder.SimpleDecoder;
+import com.google.android.exoplayer2.decoder.SimpleOutputBuffer;
+import com.google.android.exoplayer2.util.FlacConstants;
+import com.google.android.exoplayer2.util.FlacStreamMetadata;
+import com.google.android.exoplayer2.util.Util;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * FLAC decoder implemented in Java. Each input buffer must contain a single FLAC frame, as output
+ * by {@link com.google.android.exoplayer2.extractor.flac.FlacExtractor}.
+ */
+/* package */ final class FlacDecoder
+    extends SimpleDecoder<DecoderInputBuffer, SimpleOutputBuffer, FlacDecoderException> {
+
+  private final FlacStreamMetadata streamMetadata;
+  private final FlacFrameDecoder frameDecoder;
+
+  private byte[] inputData;
+
+  /**
+   * Creates a FLAC decoder.
+   *
+   * @param numInputBuffers The number of input buffers.
+   * @param numOutputBuffers The number of output buffers.
+   * @param maxInputBufferSize The maximum required input buffer size if known, or {@link
+   *     Format#NO_VALUE} otherwise.
+   * @param initializationData Codec-specific initialization data. It should contain only one entry
+   *     which is the FLAC stream marker followed by the stream info block.
+   * @param decodeExecutor An executor on which to decode, or null to decode on a thread owned by
+   *     the decoder.
+   * @throws FlacDecoderException Thrown if an exception occurs when initializing the decoder.
+   */
+  public FlacDecoder(
+      int numInputBuffers,
+      int numOutputBuffers,
+      int maxInputBufferSize,
+      List<byte[]> initializationData,
+      @Nullable Executor decodeExecutor)
+      throws FlacDecoderException {
+    super(
+        new DecoderInputBuffer[numInputBuffers],
+        new SimpleOutputBuffer[numOutputBuffers],
+        decodeExecutor);
+    if (initializationData.size() != 1) {
+      throw new FlacDecoderException("Initialization data must be of length 1");
+    }
+    streamMetadata = parseStreamMetadata(initializationData.get(0));
+    try {
+      frameDecoder = new FlacFrameDecoder(streamMetadata);
+    } catch (ParserException e) {
+      throw new FlacDecoderException("Unsupported stream", e);
+    }
+    inputData = Util.EMPTY_BYTE_ARRAY;
+    int initialInputBufferSize =
+        maxInputBufferSize != Format.NO_VALUE ? maxInputBufferSize : streamMetadata.maxFrameSize;
+    setInitialInputBufferSize(initialInputBufferSize);
+  }
+
+  @Override
+  public String getName() {
+    return "flac";
+  }
+
+  @Override
+  protected DecoderInputBuffer createInputBuffer() {
+    return new DecoderInputBuffer(DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_NORMAL);
+  }
+
+  @Override
+  protected SimpleOutputBuffer createOutputBuffer() {
+    return new SimpleOutputBuffer(this);
+  }
+
+  @Override
+  protected FlacDecoderException createUnexpectedDecodeException(Throwable error) {
+    return new FlacDecoderException("Unexpected decode error", error);
+  }
+
+  @Override
+  @Nullable
+  protected FlacDecoderException decode(
+      DecoderInputBuffer inputBuffer, SimpleOutputBuffer outputBuffer, boolean reset) {
+    // Frames are independent, so there is no state to reset.
+    ByteBuffer inputDataBuffer = Util.castNonNull(inputBuffer.data);
+    byte[] data;
+    int offset;
+    int limit;
+    if (inputDataBuffer.hasArray()) {
+      data = inputDataBuffer.array();
+      offset = inputDataBuffer.arrayOffset() + inputDataBuffer.position();
+      limit = inputDataBuffer.arrayOffset() + inputDataBuffer.limit();
+    } else {
+      int size = inputDataBuffer.remaining();
+      if (inputData.length < size) {
+        inputData = new byte[size];
+      }
+      inputDataBuffer.get(inputData, 0, size);
+      data = inputData;
+      offset = 0;
+      limit = size;
+    }
+    ByteBuffer outputData = outputBuffer.init(inputBuffer.timeUs, frameDecoder.getMaxOutputSize());
+    try {
+      frameDecoder.decodeFrame(data, offset, limit, outputData);
+    } catch (ParserException e) {
+      return new FlacDecoderException("Frame decoding failed", e);
+    }
+    outputData.flip();
+    return null;
+  }
+
+  /** Returns the {@link FlacStreamMetadata} decoded from the initialization data. */
+  public FlacStreamMetadata getStreamMetadata() {
+    return streamMetadata;
+  }
+
+  /** Returns the {@link C.PcmEncoding} of the decoded audio. */
+  @C.PcmEncoding
+  public int getOutputPcmEncoding() {
+    return frameDecoder.getOutputPcmEncoding();
+  }
+
+  /**
+   * Parses the stream info block from FLAC initialization data.
+   *
+   * @param initializationData The FLAC stream marker followed by the stream info block.
+   * @return The parsed {@link FlacStreamMetadata}.
+   * @throws FlacDecoderException If the initialization data is too short.
+   */
+  public static FlacStreamMetadata parseStreamMetadata(byte[] initializationData)
+      throws FlacDecoderException {
+    if (initializationData.length
+        < FlacConstants.STREAM_MARKER_SIZE + FlacConstants.STREAM_INFO_BLOCK_SIZE) {
+      throw new FlacDecoderException("Initialization data too short");
+    }
+    int streamMetadataOffset =
+        FlacConstants.STREAM_MARKER_SIZE + FlacConstants.METADATA_BLOCK_HEADER_SIZE;
+    return new FlacStreamMetadata(initializationData, streamMetadataOffset);
+  }
+}
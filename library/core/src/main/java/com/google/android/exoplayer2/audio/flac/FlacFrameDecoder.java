@@ -0,0 +1,491 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.audio.flac;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ParserException;
+import com.google.android.exoplayer2.util.FlacStreamMetadata;
+import com.google.android.exoplayer2.util.Util;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Decodes FLAC frames to interleaved PCM.
+ *
+ * <p>Samples with a bit depth that is not a multiple of 8 are output at the next multiple of 8,
+ * scaled to the full range. Neither the frame header CRC nor the frame footer CRC is checked, so a
+ * corrupt frame is either rejected as malformed or decoded to incorrect samples. {@link
+ * com.google.android.exoplayer2.extractor.flac.FlacExtractor} only checks header CRCs while
+ * searching for frame boundaries, and frames from other containers, such as Matroska and Ogg, are
+ * not checked at all.
+ *
+ * <p>Buffers are allocated once for the maximum block size of the stream and reused for every
+ * frame.
+ */
+/* package */ final class FlacFrameDecoder {
+
+  /** The maximum supported bit depth. */
+  public static final int MAX_BITS_PER_SAMPLE = 24;
+
+  private static final int FRAME_SYNC_CODE = 0x3FFE;
+  private static final int MAX_BLOCK_SIZE = 65535;
+  private static final int MAX_LPC_ORDER = 32;
+
+  private static final int CHANNEL_ASSIGNMENT_LEFT_SIDE = 8;
+  private static final int CHANNEL_ASSIGNMENT_RIGHT_SIDE = 9;
+  private static final int CHANNEL_ASSIGNMENT_MID_SIDE = 10;
+
+  private static final int SUBFRAME_TYPE_CONSTANT = 0;
+  private static final int SUBFRAME_TYPE_VERBATIM = 1;
+  private static final int SUBFRAME_TYPE_FIXED_MIN = 8;
+  private static final int SUBFRAME_TYPE_FIXED_MAX = 12;
+  private static final int SUBFRAME_TYPE_LPC_MIN = 32;
+
+  private final int channelCount;
+  private final int bitsPerSample;
+  private final int outputBytesPerSample;
+  private final int maxBlockSize;
+  private final BitReader reader;
+  private final int[][] samples;
+  private final int[] lpcCoefficients;
+
+  /**
+   * @param streamMetadata The metadata of the stream.
+   * @throws ParserException If the stream's bit depth is not supported.
+   */
+  public FlacFrameDecoder(FlacStreamMetadata streamMetadata) throws ParserException {
+    if (streamMetadata.bitsPerSample > MAX_BITS_PER_SAMPLE) {
+      throw new ParserException("Unsupported bits per sample: " + streamMetadata.bitsPerSample);
+    }
+    channelCount = streamMetadata.channels;
+    bitsPerSample = streamMetadata.bitsPerSample;
+    outputBytesPerSample = (bitsPerSample + 7) / 8;
+    maxBlockSize =
+        streamMetadata.maxBlockSizeSamples > 0
+            ? streamMetadata.maxBlockSizeSamples
+            : MAX_BLOCK_SIZE;
+    reader = new BitReader();
+    samples = new int[channelCount][maxBlockSize];
+    lpcCoefficients = new int[MAX_LPC_ORDER];
+  }
+
+  /** Returns the {@link C.PcmEncoding} of the decoded audio. */
+  @C.PcmEncoding
+  public int getOutputPcmEncoding() {
+    return Util.getPcmEncoding(outputBytesPerSample * 8);
+  }
+
+  /** Returns the maximum size of a decoded frame, in bytes. */
+  public int getMaxOutputSize() {
+    return maxBlockSize * channelCount * outputBytesPerSample;
+  }
+
+  /**
+   * Decodes a frame.
+   *
+   * @param data An array containing the frame.
+   * @param offset The offset of the frame in {@code data}.
+   * @param limit The limit of the frame data in {@code data} (exclusive).
+   * @param output The buffer to which the decoded interleaved PCM is written, starting at its
+   *     position. Must have at least {@link #getMaxOutputSize()} bytes remaining.
+   * @throws ParserException If the frame is malformed or unsupported.
+   */
+  public void decodeFrame(byte[] data, int offset, int limit, ByteBuffer output)
+      throws ParserException {
+    reader.reset(data, offset, limit);
+    if (reader.readBits(14) != FRAME_SYNC_CODE) {
+      throw new ParserException("Invalid frame sync code");
+    }
+    reader.skipBits(2); // Reserved bit and blocking strategy.
+    int blockSizeCode = reader.readBits(4);
+    int sampleRateCode = reader.readBits(4);
+    int channelAssignment = reader.readBits(4);
+    int sampleSizeCode = reader.readBits(3);
+    reader.skipBits(1); // Reserved bit.
+    skipCodedNumber();
+    int blockSize = readBlockSize(blockSizeCode);
+    if (sampleRateCode == 12) {
+      reader.skipBits(8);
+    } else if (sampleRateCode == 13 || sampleRateCode == 14) {
+      reader.skipBits(16);
+    }
+    reader.skipBits(8); // CRC-8.
+
+    if (blockSize > maxBlockSize) {
+      throw new ParserException("Block size exceeds the maximum: " + blockSize);
+    }
+    if (getBitsPerSample(sampleSizeCode) != bitsPerSample) {
+      throw new ParserException("Bits per sample differ from the stream info");
+    }
+    int frameChannelCount;
+    if (channelAssignment < CHANNEL_ASSIGNMENT_LEFT_SIDE) {
+      frameChannelCount = channelAssignment + 1;
+    } else if (channelAssignment <= CHANNEL_ASSIGNMENT_MID_SIDE) {
+      frameChannelCount = 2;
+    } else {
+      throw new ParserException("Reserved channel assignment: " + channelAssignment);
+    }
+    if (frameChannelCount != channelCount) {
+      throw new ParserException("Channel count differs from the stream info");
+    }
+
+    for (int channel = 0; channel < channelCount; channel++) {
+      // The side channel has an extra bit.
+      boolean isSideChannel =
+          channel == 1
+              ? channelAssignment == CHANNEL_ASSIGNMENT_LEFT_SIDE
+                  || channelAssignment == CHANNEL_ASSIGNMENT_MID_SIDE
+              : channelAssignment == CHANNEL_ASSIGNMENT_RIGHT_SIDE;
+      decodeSubframe(samples[channel], blockSize, bitsPerSample + (isSideChannel ? 1 : 0));
+    }
+    // The byte alignment padding and CRC-16 of the frame footer are ignored.
+    decorrelateChannels(channelAssignment, blockSize);
+    writeSamples(blockSize, output);
+  }
+
+  private void skipCodedNumber() throws ParserException {
+    int firstByte = reader.readBits(8);
+    int leadingOnes = Integer.numberOfLeadingZeros(~(firstByte << 24));
+    if (leadingOnes == 1 || leadingOnes > 7) {
+      throw new ParserException("Invalid coded frame number");
+    }
+    if (leadingOnes > 1) {
+      reader.skipBits(8 * (leadingOnes - 1));
+    }
+  }
+
+  private int readBlockSize(int blockSizeCode) throws ParserException {
+    if (blockSizeCode == 1) {
+      return 192;
+    } else if (blockSizeCode >= 2 && blockSizeCode <= 5) {
+      return 576 << (blockSizeCode - 2);
+    } else if (blockSizeCode == 6) {
+      return reader.readBits(8) + 1;
+    } else if (blockSizeCode == 7) {
+      return reader.readBits(16) + 1;
+    } else if (blockSizeCode >= 8) {
+      return 256 << (blockSizeCode - 8);
+    }
+    throw new ParserException("Reserved block size");
+  }
+
+  private int getBitsPerSample(int sampleSizeCode) throws ParserException {
+    switch (sampleSizeCode) {
+      case 0:
+        return bitsPerSample;
+      case 1:
+        return 8;
+      case 2:
+        return 12;
+      case 4:
+        return 16;
+      case 5:
+        return 20;
+      case 6:
+        return 24;
+      case 7:
+        return 32;
+      default:
+        throw new ParserException("Reserved sample size");
+    }
+  }
+
+  private void decodeSubframe(int[] samples, int blockSize, int bitsPerSample)
+      throws ParserException {
+    reader.skipBits(1); // Zero padding.
+    int type = reader.readBits(6);
+    int wastedBits = 0;
+    if (reader.readBits(1) == 1) {
+      wastedBits = reader.readUnary() + 1;
+      bitsPerSample -= wastedBits;
+    }
+    if (type == SUBFRAME_TYPE_CONSTANT) {
+      Arrays.fill(samples, 0, blockSize, reader.readSignedBits(bitsPerSample));
+    } else if (type == SUBFRAME_TYPE_VERBATIM) {
+      for (int i = 0; i < blockSize; i++) {
+        samples[i] = reader.readSignedBits(bitsPerSample);
+      }
+    } else if (type >= SUBFRAME_TYPE_FIXED_MIN && type <= SUBFRAME_TYPE_FIXED_MAX) {
+      decodeFixedSubframe(samples, blockSize, bitsPerSample, type - SUBFRAME_TYPE_FIXED_MIN);
+    } else if (type >= SUBFRAME_TYPE_LPC_MIN) {
+      decodeLpcSubframe(samples, blockSize, bitsPerSample, type - SUBFRAME_TYPE_LPC_MIN + 1);
+    } else {
+      throw new ParserException("Reserved subframe type: " + type);
+    }
+    if (wastedBits != 0) {
+      for (int i = 0; i < blockSize; i++) {
+        samples[i] <<= wastedBits;
+      }
+    }
+  }
+
+  private void decodeFixedSubframe(int[] samples, int blockSize, int bitsPerSample, int order)
+      throws ParserException {
+    for (int i = 0; i < order; i++) {
+      samples[i] = reader.readSignedBits(bitsPerSample);
+    }
+    readResidual(samples, blockSize, order);
+    // The residual is stored in place, and the prediction is added to it.
+    switch (order) {
+      case 1:
+        for (int i = 1; i < blockSize; i++) {
+          samples[i] += samples[i - 1];
+        }
+        break;
+      case 2:
+        for (int i = 2; i < blockSize; i++) {
+          samples[i] += 2 * samples[i - 1] - samples[i - 2];
+        }
+        break;
+      case 3:
+        for (int i = 3; i < blockSize; i++) {
+          samples[i] += 3 * (samples[i - 1] - samples[i - 2]) + samples[i - 3];
+        }
+        break;
+      case 4:
+        for (int i = 4; i < blockSize; i++) {
+          samples[i] +=
+              4 * (samples[i - 1] + samples[i - 3]) - 6 * samples[i - 2] - samples[i - 4];
+        }
+        break;
+      default:
+        // Order 0: the residual is the signal.
+        break;
+    }
+  }
+
+  private void decodeLpcSubframe(int[] samples, int blockSize, int bitsPerSample, int order)
+      throws ParserException {
+    for (int i = 0; i < order; i++) {
+      samples[i] = reader.readSignedBits(bitsPerSample);
+    }
+    int precision = reader.readBits(4) + 1;
+    if (precision == 16) {
+      throw new ParserException("Invalid LPC coefficient precision");
+    }
+    int shift = reader.readSignedBits(5);
+    if (shift < 0) {
+      throw new ParserException("Negative LPC shift");
+    }
+    int[] coefficients = lpcCoefficients;
+    for (int i = 0; i < order; i++) {
+      coefficients[i] = reader.readSignedBits(precision);
+    }
+    readResidual(samples, blockSize, order);
+    int sumBits = bitsPerSample + precision + (32 - Integer.numberOfLeadingZeros(order));
+    if (sumBits <= 32) {
+      for (int i = order; i < blockSize; i++) {
+        int sum = 0;
+        for (int j = 0; j < order; j++) {
+          sum += coefficients[j] * samples[i - 1 - j];
+        }
+        samples[i] += sum >> shift;
+      }
+    } else {
+      for (int i = order; i < blockSize; i++) {
+        long sum = 0;
+        for (int j = 0; j < order; j++) {
+          sum += (long) coefficients[j] * samples[i - 1 - j];
+        }
+        samples[i] += (int) (sum >> shift);
+      }
+    }
+  }
+
+  /** Reads the residual of a subframe into {@code samples}, after the warm-up samples. */
+  private void readResidual(int[] samples, int blockSize, int predictorOrder)
+      throws ParserException {
+    int codingMethod = reader.readBits(2);
+    if (codingMethod > 1) {
+      throw new ParserException("Reserved residual coding method");
+    }
+    int parameterBits = codingMethod == 0 ? 4 : 5;
+    int escapeParameter = (1 << parameterBits) - 1;
+    int partitionOrder = reader.readBits(4);
+    int partitionSize = blockSize >> partitionOrder;
+    if ((partitionSize << partitionOrder) != blockSize || partitionSize < predictorOrder) {
+      throw new ParserException("Invalid residual partition order");
+    }
+    int partitionCount = 1 << partitionOrder;
+    int sampleIndex = predictorOrder;
+    for (int partition = 0; partition < partitionCount; partition++) {
+      int partitionEnd = (partition + 1) * partitionSize;
+      int parameter = reader.readBits(parameterBits);
+      if (parameter == escapeParameter) {
+        int bits = reader.readBits(5);
+        while (sampleIndex < partitionEnd) {
+          samples[sampleIndex++] = reader.readSignedBits(bits);
+        }
+      } else {
+        while (sampleIndex < partitionEnd) {
+          samples[sampleIndex++] = reader.readRice(parameter);
+        }
+      }
+    }
+  }
+
+  private void decorrelateChannels(int channelAssignment, int blockSize) {
+    if (channelAssignment < CHANNEL_ASSIGNMENT_LEFT_SIDE) {
+      return;
+    }
+    int[] channel0 = samples[0];
+    int[] channel1 = samples[1];
+    switch (channelAssignment) {
+      case CHANNEL_ASSIGNMENT_LEFT_SIDE:
+        for (int i = 0; i < blockSize; i++) {
+          channel1[i] = channel0[i] - channel1[i];
+        }
+        break;
+      case CHANNEL_ASSIGNMENT_RIGHT_SIDE:
+        for (int i = 0; i < blockSize; i++) {
+          channel0[i] += channel1[i];
+        }
+        break;
+      case CHANNEL_ASSIGNMENT_MID_SIDE:
+        for (int i = 0; i < blockSize; i++) {
+          int side = channel1[i];
+          int mid = (channel0[i] << 1) | (side & 1);
+          channel0[i] = (mid + side) >> 1;
+          channel1[i] = (mid - side) >> 1;
+        }
+        break;
+      default:
+        break;
+    }
+  }
+
+  private void writeSamples(int blockSize, ByteBuffer output) {
+    int shift = outputBytesPerSample * 8 - bitsPerSample;
+    switch (outputBytesPerSample) {
+      case 1:
+        // 8-bit PCM is unsigned.
+        for (int i = 0; i < blockSize; i++) {
+          for (int channel = 0; channel < channelCount; channel++) {
+            output.put((byte) ((samples[channel][i] << shift) + 128));
+          }
+        }
+        break;
+      case 2:
+        for (int i = 0; i < blockSize; i++) {
+          for (int channel = 0; channel < channelCount; channel++) {
+            output.putShort((short) (samples[channel][i] << shift));
+          }
+        }
+        break;
+      default:
+        // 24-bit PCM is little endian.
+        for (int i = 0; i < blockSize; i++) {
+          for (int channel = 0; channel < channelCount; channel++) {
+            int sample = samples[channel][i] << shift;
+            output.put((byte) sample);
+            output.put((byte) (sample >> 8));
+            output.put((byte) (sample >> 16));
+          }
+        }
+        break;
+    }
+  }
+
+  /** Reads bits from a byte array, most significant bit first. */
+  private static final class BitReader {
+
+    private byte[] data;
+    private int limit;
+    private int byteOffset;
+    private int bitOffset;
+
+    public BitReader() {
+      data = Util.EMPTY_BYTE_ARRAY;
+    }
+
+    public void reset(byte[] data, int offset, int limit) {
+      this.data = data;
+      this.limit = limit;
+      byteOffset = offset;
+      bitOffset = 0;
+    }
+
+    public void skipBits(int numBits) throws ParserException {
+      int bitPosition = bitOffset + numBits;
+      byteOffset += bitPosition / 8;
+      bitOffset = bitPosition % 8;
+      if (byteOffset > limit || (byteOffset == limit && bitOffset > 0)) {
+        throw new ParserException("Unexpected end of frame");
+      }
+    }
+
+    /** Reads up to 32 bits as an unsigned value. */
+    public int readBits(int numBits) throws ParserException {
+      int value = 0;
+      while (numBits > 0) {
+        if (byteOffset >= limit) {
+          throw new ParserException("Unexpected end of frame");
+        }
+        int bitsLeftInByte = 8 - bitOffset;
+        int bitsToRead = Math.min(numBits, bitsLeftInByte);
+        int bits = ((data[byteOffset] & 0xFF) >> (bitsLeftInByte - bitsToRead))
+            & ((1 << bitsToRead) - 1);
+        value = (value << bitsToRead) | bits;
+        numBits -= bitsToRead;
+        bitOffset += bitsToRead;
+        if (bitOffset == 8) {
+          bitOffset = 0;
+          byteOffset++;
+        }
+      }
+      return value;
+    }
+
+    /** Reads up to 32 bits as a two's complement signed value. */
+    public int readSignedBits(int numBits) throws ParserException {
+      if (numBits == 0) {
+        return 0;
+      }
+      int shift = 32 - numBits;
+      return (readBits(numBits) << shift) >> shift;
+    }
+
+    /** Reads a unary coded value, which is the number of zero bits before the next one bit. */
+    public int readUnary() throws ParserException {
+      int count = 0;
+      while (true) {
+        if (byteOffset >= limit) {
+          throw new ParserException("Unexpected end of frame");
+        }
+        int remainingBits = (data[byteOffset] << bitOffset) & 0xFF;
+        if (remainingBits != 0) {
+          int zeroBits = Integer.numberOfLeadingZeros(remainingBits) - 24;
+          count += zeroBits;
+          bitOffset += zeroBits + 1;
+          if (bitOffset == 8) {
+            bitOffset = 0;
+            byteOffset++;
+          }
+          return count;
+        }
+        count += 8 - bitOffset;
+        bitOffset = 0;
+        byteOffset++;
+      }
+    }
+
+    /** Reads a Rice coded signed value with the specified parameter. */
+    public int readRice(int parameter) throws ParserException {
+      int value = (readUnary() << parameter) | readBits(parameter);
+      return (value >>> 1) ^ -(value & 1);
+    }
+  }
+}
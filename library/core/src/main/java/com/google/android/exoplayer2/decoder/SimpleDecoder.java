@@ -20,18 +20,30 @@ import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.util.Assertions;
 import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
-/** Base class for {@link Decoder}s that use their own decode thread. */
+/**
+ * Base class for {@link Decoder}s that decode on a background thread.
+ *
+ * <p>By default each decoder has its own decode thread. Alternatively, decoding can run as tasks on
+ * an {@link Executor} that is shared between decoders, which avoids creating a thread for every
+ * decoder instance. Each task decodes a single buffer, and a decoder never has more than one task
+ * scheduled, so buffers are still decoded one at a time and in order.
+ */
 @SuppressWarnings("UngroupedOverloads")
 public abstract class SimpleDecoder<
         I extends DecoderInputBuffer, O extends OutputBuffer, E extends Exception>
     implements Decoder<I, O, E> {
 
-  private final Thread decodeThread;
+  @Nullable private final Thread decodeThread;
+  @Nullable private final Executor decodeExecutor;
+  private final Runnable decodeTask;
 
   private final Object lock;
   private final ArrayDeque<I> queuedInputBuffers;
   private final ArrayDeque<O> queuedOutputBuffers;
+  private final ArrayDeque<Runnable> queuedTasks;
   private final I[] availableInputBuffers;
   private final O[] availableOutputBuffers;
 
@@ -43,15 +55,30 @@ public abstract class SimpleDecoder<
   private boolean flushed;
   private boolean released;
   private int skippedOutputBufferCount;
+  private boolean decodeTaskScheduled;
+  private boolean decodeTaskRunning;
 
   /**
    * @param inputBuffers An array of nulls that will be used to store references to input buffers.
    * @param outputBuffers An array of nulls that will be used to store references to output buffers.
    */
   protected SimpleDecoder(I[] inputBuffers, O[] outputBuffers) {
+    this(inputBuffers, outputBuffers, /* decodeExecutor= */ null);
+  }
+
+  /**
+   * @param inputBuffers An array of nulls that will be used to store references to input buffers.
+   * @param outputBuffers An array of nulls that will be used to store references to output buffers.
+   * @param decodeExecutor An {@link Executor} on which to decode, or {@code null} to decode on a
+   *     thread owned by the decoder. The executor should be bounded, and must run tasks on
+   *     background threads. It's not shut down when the decoder is released.
+   */
+  protected SimpleDecoder(
+      I[] inputBuffers, O[] outputBuffers, @Nullable Executor decodeExecutor) {
     lock = new Object();
     queuedInputBuffers = new ArrayDeque<>();
     queuedOutputBuffers = new ArrayDeque<>();
+    queuedTasks = new ArrayDeque<>();
     availableInputBuffers = inputBuffers;
     availableInputBufferCount = inputBuffers.length;
     for (int i = 0; i < availableInputBufferCount; i++) {
@@ -62,13 +89,19 @@ public abstract class SimpleDecoder<
     for (int i = 0; i < availableOutputBufferCount; i++) {
       availableOutputBuffers[i] = createOutputBuffer();
     }
-    decodeThread = new Thread() {
-      @Override
-      public void run() {
-        SimpleDecoder.this.run();
-      }
-    };
-    decodeThread.start();
+    this.decodeExecutor = decodeExecutor;
+    decodeTask = this::runDecodeTask;
+    if (decodeExecutor == null) {
+      decodeThread = new Thread() {
+        @Override
+        public void run() {
+          SimpleDecoder.this.run();
+        }
+      };
+      decodeThread.start();
+    } else {
+      decodeThread = null;
+    }
   }
 
   /**
@@ -121,6 +154,25 @@ public abstract class SimpleDecoder<
     }
   }
 
+  /**
+   * Queues a task to run where the decoder decodes, either on its decode thread or on its decode
+   * executor. Queued tasks run in order, between decoding buffers, and only once there is no
+   * buffer to decode. Tasks that have not run when the decoder is released are discarded.
+   *
+   * <p>Tasks must not throw exceptions.
+   *
+   * @param task The task.
+   */
+  protected final void executeOnDecodeThread(Runnable task) {
+    synchronized (lock) {
+      if (released) {
+        return;
+      }
+      queuedTasks.addLast(task);
+      maybeNotifyDecodeLoop();
+    }
+  }
+
   /**
    * Releases an output buffer back to the decoder.
    *
@@ -156,9 +208,26 @@ public abstract class SimpleDecoder<
   @CallSuper
   @Override
   public void release() {
+    @Nullable Thread decodeThread = this.decodeThread;
     synchronized (lock) {
       released = true;
+      queuedTasks.clear();
       lock.notify();
+      if (decodeThread == null) {
+        // Wait for a running decode task to finish. Tasks that have not started will not decode.
+        boolean interrupted = false;
+        while (decodeTaskRunning) {
+          try {
+            lock.wait();
+          } catch (InterruptedException e) {
+            interrupted = true;
+          }
+        }
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+        return;
+      }
     }
     try {
       decodeThread.join();
@@ -180,13 +249,35 @@ public abstract class SimpleDecoder<
 
   /**
    * Notifies the decode loop if there exists a queued input buffer and an available output buffer
-   * to decode into.
+   * to decode into, or a queued task.
    * <p>
    * Should only be called whilst synchronized on the lock object.
    */
   private void maybeNotifyDecodeLoop() {
-    if (canDecodeBuffer()) {
-      lock.notify();
+    if (canDecodeBuffer() || !queuedTasks.isEmpty()) {
+      if (decodeExecutor == null) {
+        lock.notify();
+      } else {
+        maybeScheduleDecodeTask();
+      }
+    }
+  }
+
+  /**
+   * Schedules a decode task, unless one is already scheduled or the decoder can no longer decode.
+   * <p>
+   * Should only be called whilst synchronized on the lock object.
+   */
+  private void maybeScheduleDecodeTask() {
+    if (decodeTaskScheduled || released || exception != null) {
+      return;
+    }
+    decodeTaskScheduled = true;
+    try {
+      Assertions.checkNotNull(decodeExecutor).execute(decodeTask);
+    } catch (RejectedExecutionException e) {
+      decodeTaskScheduled = false;
+      exception = createUnexpectedDecodeException(e);
     }
   }
 
@@ -202,24 +293,87 @@ public abstract class SimpleDecoder<
   }
 
   private boolean decode() throws InterruptedException {
-    I inputBuffer;
-    O outputBuffer;
-    boolean resetDecoder;
+    @Nullable Runnable task = null;
+    @Nullable I inputBuffer = null;
+    @Nullable O outputBuffer = null;
+    boolean resetDecoder = false;
 
-    // Wait until we have an input buffer to decode, and an output buffer to decode into.
+    // Wait until we have an input buffer to decode and an output buffer to decode into, or a task.
     synchronized (lock) {
-      while (!released && !canDecodeBuffer()) {
+      while (!released && !canDecodeBuffer() && queuedTasks.isEmpty()) {
         lock.wait();
       }
       if (released) {
         return false;
       }
-      inputBuffer = queuedInputBuffers.removeFirst();
-      outputBuffer = availableOutputBuffers[--availableOutputBufferCount];
-      resetDecoder = flushed;
-      flushed = false;
+      if (canDecodeBuffer()) {
+        inputBuffer = queuedInputBuffers.removeFirst();
+        outputBuffer = availableOutputBuffers[--availableOutputBufferCount];
+        resetDecoder = flushed;
+        flushed = false;
+      } else {
+        task = queuedTasks.removeFirst();
+      }
     }
+    if (task != null) {
+      task.run();
+      return true;
+    }
+    return decodeBuffer(
+        Assertions.checkNotNull(inputBuffer), Assertions.checkNotNull(outputBuffer), resetDecoder);
+  }
 
+  private void runDecodeTask() {
+    @Nullable Runnable task = null;
+    @Nullable I inputBuffer = null;
+    @Nullable O outputBuffer = null;
+    boolean resetDecoder = false;
+    synchronized (lock) {
+      decodeTaskScheduled = false;
+      if (released) {
+        return;
+      }
+      if (canDecodeBuffer()) {
+        inputBuffer = queuedInputBuffers.removeFirst();
+        outputBuffer = availableOutputBuffers[--availableOutputBufferCount];
+        resetDecoder = flushed;
+        flushed = false;
+      } else if (!queuedTasks.isEmpty()) {
+        task = queuedTasks.removeFirst();
+      } else {
+        return;
+      }
+      decodeTaskRunning = true;
+    }
+    try {
+      if (task != null) {
+        task.run();
+      } else {
+        decodeBuffer(
+            Assertions.checkNotNull(inputBuffer),
+            Assertions.checkNotNull(outputBuffer),
+            resetDecoder);
+      }
+    } finally {
+      synchronized (lock) {
+        decodeTaskRunning = false;
+        lock.notifyAll();
+        // Schedule a new task rather than looping, so that other decoders sharing the executor get
+        // their turn.
+        maybeNotifyDecodeLoop();
+      }
+    }
+  }
+
+  /**
+   * Decodes an input buffer into an output buffer, and queues the output buffer if appropriate.
+   *
+   * @param inputBuffer The buffer to decode.
+   * @param outputBuffer The buffer to decode into.
+   * @param resetDecoder Whether the decoder must be reset before decoding.
+   * @return Whether decoding succeeded.
+   */
+  private boolean decodeBuffer(I inputBuffer, O outputBuffer, boolean resetDecoder) {
     if (inputBuffer.isEndOfStream()) {
       outputBuffer.addFlag(C.BUFFER_FLAG_END_OF_STREAM);
     } else {
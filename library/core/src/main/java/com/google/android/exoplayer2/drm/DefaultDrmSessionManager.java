@@ -60,6 +60,7 @@ public class DefaultDrmSessionManager<T extends ExoMediaCrypto> implements DrmSe
     private int[] useDrmSessionsForClearContentTrackTypes;
     private boolean playClearSamplesWithoutKeys;
     private LoadErrorHandlingPolicy loadErrorHandlingPolicy;
+    private int maxPrefetchedSessionCount;
 
     /**
      * Creates a builder with default values. The default values are:
@@ -74,6 +75,8 @@ public class DefaultDrmSessionManager<T extends ExoMediaCrypto> implements DrmSe
      *   <li>{@link #setPlayClearSamplesWithoutKeys playClearSamplesWithoutKeys}: {@code false}.
      *   <li>{@link #setLoadErrorHandlingPolicy LoadErrorHandlingPolicy}: {@link
      *       DefaultLoadErrorHandlingPolicy}.
+     *   <li>{@link #setMaxPrefetchedSessionCount maxPrefetchedSessionCount}: {@link
+     *       #DEFAULT_MAX_PREFETCHED_SESSION_COUNT}.
      * </ul>
      */
     @SuppressWarnings("unchecked")
@@ -83,6 +86,7 @@ public class DefaultDrmSessionManager<T extends ExoMediaCrypto> implements DrmSe
       exoMediaDrmProvider = (ExoMediaDrm.Provider) FrameworkMediaDrm.DEFAULT_PROVIDER;
       loadErrorHandlingPolicy = new DefaultLoadErrorHandlingPolicy();
       useDrmSessionsForClearContentTrackTypes = new int[0];
+      maxPrefetchedSessionCount = DEFAULT_MAX_PREFETCHED_SESSION_COUNT;
     }
 
     /**
@@ -179,6 +183,20 @@ public class DefaultDrmSessionManager<T extends ExoMediaCrypto> implements DrmSe
       return this;
     }
 
+    /**
+     * Sets the maximum number of sessions acquired using {@link #prefetchSession(Looper,
+     * DrmInitData)} to which the manager keeps a reference.
+     *
+     * @param maxPrefetchedSessionCount The maximum number of prefetched sessions, or 0 to disable
+     *     prefetching.
+     * @return This builder.
+     */
+    public Builder setMaxPrefetchedSessionCount(int maxPrefetchedSessionCount) {
+      Assertions.checkArgument(maxPrefetchedSessionCount >= 0);
+      this.maxPrefetchedSessionCount = maxPrefetchedSessionCount;
+      return this;
+    }
+
     /** Builds a {@link DefaultDrmSessionManager} instance. */
     public DefaultDrmSessionManager<ExoMediaCrypto> build(MediaDrmCallback mediaDrmCallback) {
       return new DefaultDrmSessionManager<>(
@@ -189,7 +207,8 @@ public class DefaultDrmSessionManager<T extends ExoMediaCrypto> implements DrmSe
           multiSession,
           useDrmSessionsForClearContentTrackTypes,
           playClearSamplesWithoutKeys,
-          loadErrorHandlingPolicy);
+          loadErrorHandlingPolicy,
+          maxPrefetchedSessionCount);
     }
   }
 
@@ -231,6 +250,8 @@ public class DefaultDrmSessionManager<T extends ExoMediaCrypto> implements DrmSe
   public static final int MODE_RELEASE = 3;
   /** Number of times to retry for initial provisioning and key request for reporting error. */
   public static final int INITIAL_DRM_REQUEST_RETRY_COUNT = 3;
+  /** The default maximum number of prefetched sessions to which the manager keeps a reference. */
+  public static final int DEFAULT_MAX_PREFETCHED_SESSION_COUNT = 2;
 
   private static final String TAG = "DefaultDrmSessionMgr";
 
@@ -244,9 +265,12 @@ public class DefaultDrmSessionManager<T extends ExoMediaCrypto> implements DrmSe
   private final boolean playClearSamplesWithoutKeys;
   private final ProvisioningManagerImpl provisioningManagerImpl;
   private final LoadErrorHandlingPolicy loadErrorHandlingPolicy;
+  private final int maxPrefetchedSessionCount;
 
   private final List<DefaultDrmSession<T>> sessions;
   private final List<DefaultDrmSession<T>> provisioningSessions;
+  // Ordered from least to most recently prefetched.
+  private final List<DefaultDrmSession<T>> prefetchedSessions;
 
   private int prepareCallsCount;
   @Nullable private ExoMediaDrm<T> exoMediaDrm;
@@ -336,7 +360,8 @@ public class DefaultDrmSessionManager<T extends ExoMediaCrypto> implements DrmSe
         multiSession,
         /* useDrmSessionsForClearContentTrackTypes= */ new int[0],
         /* playClearSamplesWithoutKeys= */ false,
-        new DefaultLoadErrorHandlingPolicy(initialDrmRequestRetryCount));
+        new DefaultLoadErrorHandlingPolicy(initialDrmRequestRetryCount),
+        DEFAULT_MAX_PREFETCHED_SESSION_COUNT);
   }
 
   // the constructor does not initialize fields: offlineLicenseKeySetId
@@ -349,7 +374,8 @@ public class DefaultDrmSessionManager<T extends ExoMediaCrypto> implements DrmSe
       boolean multiSession,
       int[] useDrmSessionsForClearContentTrackTypes,
       boolean playClearSamplesWithoutKeys,
-      LoadErrorHandlingPolicy loadErrorHandlingPolicy) {
+      LoadErrorHandlingPolicy loadErrorHandlingPolicy,
+      int maxPrefetchedSessionCount) {
     Assertions.checkNotNull(uuid);
     Assertions.checkArgument(!C.COMMON_PSSH_UUID.equals(uuid), "Use C.CLEARKEY_UUID instead");
     this.uuid = uuid;
@@ -361,10 +387,12 @@ public class DefaultDrmSessionManager<T extends ExoMediaCrypto> implements DrmSe
     this.useDrmSessionsForClearContentTrackTypes = useDrmSessionsForClearContentTrackTypes;
     this.playClearSamplesWithoutKeys = playClearSamplesWithoutKeys;
     this.loadErrorHandlingPolicy = loadErrorHandlingPolicy;
+    this.maxPrefetchedSessionCount = maxPrefetchedSessionCount;
     provisioningManagerImpl = new ProvisioningManagerImpl();
     mode = MODE_PLAYBACK;
     sessions = new ArrayList<>();
     provisioningSessions = new ArrayList<>();
+    prefetchedSessions = new ArrayList<>();
   }
 
   /**
@@ -419,6 +447,64 @@ public class DefaultDrmSessionManager<T extends ExoMediaCrypto> implements DrmSe
     this.offlineLicenseKeySetId = offlineLicenseKeySetId;
   }
 
+  /**
+   * Acquires a session for the given {@link DrmInitData} ahead of time, so that its keys have been
+   * loaded by the time a renderer acquires a session for the same {@link DrmInitData} using {@link
+   * #acquireSession(Looper, DrmInitData)}. This avoids waiting for a key request when playback
+   * transitions to the next item of a playlist.
+   *
+   * <p>The manager keeps a reference to at most {@link Builder#setMaxPrefetchedSessionCount
+   * maxPrefetchedSessionCount} prefetched sessions. If a prefetch exceeds the maximum, the
+   * reference to the least recently prefetched session is released. A session isn't closed while
+   * renderers that acquired it still use it, so items that share keys reuse the same session.
+   * Prefetched sessions whose key requests failed are released when a renderer acquires a
+   * session, so that a new key request is made.
+   *
+   * <p>Sessions are only reused for different {@link DrmInitData} if {@link Builder#setMultiSession
+   * multiSession} is enabled, so it should normally be enabled when sessions are prefetched.
+   *
+   * <p>Must be called on the thread associated with {@code playbackLooper}, after {@link
+   * #prepare()} has been called.
+   *
+   * @param playbackLooper The looper associated with the media playback thread.
+   * @param drmInitData DRM initialization data. All contained {@link SchemeData}s must contain
+   *     non-null {@link SchemeData#data}.
+   */
+  public void prefetchSession(Looper playbackLooper, DrmInitData drmInitData) {
+    if (maxPrefetchedSessionCount == 0) {
+      return;
+    }
+    DrmSession<T> session = acquireSession(playbackLooper, drmInitData);
+    if (!(session instanceof DefaultDrmSession)) {
+      // The DrmInitData isn't supported, which has been reported to listeners.
+      session.release();
+      return;
+    }
+    DefaultDrmSession<T> prefetchedSession = (DefaultDrmSession<T>) session;
+    if (prefetchedSessions.remove(prefetchedSession)) {
+      // The manager already holds a reference to the session.
+      prefetchedSession.release();
+    }
+    prefetchedSessions.add(prefetchedSession);
+    if (prefetchedSessions.size() > maxPrefetchedSessionCount) {
+      prefetchedSessions.remove(0).release();
+    }
+  }
+
+  /**
+   * Releases the references to all sessions acquired using {@link #prefetchSession(Looper,
+   * DrmInitData)}. Sessions that are still used by renderers remain open.
+   *
+   * <p>Must be called on the thread associated with the playback looper.
+   */
+  public void releasePrefetchedSessions() {
+    List<DefaultDrmSession<T>> sessionsToRelease = new ArrayList<>(prefetchedSessions);
+    prefetchedSessions.clear();
+    for (int i = 0; i < sessionsToRelease.size(); i++) {
+      sessionsToRelease.get(i).release();
+    }
+  }
+
   // DrmSessionManager implementation.
 
   @Override
@@ -433,6 +519,7 @@ public class DefaultDrmSessionManager<T extends ExoMediaCrypto> implements DrmSe
   @Override
   public final void release() {
     if (--prepareCallsCount == 0) {
+      releasePrefetchedSessions();
       Assertions.checkNotNull(exoMediaDrm).release();
       exoMediaDrm = null;
     }
@@ -511,6 +598,7 @@ public class DefaultDrmSessionManager<T extends ExoMediaCrypto> implements DrmSe
       }
     }
 
+    releaseFailedPrefetchedSessions();
     @Nullable DefaultDrmSession<T> session;
     if (!multiSession) {
       session = noMultiSessionDrmSession;
@@ -558,6 +646,16 @@ public class DefaultDrmSessionManager<T extends ExoMediaCrypto> implements DrmSe
     }
   }
 
+  private void releaseFailedPrefetchedSessions() {
+    for (int i = prefetchedSessions.size() - 1; i >= 0; i--) {
+      DefaultDrmSession<T> prefetchedSession = prefetchedSessions.get(i);
+      if (prefetchedSession.getState() == DrmSession.STATE_ERROR) {
+        prefetchedSessions.remove(i);
+        prefetchedSession.release();
+      }
+    }
+  }
+
   private DefaultDrmSession<T> createNewDefaultSession(
       @Nullable List<SchemeData> schemeDatas, boolean isPlaceholderSession) {
     Assertions.checkNotNull(exoMediaDrm);
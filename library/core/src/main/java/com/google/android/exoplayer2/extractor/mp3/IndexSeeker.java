@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mp3;
+
+import androidx.annotation.VisibleForTesting;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.SeekPoint;
+import com.google.android.exoplayer2.util.LongArray;
+import com.google.android.exoplayer2.util.Util;
+
+/**
+ * MP3 seeker that builds a time-to-byte mapping from the frames that are read.
+ *
+ * <p>A seek point is added for a frame at most every {@link #MIN_TIME_BETWEEN_POINTS_US}, so
+ * seeking within the part of the stream that has been read is exact. Seeking beyond it seeks to
+ * the last indexed frame, from which the extractor reads forward to the requested position.
+ */
+/* package */ final class IndexSeeker implements Seeker {
+
+  @VisibleForTesting
+  /* package */ static final long MIN_TIME_BETWEEN_POINTS_US = C.MICROS_PER_SECOND / 10;
+
+  private final long dataEndPosition;
+  private final LongArray timesUs;
+  private final LongArray positions;
+  private final long durationUs;
+
+  /**
+   * @param durationUs The duration of the stream, in microseconds, or {@link C#TIME_UNSET} if
+   *     unknown.
+   * @param dataStartPosition The position of the first frame of audio data.
+   * @param dataEndPosition The position immediately after the audio data, or {@link
+   *     C#POSITION_UNSET} if unknown.
+   */
+  public IndexSeeker(long durationUs, long dataStartPosition, long dataEndPosition) {
+    this.durationUs = durationUs;
+    this.dataEndPosition = dataEndPosition;
+    timesUs = new LongArray();
+    positions = new LongArray();
+    timesUs.add(0L);
+    positions.add(dataStartPosition);
+  }
+
+  @Override
+  public long getTimeUs(long position) {
+    int index =
+        Util.binarySearchFloor(
+            positions, position, /* inclusive= */ true, /* stayInBounds= */ true);
+    return timesUs.get(index);
+  }
+
+  @Override
+  public long getDataEndPosition() {
+    return dataEndPosition;
+  }
+
+  @Override
+  public boolean isSeekable() {
+    return true;
+  }
+
+  @Override
+  public long getDurationUs() {
+    return durationUs;
+  }
+
+  @Override
+  public SeekPoints getSeekPoints(long timeUs) {
+    int index =
+        Util.binarySearchFloor(timesUs, timeUs, /* inclusive= */ true, /* stayInBounds= */ true);
+    SeekPoint seekPoint = new SeekPoint(timesUs.get(index), positions.get(index));
+    if (seekPoint.timeUs >= timeUs || index == timesUs.size() - 1) {
+      return new SeekPoints(seekPoint);
+    }
+    SeekPoint nextSeekPoint = new SeekPoint(timesUs.get(index + 1), positions.get(index + 1));
+    return new SeekPoints(seekPoint, nextSeekPoint);
+  }
+
+  /**
+   * Adds a seek point to the index if it is sufficiently distant from the other points. Seek points
+   * must be added in order of increasing time.
+   *
+   * @param timeUs The time of the frame, in microseconds.
+   * @param position The position of the frame.
+   */
+  public void maybeAddSeekPoint(long timeUs, long position) {
+    if (isTimeUsInIndex(timeUs)) {
+      return;
+    }
+    timesUs.add(timeUs);
+    positions.add(position);
+  }
+
+  /**
+   * Returns whether {@code timeUs} is covered by the index, meaning that seeking to it doesn't
+   * require reading past the indexed part of the stream.
+   *
+   * @param timeUs The time, in microseconds.
+   */
+  public boolean isTimeUsInIndex(long timeUs) {
+    long lastIndexedTimeUs = timesUs.get(timesUs.size() - 1);
+    return timeUs - lastIndexedTimeUs < MIN_TIME_BETWEEN_POINTS_US;
+  }
+
+  /** Returns the number of seek points in the index. */
+  @VisibleForTesting
+  /* package */ int getSeekPointCount() {
+    return timesUs.size();
+  }
+}
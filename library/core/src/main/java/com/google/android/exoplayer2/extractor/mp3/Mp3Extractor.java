@@ -20,6 +20,7 @@ import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.ParserException;
+import com.google.android.exoplayer2.extractor.DummyTrackOutput;
 import com.google.android.exoplayer2.extractor.Extractor;
 import com.google.android.exoplayer2.extractor.ExtractorInput;
 import com.google.android.exoplayer2.extractor.ExtractorOutput;
@@ -51,13 +52,18 @@ public final class Mp3Extractor implements Extractor {
 
   /**
    * Flags controlling the behavior of the extractor. Possible flag values are {@link
-   * #FLAG_ENABLE_CONSTANT_BITRATE_SEEKING} and {@link #FLAG_DISABLE_ID3_METADATA}.
+   * #FLAG_ENABLE_CONSTANT_BITRATE_SEEKING}, {@link #FLAG_ENABLE_INDEX_SEEKING} and {@link
+   * #FLAG_DISABLE_ID3_METADATA}.
    */
   @Documented
   @Retention(RetentionPolicy.SOURCE)
   @IntDef(
       flag = true,
-      value = {FLAG_ENABLE_CONSTANT_BITRATE_SEEKING, FLAG_DISABLE_ID3_METADATA})
+      value = {
+        FLAG_ENABLE_CONSTANT_BITRATE_SEEKING,
+        FLAG_DISABLE_ID3_METADATA,
+        FLAG_ENABLE_INDEX_SEEKING
+      })
   public @interface Flags {}
   /**
    * Flag to force enable seeking using a constant bitrate assumption in cases where seeking would
@@ -69,6 +75,18 @@ public final class Mp3Extractor implements Extractor {
    * required.
    */
   public static final int FLAG_DISABLE_ID3_METADATA = 2;
+  /**
+   * Flag to seek using an index of the frames that have been read, rather than any seek table in
+   * the stream or a constant bitrate assumption. This makes seeking exact, including in variable
+   * bitrate streams whose seek tables are missing or coarse.
+   *
+   * <p>Seeking beyond the part of the stream that has been read reads through the remainder of the
+   * stream up to the seek position, so seeking far ahead can be slow, particularly over a network.
+   * The duration is still taken from the seek table if there is one, and is otherwise estimated
+   * assuming a constant bitrate. If this flag is set, {@link
+   * #FLAG_ENABLE_CONSTANT_BITRATE_SEEKING} is ignored.
+   */
+  public static final int FLAG_ENABLE_INDEX_SEEKING = 4;
 
   /** Predicate that matches ID3 frames containing only required gapless/seeking metadata. */
   private static final FramePredicate REQUIRED_ID3_FRAME_PREDICATE =
@@ -105,10 +123,12 @@ public final class Mp3Extractor implements Extractor {
   private final MpegAudioHeader synchronizedHeader;
   private final GaplessInfoHolder gaplessInfoHolder;
   private final Id3Peeker id3Peeker;
+  private final TrackOutput skippingTrackOutput;
 
   // Extractor outputs.
   private ExtractorOutput extractorOutput;
   private TrackOutput trackOutput;
+  private TrackOutput currentTrackOutput;
 
   private int synchronizedHeaderData;
 
@@ -119,6 +139,8 @@ public final class Mp3Extractor implements Extractor {
   private long samplesRead;
   private long firstSamplePosition;
   private int sampleBytesRemaining;
+  private boolean isSeekInProgress;
+  private long seekTimeUs;
 
   public Mp3Extractor() {
     this(0);
@@ -144,6 +166,7 @@ public final class Mp3Extractor implements Extractor {
     gaplessInfoHolder = new GaplessInfoHolder();
     basisTimeUs = C.TIME_UNSET;
     id3Peeker = new Id3Peeker();
+    skippingTrackOutput = new DummyTrackOutput();
   }
 
   // Extractor implementation.
@@ -157,6 +180,7 @@ public final class Mp3Extractor implements Extractor {
   public void init(ExtractorOutput output) {
     extractorOutput = output;
     trackOutput = extractorOutput.track(0, C.TRACK_TYPE_AUDIO);
+    currentTrackOutput = trackOutput;
     extractorOutput.endTracks();
   }
 
@@ -166,6 +190,11 @@ public final class Mp3Extractor implements Extractor {
     basisTimeUs = C.TIME_UNSET;
     samplesRead = 0;
     sampleBytesRemaining = 0;
+    seekTimeUs = timeUs;
+    isSeekInProgress =
+        seeker instanceof IndexSeeker && !((IndexSeeker) seeker).isTimeUsInIndex(timeUs);
+    // Discard the frames read on the way to a seek position that is beyond the indexed frames.
+    currentTrackOutput = isSeekInProgress ? skippingTrackOutput : trackOutput;
   }
 
   @Override
@@ -191,6 +220,8 @@ public final class Mp3Extractor implements Extractor {
 
       if (disableSeeking) {
         seeker = new UnseekableSeeker();
+      } else if ((flags & FLAG_ENABLE_INDEX_SEEKING) != 0) {
+        seeker = getIndexSeeker(input, metadataSeeker != null ? metadataSeeker : seekFrameSeeker);
       } else {
         if (metadataSeeker != null) {
           seeker = metadataSeeker;
@@ -266,8 +297,20 @@ public final class Mp3Extractor implements Extractor {
         }
       }
       sampleBytesRemaining = synchronizedHeader.frameSize;
+      if (seeker instanceof IndexSeeker) {
+        IndexSeeker indexSeeker = (IndexSeeker) seeker;
+        // Index the next frame rather than the current one, so that output resumes no later than
+        // the seek position when a seek is in progress.
+        indexSeeker.maybeAddSeekPoint(
+            computeTimeUs(samplesRead + synchronizedHeader.samplesPerFrame),
+            extractorInput.getPosition() + synchronizedHeader.frameSize);
+        if (isSeekInProgress && indexSeeker.isTimeUsInIndex(seekTimeUs)) {
+          isSeekInProgress = false;
+          currentTrackOutput = trackOutput;
+        }
+      }
     }
-    int bytesAppended = trackOutput.sampleData(extractorInput, sampleBytesRemaining, true);
+    int bytesAppended = currentTrackOutput.sampleData(extractorInput, sampleBytesRemaining, true);
     if (bytesAppended == C.RESULT_END_OF_INPUT) {
       return RESULT_END_OF_INPUT;
     }
@@ -275,14 +318,21 @@ public final class Mp3Extractor implements Extractor {
     if (sampleBytesRemaining > 0) {
       return RESULT_CONTINUE;
     }
-    long timeUs = basisTimeUs + (samplesRead * C.MICROS_PER_SECOND / synchronizedHeader.sampleRate);
-    trackOutput.sampleMetadata(timeUs, C.BUFFER_FLAG_KEY_FRAME, synchronizedHeader.frameSize, 0,
-        null);
+    currentTrackOutput.sampleMetadata(
+        computeTimeUs(samplesRead),
+        C.BUFFER_FLAG_KEY_FRAME,
+        synchronizedHeader.frameSize,
+        /* offset= */ 0,
+        /* encryptionData= */ null);
     samplesRead += synchronizedHeader.samplesPerFrame;
     sampleBytesRemaining = 0;
     return RESULT_CONTINUE;
   }
 
+  private long computeTimeUs(long samplesRead) {
+    return basisTimeUs + samplesRead * C.MICROS_PER_SECOND / synchronizedHeader.sampleRate;
+  }
+
   private boolean synchronize(ExtractorInput input, boolean sniffing)
       throws IOException, InterruptedException {
     int validFrameCount = 0;
@@ -424,6 +474,28 @@ public final class Mp3Extractor implements Extractor {
     return seeker;
   }
 
+  /**
+   * Returns an {@link IndexSeeker} whose index starts at the current position of the input.
+   *
+   * @param input The {@link ExtractorInput} from which to read.
+   * @param streamSeeker A {@link Seeker} based on seeking metadata in the stream, or {@code null}
+   *     if there is none. Used to determine the duration and the end of the audio data.
+   */
+  private Seeker getIndexSeeker(ExtractorInput input, @Nullable Seeker streamSeeker)
+      throws IOException, InterruptedException {
+    long durationUs;
+    long dataEndPosition;
+    if (streamSeeker != null) {
+      durationUs = streamSeeker.getDurationUs();
+      dataEndPosition = streamSeeker.getDataEndPosition();
+    } else {
+      durationUs = getConstantBitrateSeeker(input).getDurationUs();
+      dataEndPosition = C.POSITION_UNSET;
+    }
+    return new IndexSeeker(
+        durationUs, /* dataStartPosition= */ input.getPosition(), dataEndPosition);
+  }
+
   /**
    * Peeks the next frame and returns a {@link ConstantBitrateSeeker} based on its bitrate.
    */
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.metadata;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.metadata.emsg.EventMessageDecoder;
+import com.google.android.exoplayer2.metadata.icy.IcyDecoder;
+import com.google.android.exoplayer2.metadata.id3.Id3Decoder;
+import com.google.android.exoplayer2.metadata.scte35.SpliceInfoDecoder;
+import com.google.android.exoplayer2.util.MimeTypes;
+
+/**
+ * Default {@link MetadataDecoderFactory} implementation.
+ *
+ * <p>The formats supported by this factory are:
+ *
+ * <ul>
+ *   <li>ID3 ({@link Id3Decoder})
+ *   <li>EMSG ({@link EventMessageDecoder})
+ *   <li>SCTE-35 ({@link SpliceInfoDecoder})
+ *   <li>ICY ({@link IcyDecoder})
+ * </ul>
+ *
+ * <p>An {@link Id3Decoder.FramePredicate} can be set to decode only the ID3 frames that the app
+ * uses. Other frames are skipped without allocating, which matters for streams that carry timed
+ * ID3 metadata in every segment.
+ */
+public final class DefaultMetadataDecoderFactory implements MetadataDecoderFactory {
+
+  @Nullable private final Id3Decoder.FramePredicate id3FramePredicate;
+
+  /** Creates a factory whose ID3 decoders decode all frames. */
+  public DefaultMetadataDecoderFactory() {
+    this(/* id3FramePredicate= */ null);
+  }
+
+  /**
+   * @param id3FramePredicate Determines which ID3 frames are decoded. May be null to decode all
+   *     frames. {@link Id3Decoder#createFramePredicate(String...)} creates a predicate from frame
+   *     IDs.
+   */
+  public DefaultMetadataDecoderFactory(@Nullable Id3Decoder.FramePredicate id3FramePredicate) {
+    this.id3FramePredicate = id3FramePredicate;
+  }
+
+  @Override
+  public boolean supportsFormat(Format format) {
+    @Nullable String mimeType = format.sampleMimeType;
+    return MimeTypes.APPLICATION_ID3.equals(mimeType)
+        || MimeTypes.APPLICATION_EMSG.equals(mimeType)
+        || MimeTypes.APPLICATION_SCTE35.equals(mimeType)
+        || MimeTypes.APPLICATION_ICY.equals(mimeType);
+  }
+
+  @Override
+  public MetadataDecoder createDecoder(Format format) {
+    @Nullable String mimeType = format.sampleMimeType;
+    if (mimeType != null) {
+      switch (mimeType) {
+        case MimeTypes.APPLICATION_ID3:
+          return new Id3Decoder(id3FramePredicate);
+        case MimeTypes.APPLICATION_EMSG:
+          return new EventMessageDecoder();
+        case MimeTypes.APPLICATION_SCTE35:
+          return new SpliceInfoDecoder();
+        case MimeTypes.APPLICATION_ICY:
+          return new IcyDecoder();
+        default:
+          break;
+      }
+    }
+    throw new IllegalArgumentException(
+        "Attempted to create decoder for unsupported MIME type: " + mimeType);
+  }
+}
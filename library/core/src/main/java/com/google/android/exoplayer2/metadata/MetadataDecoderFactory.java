@@ -15,13 +15,7 @@
  */
 package com.google.android.exoplayer2.metadata;
 
-import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.Format;
-import com.google.android.exoplayer2.metadata.emsg.EventMessageDecoder;
-import com.google.android.exoplayer2.metadata.icy.IcyDecoder;
-import com.google.android.exoplayer2.metadata.id3.Id3Decoder;
-import com.google.android.exoplayer2.metadata.scte35.SpliceInfoDecoder;
-import com.google.android.exoplayer2.util.MimeTypes;
 
 /**
  * A factory for {@link MetadataDecoder} instances.
@@ -46,49 +40,6 @@ public interface MetadataDecoderFactory {
    */
   MetadataDecoder createDecoder(Format format);
 
-  /**
-   * Default {@link MetadataDecoder} implementation.
-   *
-   * <p>The formats supported by this factory are:
-   *
-   * <ul>
-   *   <li>ID3 ({@link Id3Decoder})
-   *   <li>EMSG ({@link EventMessageDecoder})
-   *   <li>SCTE-35 ({@link SpliceInfoDecoder})
-   *   <li>ICY ({@link IcyDecoder})
-   * </ul>
-   */
-  MetadataDecoderFactory DEFAULT =
-      new MetadataDecoderFactory() {
-
-        @Override
-        public boolean supportsFormat(Format format) {
-          @Nullable String mimeType = format.sampleMimeType;
-          return MimeTypes.APPLICATION_ID3.equals(mimeType)
-              || MimeTypes.APPLICATION_EMSG.equals(mimeType)
-              || MimeTypes.APPLICATION_SCTE35.equals(mimeType)
-              || MimeTypes.APPLICATION_ICY.equals(mimeType);
-        }
-
-        @Override
-        public MetadataDecoder createDecoder(Format format) {
-          @Nullable String mimeType = format.sampleMimeType;
-          if (mimeType != null) {
-            switch (mimeType) {
-              case MimeTypes.APPLICATION_ID3:
-                return new Id3Decoder();
-              case MimeTypes.APPLICATION_EMSG:
-                return new EventMessageDecoder();
-              case MimeTypes.APPLICATION_SCTE35:
-                return new SpliceInfoDecoder();
-              case MimeTypes.APPLICATION_ICY:
-                return new IcyDecoder();
-              default:
-                break;
-            }
-          }
-          throw new IllegalArgumentException(
-              "Attempted to create decoder for unsupported MIME type: " + mimeType);
-        }
-      };
+  /** A {@link DefaultMetadataDecoderFactory} whose ID3 decoders decode all frames. */
+  MetadataDecoderFactory DEFAULT = new DefaultMetadataDecoderFactory();
 }
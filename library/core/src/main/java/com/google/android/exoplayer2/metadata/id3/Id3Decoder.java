@@ -60,6 +60,43 @@ public final class Id3Decoder implements MetadataDecoder {
   public static final FramePredicate NO_FRAMES_PREDICATE =
       (majorVersion, id0, id1, id2, id3) -> false;
 
+  /**
+   * Returns a predicate that indicates only frames with the specified IDs should be decoded. Other
+   * frames are skipped without being copied out of the tag. Four character IDs match frames of
+   * ID3v2.3 and ID3v2.4 tags, and three character IDs match frames of ID3v2.2 tags.
+   *
+   * @param frameIds The IDs of the frames to decode, for example {@code "TIT2"} or {@code "PRIV"}.
+   * @return The predicate.
+   */
+  public static FramePredicate createFramePredicate(String... frameIds) {
+    int[] v2FrameIds = new int[frameIds.length];
+    int[] v3FrameIds = new int[frameIds.length];
+    int v2FrameIdCount = 0;
+    int v3FrameIdCount = 0;
+    for (String frameId : frameIds) {
+      int length = frameId.length();
+      Assertions.checkArgument(length == 3 || length == 4);
+      int packedFrameId = 0;
+      for (int i = 0; i < length; i++) {
+        packedFrameId = (packedFrameId << 8) | (frameId.charAt(i) & 0xFF);
+      }
+      if (length == 3) {
+        v2FrameIds[v2FrameIdCount++] = packedFrameId;
+      } else {
+        v3FrameIds[v3FrameIdCount++] = packedFrameId;
+      }
+    }
+    int[] packedV2FrameIds = Arrays.copyOf(v2FrameIds, v2FrameIdCount);
+    int[] packedV3FrameIds = Arrays.copyOf(v3FrameIds, v3FrameIdCount);
+    return (majorVersion, id0, id1, id2, id3) -> {
+      int packedFrameId = (id0 << 16) | (id1 << 8) | id2;
+      if (majorVersion == 2) {
+        return contains(packedV2FrameIds, packedFrameId);
+      }
+      return contains(packedV3FrameIds, (packedFrameId << 8) | id3);
+    };
+  }
+
   private static final String TAG = "Id3Decoder";
 
   /** The first three bytes of a well formed ID3 tag header. */
@@ -417,14 +454,15 @@ public final class Id3Decoder implements MetadataDecoder {
     int encoding = id3Data.readUnsignedByte();
     String charset = getCharsetName(encoding);
 
-    byte[] data = new byte[frameSize - 1];
-    id3Data.readBytes(data, 0, frameSize - 1);
+    byte[] data = id3Data.data;
+    int dataStart = id3Data.getPosition();
+    int dataEnd = dataStart + frameSize - 1;
 
-    int descriptionEndIndex = indexOfEos(data, 0, encoding);
-    String description = new String(data, 0, descriptionEndIndex, charset);
+    int descriptionEndIndex = indexOfEos(data, dataStart, dataStart, dataEnd, encoding);
+    String description = new String(data, dataStart, descriptionEndIndex - dataStart, charset);
 
     int valueStartIndex = descriptionEndIndex + delimiterLength(encoding);
-    int valueEndIndex = indexOfEos(data, valueStartIndex, encoding);
+    int valueEndIndex = indexOfEos(data, dataStart, valueStartIndex, dataEnd, encoding);
     String value = decodeStringIfValid(data, valueStartIndex, valueEndIndex, charset);
 
     return new TextInformationFrame("TXXX", description, value);
@@ -441,11 +479,12 @@ public final class Id3Decoder implements MetadataDecoder {
     int encoding = id3Data.readUnsignedByte();
     String charset = getCharsetName(encoding);
 
-    byte[] data = new byte[frameSize - 1];
-    id3Data.readBytes(data, 0, frameSize - 1);
+    byte[] data = id3Data.data;
+    int dataStart = id3Data.getPosition();
+    int dataEnd = dataStart + frameSize - 1;
 
-    int valueEndIndex = indexOfEos(data, 0, encoding);
-    String value = new String(data, 0, valueEndIndex, charset);
+    int valueEndIndex = indexOfEos(data, dataStart, dataStart, dataEnd, encoding);
+    String value = new String(data, dataStart, valueEndIndex - dataStart, charset);
 
     return new TextInformationFrame(id, null, value);
   }
@@ -461,14 +500,15 @@ public final class Id3Decoder implements MetadataDecoder {
     int encoding = id3Data.readUnsignedByte();
     String charset = getCharsetName(encoding);
 
-    byte[] data = new byte[frameSize - 1];
-    id3Data.readBytes(data, 0, frameSize - 1);
+    byte[] data = id3Data.data;
+    int dataStart = id3Data.getPosition();
+    int dataEnd = dataStart + frameSize - 1;
 
-    int descriptionEndIndex = indexOfEos(data, 0, encoding);
-    String description = new String(data, 0, descriptionEndIndex, charset);
+    int descriptionEndIndex = indexOfEos(data, dataStart, dataStart, dataEnd, encoding);
+    String description = new String(data, dataStart, descriptionEndIndex - dataStart, charset);
 
     int urlStartIndex = descriptionEndIndex + delimiterLength(encoding);
-    int urlEndIndex = indexOfZeroByte(data, urlStartIndex);
+    int urlEndIndex = indexOfZeroByte(data, urlStartIndex, dataEnd);
     String url = decodeStringIfValid(data, urlStartIndex, urlEndIndex, "ISO-8859-1");
 
     return new UrlLinkFrame("WXXX", description, url);
@@ -476,25 +516,27 @@ public final class Id3Decoder implements MetadataDecoder {
 
   private static UrlLinkFrame decodeUrlLinkFrame(ParsableByteArray id3Data, int frameSize,
       String id) throws UnsupportedEncodingException {
-    byte[] data = new byte[frameSize];
-    id3Data.readBytes(data, 0, frameSize);
+    byte[] data = id3Data.data;
+    int dataStart = id3Data.getPosition();
+    int dataEnd = dataStart + frameSize;
 
-    int urlEndIndex = indexOfZeroByte(data, 0);
-    String url = new String(data, 0, urlEndIndex, "ISO-8859-1");
+    int urlEndIndex = indexOfZeroByte(data, dataStart, dataEnd);
+    String url = new String(data, dataStart, urlEndIndex - dataStart, "ISO-8859-1");
 
     return new UrlLinkFrame(id, null, url);
   }
 
   private static PrivFrame decodePrivFrame(ParsableByteArray id3Data, int frameSize)
       throws UnsupportedEncodingException {
-    byte[] data = new byte[frameSize];
-    id3Data.readBytes(data, 0, frameSize);
+    byte[] data = id3Data.data;
+    int dataStart = id3Data.getPosition();
+    int dataEnd = dataStart + frameSize;
 
-    int ownerEndIndex = indexOfZeroByte(data, 0);
-    String owner = new String(data, 0, ownerEndIndex, "ISO-8859-1");
+    int ownerEndIndex = indexOfZeroByte(data, dataStart, dataEnd);
+    String owner = new String(data, dataStart, ownerEndIndex - dataStart, "ISO-8859-1");
 
     int privateDataStartIndex = ownerEndIndex + 1;
-    byte[] privateData = copyOfRangeIfValid(data, privateDataStartIndex, data.length);
+    byte[] privateData = copyOfRangeIfValid(data, privateDataStartIndex, dataEnd);
 
     return new PrivFrame(owner, privateData);
   }
@@ -504,23 +546,25 @@ public final class Id3Decoder implements MetadataDecoder {
     int encoding = id3Data.readUnsignedByte();
     String charset = getCharsetName(encoding);
 
-    byte[] data = new byte[frameSize - 1];
-    id3Data.readBytes(data, 0, frameSize - 1);
+    byte[] data = id3Data.data;
+    int dataStart = id3Data.getPosition();
+    int dataEnd = dataStart + frameSize - 1;
 
-    int mimeTypeEndIndex = indexOfZeroByte(data, 0);
-    String mimeType = new String(data, 0, mimeTypeEndIndex, "ISO-8859-1");
+    int mimeTypeEndIndex = indexOfZeroByte(data, dataStart, dataEnd);
+    String mimeType = new String(data, dataStart, mimeTypeEndIndex - dataStart, "ISO-8859-1");
 
     int filenameStartIndex = mimeTypeEndIndex + 1;
-    int filenameEndIndex = indexOfEos(data, filenameStartIndex, encoding);
+    int filenameEndIndex = indexOfEos(data, dataStart, filenameStartIndex, dataEnd, encoding);
     String filename = decodeStringIfValid(data, filenameStartIndex, filenameEndIndex, charset);
 
     int descriptionStartIndex = filenameEndIndex + delimiterLength(encoding);
-    int descriptionEndIndex = indexOfEos(data, descriptionStartIndex, encoding);
+    int descriptionEndIndex =
+        indexOfEos(data, dataStart, descriptionStartIndex, dataEnd, encoding);
     String description =
         decodeStringIfValid(data, descriptionStartIndex, descriptionEndIndex, charset);
 
     int objectDataStartIndex = descriptionEndIndex + delimiterLength(encoding);
-    byte[] objectData = copyOfRangeIfValid(data, objectDataStartIndex, data.length);
+    byte[] objectData = copyOfRangeIfValid(data, objectDataStartIndex, dataEnd);
 
     return new GeobFrame(mimeType, filename, description, objectData);
   }
@@ -530,20 +574,23 @@ public final class Id3Decoder implements MetadataDecoder {
     int encoding = id3Data.readUnsignedByte();
     String charset = getCharsetName(encoding);
 
-    byte[] data = new byte[frameSize - 1];
-    id3Data.readBytes(data, 0, frameSize - 1);
+    byte[] data = id3Data.data;
+    int dataStart = id3Data.getPosition();
+    int dataEnd = dataStart + frameSize - 1;
 
     String mimeType;
     int mimeTypeEndIndex;
     if (majorVersion == 2) {
-      mimeTypeEndIndex = 2;
-      mimeType = "image/" + Util.toLowerInvariant(new String(data, 0, 3, "ISO-8859-1"));
+      mimeTypeEndIndex = dataStart + 2;
+      mimeType = "image/" + Util.toLowerInvariant(new String(data, dataStart, 3, "ISO-8859-1"));
       if ("image/jpg".equals(mimeType)) {
         mimeType = "image/jpeg";
       }
     } else {
-      mimeTypeEndIndex = indexOfZeroByte(data, 0);
-      mimeType = Util.toLowerInvariant(new String(data, 0, mimeTypeEndIndex, "ISO-8859-1"));
+      mimeTypeEndIndex = indexOfZeroByte(data, dataStart, dataEnd);
+      mimeType =
+          Util.toLowerInvariant(
+              new String(data, dataStart, mimeTypeEndIndex - dataStart, "ISO-8859-1"));
       if (mimeType.indexOf('/') == -1) {
         mimeType = "image/" + mimeType;
       }
@@ -552,12 +599,13 @@ public final class Id3Decoder implements MetadataDecoder {
     int pictureType = data[mimeTypeEndIndex + 1] & 0xFF;
 
     int descriptionStartIndex = mimeTypeEndIndex + 2;
-    int descriptionEndIndex = indexOfEos(data, descriptionStartIndex, encoding);
+    int descriptionEndIndex =
+        indexOfEos(data, dataStart, descriptionStartIndex, dataEnd, encoding);
     String description = new String(data, descriptionStartIndex,
         descriptionEndIndex - descriptionStartIndex, charset);
 
     int pictureDataStartIndex = descriptionEndIndex + delimiterLength(encoding);
-    byte[] pictureData = copyOfRangeIfValid(data, pictureDataStartIndex, data.length);
+    byte[] pictureData = copyOfRangeIfValid(data, pictureDataStartIndex, dataEnd);
 
     return new ApicFrame(mimeType, description, pictureType, pictureData);
   }
@@ -573,18 +621,18 @@ public final class Id3Decoder implements MetadataDecoder {
     int encoding = id3Data.readUnsignedByte();
     String charset = getCharsetName(encoding);
 
-    byte[] data = new byte[3];
-    id3Data.readBytes(data, 0, 3);
-    String language = new String(data, 0, 3);
+    byte[] data = id3Data.data;
+    int languageStart = id3Data.getPosition();
+    String language = new String(data, languageStart, 3);
 
-    data = new byte[frameSize - 4];
-    id3Data.readBytes(data, 0, frameSize - 4);
+    int dataStart = languageStart + 3;
+    int dataEnd = dataStart + frameSize - 4;
 
-    int descriptionEndIndex = indexOfEos(data, 0, encoding);
-    String description = new String(data, 0, descriptionEndIndex, charset);
+    int descriptionEndIndex = indexOfEos(data, dataStart, dataStart, dataEnd, encoding);
+    String description = new String(data, dataStart, descriptionEndIndex - dataStart, charset);
 
     int textStartIndex = descriptionEndIndex + delimiterLength(encoding);
-    int textEndIndex = indexOfEos(data, textStartIndex, encoding);
+    int textEndIndex = indexOfEos(data, dataStart, textStartIndex, dataEnd, encoding);
     String text = decodeStringIfValid(data, textStartIndex, textEndIndex, charset);
 
     return new CommentFrame(language, description, text);
@@ -599,7 +647,7 @@ public final class Id3Decoder implements MetadataDecoder {
       @Nullable FramePredicate framePredicate)
       throws UnsupportedEncodingException {
     int framePosition = id3Data.getPosition();
-    int chapterIdEndIndex = indexOfZeroByte(id3Data.data, framePosition);
+    int chapterIdEndIndex = indexOfZeroByte(id3Data.data, framePosition, id3Data.limit());
     String chapterId = new String(id3Data.data, framePosition, chapterIdEndIndex - framePosition,
         "ISO-8859-1");
     id3Data.setPosition(chapterIdEndIndex + 1);
@@ -639,7 +687,7 @@ public final class Id3Decoder implements MetadataDecoder {
       @Nullable FramePredicate framePredicate)
       throws UnsupportedEncodingException {
     int framePosition = id3Data.getPosition();
-    int elementIdEndIndex = indexOfZeroByte(id3Data.data, framePosition);
+    int elementIdEndIndex = indexOfZeroByte(id3Data.data, framePosition, id3Data.limit());
     String elementId = new String(id3Data.data, framePosition, elementIdEndIndex - framePosition,
         "ISO-8859-1");
     id3Data.setPosition(elementIdEndIndex + 1);
@@ -652,7 +700,7 @@ public final class Id3Decoder implements MetadataDecoder {
     String[] children = new String[childCount];
     for (int i = 0; i < childCount; i++) {
       int startIndex = id3Data.getPosition();
-      int endIndex = indexOfZeroByte(id3Data.data, startIndex);
+      int endIndex = indexOfZeroByte(id3Data.data, startIndex, id3Data.limit());
       children[i] = new String(id3Data.data, startIndex, endIndex - startIndex, "ISO-8859-1");
       id3Data.setPosition(endIndex + 1);
     }
@@ -757,32 +805,54 @@ public final class Id3Decoder implements MetadataDecoder {
         : String.format(Locale.US, "%c%c%c%c", frameId0, frameId1, frameId2, frameId3);
   }
 
-  private static int indexOfEos(byte[] data, int fromIndex, int encoding) {
-    int terminationPos = indexOfZeroByte(data, fromIndex);
+  /**
+   * Returns the index of the end of the string starting at {@code fromIndex}, or {@code limit} if
+   * the string isn't terminated.
+   *
+   * @param data The array containing the string.
+   * @param dataStart The index in {@code data} at which the frame data containing the string
+   *     starts. Two byte terminators are only matched at even offsets from this index.
+   * @param fromIndex The index at which the string starts.
+   * @param limit The index at which the frame data ends (exclusive).
+   * @param encoding The ID3 text encoding of the string.
+   * @return The index of the end of the string.
+   */
+  private static int indexOfEos(byte[] data, int dataStart, int fromIndex, int limit,
+      int encoding) {
+    int terminationPos = indexOfZeroByte(data, fromIndex, limit);
 
     // For single byte encoding charsets, we're done.
     if (encoding == ID3_TEXT_ENCODING_ISO_8859_1 || encoding == ID3_TEXT_ENCODING_UTF_8) {
       return terminationPos;
     }
 
-    // Otherwise ensure an even index and look for a second zero byte.
-    while (terminationPos < data.length - 1) {
-      if (terminationPos % 2 == 0 && data[terminationPos + 1] == (byte) 0) {
+    // Otherwise ensure an even offset and look for a second zero byte.
+    while (terminationPos < limit - 1) {
+      if ((terminationPos - dataStart) % 2 == 0 && data[terminationPos + 1] == (byte) 0) {
         return terminationPos;
       }
-      terminationPos = indexOfZeroByte(data, terminationPos + 1);
+      terminationPos = indexOfZeroByte(data, terminationPos + 1, limit);
     }
 
-    return data.length;
+    return limit;
   }
 
-  private static int indexOfZeroByte(byte[] data, int fromIndex) {
-    for (int i = fromIndex; i < data.length; i++) {
+  private static int indexOfZeroByte(byte[] data, int fromIndex, int limit) {
+    for (int i = fromIndex; i < limit; i++) {
       if (data[i] == (byte) 0) {
         return i;
       }
     }
-    return data.length;
+    return limit;
+  }
+
+  private static boolean contains(int[] values, int value) {
+    for (int element : values) {
+      if (element == value) {
+        return true;
+      }
+    }
+    return false;
   }
 
   private static int delimiterLength(int encodingByte) {
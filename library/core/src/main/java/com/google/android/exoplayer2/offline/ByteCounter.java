@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.offline;
+
+import com.google.android.exoplayer2.upstream.cache.CacheUtil;
+
+/** A {@link CacheUtil.ProgressListener} that counts the bytes that are newly cached. */
+/* package */ final class ByteCounter implements CacheUtil.ProgressListener {
+
+  /** The number of bytes that have been newly cached. */
+  public long bytesLoaded;
+
+  @Override
+  public void onProgress(long requestLength, long bytesCached, long newBytesCached) {
+    bytesLoaded += newBytesCached;
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.offline;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.util.Log;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Caches the start of media that's likely to be played, so that playback starts without waiting
+ * for data to load.
+ *
+ * <p>For each {@link DownloadRequest}, the manifest and the start of the selected streams are
+ * cached using {@link Downloader#prefetch(long, long)}. Stream keys for the streams that are likely
+ * to be selected during playback can be obtained using {@link DownloadHelper}. Requests are
+ * prefetched one at a time, in order, until the byte budget has been used.
+ *
+ * <p>Prefetching runs with {@link C#PRIORITY_PREFETCH}. It backs off during playback if the player
+ * and the {@link DownloaderConstructorHelper} used to create the {@link DownloaderFactory} share a
+ * {@link com.google.android.exoplayer2.util.PriorityTaskManager}.
+ */
+public final class CachePrefetcher {
+
+  /** Listener for prefetch events. */
+  public interface Listener {
+
+    /**
+     * Called on the prefetch thread when prefetching finishes, either because all requests have
+     * been prefetched, because the byte budget has been used, or because it was canceled.
+     *
+     * @param cachePrefetcher The reporting instance.
+     * @param bytesLoaded The number of bytes that were loaded.
+     */
+    void onPrefetchFinished(CachePrefetcher cachePrefetcher, long bytesLoaded);
+  }
+
+  /** The default duration of the start of the media to prefetch, in microseconds. */
+  public static final long DEFAULT_DURATION_US = 5 * C.MICROS_PER_SECOND;
+  /** The default maximum number of bytes to load for each request. */
+  public static final long DEFAULT_MAX_BYTES_PER_REQUEST = 4 * 1024 * 1024;
+
+  private static final String TAG = "CachePrefetcher";
+
+  private final DownloaderFactory downloaderFactory;
+  private final long maxBytes;
+  private final long durationUs;
+  private final long maxBytesPerRequest;
+
+  @Nullable private Listener listener;
+  @Nullable private PrefetchTask activeTask;
+
+  /**
+   * Creates an instance that prefetches {@link #DEFAULT_DURATION_US} of media, and at most {@link
+   * #DEFAULT_MAX_BYTES_PER_REQUEST} bytes for each request.
+   *
+   * @param downloaderFactory A factory for creating {@link Downloader}s that prefetch requests.
+   * @param maxBytes The maximum number of bytes to load for each call to {@link #prefetch(List)}.
+   */
+  public CachePrefetcher(DownloaderFactory downloaderFactory, long maxBytes) {
+    this(downloaderFactory, maxBytes, DEFAULT_DURATION_US, DEFAULT_MAX_BYTES_PER_REQUEST);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param downloaderFactory A factory for creating {@link Downloader}s that prefetch requests.
+   * @param maxBytes The maximum number of bytes to load for each call to {@link #prefetch(List)}.
+   * @param durationUs The duration of the start of the media to prefetch, in microseconds.
+   * @param maxBytesPerRequest The maximum number of bytes to load for each request.
+   */
+  public CachePrefetcher(
+      DownloaderFactory downloaderFactory,
+      long maxBytes,
+      long durationUs,
+      long maxBytesPerRequest) {
+    this.downloaderFactory = downloaderFactory;
+    this.maxBytes = maxBytes;
+    this.durationUs = durationUs;
+    this.maxBytesPerRequest = maxBytesPerRequest;
+  }
+
+  /**
+   * Sets a listener to receive prefetch events.
+   *
+   * @param listener The listener, or null to clear the current listener.
+   */
+  public synchronized void setListener(@Nullable Listener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Starts prefetching the given requests on a background thread, canceling any ongoing prefetch.
+   *
+   * @param requests The requests to prefetch, in order of priority.
+   */
+  public synchronized void prefetch(List<DownloadRequest> requests) {
+    cancel();
+    PrefetchTask task = new PrefetchTask(new ArrayList<>(requests));
+    activeTask = task;
+    task.start();
+  }
+
+  /** Cancels any ongoing prefetch. Data that has already been cached remains in the cache. */
+  public synchronized void cancel() {
+    if (activeTask != null) {
+      activeTask.cancel();
+      activeTask = null;
+    }
+  }
+
+  /** Returns whether a prefetch is ongoing. */
+  public synchronized boolean isPrefetching() {
+    return activeTask != null && activeTask.isAlive();
+  }
+
+  private void onPrefetchFinished(PrefetchTask task, long bytesLoaded) {
+    @Nullable Listener listener;
+    synchronized (this) {
+      if (task == activeTask) {
+        activeTask = null;
+      }
+      listener = this.listener;
+    }
+    // Call the listener without holding the lock, so that it can't deadlock with a thread that it
+    // waits for, if that thread calls this instance.
+    if (listener != null) {
+      listener.onPrefetchFinished(this, bytesLoaded);
+    }
+  }
+
+  private final class PrefetchTask extends Thread {
+
+    private final List<DownloadRequest> requests;
+
+    @Nullable private volatile Downloader downloader;
+    private volatile boolean isCanceled;
+
+    public PrefetchTask(List<DownloadRequest> requests) {
+      super("CachePrefetcher");
+      this.requests = requests;
+    }
+
+    public void cancel() {
+      if (!isCanceled) {
+        isCanceled = true;
+        @Nullable Downloader downloader = this.downloader;
+        if (downloader != null) {
+          downloader.cancel();
+        }
+        interrupt();
+      }
+    }
+
+    // Methods running on prefetch thread.
+
+    @Override
+    public void run() {
+      long bytesLoaded = 0;
+      for (int i = 0; i < requests.size() && !isCanceled && bytesLoaded < maxBytes; i++) {
+        DownloadRequest request = requests.get(i);
+        Downloader downloader = downloaderFactory.createDownloader(request);
+        this.downloader = downloader;
+        if (isCanceled) {
+          // The downloader may have been created after the task was canceled.
+          break;
+        }
+        try {
+          bytesLoaded +=
+              downloader.prefetch(durationUs, Math.min(maxBytesPerRequest, maxBytes - bytesLoaded));
+        } catch (InterruptedException e) {
+          break;
+        } catch (IOException e) {
+          Log.w(TAG, "Failed to prefetch: " + request.uri, e);
+        }
+      }
+      this.downloader = null;
+      onPrefetchFinished(this, bytesLoaded);
+    }
+  }
+}
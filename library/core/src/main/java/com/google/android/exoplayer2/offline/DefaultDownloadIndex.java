@@ -23,6 +23,7 @@ import android.database.sqlite.SQLiteException;
 import android.net.Uri;
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
+import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.database.DatabaseIOException;
 import com.google.android.exoplayer2.database.DatabaseProvider;
 import com.google.android.exoplayer2.database.VersionTable;
@@ -30,7 +31,9 @@ import com.google.android.exoplayer2.offline.Download.FailureReason;
 import com.google.android.exoplayer2.offline.Download.State;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Util;
+import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /** A {@link DownloadIndex} that uses SQLite to persist {@link Download Downloads}. */
@@ -38,7 +41,7 @@ public final class DefaultDownloadIndex implements WritableDownloadIndex {
 
   private static final String TABLE_PREFIX = DatabaseProvider.TABLE_PREFIX + "Downloads";
 
-  @VisibleForTesting /* package */ static final int TABLE_VERSION = 2;
+  @VisibleForTesting /* package */ static final int TABLE_VERSION = 4;
 
   private static final String COLUMN_ID = "id";
   private static final String COLUMN_TYPE = "title";
@@ -54,6 +57,8 @@ public final class DefaultDownloadIndex implements WritableDownloadIndex {
   private static final String COLUMN_FAILURE_REASON = "failure_reason";
   private static final String COLUMN_PERCENT_DOWNLOADED = "percent_downloaded";
   private static final String COLUMN_BYTES_DOWNLOADED = "bytes_downloaded";
+  private static final String COLUMN_PRIORITY = "priority";
+  private static final String COLUMN_DEADLINE_MS = "deadline_ms";
 
   private static final int COLUMN_INDEX_ID = 0;
   private static final int COLUMN_INDEX_TYPE = 1;
@@ -69,6 +74,8 @@ public final class DefaultDownloadIndex implements WritableDownloadIndex {
   private static final int COLUMN_INDEX_FAILURE_REASON = 11;
   private static final int COLUMN_INDEX_PERCENT_DOWNLOADED = 12;
   private static final int COLUMN_INDEX_BYTES_DOWNLOADED = 13;
+  private static final int COLUMN_INDEX_PRIORITY = 14;
+  private static final int COLUMN_INDEX_DEADLINE_MS = 15;
 
   private static final String WHERE_ID_EQUALS = COLUMN_ID + " = ?";
   private static final String WHERE_STATE_IS_DOWNLOADING =
@@ -92,8 +99,17 @@ public final class DefaultDownloadIndex implements WritableDownloadIndex {
         COLUMN_FAILURE_REASON,
         COLUMN_PERCENT_DOWNLOADED,
         COLUMN_BYTES_DOWNLOADED,
+        COLUMN_PRIORITY,
+        COLUMN_DEADLINE_MS,
       };
 
+  /**
+   * The columns of version 2 and 3 tables, which don't have {@link #COLUMN_PRIORITY} and {@link
+   * #COLUMN_DEADLINE_MS}.
+   */
+  private static final String[] COLUMNS_OF_OLD_VERSIONS =
+      Arrays.copyOf(COLUMNS, COLUMN_INDEX_PRIORITY);
+
   private static final String TABLE_SCHEMA =
       "("
           + COLUMN_ID
@@ -103,7 +119,7 @@ public final class DefaultDownloadIndex implements WritableDownloadIndex {
           + COLUMN_URI
           + " TEXT NOT NULL,"
           + COLUMN_STREAM_KEYS
-          + " TEXT NOT NULL,"
+          + " BLOB NOT NULL,"
           + COLUMN_CUSTOM_CACHE_KEY
           + " TEXT,"
           + COLUMN_DATA
@@ -123,9 +139,17 @@ public final class DefaultDownloadIndex implements WritableDownloadIndex {
           + COLUMN_PERCENT_DOWNLOADED
           + " REAL NOT NULL,"
           + COLUMN_BYTES_DOWNLOADED
+          + " INTEGER NOT NULL,"
+          + COLUMN_PRIORITY
+          + " INTEGER NOT NULL,"
+          + COLUMN_DEADLINE_MS
           + " INTEGER NOT NULL)";
 
   private static final String TRUE = "1";
+  private static final String INDEX_SUFFIX = "_state_index";
+
+  /** The oldest table version from which downloads are migrated when the table is recreated. */
+  private static final int MIN_MIGRATABLE_TABLE_VERSION = 2;
 
   private final String name;
   private final String tableName;
@@ -189,29 +213,37 @@ public final class DefaultDownloadIndex implements WritableDownloadIndex {
   @Override
   public void putDownload(Download download) throws DatabaseIOException {
     ensureInitialized();
-    ContentValues values = new ContentValues();
-    values.put(COLUMN_ID, download.request.id);
-    values.put(COLUMN_TYPE, download.request.type);
-    values.put(COLUMN_URI, download.request.uri.toString());
-    values.put(COLUMN_STREAM_KEYS, encodeStreamKeys(download.request.streamKeys));
-    values.put(COLUMN_CUSTOM_CACHE_KEY, download.request.customCacheKey);
-    values.put(COLUMN_DATA, download.request.data);
-    values.put(COLUMN_STATE, download.state);
-    values.put(COLUMN_START_TIME_MS, download.startTimeMs);
-    values.put(COLUMN_UPDATE_TIME_MS, download.updateTimeMs);
-    values.put(COLUMN_CONTENT_LENGTH, download.contentLength);
-    values.put(COLUMN_STOP_REASON, download.stopReason);
-    values.put(COLUMN_FAILURE_REASON, download.failureReason);
-    values.put(COLUMN_PERCENT_DOWNLOADED, download.getPercentDownloaded());
-    values.put(COLUMN_BYTES_DOWNLOADED, download.getBytesDownloaded());
     try {
-      SQLiteDatabase writableDatabase = databaseProvider.getWritableDatabase();
-      writableDatabase.replaceOrThrow(tableName, /* nullColumnHack= */ null, values);
+      putDownloadInternal(download, databaseProvider.getWritableDatabase());
     } catch (SQLiteException e) {
       throw new DatabaseIOException(e);
     }
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The downloads are written in a single transaction.
+   */
+  @Override
+  public void putDownloads(List<Download> downloads) throws DatabaseIOException {
+    ensureInitialized();
+    try {
+      SQLiteDatabase writableDatabase = databaseProvider.getWritableDatabase();
+      writableDatabase.beginTransactionNonExclusive();
+      try {
+        for (int i = 0; i < downloads.size(); i++) {
+          putDownloadInternal(downloads.get(i), writableDatabase);
+        }
+        writableDatabase.setTransactionSuccessful();
+      } finally {
+        writableDatabase.endTransaction();
+      }
+    } catch (SQLException e) {
+      throw new DatabaseIOException(e);
+    }
+  }
+
   @Override
   public void removeDownload(String id) throws DatabaseIOException {
     ensureInitialized();
@@ -294,8 +326,27 @@ public final class DefaultDownloadIndex implements WritableDownloadIndex {
         try {
           VersionTable.setVersion(
               writableDatabase, VersionTable.FEATURE_OFFLINE, name, TABLE_VERSION);
+          List<Download> downloads =
+              version >= MIN_MIGRATABLE_TABLE_VERSION && version < TABLE_VERSION
+                  ? loadDownloadsFromOldVersion(writableDatabase, version)
+                  : new ArrayList<>();
           writableDatabase.execSQL("DROP TABLE IF EXISTS " + tableName);
           writableDatabase.execSQL("CREATE TABLE " + tableName + " " + TABLE_SCHEMA);
+          // Speeds up queries for downloads in given states, which are sorted by start time.
+          writableDatabase.execSQL(
+              "CREATE INDEX "
+                  + tableName
+                  + INDEX_SUFFIX
+                  + " ON "
+                  + tableName
+                  + " ("
+                  + COLUMN_STATE
+                  + ", "
+                  + COLUMN_START_TIME_MS
+                  + ")");
+          for (int i = 0; i < downloads.size(); i++) {
+            putDownloadInternal(downloads.get(i), writableDatabase);
+          }
           writableDatabase.setTransactionSuccessful();
         } finally {
           writableDatabase.endTransaction();
@@ -307,6 +358,56 @@ public final class DefaultDownloadIndex implements WritableDownloadIndex {
     }
   }
 
+  private void putDownloadInternal(Download download, SQLiteDatabase database) {
+    ContentValues values = new ContentValues();
+    values.put(COLUMN_ID, download.request.id);
+    values.put(COLUMN_TYPE, download.request.type);
+    values.put(COLUMN_URI, download.request.uri.toString());
+    values.put(COLUMN_STREAM_KEYS, encodeStreamKeys(download.request.streamKeys));
+    values.put(COLUMN_CUSTOM_CACHE_KEY, download.request.customCacheKey);
+    values.put(COLUMN_DATA, download.request.data);
+    values.put(COLUMN_STATE, download.state);
+    values.put(COLUMN_START_TIME_MS, download.startTimeMs);
+    values.put(COLUMN_UPDATE_TIME_MS, download.updateTimeMs);
+    values.put(COLUMN_CONTENT_LENGTH, download.contentLength);
+    values.put(COLUMN_STOP_REASON, download.stopReason);
+    values.put(COLUMN_FAILURE_REASON, download.failureReason);
+    values.put(COLUMN_PERCENT_DOWNLOADED, download.getPercentDownloaded());
+    values.put(COLUMN_BYTES_DOWNLOADED, download.getBytesDownloaded());
+    values.put(COLUMN_PRIORITY, download.request.priority);
+    values.put(COLUMN_DEADLINE_MS, download.request.deadlineMs);
+    database.replaceOrThrow(tableName, /* nullColumnHack= */ null, values);
+  }
+
+  /**
+   * Loads the downloads of a table with an older version, which doesn't have {@link
+   * #COLUMN_PRIORITY} and {@link #COLUMN_DEADLINE_MS}. Version 2 tables store stream keys as a
+   * string, and version 3 tables store them as a blob.
+   */
+  private List<Download> loadDownloadsFromOldVersion(SQLiteDatabase database, int version) {
+    List<Download> downloads = new ArrayList<>();
+    try (Cursor cursor =
+        database.query(
+            tableName,
+            COLUMNS_OF_OLD_VERSIONS,
+            /* selection= */ null,
+            /* selectionArgs= */ null,
+            /* groupBy= */ null,
+            /* having= */ null,
+            /* orderBy= */ null)) {
+      while (cursor.moveToNext()) {
+        List<StreamKey> streamKeys =
+            version == 2
+                ? decodeStreamKeysFromVersion2(cursor.getString(COLUMN_INDEX_STREAM_KEYS))
+                : decodeStreamKeys(cursor.getBlob(COLUMN_INDEX_STREAM_KEYS));
+        downloads.add(
+            getDownloadForCurrentRow(
+                cursor, streamKeys, /* priority= */ 0, /* deadlineMs= */ C.TIME_UNSET));
+      }
+    }
+    return downloads;
+  }
+
   // incompatible types in argument.
   @SuppressWarnings("nullness:argument.type.incompatible")
   private Cursor getCursor(String selection, @Nullable String[] selectionArgs)
@@ -345,14 +446,26 @@ public final class DefaultDownloadIndex implements WritableDownloadIndex {
   }
 
   private static Download getDownloadForCurrentRow(Cursor cursor) {
+    List<StreamKey> streamKeys = decodeStreamKeys(cursor.getBlob(COLUMN_INDEX_STREAM_KEYS));
+    return getDownloadForCurrentRow(
+        cursor,
+        streamKeys,
+        cursor.getInt(COLUMN_INDEX_PRIORITY),
+        cursor.getLong(COLUMN_INDEX_DEADLINE_MS));
+  }
+
+  private static Download getDownloadForCurrentRow(
+      Cursor cursor, List<StreamKey> streamKeys, int priority, long deadlineMs) {
     DownloadRequest request =
         new DownloadRequest(
             /* id= */ cursor.getString(COLUMN_INDEX_ID),
             /* type= */ cursor.getString(COLUMN_INDEX_TYPE),
             /* uri= */ Uri.parse(cursor.getString(COLUMN_INDEX_URI)),
-            /* streamKeys= */ decodeStreamKeys(cursor.getString(COLUMN_INDEX_STREAM_KEYS)),
+            streamKeys,
             /* customCacheKey= */ cursor.getString(COLUMN_INDEX_CUSTOM_CACHE_KEY),
-            /* data= */ cursor.getBlob(COLUMN_INDEX_DATA));
+            /* data= */ cursor.getBlob(COLUMN_INDEX_DATA),
+            priority,
+            deadlineMs);
     DownloadProgress downloadProgress = new DownloadProgress();
     downloadProgress.bytesDownloaded = cursor.getLong(COLUMN_INDEX_BYTES_DOWNLOADED);
     downloadProgress.percentDownloaded = cursor.getFloat(COLUMN_INDEX_PERCENT_DOWNLOADED);
@@ -375,25 +488,63 @@ public final class DefaultDownloadIndex implements WritableDownloadIndex {
         downloadProgress);
   }
 
-  private static String encodeStreamKeys(List<StreamKey> streamKeys) {
-    StringBuilder stringBuilder = new StringBuilder();
+  /**
+   * Encodes stream keys as a sequence of unsigned variable-length integers: the period, group and
+   * track index of each key, in order.
+   */
+  private static byte[] encodeStreamKeys(List<StreamKey> streamKeys) {
+    ByteArrayOutputStream output = new ByteArrayOutputStream(streamKeys.size() * 3);
     for (int i = 0; i < streamKeys.size(); i++) {
       StreamKey streamKey = streamKeys.get(i);
-      stringBuilder
-          .append(streamKey.periodIndex)
-          .append('.')
-          .append(streamKey.groupIndex)
-          .append('.')
-          .append(streamKey.trackIndex)
-          .append(',');
+      writeVarInt(output, streamKey.periodIndex);
+      writeVarInt(output, streamKey.groupIndex);
+      writeVarInt(output, streamKey.trackIndex);
     }
-    if (stringBuilder.length() > 0) {
-      stringBuilder.setLength(stringBuilder.length() - 1);
+    return output.toByteArray();
+  }
+
+  private static List<StreamKey> decodeStreamKeys(byte[] encodedStreamKeys) {
+    ArrayList<StreamKey> streamKeys = new ArrayList<>();
+    int[] position = new int[1];
+    while (position[0] < encodedStreamKeys.length) {
+      int periodIndex = readVarInt(encodedStreamKeys, position);
+      int groupIndex = readVarInt(encodedStreamKeys, position);
+      int trackIndex = readVarInt(encodedStreamKeys, position);
+      streamKeys.add(new StreamKey(periodIndex, groupIndex, trackIndex));
     }
-    return stringBuilder.toString();
+    return streamKeys;
+  }
+
+  private static void writeVarInt(ByteArrayOutputStream output, int value) {
+    while ((value & ~0x7F) != 0) {
+      output.write((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    output.write(value);
+  }
+
+  /**
+   * Reads an unsigned variable-length integer.
+   *
+   * @param data The data to read from.
+   * @param position A single element array holding the position at which to read, which is
+   *     advanced past the integer.
+   * @return The integer.
+   */
+  private static int readVarInt(byte[] data, int[] position) {
+    int value = 0;
+    int shift = 0;
+    int currentByte;
+    do {
+      Assertions.checkState(position[0] < data.length && shift < 32);
+      currentByte = data[position[0]++] & 0xFF;
+      value |= (currentByte & 0x7F) << shift;
+      shift += 7;
+    } while ((currentByte & 0x80) != 0);
+    return value;
   }
 
-  private static List<StreamKey> decodeStreamKeys(String encodedStreamKeys) {
+  private static List<StreamKey> decodeStreamKeysFromVersion2(String encodedStreamKeys) {
     ArrayList<StreamKey> streamKeys = new ArrayList<>();
     if (encodedStreamKeys.isEmpty()) {
       return streamKeys;
@@ -59,6 +59,14 @@ import java.util.concurrent.CopyOnWriteArraySet;
  * manager is used directly instead, downloads will be initially paused and so must be resumed by
  * calling {@link #resumeDownloads()}.
  *
+ * <p>Downloads are started in order of decreasing {@link DownloadRequest#priority}. Downloads with
+ * the same priority are started in order of increasing {@link DownloadRequest#deadlineMs}, followed
+ * by those without a deadline in the order in which they were added. If the maximum number of
+ * parallel downloads has been reached, a download with a higher priority preempts a running
+ * download with a lower priority. Deadlines only order downloads, and never preempt a running
+ * download. The priority and deadline of a download can be changed by adding a request with the
+ * same ID.
+ *
  * <p>A download manager instance must be accessed only from the thread that created it, unless that
  * thread does not have a {@link Looper}. In that case, it must be accessed only from the
  * application's main thread. Registered listeners will be called on the same thread.
@@ -763,6 +771,8 @@ public final class DownloadManager {
       } finally {
         Util.closeQuietly(cursor);
       }
+      // The index sorts downloads by start time only.
+      Collections.sort(downloads, InternalHandler::compareDownloads);
       // A copy must be used for the message to ensure that subsequent changes to the downloads list
       // are not visible to the main thread when it processes the message.
       ArrayList<Download> downloadsForMessage = new ArrayList<>(downloads);
@@ -883,7 +893,7 @@ public final class DownloadManager {
       for (int i = 0; i < terminalDownloads.size(); i++) {
         downloads.add(copyDownloadWithState(terminalDownloads.get(i), STATE_REMOVING));
       }
-      Collections.sort(downloads, InternalHandler::compareStartTimes);
+      Collections.sort(downloads, InternalHandler::compareDownloads);
       try {
         downloadIndex.setStatesToRemoving();
       } catch (IOException e) {
@@ -919,8 +929,19 @@ public final class DownloadManager {
 
     private void syncTasks() {
       int accumulatingDownloadTaskCount = 0;
+      // Queued downloads that can't start because the maximum number of parallel downloads has been
+      // reached. Those with a higher priority than the current download preempt its task.
+      int higherPriorityWaitingDownloadCount = 0;
+      int samePriorityWaitingDownloadCount = 0;
+      int currentPriority = Integer.MAX_VALUE;
       for (int i = 0; i < downloads.size(); i++) {
         Download download = downloads.get(i);
+        if (download.request.priority < currentPriority) {
+          // The downloads list is sorted by decreasing priority.
+          currentPriority = download.request.priority;
+          higherPriorityWaitingDownloadCount += samePriorityWaitingDownloadCount;
+          samePriorityWaitingDownloadCount = 0;
+        }
         @Nullable Task activeTask = activeTasks.get(download.request.id);
         switch (download.state) {
           case STATE_STOPPED:
@@ -928,10 +949,16 @@ public final class DownloadManager {
             break;
           case STATE_QUEUED:
             activeTask = syncQueuedDownload(activeTask, download);
+            if (activeTask == null && canDownloadsRun()) {
+              samePriorityWaitingDownloadCount++;
+            }
             break;
           case STATE_DOWNLOADING:
             Assertions.checkNotNull(activeTask);
-            syncDownloadingDownload(activeTask, download, accumulatingDownloadTaskCount);
+            syncDownloadingDownload(
+                activeTask,
+                download,
+                accumulatingDownloadTaskCount + higherPriorityWaitingDownloadCount);
             break;
           case STATE_REMOVING:
           case STATE_RESTARTING:
@@ -991,9 +1018,9 @@ public final class DownloadManager {
     }
 
     private void syncDownloadingDownload(
-        Task activeTask, Download download, int accumulatingDownloadTaskCount) {
+        Task activeTask, Download download, int precedingDownloadCount) {
       Assertions.checkState(!activeTask.isRemove);
-      if (!canDownloadsRun() || accumulatingDownloadTaskCount >= maxParallelDownloads) {
+      if (!canDownloadsRun() || precedingDownloadCount >= maxParallelDownloads) {
         putDownloadWithState(download, STATE_QUEUED);
         activeTask.cancel(/* released= */ false);
       }
@@ -1134,14 +1161,19 @@ public final class DownloadManager {
     // Progress updates.
 
     private void updateProgress() {
+      // Write the progress of all active downloads in a single batch.
+      List<Download> activeDownloads = new ArrayList<>();
       for (int i = 0; i < downloads.size(); i++) {
         Download download = downloads.get(i);
         if (download.state == STATE_DOWNLOADING) {
-          try {
-            downloadIndex.putDownload(download);
-          } catch (IOException e) {
-            Log.e(TAG, "Failed to update index.", e);
-          }
+          activeDownloads.add(download);
+        }
+      }
+      if (!activeDownloads.isEmpty()) {
+        try {
+          downloadIndex.putDownloads(activeDownloads);
+        } catch (IOException e) {
+          Log.e(TAG, "Failed to update index.", e);
         }
       }
       sendEmptyMessageDelayed(MSG_UPDATE_PROGRESS, UPDATE_PROGRESS_INTERVAL_MS);
@@ -1167,12 +1199,16 @@ public final class DownloadManager {
       int changedIndex = getDownloadIndex(download.request.id);
       if (changedIndex == C.INDEX_UNSET) {
         downloads.add(download);
-        Collections.sort(downloads, InternalHandler::compareStartTimes);
+        Collections.sort(downloads, InternalHandler::compareDownloads);
       } else {
-        boolean needsSort = download.startTimeMs != downloads.get(changedIndex).startTimeMs;
+        Download oldDownload = downloads.get(changedIndex);
+        boolean needsSort =
+            download.startTimeMs != oldDownload.startTimeMs
+                || download.request.priority != oldDownload.request.priority
+                || download.request.deadlineMs != oldDownload.request.deadlineMs;
         downloads.set(changedIndex, download);
         if (needsSort) {
-          Collections.sort(downloads, InternalHandler::compareStartTimes);
+          Collections.sort(downloads, InternalHandler::compareDownloads);
         }
       }
       try {
@@ -1224,7 +1260,26 @@ public final class DownloadManager {
           download.progress);
     }
 
-    private static int compareStartTimes(Download first, Download second) {
+    /**
+     * Orders downloads by decreasing {@link DownloadRequest#priority}, then by increasing {@link
+     * DownloadRequest#deadlineMs} with unset deadlines last, and then by start time. This is the
+     * order in which {@link #syncTasks()} starts their tasks.
+     */
+    private static int compareDownloads(Download first, Download second) {
+      int priorityComparison = Integer.compare(second.request.priority, first.request.priority);
+      if (priorityComparison != 0) {
+        return priorityComparison;
+      }
+      long firstDeadlineMs = first.request.deadlineMs;
+      long secondDeadlineMs = second.request.deadlineMs;
+      if (firstDeadlineMs != secondDeadlineMs) {
+        if (firstDeadlineMs == C.TIME_UNSET) {
+          return 1;
+        } else if (secondDeadlineMs == C.TIME_UNSET) {
+          return -1;
+        }
+        return Util.compareLong(firstDeadlineMs, secondDeadlineMs);
+      }
       return Util.compareLong(first.startTimeMs, second.startTimeMs);
     }
   }
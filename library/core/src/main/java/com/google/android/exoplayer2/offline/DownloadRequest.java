@@ -21,6 +21,7 @@ import android.net.Uri;
 import android.os.Parcel;
 import android.os.Parcelable;
 import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Util;
 import java.io.IOException;
@@ -59,8 +60,22 @@ public final class DownloadRequest implements Parcelable {
   @Nullable public final String customCacheKey;
   /** Application defined data associated with the download. May be empty. */
   public final byte[] data;
+  /**
+   * The priority of the download. Downloads with a higher priority are started before, and may
+   * preempt, downloads with a lower priority. Downloads with the same priority are started in the
+   * order in which they were added. The default priority is 0.
+   */
+  public final int priority;
+  /**
+   * The wall clock time in milliseconds since the epoch by which the download should complete, or
+   * {@link C#TIME_UNSET} if the download has no deadline. Downloads with the same {@link #priority}
+   * are started in order of increasing deadline, before any downloads without a deadline.
+   */
+  public final long deadlineMs;
 
   /**
+   * Creates an instance with a priority of 0.
+   *
    * @param id See {@link #id}.
    * @param type See {@link #type}.
    * @param uri See {@link #uri}.
@@ -75,6 +90,50 @@ public final class DownloadRequest implements Parcelable {
       List<StreamKey> streamKeys,
       @Nullable String customCacheKey,
       @Nullable byte[] data) {
+    this(id, type, uri, streamKeys, customCacheKey, data, /* priority= */ 0);
+  }
+
+  /**
+   * Creates an instance without a deadline.
+   *
+   * @param id See {@link #id}.
+   * @param type See {@link #type}.
+   * @param uri See {@link #uri}.
+   * @param streamKeys See {@link #streamKeys}.
+   * @param customCacheKey See {@link #customCacheKey}.
+   * @param data See {@link #data}.
+   * @param priority See {@link #priority}.
+   */
+  public DownloadRequest(
+      String id,
+      String type,
+      Uri uri,
+      List<StreamKey> streamKeys,
+      @Nullable String customCacheKey,
+      @Nullable byte[] data,
+      int priority) {
+    this(id, type, uri, streamKeys, customCacheKey, data, priority, /* deadlineMs= */ C.TIME_UNSET);
+  }
+
+  /**
+   * @param id See {@link #id}.
+   * @param type See {@link #type}.
+   * @param uri See {@link #uri}.
+   * @param streamKeys See {@link #streamKeys}.
+   * @param customCacheKey See {@link #customCacheKey}.
+   * @param data See {@link #data}.
+   * @param priority See {@link #priority}.
+   * @param deadlineMs See {@link #deadlineMs}.
+   */
+  public DownloadRequest(
+      String id,
+      String type,
+      Uri uri,
+      List<StreamKey> streamKeys,
+      @Nullable String customCacheKey,
+      @Nullable byte[] data,
+      int priority,
+      long deadlineMs) {
     if (TYPE_DASH.equals(type) || TYPE_HLS.equals(type) || TYPE_SS.equals(type)) {
       Assertions.checkArgument(
           customCacheKey == null, "customCacheKey must be null for type: " + type);
@@ -87,6 +146,8 @@ public final class DownloadRequest implements Parcelable {
     this.streamKeys = Collections.unmodifiableList(mutableKeys);
     this.customCacheKey = customCacheKey;
     this.data = data != null ? Arrays.copyOf(data, data.length) : Util.EMPTY_BYTE_ARRAY;
+    this.priority = priority;
+    this.deadlineMs = deadlineMs;
   }
 
   /* package */ DownloadRequest(Parcel in) {
@@ -101,6 +162,8 @@ public final class DownloadRequest implements Parcelable {
     streamKeys = Collections.unmodifiableList(mutableStreamKeys);
     customCacheKey = in.readString();
     data = castNonNull(in.createByteArray());
+    priority = in.readInt();
+    deadlineMs = in.readLong();
   }
 
   /**
@@ -110,15 +173,17 @@ public final class DownloadRequest implements Parcelable {
    * @return The copy with the specified ID.
    */
   public DownloadRequest copyWithId(String id) {
-    return new DownloadRequest(id, type, uri, streamKeys, customCacheKey, data);
+    return new DownloadRequest(
+        id, type, uri, streamKeys, customCacheKey, data, priority, deadlineMs);
   }
 
   /**
    * Returns the result of merging {@code newRequest} into this request. The requests must have the
    * same {@link #id} and {@link #type}.
    *
-   * <p>If the requests have different {@link #uri}, {@link #customCacheKey} and {@link #data}
-   * values, then those from the request being merged are included in the result.
+   * <p>If the requests have different {@link #uri}, {@link #customCacheKey}, {@link #data},
+   * {@link #priority} and {@link #deadlineMs} values, then those from the request being merged are
+   * included in the result.
    *
    * @param newRequest The request being merged.
    * @return The merged result.
@@ -142,7 +207,14 @@ public final class DownloadRequest implements Parcelable {
       }
     }
     return new DownloadRequest(
-        id, type, newRequest.uri, mergedKeys, newRequest.customCacheKey, newRequest.data);
+        id,
+        type,
+        newRequest.uri,
+        mergedKeys,
+        newRequest.customCacheKey,
+        newRequest.data,
+        newRequest.priority,
+        newRequest.deadlineMs);
   }
 
   @Override
@@ -161,7 +233,9 @@ public final class DownloadRequest implements Parcelable {
         && uri.equals(that.uri)
         && streamKeys.equals(that.streamKeys)
         && Util.areEqual(customCacheKey, that.customCacheKey)
-        && Arrays.equals(data, that.data);
+        && Arrays.equals(data, that.data)
+        && priority == that.priority
+        && deadlineMs == that.deadlineMs;
   }
 
   @Override
@@ -173,6 +247,8 @@ public final class DownloadRequest implements Parcelable {
     result = 31 * result + streamKeys.hashCode();
     result = 31 * result + (customCacheKey != null ? customCacheKey.hashCode() : 0);
     result = 31 * result + Arrays.hashCode(data);
+    result = 31 * result + priority;
+    result = 31 * result + (int) (deadlineMs ^ (deadlineMs >>> 32));
     return result;
   }
 
@@ -194,6 +270,8 @@ public final class DownloadRequest implements Parcelable {
     }
     dest.writeString(customCacheKey);
     dest.writeByteArray(data);
+    dest.writeInt(priority);
+    dest.writeLong(deadlineMs);
   }
 
   public static final Parcelable.Creator<DownloadRequest> CREATOR =
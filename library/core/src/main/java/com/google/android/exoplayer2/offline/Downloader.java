@@ -48,6 +48,27 @@ public interface Downloader {
   void download(@Nullable ProgressListener progressListener)
       throws InterruptedException, IOException;
 
+  /**
+   * Caches the start of the content, so that playback can start without waiting for it to load.
+   * Runs with {@link C#PRIORITY_PREFETCH}, so it waits while tasks with a higher priority, such as
+   * playback, are registered with the downloader's {@link
+   * com.google.android.exoplayer2.util.PriorityTaskManager}.
+   *
+   * <p>The default implementation doesn't load any data, for downloaders that don't support
+   * prefetching.
+   *
+   * @param durationUs The duration of the start of the content to cache, in microseconds.
+   *     Downloaders that can't map media time to data cache data up to {@code maxBytes} instead.
+   * @param maxBytes The maximum number of bytes to load. Data that's already cached is not counted.
+   * @return The number of bytes that were loaded.
+   * @throws InterruptedException If the thread has been interrupted, or if the prefetch was
+   *     canceled.
+   * @throws IOException Thrown when there is an io error while loading.
+   */
+  default long prefetch(long durationUs, long maxBytes) throws InterruptedException, IOException {
+    return 0;
+  }
+
   /** Cancels the download operation and prevents future download operations from running. */
   void cancel();
 
@@ -34,7 +34,9 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * cache as defined by {@link DownloaderConstructorHelper}. Callers can use the constructor to
  * specify a custom cache key for the downloaded bytes.
  *
- * <p>The downloader will avoid downloading already-downloaded media bytes.
+ * <p>The downloader will avoid downloading already-downloaded media bytes. Downloaded data is
+ * verified before the download continues if the cache supports it, so that only data that's damaged
+ * is downloaded again. See {@link Cache#verifySpans(String)}.
  */
 public final class ProgressiveDownloader implements Downloader {
 
@@ -74,6 +76,8 @@ public final class ProgressiveDownloader implements Downloader {
       throws InterruptedException, IOException {
     priorityTaskManager.add(C.PRIORITY_DOWNLOAD);
     try {
+      // Remove damaged data, so that it's downloaded again.
+      CacheUtil.verify(dataSpec, cache, cacheKeyFactory);
       CacheUtil.cache(
           dataSpec,
           cache,
@@ -90,6 +94,32 @@ public final class ProgressiveDownloader implements Downloader {
     }
   }
 
+  /**
+   * Caches the first {@code maxBytes} of the stream. {@code durationUs} is ignored, since the
+   * position of media time in a progressive stream isn't known without parsing it.
+   */
+  @Override
+  public long prefetch(long durationUs, long maxBytes) throws InterruptedException, IOException {
+    priorityTaskManager.add(C.PRIORITY_PREFETCH);
+    try {
+      ByteCounter byteCounter = new ByteCounter();
+      CacheUtil.cache(
+          dataSpec.subrange(/* offset= */ 0, maxBytes),
+          cache,
+          cacheKeyFactory,
+          dataSource,
+          new byte[BUFFER_SIZE_BYTES],
+          priorityTaskManager,
+          C.PRIORITY_PREFETCH,
+          byteCounter,
+          isCanceled,
+          /* enableEOFException= */ false);
+      return byteCounter.bytesLoaded;
+    } finally {
+      priorityTaskManager.remove(C.PRIORITY_PREFETCH);
+    }
+  }
+
   @Override
   public void cancel() {
     isCanceled.set(true);
@@ -30,6 +30,7 @@ import com.google.android.exoplayer2.util.Util;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -109,13 +110,20 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
       }
       List<Segment> segments = getSegments(dataSource, manifest, /* allowIncompleteList= */ false);
 
-      // Scan the segments, removing any that are fully downloaded.
+      // Scan the segments, removing any that are fully downloaded. Damaged data is removed from the
+      // cache first, so that it's downloaded again. Segments can share a cache key, for example
+      // when a DASH representation is a single file, so each cache key is only verified once.
+      HashSet<String> verifiedCacheKeys = new HashSet<>();
       int totalSegments = segments.size();
       int segmentsDownloaded = 0;
       long contentLength = 0;
       long bytesDownloaded = 0;
       for (int i = segments.size() - 1; i >= 0; i--) {
         Segment segment = segments.get(i);
+        String cacheKey = cacheKeyFactory.buildCacheKey(segment.dataSpec);
+        if (verifiedCacheKeys.add(cacheKey)) {
+          cache.verifySpans(cacheKey);
+        }
         Pair<Long, Long> segmentLengthAndBytesDownloaded =
             CacheUtil.getCached(segment.dataSpec, cache, cacheKeyFactory);
         long segmentLength = segmentLengthAndBytesDownloaded.first;
@@ -169,6 +177,79 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
     }
   }
 
+  /**
+   * Caches the manifest and the segments of the selected streams that start within {@code
+   * durationUs} of the first segment. Segments are cached in order of their start times. Caching
+   * stops before a segment that's known not to fit in the remaining budget. A segment whose length
+   * is unknown is only cached up to the remaining budget, so at most {@code maxBytes} are loaded.
+   *
+   * <p>If no streams are selected, only the manifest is cached, since caching the start of every
+   * stream in the manifest would mostly load data that's never played.
+   *
+   * <p>Prefetching is intended for on-demand content. For live content, the first segments listed
+   * in the manifest are generally not the ones that are played first.
+   */
+  @Override
+  public final long prefetch(long durationUs, long maxBytes)
+      throws InterruptedException, IOException {
+    priorityTaskManager.add(C.PRIORITY_PREFETCH);
+    try {
+      M manifest = getManifest(dataSource, manifestDataSpec);
+      if (streamKeys.isEmpty()) {
+        return 0;
+      }
+      manifest = manifest.copy(streamKeys);
+      List<Segment> segments = getSegments(dataSource, manifest, /* allowIncompleteList= */ true);
+      Collections.sort(segments);
+      if (segments.isEmpty()) {
+        return 0;
+      }
+      long endTimeUs = segments.get(0).startTimeUs + durationUs;
+      ByteCounter byteCounter = new ByteCounter();
+      byte[] buffer = new byte[BUFFER_SIZE_BYTES];
+      for (int i = 0; i < segments.size(); i++) {
+        Segment segment = segments.get(i);
+        if (segment.startTimeUs >= endTimeUs) {
+          break;
+        }
+        long remainingBytes = maxBytes - byteCounter.bytesLoaded;
+        Pair<Long, Long> segmentLengthAndBytesCached =
+            CacheUtil.getCached(segment.dataSpec, cache, cacheKeyFactory);
+        long segmentLength = segmentLengthAndBytesCached.first;
+        long segmentBytesCached = segmentLengthAndBytesCached.second;
+        DataSpec dataSpec = segment.dataSpec;
+        boolean lengthLimited = false;
+        if (segmentLength != C.LENGTH_UNSET) {
+          if (segmentLength - segmentBytesCached > remainingBytes) {
+            break;
+          }
+        } else if (remainingBytes != Long.MAX_VALUE) {
+          // Limit the load to the remaining budget. The cached bytes are generally at the start of
+          // the segment, and the bytes loaded are counted below in any case.
+          dataSpec = dataSpec.subrange(/* offset= */ 0, segmentBytesCached + remainingBytes);
+          lengthLimited = true;
+        }
+        CacheUtil.cache(
+            dataSpec,
+            cache,
+            cacheKeyFactory,
+            dataSource,
+            buffer,
+            priorityTaskManager,
+            C.PRIORITY_PREFETCH,
+            byteCounter,
+            isCanceled,
+            /* enableEOFException= */ !lengthLimited);
+        if (byteCounter.bytesLoaded >= maxBytes) {
+          break;
+        }
+      }
+      return byteCounter.bytesLoaded;
+    } finally {
+      priorityTaskManager.remove(C.PRIORITY_PREFETCH);
+    }
+  }
+
   @Override
   public void cancel() {
     isCanceled.set(true);
@@ -340,6 +340,7 @@ public final class ExtractorMediaSource extends CompositeMediaSource<Void> {
             loadableLoadErrorHandlingPolicy,
             customCacheKey,
             continueLoadingCheckIntervalBytes,
+            /* loaderExecutor= */ null,
             tag);
   }
 
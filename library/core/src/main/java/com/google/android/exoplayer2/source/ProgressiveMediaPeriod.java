@@ -59,6 +59,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import org.checkerframework.checker.nullness.compatqual.NullableType;
 
 /** A {@link MediaPeriod} that extracts data using an {@link Extractor}. */
@@ -152,6 +153,8 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
    *     indexing. May be null.
    * @param continueLoadingCheckIntervalBytes The number of bytes that should be loaded between each
    *     invocation of {@link Callback#onContinueLoadingRequested(SequenceableLoader)}.
+   * @param loaderExecutor An executor shared with other loaders on which to load the media, or null
+   *     to load on a thread created for the period. See {@link Loader#Loader(String, Executor)}.
    */
   // maybeFinishPrepare is not posted to the handler until initialization completes.
   @SuppressWarnings({
@@ -168,7 +171,8 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
       Listener listener,
       Allocator allocator,
       @Nullable String customCacheKey,
-      int continueLoadingCheckIntervalBytes) {
+      int continueLoadingCheckIntervalBytes,
+      @Nullable Executor loaderExecutor) {
     this.uri = uri;
     this.dataSource = dataSource;
     this.drmSessionManager = drmSessionManager;
@@ -178,7 +182,7 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
     this.allocator = allocator;
     this.customCacheKey = customCacheKey;
     this.continueLoadingCheckIntervalBytes = continueLoadingCheckIntervalBytes;
-    loader = new Loader("Loader:ProgressiveMediaPeriod");
+    loader = new Loader("Loader:ProgressiveMediaPeriod", loaderExecutor);
     extractorHolder = new ExtractorHolder(extractors);
     loadCondition = new ConditionVariable();
     maybeFinishPrepareRunnable = this::maybeFinishPrepare;
@@ -27,9 +27,11 @@ import com.google.android.exoplayer2.upstream.Allocator;
 import com.google.android.exoplayer2.upstream.DataSource;
 import com.google.android.exoplayer2.upstream.DefaultLoadErrorHandlingPolicy;
 import com.google.android.exoplayer2.upstream.LoadErrorHandlingPolicy;
+import com.google.android.exoplayer2.upstream.Loader;
 import com.google.android.exoplayer2.upstream.TransferListener;
 import com.google.android.exoplayer2.util.Assertions;
 import java.io.IOException;
+import java.util.concurrent.Executor;
 
 /**
  * Provides one period that loads data from a {@link Uri} and extracted using an {@link Extractor}.
@@ -56,6 +58,7 @@ public final class ProgressiveMediaSource extends BaseMediaSource
     private DrmSessionManager<?> drmSessionManager;
     private LoadErrorHandlingPolicy loadErrorHandlingPolicy;
     private int continueLoadingCheckIntervalBytes;
+    @Nullable private Executor loaderExecutor;
     private boolean isCreateCalled;
 
     /**
@@ -163,6 +166,23 @@ public final class ProgressiveMediaSource extends BaseMediaSource
       return this;
     }
 
+    /**
+     * Sets an executor on which media periods created by the source load media, instead of each
+     * period creating its own loading thread. Passing the same executor to the sources of several
+     * players bounds the number of loading threads used by those players. The default value is
+     * null, meaning each period creates its own thread.
+     *
+     * @param loaderExecutor The executor on which to load media, or null for each period to create
+     *     its own thread. See {@link Loader#Loader(String, Executor)}.
+     * @return This factory, for convenience.
+     * @throws IllegalStateException If {@link #createMediaSource(Uri)} has already been called.
+     */
+    public Factory setLoaderExecutor(@Nullable Executor loaderExecutor) {
+      Assertions.checkState(!isCreateCalled);
+      this.loaderExecutor = loaderExecutor;
+      return this;
+    }
+
     /**
      * Sets the {@link DrmSessionManager} to use for acquiring {@link DrmSession DrmSessions}. The
      * default value is {@link DrmSessionManager#DUMMY}.
@@ -195,6 +215,7 @@ public final class ProgressiveMediaSource extends BaseMediaSource
           loadErrorHandlingPolicy,
           customCacheKey,
           continueLoadingCheckIntervalBytes,
+          loaderExecutor,
           tag);
     }
 
@@ -217,6 +238,7 @@ public final class ProgressiveMediaSource extends BaseMediaSource
   private final LoadErrorHandlingPolicy loadableLoadErrorHandlingPolicy;
   @Nullable private final String customCacheKey;
   private final int continueLoadingCheckIntervalBytes;
+  @Nullable private final Executor loaderExecutor;
   @Nullable private final Object tag;
 
   private long timelineDurationUs;
@@ -233,6 +255,7 @@ public final class ProgressiveMediaSource extends BaseMediaSource
       LoadErrorHandlingPolicy loadableLoadErrorHandlingPolicy,
       @Nullable String customCacheKey,
       int continueLoadingCheckIntervalBytes,
+      @Nullable Executor loaderExecutor,
       @Nullable Object tag) {
     this.uri = uri;
     this.dataSourceFactory = dataSourceFactory;
@@ -241,6 +264,7 @@ public final class ProgressiveMediaSource extends BaseMediaSource
     this.loadableLoadErrorHandlingPolicy = loadableLoadErrorHandlingPolicy;
     this.customCacheKey = customCacheKey;
     this.continueLoadingCheckIntervalBytes = continueLoadingCheckIntervalBytes;
+    this.loaderExecutor = loaderExecutor;
     this.timelineDurationUs = C.TIME_UNSET;
     this.tag = tag;
   }
@@ -279,7 +303,8 @@ public final class ProgressiveMediaSource extends BaseMediaSource
         this,
         allocator,
         customCacheKey,
-        continueLoadingCheckIntervalBytes);
+        continueLoadingCheckIntervalBytes,
+        loaderExecutor);
   }
 
   @Override
@@ -38,6 +38,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * A {@link SampleStream} that loads media in {@link Chunk}s, obtained from a {@link ChunkSource}.
@@ -112,6 +113,50 @@ public class ChunkSampleStream<T extends ChunkSource> implements SampleStream, S
       DrmSessionManager<?> drmSessionManager,
       LoadErrorHandlingPolicy loadErrorHandlingPolicy,
       EventDispatcher eventDispatcher) {
+    this(
+        primaryTrackType,
+        embeddedTrackTypes,
+        embeddedTrackFormats,
+        chunkSource,
+        callback,
+        allocator,
+        positionUs,
+        drmSessionManager,
+        loadErrorHandlingPolicy,
+        eventDispatcher,
+        /* loaderExecutor= */ null);
+  }
+
+  /**
+   * Constructs an instance.
+   *
+   * @param primaryTrackType The type of the primary track. One of the {@link C} {@code
+   *     TRACK_TYPE_*} constants.
+   * @param embeddedTrackTypes The types of any embedded tracks, or null.
+   * @param embeddedTrackFormats The formats of the embedded tracks, or null.
+   * @param chunkSource A {@link ChunkSource} from which chunks to load are obtained.
+   * @param callback An {@link Callback} for the stream.
+   * @param allocator An {@link Allocator} from which allocations can be obtained.
+   * @param positionUs The position from which to start loading media.
+   * @param drmSessionManager The {@link DrmSessionManager} to obtain {@link DrmSession DrmSessions}
+   *     from.
+   * @param loadErrorHandlingPolicy The {@link LoadErrorHandlingPolicy}.
+   * @param eventDispatcher A dispatcher to notify of events.
+   * @param loaderExecutor An executor shared with other loaders on which to load chunks, or null to
+   *     load on a thread created for the stream. See {@link Loader#Loader(String, Executor)}.
+   */
+  public ChunkSampleStream(
+      int primaryTrackType,
+      @Nullable int[] embeddedTrackTypes,
+      @Nullable Format[] embeddedTrackFormats,
+      T chunkSource,
+      Callback<ChunkSampleStream<T>> callback,
+      Allocator allocator,
+      long positionUs,
+      DrmSessionManager<?> drmSessionManager,
+      LoadErrorHandlingPolicy loadErrorHandlingPolicy,
+      EventDispatcher eventDispatcher,
+      @Nullable Executor loaderExecutor) {
     this.primaryTrackType = primaryTrackType;
     this.embeddedTrackTypes = embeddedTrackTypes;
     this.embeddedTrackFormats = embeddedTrackFormats;
@@ -119,7 +164,7 @@ public class ChunkSampleStream<T extends ChunkSource> implements SampleStream, S
     this.callback = callback;
     this.eventDispatcher = eventDispatcher;
     this.loadErrorHandlingPolicy = loadErrorHandlingPolicy;
-    loader = new Loader("Loader:ChunkSampleStream");
+    loader = new Loader("Loader:ChunkSampleStream", loaderExecutor);
     nextChunkHolder = new ChunkHolder();
     mediaChunks = new ArrayList<>();
     readOnlyMediaChunks = Collections.unmodifiableList(mediaChunks);
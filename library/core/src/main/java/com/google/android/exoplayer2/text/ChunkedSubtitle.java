@@ -0,0 +1,300 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.text;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.LongArray;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import com.google.android.exoplayer2.util.Util;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * A {@link Subtitle} whose cues are decoded one chunk of the subtitle data at a time.
+ *
+ * <p>The data is split into chunks that cover disjoint ranges of time, so that the cues active at
+ * any time are all defined in a single chunk. The first chunk is decoded when the subtitle is
+ * created. When cues are requested for a time within a chunk, the following chunk is decoded ahead
+ * on a background executor, typically the decode thread of the decoder that created the subtitle.
+ * A chunk that is needed before it has been decoded ahead, for example after a seek, is decoded on
+ * the calling thread. Only the most recently used chunks are kept, so that the cues of chunks that
+ * playback has passed are released. The event times of the whole subtitle are known up front.
+ *
+ * <p>{@link SubtitleOutputBuffer} calls {@link #release()} when it's cleared, for example when the
+ * decoder is flushed or released.
+ */
+public final class ChunkedSubtitle implements Subtitle {
+
+  /** Reads the timings of the cues in subtitle data. */
+  public interface CueTimingReader {
+
+    /**
+     * Reads the next cue in the data, skipping any data that precedes it, and leaves the data
+     * positioned after the cue.
+     *
+     * @param data The subtitle data.
+     * @param cueTimesUs An array of length 2 into which the start and end times of the cue are
+     *     written, in microseconds.
+     * @return The position in the data at which the cue starts, or {@link C#INDEX_UNSET} if there
+     *     are no more cues to read.
+     */
+    int readNextCue(ParsableByteArray data, long[] cueTimesUs);
+  }
+
+  /** Decodes a chunk of the subtitle data. */
+  public interface ChunkDecoder {
+
+    /**
+     * Decodes the cues defined in a chunk of the subtitle data. May be called on any thread, and
+     * concurrently for different chunks.
+     *
+     * @param chunkData The subtitle data, positioned at the start of the chunk and limited to its
+     *     end.
+     * @return A {@link Subtitle} containing the cues of the chunk.
+     */
+    Subtitle decodeChunk(ParsableByteArray chunkData);
+  }
+
+  /** The maximum number of decoded chunks that are kept. */
+  private static final int MAX_DECODED_CHUNK_COUNT = 2;
+
+  /**
+   * Reads the timings of the cues in subtitle data and returns a {@link ChunkedSubtitle} that
+   * decodes the cues in chunks, or returns {@code null} if the cues cannot be decoded in more than
+   * one chunk. This is the case if there are too few cues, or if the cues are not ordered by start
+   * time.
+   *
+   * @param bytes An array holding the subtitle data. The data is copied, so the array may be
+   *     reused once this method returns.
+   * @param length The length of the subtitle data.
+   * @param firstCuePosition The position in the data from which to read cues.
+   * @param targetChunkCueCount The number of cues after which a new chunk is started, as soon as
+   *     this is possible without a cue spanning two chunks.
+   * @param cueTimingReader Reads the timings of the cues.
+   * @param chunkDecoder Decodes the chunks.
+   * @param decodeAheadExecutor The executor on which chunks are decoded ahead of playback.
+   * @return The subtitle, or {@code null} if the cues cannot be decoded in chunks.
+   */
+  @Nullable
+  public static ChunkedSubtitle create(
+      byte[] bytes,
+      int length,
+      int firstCuePosition,
+      int targetChunkCueCount,
+      CueTimingReader cueTimingReader,
+      ChunkDecoder chunkDecoder,
+      Executor decodeAheadExecutor) {
+    Assertions.checkArgument(targetChunkCueCount > 0);
+    byte[] data = Arrays.copyOf(bytes, length);
+    ParsableByteArray subtitleData = new ParsableByteArray(data);
+    subtitleData.setPosition(firstCuePosition);
+    LongArray chunkPositions = new LongArray();
+    LongArray chunkStartTimesUs = new LongArray();
+    LongArray eventTimesUs = new LongArray();
+    long[] cueTimesUs = new long[2];
+    int chunkCueCount = 0;
+    long lastStartTimeUs = C.TIME_UNSET;
+    long maxEndTimeUs = C.TIME_UNSET;
+    int cuePosition;
+    while ((cuePosition = cueTimingReader.readNextCue(subtitleData, cueTimesUs))
+        != C.INDEX_UNSET) {
+      long startTimeUs = cueTimesUs[0];
+      long endTimeUs = cueTimesUs[1];
+      if (lastStartTimeUs != C.TIME_UNSET && startTimeUs < lastStartTimeUs) {
+        // The cues active at a time may be defined anywhere in the data.
+        return null;
+      }
+      if (chunkPositions.size() == 0
+          || (chunkCueCount >= targetChunkCueCount
+              && startTimeUs >= maxEndTimeUs
+              && startTimeUs > chunkStartTimesUs.get(chunkStartTimesUs.size() - 1))) {
+        chunkPositions.add(cuePosition);
+        chunkStartTimesUs.add(startTimeUs);
+        chunkCueCount = 0;
+      }
+      chunkCueCount++;
+      eventTimesUs.add(startTimeUs);
+      eventTimesUs.add(endTimeUs);
+      lastStartTimeUs = startTimeUs;
+      maxEndTimeUs = maxEndTimeUs == C.TIME_UNSET ? endTimeUs : Math.max(maxEndTimeUs, endTimeUs);
+    }
+    if (chunkPositions.size() < 2) {
+      return null;
+    }
+    chunkPositions.add(length);
+    long[] sortedEventTimesUs = eventTimesUs.toArray();
+    Arrays.sort(sortedEventTimesUs);
+    return new ChunkedSubtitle(
+        data,
+        sortedEventTimesUs,
+        chunkStartTimesUs.toArray(),
+        chunkPositions.toArray(),
+        chunkDecoder,
+        decodeAheadExecutor);
+  }
+
+  private final byte[] data;
+  private final long[] eventTimesUs;
+  private final long[] chunkStartTimesUs;
+  /** The start positions of the chunks, followed by the length of the data. */
+  private final long[] chunkPositions;
+  private final ChunkDecoder chunkDecoder;
+  private final Executor decodeAheadExecutor;
+
+  @GuardedBy("this")
+  private final LinkedHashMap<Integer, Subtitle> decodedChunks;
+
+  @GuardedBy("this")
+  private int decodeAheadChunkIndex;
+
+  @GuardedBy("this")
+  private boolean released;
+
+  private ChunkedSubtitle(
+      byte[] data,
+      long[] eventTimesUs,
+      long[] chunkStartTimesUs,
+      long[] chunkPositions,
+      ChunkDecoder chunkDecoder,
+      Executor decodeAheadExecutor) {
+    this.data = data;
+    this.eventTimesUs = eventTimesUs;
+    this.chunkStartTimesUs = chunkStartTimesUs;
+    this.chunkPositions = chunkPositions;
+    this.chunkDecoder = chunkDecoder;
+    this.decodeAheadExecutor = decodeAheadExecutor;
+    decodedChunks =
+        new LinkedHashMap<Integer, Subtitle>(
+            /* initialCapacity= */ MAX_DECODED_CHUNK_COUNT + 1,
+            /* loadFactor= */ 1,
+            /* accessOrder= */ true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Integer, Subtitle> eldest) {
+            return size() > MAX_DECODED_CHUNK_COUNT;
+          }
+        };
+    decodeAheadChunkIndex = C.INDEX_UNSET;
+    decodeChunk(/* chunkIndex= */ 0);
+    maybeDecodeAhead(/* chunkIndex= */ 1);
+  }
+
+  /** Returns the number of chunks. */
+  public int getChunkCount() {
+    return chunkStartTimesUs.length;
+  }
+
+  /** Returns the number of chunks that are currently decoded. */
+  public synchronized int getDecodedChunkCount() {
+    return decodedChunks.size();
+  }
+
+  /**
+   * Releases the decoded chunks. Chunks are no longer decoded ahead or kept afterwards, so any cues
+   * that are still requested are decoded on the calling thread.
+   */
+  public synchronized void release() {
+    released = true;
+    decodedChunks.clear();
+    decodeAheadChunkIndex = C.INDEX_UNSET;
+  }
+
+  @Override
+  public int getNextEventTimeIndex(long timeUs) {
+    int index = Util.binarySearchCeil(eventTimesUs, timeUs, false, false);
+    return index < eventTimesUs.length ? index : C.INDEX_UNSET;
+  }
+
+  @Override
+  public int getEventTimeCount() {
+    return eventTimesUs.length;
+  }
+
+  @Override
+  public long getEventTime(int index) {
+    Assertions.checkArgument(index >= 0);
+    Assertions.checkArgument(index < eventTimesUs.length);
+    return eventTimesUs[index];
+  }
+
+  @Override
+  public List<Cue> getCues(long timeUs) {
+    int chunkIndex =
+        Util.binarySearchFloor(
+            chunkStartTimesUs, timeUs, /* inclusive= */ true, /* stayInBounds= */ false);
+    if (chunkIndex == -1) {
+      // timeUs is earlier than the start of the first cue.
+      return Collections.emptyList();
+    }
+    @Nullable Subtitle chunk;
+    synchronized (this) {
+      chunk = decodedChunks.get(chunkIndex);
+    }
+    if (chunk == null) {
+      // The chunk has not been decoded ahead, for example because playback jumped to it.
+      chunk = decodeChunk(chunkIndex);
+    }
+    maybeDecodeAhead(chunkIndex + 1);
+    return chunk.getCues(timeUs);
+  }
+
+  private Subtitle decodeChunk(int chunkIndex) {
+    ParsableByteArray chunkData =
+        new ParsableByteArray(data, /* limit= */ (int) chunkPositions[chunkIndex + 1]);
+    chunkData.setPosition((int) chunkPositions[chunkIndex]);
+    Subtitle chunk = chunkDecoder.decodeChunk(chunkData);
+    synchronized (this) {
+      if (!released) {
+        decodedChunks.put(chunkIndex, chunk);
+      }
+    }
+    return chunk;
+  }
+
+  private void maybeDecodeAhead(int chunkIndex) {
+    synchronized (this) {
+      if (released
+          || chunkIndex >= getChunkCount()
+          || chunkIndex == decodeAheadChunkIndex
+          || decodedChunks.containsKey(chunkIndex)) {
+        return;
+      }
+      decodeAheadChunkIndex = chunkIndex;
+    }
+    decodeAheadExecutor.execute(
+        () -> {
+          try {
+            decodeChunk(chunkIndex);
+          } catch (RuntimeException e) {
+            // Ignore the error here. The chunk is decoded again when its cues are requested, which
+            // propagates the error to the caller.
+          } finally {
+            synchronized (this) {
+              // Allow the chunk to be decoded ahead again if it's discarded.
+              if (decodeAheadChunkIndex == chunkIndex) {
+                decodeAheadChunkIndex = C.INDEX_UNSET;
+              }
+            }
+          }
+        });
+  }
+}
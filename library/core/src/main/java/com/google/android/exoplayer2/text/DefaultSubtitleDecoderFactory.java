@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.text;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.text.cea.Cea608Decoder;
+import com.google.android.exoplayer2.text.cea.Cea708Decoder;
+import com.google.android.exoplayer2.text.dvb.DvbDecoder;
+import com.google.android.exoplayer2.text.pgs.PgsDecoder;
+import com.google.android.exoplayer2.text.ssa.SsaDecoder;
+import com.google.android.exoplayer2.text.subrip.SubripDecoder;
+import com.google.android.exoplayer2.text.ttml.TtmlDecoder;
+import com.google.android.exoplayer2.text.tx3g.Tx3gDecoder;
+import com.google.android.exoplayer2.text.webvtt.Mp4WebvttDecoder;
+import com.google.android.exoplayer2.text.webvtt.WebvttDecoder;
+import com.google.android.exoplayer2.util.MimeTypes;
+import java.util.concurrent.Executor;
+
+/**
+ * Default {@link SubtitleDecoderFactory} implementation.
+ *
+ * <p>The formats supported by this factory are:
+ *
+ * <ul>
+ *   <li>WebVTT ({@link WebvttDecoder})
+ *   <li>WebVTT (MP4) ({@link Mp4WebvttDecoder})
+ *   <li>TTML ({@link TtmlDecoder})
+ *   <li>SubRip ({@link SubripDecoder})
+ *   <li>SSA/ASS ({@link SsaDecoder})
+ *   <li>TX3G ({@link Tx3gDecoder})
+ *   <li>Cea608 ({@link Cea608Decoder})
+ *   <li>Cea708 ({@link Cea708Decoder})
+ *   <li>DVB ({@link DvbDecoder})
+ *   <li>PGS ({@link PgsDecoder})
+ * </ul>
+ *
+ * <p>Decoders other than the CEA-608 and CEA-708 decoders, which decode on the calling thread,
+ * decode on the executor passed to the factory, if any.
+ */
+public final class DefaultSubtitleDecoderFactory implements SubtitleDecoderFactory {
+
+  @Nullable private final Executor decodeExecutor;
+
+  /**
+   * @param decodeExecutor An {@link Executor} on which created decoders decode, or {@code null} for
+   *     each decoder to decode on a thread it owns. Passing the same executor to the factories of
+   *     several players avoids starting a decode thread per player.
+   */
+  public DefaultSubtitleDecoderFactory(@Nullable Executor decodeExecutor) {
+    this.decodeExecutor = decodeExecutor;
+  }
+
+  @Override
+  public boolean supportsFormat(Format format) {
+    @Nullable String mimeType = format.sampleMimeType;
+    return MimeTypes.TEXT_VTT.equals(mimeType)
+        || MimeTypes.TEXT_SSA.equals(mimeType)
+        || MimeTypes.APPLICATION_TTML.equals(mimeType)
+        || MimeTypes.APPLICATION_MP4VTT.equals(mimeType)
+        || MimeTypes.APPLICATION_SUBRIP.equals(mimeType)
+        || MimeTypes.APPLICATION_TX3G.equals(mimeType)
+        || MimeTypes.APPLICATION_CEA608.equals(mimeType)
+        || MimeTypes.APPLICATION_MP4CEA608.equals(mimeType)
+        || MimeTypes.APPLICATION_CEA708.equals(mimeType)
+        || MimeTypes.APPLICATION_DVBSUBS.equals(mimeType)
+        || MimeTypes.APPLICATION_PGS.equals(mimeType);
+  }
+
+  @Override
+  public SubtitleDecoder createDecoder(Format format) {
+    @Nullable String mimeType = format.sampleMimeType;
+    if (mimeType != null) {
+      switch (mimeType) {
+        case MimeTypes.TEXT_VTT:
+          return new WebvttDecoder(
+              WebvttDecoder.DEFAULT_CHUNKED_DECODING_THRESHOLD_BYTES, decodeExecutor);
+        case MimeTypes.TEXT_SSA:
+          return new SsaDecoder(format.initializationData, decodeExecutor);
+        case MimeTypes.APPLICATION_MP4VTT:
+          return new Mp4WebvttDecoder(decodeExecutor);
+        case MimeTypes.APPLICATION_TTML:
+          return new TtmlDecoder(decodeExecutor);
+        case MimeTypes.APPLICATION_SUBRIP:
+          return new SubripDecoder(
+              SubripDecoder.DEFAULT_CHUNKED_DECODING_THRESHOLD_BYTES, decodeExecutor);
+        case MimeTypes.APPLICATION_TX3G:
+          return new Tx3gDecoder(format.initializationData, decodeExecutor);
+        case MimeTypes.APPLICATION_CEA608:
+        case MimeTypes.APPLICATION_MP4CEA608:
+          return new Cea608Decoder(mimeType, format.accessibilityChannel);
+        case MimeTypes.APPLICATION_CEA708:
+          return new Cea708Decoder(format.accessibilityChannel, format.initializationData);
+        case MimeTypes.APPLICATION_DVBSUBS:
+          return new DvbDecoder(format.initializationData, decodeExecutor);
+        case MimeTypes.APPLICATION_PGS:
+          return new PgsDecoder(decodeExecutor);
+        default:
+          break;
+      }
+    }
+    throw new IllegalArgumentException(
+        "Attempted to create decoder for unsupported MIME type: " + mimeType);
+  }
+}
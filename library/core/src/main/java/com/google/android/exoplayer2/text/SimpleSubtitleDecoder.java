@@ -20,9 +20,10 @@ import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.decoder.SimpleDecoder;
 import com.google.android.exoplayer2.util.Assertions;
 import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
 
 /**
- * Base class for subtitle parsers that use their own decode thread.
+ * Base class for subtitle parsers that decode on their own thread, or on a decode executor.
  */
 public abstract class SimpleSubtitleDecoder extends
     SimpleDecoder<SubtitleInputBuffer, SubtitleOutputBuffer, SubtitleDecoderException> implements
@@ -31,9 +32,18 @@ public abstract class SimpleSubtitleDecoder extends
   private final String name;
 
   /** @param name The name of the decoder. */
-  @SuppressWarnings("initialization:method.invocation.invalid")
   protected SimpleSubtitleDecoder(String name) {
-    super(new SubtitleInputBuffer[2], new SubtitleOutputBuffer[2]);
+    this(name, /* decodeExecutor= */ null);
+  }
+
+  /**
+   * @param name The name of the decoder.
+   * @param decodeExecutor An {@link Executor} on which to decode, or {@code null} to decode on a
+   *     thread owned by the decoder. See {@link SimpleDecoder}.
+   */
+  @SuppressWarnings("initialization:method.invocation.invalid")
+  protected SimpleSubtitleDecoder(String name, @Nullable Executor decodeExecutor) {
+    super(new SubtitleInputBuffer[2], new SubtitleOutputBuffer[2], decodeExecutor);
     this.name = name;
     setInitialInputBufferSize(1024);
   }
@@ -71,6 +71,9 @@ public abstract class SubtitleOutputBuffer extends OutputBuffer implements Subti
   @Override
   public void clear() {
     super.clear();
+    if (subtitle instanceof ChunkedSubtitle) {
+      ((ChunkedSubtitle) subtitle).release();
+    }
     subtitle = null;
   }
 
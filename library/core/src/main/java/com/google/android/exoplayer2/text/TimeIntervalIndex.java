@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.text;
+
+import com.google.android.exoplayer2.util.Assertions;
+import java.util.Arrays;
+
+/**
+ * An index of time intervals, for finding the intervals that contain a given time without
+ * iterating over all of them.
+ *
+ * <p>The intervals are sorted by start time, and each sorted position is the node of an implicit
+ * balanced binary tree that stores the maximum end time of its subtree. A query only visits the
+ * subtrees that can contain a matching interval.
+ *
+ * <p>The results of a query are stored in a buffer that is reused by the next query, so an
+ * instance must not be queried from more than one thread.
+ */
+public final class TimeIntervalIndex {
+
+  private final int intervalCount;
+  /** Indices of the intervals, sorted by start time. */
+  private final int[] sortedIndices;
+  /** Start times, in the order of {@link #sortedIndices}. */
+  private final long[] sortedStartTimesUs;
+  /** End times, in the order of {@link #sortedIndices}. */
+  private final long[] sortedEndTimesUs;
+  /** The maximum end time of the subtree whose node is at each sorted position. */
+  private final long[] subtreeMaxEndTimesUs;
+
+  private int[] results;
+  private int resultCount;
+
+  /**
+   * Creates an index of the intervals {@code [startTimesUs[i], endTimesUs[i])}. Use {@link
+   * Long#MIN_VALUE} and {@link Long#MAX_VALUE} for unbounded intervals.
+   *
+   * @param startTimesUs The start times of the intervals, inclusive.
+   * @param endTimesUs The end times of the intervals, exclusive.
+   */
+  public TimeIntervalIndex(long[] startTimesUs, long[] endTimesUs) {
+    Assertions.checkArgument(startTimesUs.length == endTimesUs.length);
+    intervalCount = startTimesUs.length;
+    Integer[] indices = new Integer[intervalCount];
+    for (int i = 0; i < intervalCount; i++) {
+      indices[i] = i;
+    }
+    Arrays.sort(indices, (a, b) -> Long.compare(startTimesUs[a], startTimesUs[b]));
+    sortedIndices = new int[intervalCount];
+    sortedStartTimesUs = new long[intervalCount];
+    sortedEndTimesUs = new long[intervalCount];
+    for (int i = 0; i < intervalCount; i++) {
+      sortedIndices[i] = indices[i];
+      sortedStartTimesUs[i] = startTimesUs[indices[i]];
+      sortedEndTimesUs[i] = endTimesUs[indices[i]];
+    }
+    subtreeMaxEndTimesUs = new long[intervalCount];
+    buildSubtree(/* from= */ 0, /* to= */ intervalCount);
+    results = new int[0];
+  }
+
+  /** Returns the number of indexed intervals. */
+  public int size() {
+    return intervalCount;
+  }
+
+  /**
+   * Finds the intervals that contain {@code timeUs}. The indices of the intervals are then
+   * available from {@link #getQueryResult(int)}, in ascending order, until the next query.
+   *
+   * @param timeUs The time, in microseconds.
+   * @return The number of intervals that contain {@code timeUs}.
+   */
+  public int query(long timeUs) {
+    resultCount = 0;
+    collectIntervals(/* from= */ 0, /* to= */ intervalCount, timeUs);
+    Arrays.sort(results, 0, resultCount);
+    return resultCount;
+  }
+
+  /**
+   * Returns the index of an interval found by the last call to {@link #query(long)}.
+   *
+   * @param index The index of the result, which must be less than the value returned by the last
+   *     query.
+   */
+  public int getQueryResult(int index) {
+    Assertions.checkIndex(index, 0, resultCount);
+    return results[index];
+  }
+
+  private long buildSubtree(int from, int to) {
+    if (from >= to) {
+      return Long.MIN_VALUE;
+    }
+    int node = (from + to) >>> 1;
+    long maxEndTimeUs =
+        Math.max(
+            sortedEndTimesUs[node],
+            Math.max(buildSubtree(from, node), buildSubtree(node + 1, to)));
+    subtreeMaxEndTimesUs[node] = maxEndTimeUs;
+    return maxEndTimeUs;
+  }
+
+  private void collectIntervals(int from, int to, long timeUs) {
+    if (from >= to) {
+      return;
+    }
+    int node = (from + to) >>> 1;
+    if (subtreeMaxEndTimesUs[node] <= timeUs) {
+      // All intervals in the subtree have ended.
+      return;
+    }
+    collectIntervals(from, node, timeUs);
+    if (sortedStartTimesUs[node] > timeUs) {
+      // This interval and the ones after it haven't started.
+      return;
+    }
+    if (timeUs < sortedEndTimesUs[node]) {
+      if (resultCount == results.length) {
+        results = Arrays.copyOf(results, Math.max(4, resultCount * 2));
+      }
+      results[resultCount++] = sortedIndices[node];
+    }
+    collectIntervals(node + 1, to, timeUs);
+  }
+}
@@ -24,6 +24,7 @@ import android.text.Spanned;
 import android.text.style.ForegroundColorSpan;
 import android.text.style.StyleSpan;
 import android.text.style.UnderlineSpan;
+import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.text.Cue;
 import com.google.android.exoplayer2.text.Subtitle;
@@ -32,6 +33,7 @@ import com.google.android.exoplayer2.text.SubtitleInputBuffer;
 import com.google.android.exoplayer2.util.Log;
 import com.google.android.exoplayer2.util.MimeTypes;
 import com.google.android.exoplayer2.util.ParsableByteArray;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -234,6 +236,8 @@ public final class Cea608Decoder extends CeaDecoder {
   private final int selectedField;
   private final int selectedChannel;
   private final ArrayList<CueBuilder> cueBuilders;
+  /** Cue builders that are not in {@link #cueBuilders}, kept for reuse. */
+  private final ArrayDeque<CueBuilder> unusedCueBuilders;
 
   private CueBuilder currentCueBuilder;
   private List<Cue> cues;
@@ -256,6 +260,7 @@ public final class Cea608Decoder extends CeaDecoder {
   public Cea608Decoder(String mimeType, int accessibilityChannel) {
     ccData = new ParsableByteArray();
     cueBuilders = new ArrayList<>();
+    unusedCueBuilders = new ArrayDeque<>();
     currentCueBuilder = new CueBuilder(CC_MODE_UNKNOWN, DEFAULT_CAPTIONS_ROW_COUNT);
     currentChannel = NTSC_CC_CHANNEL_1;
     packetLength = MimeTypes.APPLICATION_MP4CEA608.equals(mimeType) ? 2 : 3;
@@ -417,7 +422,7 @@ public final class Cea608Decoder extends CeaDecoder {
 
     if (captionDataProcessed) {
       if (captionMode == CC_MODE_ROLL_UP || captionMode == CC_MODE_PAINT_ON) {
-        cues = getDisplayCues();
+        setCues(getDisplayCues());
       }
     }
   }
@@ -481,7 +486,7 @@ public final class Cea608Decoder extends CeaDecoder {
 
     if (row != currentCueBuilder.row) {
       if (captionMode != CC_MODE_ROLL_UP && !currentCueBuilder.isEmpty()) {
-        currentCueBuilder = new CueBuilder(captionMode, captionRowCount);
+        currentCueBuilder = obtainCueBuilder();
         cueBuilders.add(currentCueBuilder);
       }
       currentCueBuilder.row = row;
@@ -533,7 +538,7 @@ public final class Cea608Decoder extends CeaDecoder {
 
     switch (cc2) {
       case CTRL_ERASE_DISPLAYED_MEMORY:
-        cues = Collections.emptyList();
+        setCues(Collections.emptyList());
         if (captionMode == CC_MODE_ROLL_UP || captionMode == CC_MODE_PAINT_ON) {
           resetCueBuilders();
         }
@@ -542,7 +547,7 @@ public final class Cea608Decoder extends CeaDecoder {
         resetCueBuilders();
         break;
       case CTRL_END_OF_CAPTION:
-        cues = getDisplayCues();
+        setCues(getDisplayCues());
         resetCueBuilders();
         break;
       case CTRL_CARRIAGE_RETURN:
@@ -564,6 +569,16 @@ public final class Cea608Decoder extends CeaDecoder {
     }
   }
 
+  /**
+   * Sets the cues to output, unless they are displayed identically to the current cues. In that
+   * case the current cues are kept, so that no new subtitle is output.
+   */
+  private void setCues(List<Cue> cues) {
+    if (!areCuesEqual(this.cues, cues)) {
+      this.cues = cues;
+    }
+  }
+
   private List<Cue> getDisplayCues() {
     // CEA-608 does not define middle and end alignment, however content providers artificially
     // introduce them using whitespace. When each cue is built, we try and infer the alignment based
@@ -617,7 +632,7 @@ public final class Cea608Decoder extends CeaDecoder {
     if (oldCaptionMode == CC_MODE_PAINT_ON || captionMode == CC_MODE_ROLL_UP
         || captionMode == CC_MODE_UNKNOWN) {
       // When switching from paint-on or to roll-up or unknown, we also need to clear the caption.
-      cues = Collections.emptyList();
+      setCues(Collections.emptyList());
     }
   }
 
@@ -628,10 +643,26 @@ public final class Cea608Decoder extends CeaDecoder {
 
   private void resetCueBuilders() {
     currentCueBuilder.reset(captionMode);
+    for (int i = 0; i < cueBuilders.size(); i++) {
+      CueBuilder cueBuilder = cueBuilders.get(i);
+      if (cueBuilder != currentCueBuilder) {
+        unusedCueBuilders.add(cueBuilder);
+      }
+    }
     cueBuilders.clear();
     cueBuilders.add(currentCueBuilder);
   }
 
+  private CueBuilder obtainCueBuilder() {
+    @Nullable CueBuilder cueBuilder = unusedCueBuilders.pollFirst();
+    if (cueBuilder == null) {
+      return new CueBuilder(captionMode, captionRowCount);
+    }
+    cueBuilder.reset(captionMode);
+    cueBuilder.setCaptionRowCount(captionRowCount);
+    return cueBuilder;
+  }
+
   private void maybeUpdateIsInCaptionService(byte cc1, byte cc2) {
     if (isXdsControlCode(cc1)) {
       isInCaptionService = false;
@@ -335,7 +335,7 @@ public final class Cea708Decoder extends CeaDecoder {
     }
 
     if (cuesNeedUpdate) {
-      cues = getDisplayCues();
+      setCues(getDisplayCues());
     }
   }
 
@@ -345,7 +345,7 @@ public final class Cea708Decoder extends CeaDecoder {
         // Do nothing.
         break;
       case COMMAND_ETX:
-        cues = getDisplayCues();
+        setCues(getDisplayCues());
         break;
       case COMMAND_BS:
         currentCueBuilder.backspace();
@@ -740,6 +740,16 @@ public final class Cea708Decoder extends CeaDecoder {
         verticalAnchor, horizontalAnchor, rowCount, columnCount, anchorId, windowStyle, penStyle);
   }
 
+  /**
+   * Sets the cues to output, unless they are displayed identically to the current cues. In that
+   * case the current cues are kept, so that no new subtitle is output.
+   */
+  private void setCues(List<Cue> cues) {
+    if (!areCuesEqual(this.cues, cues)) {
+      this.cues = cues;
+    }
+  }
+
   private List<Cue> getDisplayCues() {
     List<Cea708Cue> displayCues = new ArrayList<>();
     for (int i = 0; i < NUM_WINDOWS; i++) {
@@ -885,6 +895,9 @@ public final class Cea708Decoder extends CeaDecoder {
     private int backgroundColor;
     private int row;
 
+    // The cue returned by the last call to build(), or null if the window has changed since.
+    @Nullable private Cea708Cue builtCue;
+
     public CueBuilder() {
       rolledUpCaptions = new ArrayList<>();
       captionStringBuilder = new SpannableStringBuilder();
@@ -917,6 +930,7 @@ public final class Cea708Decoder extends CeaDecoder {
     }
 
     public void clear() {
+      builtCue = null;
       rolledUpCaptions.clear();
       captionStringBuilder.clear();
       italicsStartPosition = C.POSITION_UNSET;
@@ -941,6 +955,16 @@ public final class Cea708Decoder extends CeaDecoder {
     public void defineWindow(boolean visible, boolean rowLock, boolean columnLock, int priority,
         boolean relativePositioning, int verticalAnchor, int horizontalAnchor, int rowCount,
         int columnCount, int anchorId, int windowStyleId, int penStyleId) {
+      // Broadcasters usually repeat the window definition, so the cue is only rebuilt if the
+      // window has changed.
+      if (!defined
+          || this.priority != priority
+          || this.relativePositioning != relativePositioning
+          || this.verticalAnchor != verticalAnchor
+          || this.horizontalAnchor != horizontalAnchor
+          || this.anchorId != anchorId) {
+        builtCue = null;
+      }
       this.defined = true;
       this.visible = visible;
       this.rowLock = rowLock;
@@ -955,6 +979,7 @@ public final class Cea708Decoder extends CeaDecoder {
         this.rowCount = rowCount + 1;
 
         // Trim any rolled up captions that are no longer valid, if applicable.
+        builtCue = null;
         while ((rowLock && (rolledUpCaptions.size() >= this.rowCount))
             || (rolledUpCaptions.size() >= MAXIMUM_ROW_COUNT)) {
           rolledUpCaptions.remove(0);
@@ -990,6 +1015,7 @@ public final class Cea708Decoder extends CeaDecoder {
 
     public void setWindowAttributes(int fillColor, int borderColor, boolean wordWrapToggle,
         int borderType, int printDirection, int scrollDirection, int justification) {
+      builtCue = null;
       this.windowFillColor = fillColor;
       // TODO: Add support for border color and types.
       // TODO: Add support for word wrap.
@@ -1001,6 +1027,7 @@ public final class Cea708Decoder extends CeaDecoder {
 
     public void setPenAttributes(int textTag, int offset, int penSize, boolean italicsToggle,
         boolean underlineToggle, int edgeType, int fontStyle) {
+      builtCue = null;
       // TODO: Add support for text tags.
       // TODO: Add support for other offsets.
       // TODO: Add support for other pen sizes.
@@ -1030,6 +1057,7 @@ public final class Cea708Decoder extends CeaDecoder {
     }
 
     public void setPenColor(int foregroundColor, int backgroundColor, int edgeColor) {
+      builtCue = null;
       if (foregroundColorStartPosition != C.POSITION_UNSET) {
         if (this.foregroundColor != foregroundColor) {
           captionStringBuilder.setSpan(new ForegroundColorSpan(this.foregroundColor),
@@ -1071,6 +1099,7 @@ public final class Cea708Decoder extends CeaDecoder {
     }
 
     public void backspace() {
+      builtCue = null;
       int length = captionStringBuilder.length();
       if (length > 0) {
         captionStringBuilder.delete(length - 1, length);
@@ -1078,6 +1107,7 @@ public final class Cea708Decoder extends CeaDecoder {
     }
 
     public void append(char text) {
+      builtCue = null;
       if (text == '\n') {
         rolledUpCaptions.add(buildSpannableString());
         captionStringBuilder.clear();
@@ -1139,6 +1169,10 @@ public final class Cea708Decoder extends CeaDecoder {
         // The cue is empty.
         return null;
       }
+      if (builtCue != null) {
+        // The window hasn't changed since the cue was built.
+        return builtCue;
+      }
 
       SpannableStringBuilder cueString = new SpannableStringBuilder();
 
@@ -1209,9 +1243,10 @@ public final class Cea708Decoder extends CeaDecoder {
 
       boolean windowColorSet = (windowFillColor != COLOR_SOLID_BLACK);
 
-      return new Cea708Cue(cueString, alignment, line, Cue.LINE_TYPE_FRACTION, verticalAnchorType,
-          position, horizontalAnchorType, Cue.DIMEN_UNSET, windowColorSet, windowFillColor,
-          priority);
+      builtCue = new Cea708Cue(cueString, alignment, line, Cue.LINE_TYPE_FRACTION,
+          verticalAnchorType, position, horizontalAnchorType, Cue.DIMEN_UNSET, windowColorSet,
+          windowFillColor, priority);
+      return builtCue;
     }
 
     public static int getArgbColorFromCeaColor(int red, int green, int blue) {
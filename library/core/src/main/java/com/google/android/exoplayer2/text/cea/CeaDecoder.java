@@ -15,9 +15,17 @@
  */
 package com.google.android.exoplayer2.text.cea;
 
+import android.text.Spanned;
+import android.text.TextUtils;
+import android.text.style.BackgroundColorSpan;
+import android.text.style.ForegroundColorSpan;
+import android.text.style.StyleSpan;
+import android.text.style.UnderlineSpan;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.text.Cue;
 import com.google.android.exoplayer2.text.Subtitle;
 import com.google.android.exoplayer2.text.SubtitleDecoder;
 import com.google.android.exoplayer2.text.SubtitleDecoderException;
@@ -25,6 +33,7 @@ import com.google.android.exoplayer2.text.SubtitleInputBuffer;
 import com.google.android.exoplayer2.text.SubtitleOutputBuffer;
 import com.google.android.exoplayer2.util.Assertions;
 import java.util.ArrayDeque;
+import java.util.List;
 import java.util.PriorityQueue;
 
 /**
@@ -173,6 +182,101 @@ import java.util.PriorityQueue;
    */
   protected abstract void decode(SubtitleInputBuffer inputBuffer);
 
+  /**
+   * Returns whether two lists of cues are displayed identically. Decoders use this to avoid
+   * outputting a new {@link Subtitle} when the caption state changes without changing what is
+   * displayed, for example when broadcasters repeat pop-on captions.
+   *
+   * <p>Only the spans that are used by CEA decoders are compared by value. Other spans are only
+   * considered equal if they are the same instance.
+   */
+  protected static boolean areCuesEqual(@Nullable List<Cue> first, @Nullable List<Cue> second) {
+    if (first == second) {
+      return true;
+    } else if (first == null || second == null || first.size() != second.size()) {
+      return false;
+    }
+    for (int i = 0; i < first.size(); i++) {
+      if (!areCuesEqual(first.get(i), second.get(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean areCuesEqual(Cue first, Cue second) {
+    if (first == second) {
+      return true;
+    }
+    if (first.getClass() != second.getClass()
+        || first.line != second.line
+        || first.lineType != second.lineType
+        || first.lineAnchor != second.lineAnchor
+        || first.position != second.position
+        || first.positionAnchor != second.positionAnchor
+        || first.size != second.size
+        || first.windowColorSet != second.windowColorSet
+        || first.windowColor != second.windowColor
+        || first.textAlignment != second.textAlignment
+        || first.bitmap != second.bitmap) {
+      return false;
+    }
+    if (first instanceof Cea708Cue
+        && ((Cea708Cue) first).priority != ((Cea708Cue) second).priority) {
+      return false;
+    }
+    return areTextsEqual(first.text, second.text);
+  }
+
+  /** Returns whether two texts have the same characters and equivalent spans. */
+  private static boolean areTextsEqual(
+      @Nullable CharSequence first, @Nullable CharSequence second) {
+    if (!TextUtils.equals(first, second)) {
+      return false;
+    }
+    if (!(first instanceof Spanned) || !(second instanceof Spanned)) {
+      // The texts are equal, so they are displayed identically if neither of them has spans.
+      return !(first instanceof Spanned) && !(second instanceof Spanned);
+    }
+    Spanned firstSpanned = (Spanned) first;
+    Spanned secondSpanned = (Spanned) second;
+    Object[] firstSpans = firstSpanned.getSpans(0, firstSpanned.length(), Object.class);
+    Object[] secondSpans = secondSpanned.getSpans(0, secondSpanned.length(), Object.class);
+    if (firstSpans.length != secondSpans.length) {
+      return false;
+    }
+    for (int i = 0; i < firstSpans.length; i++) {
+      Object firstSpan = firstSpans[i];
+      Object secondSpan = secondSpans[i];
+      if (firstSpanned.getSpanStart(firstSpan) != secondSpanned.getSpanStart(secondSpan)
+          || firstSpanned.getSpanEnd(firstSpan) != secondSpanned.getSpanEnd(secondSpan)
+          || firstSpanned.getSpanFlags(firstSpan) != secondSpanned.getSpanFlags(secondSpan)
+          || !areSpanObjectsEqual(firstSpan, secondSpan)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns whether two spans of the types output by the CEA decoders style text identically. */
+  private static boolean areSpanObjectsEqual(Object first, Object second) {
+    if (first == second) {
+      return true;
+    } else if (first.getClass() != second.getClass()) {
+      return false;
+    } else if (first instanceof ForegroundColorSpan) {
+      return ((ForegroundColorSpan) first).getForegroundColor()
+          == ((ForegroundColorSpan) second).getForegroundColor();
+    } else if (first instanceof BackgroundColorSpan) {
+      return ((BackgroundColorSpan) first).getBackgroundColor()
+          == ((BackgroundColorSpan) second).getBackgroundColor();
+    } else if (first instanceof StyleSpan) {
+      return ((StyleSpan) first).getStyle() == ((StyleSpan) second).getStyle();
+    } else {
+      return first instanceof UnderlineSpan;
+    }
+  }
+
   private static final class CeaInputBuffer extends SubtitleInputBuffer
       implements Comparable<CeaInputBuffer> {
 
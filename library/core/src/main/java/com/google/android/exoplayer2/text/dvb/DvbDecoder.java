@@ -15,10 +15,12 @@
  */
 package com.google.android.exoplayer2.text.dvb;
 
+import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.text.SimpleSubtitleDecoder;
 import com.google.android.exoplayer2.text.Subtitle;
 import com.google.android.exoplayer2.util.ParsableByteArray;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /** A {@link SimpleSubtitleDecoder} for DVB subtitles. */
 public final class DvbDecoder extends SimpleSubtitleDecoder {
@@ -31,7 +33,17 @@ public final class DvbDecoder extends SimpleSubtitleDecoder {
    *     composition_page (2), ancillary_page (2).
    */
   public DvbDecoder(List<byte[]> initializationData) {
-    super("DvbDecoder");
+    this(initializationData, /* decodeExecutor= */ null);
+  }
+
+  /**
+   * @param initializationData The initialization data for the decoder. See {@link
+   *     #DvbDecoder(List)}.
+   * @param decodeExecutor An {@link Executor} on which to decode, or {@code null} to decode on a
+   *     thread owned by the decoder.
+   */
+  public DvbDecoder(List<byte[]> initializationData, @Nullable Executor decodeExecutor) {
+    super("DvbDecoder", decodeExecutor);
     ParsableByteArray data = new ParsableByteArray(initializationData.get(0));
     int subtitleCompositionPage = data.readUnsignedShort();
     int subtitleAncillaryPage = data.readUnsignedShort();
@@ -26,6 +26,7 @@ import com.google.android.exoplayer2.util.Util;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.concurrent.Executor;
 import java.util.zip.Inflater;
 
 /** A {@link SimpleSubtitleDecoder} for PGS subtitles. */
@@ -45,7 +46,15 @@ public final class PgsDecoder extends SimpleSubtitleDecoder {
   @Nullable private Inflater inflater;
 
   public PgsDecoder() {
-    super("PgsDecoder");
+    this(/* decodeExecutor= */ null);
+  }
+
+  /**
+   * @param decodeExecutor An {@link Executor} on which to decode, or {@code null} to decode on a
+   *     thread owned by the decoder.
+   */
+  public PgsDecoder(@Nullable Executor decodeExecutor) {
+    super("PgsDecoder", decodeExecutor);
     buffer = new ParsableByteArray();
     inflatedBuffer = new ParsableByteArray();
     cueBuilder = new CueBuilder();
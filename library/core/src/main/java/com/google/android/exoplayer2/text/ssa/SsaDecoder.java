@@ -31,6 +31,7 @@ import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
@@ -81,7 +82,19 @@ public final class SsaDecoder extends SimpleSubtitleDecoder {
    *     {@code [Script Info]} and optional {@code [V4+ Styles]} section.
    */
   public SsaDecoder(@Nullable List<byte[]> initializationData) {
-    super("SsaDecoder");
+    this(initializationData, /* decodeExecutor= */ null);
+  }
+
+  /**
+   * Constructs an SsaDecoder with optional format and header info.
+   *
+   * @param initializationData Optional initialization data for the decoder. See {@link
+   *     #SsaDecoder(List)}.
+   * @param decodeExecutor An {@link Executor} on which to decode, or {@code null} to decode on a
+   *     thread owned by the decoder.
+   */
+  public SsaDecoder(@Nullable List<byte[]> initializationData, @Nullable Executor decodeExecutor) {
+    super("SsaDecoder", decodeExecutor);
     screenWidth = Cue.DIMEN_UNSET;
     screenHeight = Cue.DIMEN_UNSET;
 
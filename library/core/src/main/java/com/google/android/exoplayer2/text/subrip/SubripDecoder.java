@@ -19,6 +19,8 @@ import android.text.Html;
 import android.text.Spanned;
 import android.text.TextUtils;
 import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.text.ChunkedSubtitle;
 import com.google.android.exoplayer2.text.Cue;
 import com.google.android.exoplayer2.text.SimpleSubtitleDecoder;
 import com.google.android.exoplayer2.text.Subtitle;
@@ -26,6 +28,7 @@ import com.google.android.exoplayer2.util.Log;
 import com.google.android.exoplayer2.util.LongArray;
 import com.google.android.exoplayer2.util.ParsableByteArray;
 import java.util.ArrayList;
+import java.util.concurrent.Executor;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -61,20 +64,108 @@ public final class SubripDecoder extends SimpleSubtitleDecoder {
   private static final String ALIGN_TOP_MID = "{\\an8}";
   private static final String ALIGN_TOP_RIGHT = "{\\an9}";
 
+  /**
+   * The default size of subtitle data from which cues are decoded in chunks.
+   *
+   * @see #SubripDecoder(int)
+   */
+  public static final int DEFAULT_CHUNKED_DECODING_THRESHOLD_BYTES = 256 * 1024;
+
+  /** The number of cues after which a new chunk is started when decoding in chunks. */
+  private static final int CHUNK_CUE_COUNT = 100;
+
+  private final int chunkedDecodingThresholdBytes;
   private final StringBuilder textBuilder;
   private final ArrayList<String> tags;
 
   public SubripDecoder() {
-    super("SubripDecoder");
+    this(DEFAULT_CHUNKED_DECODING_THRESHOLD_BYTES);
+  }
+
+  /**
+   * @param chunkedDecodingThresholdBytes The size of subtitle data from which the cues are decoded
+   *     in chunks, when they are first needed, rather than all at once. {@link C#LENGTH_UNSET}
+   *     disables decoding in chunks.
+   */
+  public SubripDecoder(int chunkedDecodingThresholdBytes) {
+    this(chunkedDecodingThresholdBytes, /* decodeExecutor= */ null);
+  }
+
+  /**
+   * @param chunkedDecodingThresholdBytes The size of subtitle data from which the cues are decoded
+   *     in chunks, when they are first needed, rather than all at once. {@link C#LENGTH_UNSET}
+   *     disables decoding in chunks.
+   * @param decodeExecutor An {@link Executor} on which to decode, or {@code null} to decode on a
+   *     thread owned by the decoder.
+   */
+  public SubripDecoder(int chunkedDecodingThresholdBytes, @Nullable Executor decodeExecutor) {
+    super("SubripDecoder", decodeExecutor);
+    this.chunkedDecodingThresholdBytes = chunkedDecodingThresholdBytes;
     textBuilder = new StringBuilder();
     tags = new ArrayList<>();
   }
 
   @Override
   protected Subtitle decode(byte[] bytes, int length, boolean reset) {
+    if (chunkedDecodingThresholdBytes != C.LENGTH_UNSET
+        && length >= chunkedDecodingThresholdBytes) {
+      @Nullable
+      Subtitle subtitle =
+          ChunkedSubtitle.create(
+              bytes,
+              length,
+              /* firstCuePosition= */ 0,
+              CHUNK_CUE_COUNT,
+              SubripDecoder::readNextCueTiming,
+              chunkData -> decode(chunkData, new StringBuilder(), new ArrayList<>()),
+              /* decodeAheadExecutor= */ this::executeOnDecodeThread);
+      if (subtitle != null) {
+        return subtitle;
+      }
+    }
+    return decode(new ParsableByteArray(bytes, length), textBuilder, tags);
+  }
+
+  /**
+   * Reads the timing of the next cue, skipping its text. Mirrors {@link
+   * #decode(ParsableByteArray, StringBuilder, ArrayList)}.
+   *
+   * @see ChunkedSubtitle.CueTimingReader#readNextCue(ParsableByteArray, long[])
+   */
+  private static int readNextCueTiming(ParsableByteArray subripData, long[] cueTimesUs) {
+    while (true) {
+      int cuePosition = subripData.getPosition();
+      @Nullable String currentLine = subripData.readLine();
+      if (currentLine == null) {
+        return C.INDEX_UNSET;
+      } else if (currentLine.length() == 0) {
+        continue;
+      }
+      try {
+        Integer.parseInt(currentLine);
+      } catch (NumberFormatException e) {
+        continue;
+      }
+      currentLine = subripData.readLine();
+      if (currentLine == null) {
+        return C.INDEX_UNSET;
+      }
+      Matcher matcher = SUBRIP_TIMING_LINE.matcher(currentLine);
+      if (!matcher.matches()) {
+        continue;
+      }
+      cueTimesUs[0] = parseTimecode(matcher, /* groupOffset= */ 1);
+      cueTimesUs[1] = parseTimecode(matcher, /* groupOffset= */ 6);
+      // Skip the text.
+      while (!TextUtils.isEmpty(subripData.readLine())) {}
+      return cuePosition;
+    }
+  }
+
+  private static SubripSubtitle decode(
+      ParsableByteArray subripData, StringBuilder textBuilder, ArrayList<String> tags) {
     ArrayList<Cue> cues = new ArrayList<>();
     LongArray cueTimesUs = new LongArray();
-    ParsableByteArray subripData = new ParsableByteArray(bytes, length);
 
     @Nullable String currentLine;
     while ((currentLine = subripData.readLine()) != null) {
@@ -147,7 +238,7 @@ public final class SubripDecoder extends SimpleSubtitleDecoder {
    * @param tags A list to which removed tags will be added.
    * @return The processed line.
    */
-  private String processLine(String line, ArrayList<String> tags) {
+  private static String processLine(String line, ArrayList<String> tags) {
     line = line.trim();
 
     int removedCharacterCount = 0;
@@ -172,7 +263,7 @@ public final class SubripDecoder extends SimpleSubtitleDecoder {
    * @param alignmentTag The alignment tag, or {@code null} if no alignment tag is available.
    * @return Built cue
    */
-  private Cue buildCue(Spanned text, @Nullable String alignmentTag) {
+  private static Cue buildCue(Spanned text, @Nullable String alignmentTag) {
     if (alignmentTag == null) {
       return new Cue(text);
     }
@@ -16,6 +16,7 @@
 package com.google.android.exoplayer2.text.ttml;
 
 import android.text.Layout;
+import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.text.Cue;
 import com.google.android.exoplayer2.text.SimpleSubtitleDecoder;
@@ -30,6 +31,7 @@ import java.io.IOException;
 import java.util.ArrayDeque;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.xmlpull.v1.XmlPullParser;
@@ -93,7 +95,15 @@ public final class TtmlDecoder extends SimpleSubtitleDecoder {
   private final XmlPullParserFactory xmlParserFactory;
 
   public TtmlDecoder() {
-    super("TtmlDecoder");
+    this(/* decodeExecutor= */ null);
+  }
+
+  /**
+   * @param decodeExecutor An {@link Executor} on which to decode, or {@code null} to decode on a
+   *     thread owned by the decoder.
+   */
+  public TtmlDecoder(@Nullable Executor decodeExecutor) {
+    super("TtmlDecoder", decodeExecutor);
     try {
       xmlParserFactory = XmlPullParserFactory.newInstance();
       xmlParserFactory.setNamespaceAware(true);
@@ -23,6 +23,7 @@ import android.util.Pair;
 import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.text.Cue;
+import com.google.android.exoplayer2.text.TimeIntervalIndex;
 import com.google.android.exoplayer2.util.Assertions;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -94,6 +95,8 @@ import java.util.TreeSet;
   private final HashMap<String, Integer> nodeEndsByRegion;
 
   private List<TtmlNode> children;
+  /** The children, indexed by the times at which their subtrees may produce output. */
+  @Nullable private TimeIntervalIndex childIndex;
 
   public static TtmlNode buildTextNode(String text) {
     return new TtmlNode(
@@ -153,6 +156,7 @@ import java.util.TreeSet;
       children = new ArrayList<>();
     }
     children.add(child);
+    childIndex = null;
   }
 
   public TtmlNode getChild(int index) {
@@ -196,6 +200,15 @@ import java.util.TreeSet;
     }
   }
 
+  /**
+   * Indexes the children of this node and of its descendants, so that {@link #getCues} only
+   * traverses the subtrees that may produce output at the requested time. Should be called once
+   * all nodes have been added.
+   */
+  public void buildChildIndex() {
+    buildChildIndexAndGetSubtreeTimesUs(new long[2]);
+  }
+
   public String[] getStyleIds() {
     return styleIds;
   }
@@ -258,6 +271,55 @@ import java.util.TreeSet;
     return cues;
   }
 
+  /**
+   * Indexes the children of this node and of its descendants, and outputs the start and end of
+   * the time span in which the subtree of this node may produce output.
+   */
+  private void buildChildIndexAndGetSubtreeTimesUs(long[] subtreeTimesUs) {
+    long subtreeStartTimeUs;
+    long subtreeEndTimeUs;
+    if (isTextNode || TAG_BR.equals(tag)) {
+      // Text and line breaks are output whenever their parent paragraph is active.
+      subtreeStartTimeUs = Long.MIN_VALUE;
+      subtreeEndTimeUs = Long.MAX_VALUE;
+    } else {
+      subtreeStartTimeUs = startTimeUs == C.TIME_UNSET ? Long.MIN_VALUE : startTimeUs;
+      subtreeEndTimeUs = endTimeUs == C.TIME_UNSET ? Long.MAX_VALUE : endTimeUs;
+    }
+    int childCount = getChildCount();
+    if (childCount > 0) {
+      // The times of descendants aren't bounded by the times of this node, so include them.
+      long[] childStartTimesUs = new long[childCount];
+      long[] childEndTimesUs = new long[childCount];
+      for (int i = 0; i < childCount; i++) {
+        getChild(i).buildChildIndexAndGetSubtreeTimesUs(subtreeTimesUs);
+        childStartTimesUs[i] = subtreeTimesUs[0];
+        childEndTimesUs[i] = subtreeTimesUs[1];
+        subtreeStartTimeUs = Math.min(subtreeStartTimeUs, subtreeTimesUs[0]);
+        subtreeEndTimeUs = Math.max(subtreeEndTimeUs, subtreeTimesUs[1]);
+      }
+      childIndex = new TimeIntervalIndex(childStartTimesUs, childEndTimesUs);
+    }
+    subtreeTimesUs[0] = subtreeStartTimeUs;
+    subtreeTimesUs[1] = subtreeEndTimeUs;
+  }
+
+  /**
+   * Finds the children whose subtrees may produce output at {@code timeUs}, which are then
+   * available from {@link #getFoundChild(int)}. If the children are not indexed, all children are
+   * found.
+   *
+   * @return The number of children found.
+   */
+  private int findChildren(long timeUs) {
+    return childIndex != null ? childIndex.query(timeUs) : getChildCount();
+  }
+
+  /** Returns a child found by the last call to {@link #findChildren(long)}, in document order. */
+  private TtmlNode getFoundChild(int index) {
+    return getChild(childIndex != null ? childIndex.getQueryResult(index) : index);
+  }
+
   private void traverseForImage(
       long timeUs, String inheritedRegion, List<Pair<String, String>> regionImageList) {
     String resolvedRegionId = ANONYMOUS_REGION_ID.equals(regionId) ? inheritedRegion : regionId;
@@ -265,8 +327,9 @@ import java.util.TreeSet;
       regionImageList.add(new Pair<>(resolvedRegionId, imageId));
       return;
     }
-    for (int i = 0; i < getChildCount(); ++i) {
-      getChild(i).traverseForImage(timeUs, resolvedRegionId, regionImageList);
+    int childCount = findChildren(timeUs);
+    for (int i = 0; i < childCount; ++i) {
+      getFoundChild(i).traverseForImage(timeUs, resolvedRegionId, regionImageList);
     }
   }
 
@@ -295,8 +358,9 @@ import java.util.TreeSet;
       }
 
       boolean isPNode = TAG_P.equals(tag);
-      for (int i = 0; i < getChildCount(); i++) {
-        getChild(i).traverseForText(timeUs, descendsPNode || isPNode, resolvedRegionId,
+      int childCount = findChildren(timeUs);
+      for (int i = 0; i < childCount; i++) {
+        getFoundChild(i).traverseForText(timeUs, descendsPNode || isPNode, resolvedRegionId,
             regionOutputs);
       }
       if (isPNode) {
@@ -333,8 +397,9 @@ import java.util.TreeSet;
         applyStyleToOutput(globalStyles, regionOutput, start, end);
       }
     }
-    for (int i = 0; i < getChildCount(); ++i) {
-      getChild(i).traverseForStyle(timeUs, globalStyles, regionOutputs);
+    int childCount = findChildren(timeUs);
+    for (int i = 0; i < childCount; ++i) {
+      getFoundChild(i).traverseForStyle(timeUs, globalStyles, regionOutputs);
     }
   }
 
@@ -15,25 +15,38 @@
  */
 package com.google.android.exoplayer2.text.ttml;
 
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.text.Cue;
 import com.google.android.exoplayer2.text.Subtitle;
 import com.google.android.exoplayer2.util.Util;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * A representation of a TTML subtitle.
+ *
+ * <p>The children of each node are held in a {@link
+ * com.google.android.exoplayer2.text.TimeIntervalIndex}, so that computing the cues at a given time
+ * only traverses the subtrees that may be active at that time. The cues only change at event
+ * times, so the cues returned by {@link #getCues(long)} are also cached for the most recently used
+ * intervals between consecutive event times. The cache is bounded because image based cues hold
+ * decoded bitmaps.
  */
 /* package */ final class TtmlSubtitle implements Subtitle {
 
+  /** The maximum number of intervals between event times for which cues are cached. */
+  private static final int MAX_CACHED_INTERVAL_COUNT = 16;
+
   private final TtmlNode root;
   private final long[] eventTimesUs;
   private final Map<String, TtmlStyle> globalStyles;
   private final Map<String, TtmlRegion> regionMap;
   private final Map<String, String> imageMap;
+  private final LinkedHashMap<Integer, List<Cue>> cuesByEventTimeInterval;
 
   public TtmlSubtitle(
       TtmlNode root,
@@ -46,6 +59,17 @@ import java.util.Map;
     this.globalStyles =
         globalStyles != null ? Collections.unmodifiableMap(globalStyles) : Collections.emptyMap();
     this.eventTimesUs = root.getEventTimesUs();
+    root.buildChildIndex();
+    cuesByEventTimeInterval =
+        new LinkedHashMap<Integer, List<Cue>>(
+            /* initialCapacity= */ MAX_CACHED_INTERVAL_COUNT + 1,
+            /* loadFactor= */ 1,
+            /* accessOrder= */ true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Integer, List<Cue>> eldest) {
+            return size() > MAX_CACHED_INTERVAL_COUNT;
+          }
+        };
   }
 
   @Override
@@ -71,7 +95,15 @@ import java.util.Map;
 
   @Override
   public List<Cue> getCues(long timeUs) {
-    return root.getCues(timeUs, globalStyles, regionMap, imageMap);
+    // Index the interval by the number of event times less than or equal to timeUs.
+    int intervalIndex = Util.binarySearchCeil(eventTimesUs, timeUs, false, false);
+    @Nullable List<Cue> cues = cuesByEventTimeInterval.get(intervalIndex);
+    if (cues == null) {
+      cues =
+          Collections.unmodifiableList(root.getCues(timeUs, globalStyles, regionMap, imageMap));
+      cuesByEventTimeInterval.put(intervalIndex, cues);
+    }
+    return cues;
   }
 
   @VisibleForTesting
@@ -23,6 +23,7 @@ import android.text.style.ForegroundColorSpan;
 import android.text.style.StyleSpan;
 import android.text.style.TypefaceSpan;
 import android.text.style.UnderlineSpan;
+import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.text.Cue;
 import com.google.android.exoplayer2.text.SimpleSubtitleDecoder;
@@ -32,6 +33,7 @@ import com.google.android.exoplayer2.util.ParsableByteArray;
 import com.google.android.exoplayer2.util.Util;
 import java.nio.charset.Charset;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * A {@link SimpleSubtitleDecoder} for tx3g.
@@ -79,7 +81,18 @@ public final class Tx3gDecoder extends SimpleSubtitleDecoder {
    * @param initializationData Sample description atom ('stsd') data with default subtitle styles.
    */
   public Tx3gDecoder(List<byte[]> initializationData) {
-    super("Tx3gDecoder");
+    this(initializationData, /* decodeExecutor= */ null);
+  }
+
+  /**
+   * Sets up a new {@link Tx3gDecoder} with default values.
+   *
+   * @param initializationData Sample description atom ('stsd') data with default subtitle styles.
+   * @param decodeExecutor An {@link Executor} on which to decode, or {@code null} to decode on a
+   *     thread owned by the decoder.
+   */
+  public Tx3gDecoder(List<byte[]> initializationData, @Nullable Executor decodeExecutor) {
+    super("Tx3gDecoder", decodeExecutor);
     parsableByteArray = new ParsableByteArray();
 
     if (initializationData != null && initializationData.size() == 1
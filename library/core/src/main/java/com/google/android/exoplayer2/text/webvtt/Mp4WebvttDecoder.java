@@ -15,6 +15,7 @@
  */
 package com.google.android.exoplayer2.text.webvtt;
 
+import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.text.Cue;
 import com.google.android.exoplayer2.text.SimpleSubtitleDecoder;
 import com.google.android.exoplayer2.text.Subtitle;
@@ -24,6 +25,7 @@ import com.google.android.exoplayer2.util.Util;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /** A {@link SimpleSubtitleDecoder} for Webvtt embedded in a Mp4 container file. */
 @SuppressWarnings("ConstantField")
@@ -44,7 +46,15 @@ public final class Mp4WebvttDecoder extends SimpleSubtitleDecoder {
   private final WebvttCue.Builder builder;
 
   public Mp4WebvttDecoder() {
-    super("Mp4WebvttDecoder");
+    this(/* decodeExecutor= */ null);
+  }
+
+  /**
+   * @param decodeExecutor An {@link Executor} on which to decode, or {@code null} to decode on a
+   *     thread owned by the decoder.
+   */
+  public Mp4WebvttDecoder(@Nullable Executor decodeExecutor) {
+    super("Mp4WebvttDecoder", decodeExecutor);
     sampleData = new ParsableByteArray();
     builder = new WebvttCue.Builder();
   }
@@ -16,13 +16,18 @@
 package com.google.android.exoplayer2.text.webvtt;
 
 import android.text.TextUtils;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.ParserException;
+import com.google.android.exoplayer2.text.ChunkedSubtitle;
 import com.google.android.exoplayer2.text.SimpleSubtitleDecoder;
 import com.google.android.exoplayer2.text.Subtitle;
 import com.google.android.exoplayer2.text.SubtitleDecoderException;
 import com.google.android.exoplayer2.util.ParsableByteArray;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.regex.Matcher;
 
 /**
  * A {@link SimpleSubtitleDecoder} for WebVTT.
@@ -40,6 +45,18 @@ public final class WebvttDecoder extends SimpleSubtitleDecoder {
   private static final String COMMENT_START = "NOTE";
   private static final String STYLE_START = "STYLE";
 
+  /**
+   * The default size of subtitle data from which cues are decoded in chunks.
+   *
+   * @see #WebvttDecoder(int)
+   */
+  public static final int DEFAULT_CHUNKED_DECODING_THRESHOLD_BYTES = 256 * 1024;
+
+  /** The number of cues after which a new chunk is started when decoding in chunks. */
+  private static final int CHUNK_CUE_COUNT = 100;
+
+  private final int chunkedDecodingThresholdBytes;
+
   private final WebvttCueParser cueParser;
   private final ParsableByteArray parsableWebvttData;
   private final WebvttCue.Builder webvttCueBuilder;
@@ -47,7 +64,28 @@ public final class WebvttDecoder extends SimpleSubtitleDecoder {
   private final List<WebvttCssStyle> definedStyles;
 
   public WebvttDecoder() {
-    super("WebvttDecoder");
+    this(DEFAULT_CHUNKED_DECODING_THRESHOLD_BYTES);
+  }
+
+  /**
+   * @param chunkedDecodingThresholdBytes The size of subtitle data from which the cues are decoded
+   *     in chunks, when they are first needed, rather than all at once. {@link C#LENGTH_UNSET}
+   *     disables decoding in chunks.
+   */
+  public WebvttDecoder(int chunkedDecodingThresholdBytes) {
+    this(chunkedDecodingThresholdBytes, /* decodeExecutor= */ null);
+  }
+
+  /**
+   * @param chunkedDecodingThresholdBytes The size of subtitle data from which the cues are decoded
+   *     in chunks, when they are first needed, rather than all at once. {@link C#LENGTH_UNSET}
+   *     disables decoding in chunks.
+   * @param decodeExecutor An {@link Executor} on which to decode, or {@code null} to decode on a
+   *     thread owned by the decoder.
+   */
+  public WebvttDecoder(int chunkedDecodingThresholdBytes, @Nullable Executor decodeExecutor) {
+    super("WebvttDecoder", decodeExecutor);
+    this.chunkedDecodingThresholdBytes = chunkedDecodingThresholdBytes;
     cueParser = new WebvttCueParser();
     parsableWebvttData = new ParsableByteArray();
     webvttCueBuilder = new WebvttCue.Builder();
@@ -58,6 +96,14 @@ public final class WebvttDecoder extends SimpleSubtitleDecoder {
   @Override
   protected Subtitle decode(byte[] bytes, int length, boolean reset)
       throws SubtitleDecoderException {
+    if (chunkedDecodingThresholdBytes != C.LENGTH_UNSET
+        && length >= chunkedDecodingThresholdBytes) {
+      @Nullable Subtitle subtitle = decodeChunked(bytes, length);
+      if (subtitle != null) {
+        return subtitle;
+      }
+    }
+
     parsableWebvttData.reset(bytes, length);
     // Initialization for consistent starting state.
     webvttCueBuilder.reset();
@@ -92,6 +138,81 @@ public final class WebvttDecoder extends SimpleSubtitleDecoder {
     return new WebvttSubtitle(subtitles);
   }
 
+  /**
+   * Parses the header and style blocks, reads the timings of the cues and returns a {@link
+   * ChunkedSubtitle} that decodes the cues when they are needed, or returns {@code null} if the
+   * cues cannot be decoded in chunks.
+   */
+  @Nullable
+  private Subtitle decodeChunked(byte[] bytes, int length) throws SubtitleDecoderException {
+    ParsableByteArray webvttData = new ParsableByteArray(bytes, length);
+    try {
+      WebvttParserUtil.validateWebvttHeaderLine(webvttData);
+    } catch (ParserException e) {
+      throw new SubtitleDecoderException(e);
+    }
+    while (!TextUtils.isEmpty(webvttData.readLine())) {}
+
+    WebvttCueTimingReader cueTimingReader = new WebvttCueTimingReader(cssParser);
+    @Nullable
+    ChunkedSubtitle subtitle =
+        ChunkedSubtitle.create(
+            bytes,
+            length,
+            /* firstCuePosition= */ webvttData.getPosition(),
+            CHUNK_CUE_COUNT,
+            cueTimingReader,
+            chunkData -> decodeChunk(chunkData, cueTimingReader.styles),
+            /* decodeAheadExecutor= */ this::executeOnDecodeThread);
+    if (cueTimingReader.foundStyleBlockAfterCue) {
+      throw new SubtitleDecoderException("A style block was found after the first cue.");
+    }
+    return subtitle;
+  }
+
+  /**
+   * Decodes the cues in a chunk of the data. Chunks may be decoded concurrently on other threads,
+   * so this method must not use the parsing state of this decoder.
+   */
+  private static WebvttSubtitle decodeChunk(
+      ParsableByteArray chunkData, List<WebvttCssStyle> styles) {
+    WebvttCueParser cueParser = new WebvttCueParser();
+    WebvttCue.Builder cueBuilder = new WebvttCue.Builder();
+    ArrayList<WebvttCue> cues = new ArrayList<>();
+    int event;
+    while ((event = getNextEvent(chunkData)) != EVENT_END_OF_FILE) {
+      if (event == EVENT_COMMENT) {
+        skipComment(chunkData);
+      } else if (event == EVENT_CUE && cueParser.parseCue(chunkData, cueBuilder, styles)) {
+        cues.add(cueBuilder.build());
+        cueBuilder.reset();
+      }
+    }
+    return new WebvttSubtitle(cues);
+  }
+
+  /**
+   * Reads the optional identifier line and the timing line of a cue, and returns a matcher for the
+   * timing line, or {@code null} if the cue does not have a valid timing line.
+   */
+  @Nullable
+  private static Matcher readCueHeader(ParsableByteArray webvttData) {
+    @Nullable String firstLine = webvttData.readLine();
+    if (firstLine == null) {
+      return null;
+    }
+    Matcher cueHeaderMatcher = WebvttCueParser.CUE_HEADER_PATTERN.matcher(firstLine);
+    if (cueHeaderMatcher.matches()) {
+      return cueHeaderMatcher;
+    }
+    @Nullable String secondLine = webvttData.readLine();
+    if (secondLine == null) {
+      return null;
+    }
+    cueHeaderMatcher = WebvttCueParser.CUE_HEADER_PATTERN.matcher(secondLine);
+    return cueHeaderMatcher.matches() ? cueHeaderMatcher : null;
+  }
+
   /**
    * Positions the input right before the next event, and returns the kind of event found. Does not
    * consume any data from such event, if any.
@@ -122,4 +243,55 @@ public final class WebvttDecoder extends SimpleSubtitleDecoder {
     while (!TextUtils.isEmpty(parsableWebvttData.readLine())) {}
   }
 
+  /**
+   * Reads the timings of the cues, and parses the style blocks that precede them. Mirrors {@link
+   * WebvttCueParser#parseCue}, skipping the parsing of the cue settings and text.
+   */
+  private static final class WebvttCueTimingReader implements ChunkedSubtitle.CueTimingReader {
+
+    private final CssParser cssParser;
+
+    public final List<WebvttCssStyle> styles;
+    public boolean foundStyleBlockAfterCue;
+
+    private boolean foundCue;
+
+    public WebvttCueTimingReader(CssParser cssParser) {
+      this.cssParser = cssParser;
+      styles = new ArrayList<>();
+    }
+
+    @Override
+    public int readNextCue(ParsableByteArray webvttData, long[] cueTimesUs) {
+      int event;
+      while ((event = getNextEvent(webvttData)) != EVENT_END_OF_FILE) {
+        if (event == EVENT_COMMENT) {
+          skipComment(webvttData);
+        } else if (event == EVENT_STYLE_BLOCK) {
+          if (foundCue) {
+            foundStyleBlockAfterCue = true;
+            return C.INDEX_UNSET;
+          }
+          webvttData.readLine(); // Consume the "STYLE" header.
+          styles.addAll(cssParser.parseBlock(webvttData));
+        } else if (event == EVENT_CUE) {
+          int cuePosition = webvttData.getPosition();
+          @Nullable Matcher cueHeaderMatcher = readCueHeader(webvttData);
+          if (cueHeaderMatcher == null) {
+            continue;
+          }
+          try {
+            cueTimesUs[0] = WebvttParserUtil.parseTimestampUs(cueHeaderMatcher.group(1));
+            cueTimesUs[1] = WebvttParserUtil.parseTimestampUs(cueHeaderMatcher.group(2));
+          } catch (NumberFormatException e) {
+            continue;
+          }
+          while (!TextUtils.isEmpty(webvttData.readLine())) {}
+          foundCue = true;
+          return cuePosition;
+        }
+      }
+      return C.INDEX_UNSET;
+    }
+  }
 }
@@ -16,40 +16,60 @@
 package com.google.android.exoplayer2.text.webvtt;
 
 import android.text.SpannableStringBuilder;
+import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.text.Cue;
 import com.google.android.exoplayer2.text.Subtitle;
+import com.google.android.exoplayer2.text.TimeIntervalIndex;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Util;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import org.checkerframework.checker.nullness.compatqual.NullableType;
 
 /**
  * A representation of a WebVTT subtitle.
+ *
+ * <p>Cues are held in a {@link TimeIntervalIndex}, so that the cues active at a given time are
+ * found without iterating over all cues. The set of active cues only changes at event times, so
+ * the cues returned by {@link #getCues(long)} are cached for each interval between consecutive
+ * event times.
  */
 /* package */ final class WebvttSubtitle implements Subtitle {
 
   private final List<WebvttCue> cues;
   private final int numCues;
-  private final long[] cueTimesUs;
   private final long[] sortedCueTimesUs;
+  private final TimeIntervalIndex cueIntervalIndex;
+  /**
+   * The cues for each interval between event times, indexed by the number of event times that are
+   * less than or equal to the times in the interval, or null if not yet computed.
+   */
+  private final @NullableType List<Cue>[] cuesByEventTimeInterval;
 
   /**
    * @param cues A list of the cues in this subtitle.
    */
+  @SuppressWarnings("unchecked")
   public WebvttSubtitle(List<WebvttCue> cues) {
     this.cues = cues;
     numCues = cues.size();
-    cueTimesUs = new long[2 * numCues];
+    sortedCueTimesUs = new long[2 * numCues];
+    long[] startTimesUs = new long[numCues];
+    long[] endTimesUs = new long[numCues];
     for (int cueIndex = 0; cueIndex < numCues; cueIndex++) {
       WebvttCue cue = cues.get(cueIndex);
       int arrayIndex = cueIndex * 2;
-      cueTimesUs[arrayIndex] = cue.startTime;
-      cueTimesUs[arrayIndex + 1] = cue.endTime;
+      sortedCueTimesUs[arrayIndex] = cue.startTime;
+      sortedCueTimesUs[arrayIndex + 1] = cue.endTime;
+      startTimesUs[cueIndex] = cue.startTime;
+      endTimesUs[cueIndex] = cue.endTime;
     }
-    sortedCueTimesUs = Arrays.copyOf(cueTimesUs, cueTimesUs.length);
     Arrays.sort(sortedCueTimesUs);
+    cueIntervalIndex = new TimeIntervalIndex(startTimesUs, endTimesUs);
+    cuesByEventTimeInterval = (List<Cue>[]) new List<?>[sortedCueTimesUs.length + 1];
   }
 
   @Override
@@ -72,34 +92,46 @@ import java.util.List;
 
   @Override
   public List<Cue> getCues(long timeUs) {
+    int intervalIndex = Util.binarySearchCeil(sortedCueTimesUs, timeUs, false, false);
+    @Nullable List<Cue> cachedCues = cuesByEventTimeInterval[intervalIndex];
+    if (cachedCues != null) {
+      return cachedCues;
+    }
+    List<Cue> cues = Collections.unmodifiableList(computeCues(timeUs));
+    cuesByEventTimeInterval[intervalIndex] = cues;
+    return cues;
+  }
+
+  private List<Cue> computeCues(long timeUs) {
     List<Cue> list = new ArrayList<>();
+    // The active cues are found in their original order.
+    int activeCueCount = cueIntervalIndex.query(timeUs);
+
     WebvttCue firstNormalCue = null;
     SpannableStringBuilder normalCueTextBuilder = null;
 
-    for (int i = 0; i < numCues; i++) {
-      if ((cueTimesUs[i * 2] <= timeUs) && (timeUs < cueTimesUs[i * 2 + 1])) {
-        WebvttCue cue = cues.get(i);
-        // TODO(ibaker): Replace this with a closer implementation of the WebVTT spec (keeping
-        // individual cues, but tweaking their `line` value):
-        // https://www.w3.org/TR/webvtt1/#cue-computed-line
-        if (cue.isNormalCue()) {
-          // we want to merge all of the normal cues into a single cue to ensure they are drawn
-          // correctly (i.e. don't overlap) and to emulate roll-up, but only if there are multiple
-          // normal cues, otherwise we can just append the single normal cue
-          if (firstNormalCue == null) {
-            firstNormalCue = cue;
-          } else if (normalCueTextBuilder == null) {
-            normalCueTextBuilder = new SpannableStringBuilder();
-            normalCueTextBuilder
-                .append(Assertions.checkNotNull(firstNormalCue.text))
-                .append("\n")
-                .append(Assertions.checkNotNull(cue.text));
-          } else {
-            normalCueTextBuilder.append("\n").append(Assertions.checkNotNull(cue.text));
-          }
+    for (int i = 0; i < activeCueCount; i++) {
+      WebvttCue cue = cues.get(cueIntervalIndex.getQueryResult(i));
+      // TODO(ibaker): Replace this with a closer implementation of the WebVTT spec (keeping
+      // individual cues, but tweaking their `line` value):
+      // https://www.w3.org/TR/webvtt1/#cue-computed-line
+      if (cue.isNormalCue()) {
+        // we want to merge all of the normal cues into a single cue to ensure they are drawn
+        // correctly (i.e. don't overlap) and to emulate roll-up, but only if there are multiple
+        // normal cues, otherwise we can just append the single normal cue
+        if (firstNormalCue == null) {
+          firstNormalCue = cue;
+        } else if (normalCueTextBuilder == null) {
+          normalCueTextBuilder = new SpannableStringBuilder();
+          normalCueTextBuilder
+              .append(Assertions.checkNotNull(firstNormalCue.text))
+              .append("\n")
+              .append(Assertions.checkNotNull(cue.text));
         } else {
-          list.add(cue);
+          normalCueTextBuilder.append("\n").append(Assertions.checkNotNull(cue.text));
         }
+      } else {
+        list.add(cue);
       }
     }
     if (normalCueTextBuilder != null) {
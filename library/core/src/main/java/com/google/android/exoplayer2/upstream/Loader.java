@@ -31,7 +31,10 @@ import java.io.IOException;
 import java.lang.annotation.Documented;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Manages the background loading of {@link Loadable}s.
@@ -188,16 +191,42 @@ public final class Loader implements LoaderErrorThrower {
     }
   }
 
-  private final ExecutorService downloadExecutorService;
+  private final Executor downloadExecutor;
+  @Nullable private final ExecutorService downloadExecutorService;
 
   @Nullable private LoadTask<? extends Loadable> currentTask;
   @Nullable private IOException fatalError;
 
   /**
+   * Creates a loader that loads on its own thread.
+   *
    * @param threadName A name for the loader's thread.
    */
   public Loader(String threadName) {
-    this.downloadExecutorService = Util.newSingleThreadExecutor(threadName);
+    this(threadName, /* sharedExecutor= */ null);
+  }
+
+  /**
+   * Creates a loader.
+   *
+   * @param threadName A name for the loader's thread. Ignored if {@code sharedExecutor} is not
+   *     null.
+   * @param sharedExecutor An executor shared with other loaders on which loads are run, or null to
+   *     create a thread for this loader. Loads of this loader are run one at a time, in order. The
+   *     executor is not shut down when the loader is released. Sharing an executor bounds the
+   *     number of loading threads when running several players at the same time. It should allow
+   *     at least as many concurrent loads as the players need to make progress (e.g. one audio,
+   *     one video and one manifest load per player), or loads will queue behind each other. If the
+   *     executor rejects a load, the load fails with an {@link UnexpectedLoaderException}.
+   */
+  public Loader(String threadName, @Nullable Executor sharedExecutor) {
+    if (sharedExecutor != null) {
+      downloadExecutorService = null;
+      downloadExecutor = new SerialExecutor(sharedExecutor);
+    } else {
+      downloadExecutorService = Util.newSingleThreadExecutor(threadName);
+      downloadExecutor = downloadExecutorService;
+    }
   }
 
   /**
@@ -279,9 +308,11 @@ public final class Loader implements LoaderErrorThrower {
       currentTask.cancel(true);
     }
     if (callback != null) {
-      downloadExecutorService.execute(new ReleaseTask(callback));
+      downloadExecutor.execute(new ReleaseTask(callback));
+    }
+    if (downloadExecutorService != null) {
+      downloadExecutorService.shutdown();
     }
-    downloadExecutorService.shutdown();
   }
 
   // LoaderErrorThrower implementation.
@@ -323,7 +354,7 @@ public final class Loader implements LoaderErrorThrower {
     @Nullable private IOException currentError;
     private int errorCount;
 
-    @Nullable private volatile Thread executorThread;
+    @Nullable private Thread executorThread;
     private volatile boolean canceled;
     private volatile boolean released;
 
@@ -363,9 +394,12 @@ public final class Loader implements LoaderErrorThrower {
       } else {
         canceled = true;
         loadable.cancelLoad();
-        Thread executorThread = this.executorThread;
-        if (executorThread != null) {
-          executorThread.interrupt();
+        synchronized (this) {
+          // The thread is null once the load has finished, so that a thread of a shared executor
+          // isn't interrupted while it runs another load.
+          if (executorThread != null) {
+            executorThread.interrupt();
+          }
         }
       }
       if (released) {
@@ -383,8 +417,10 @@ public final class Loader implements LoaderErrorThrower {
 
     @Override
     public void run() {
-      try {
+      synchronized (this) {
         executorThread = Thread.currentThread();
+      }
+      try {
         if (!canceled) {
           TraceUtil.beginSection("load:" + loadable.getClass().getSimpleName());
           try {
@@ -429,6 +465,12 @@ public final class Loader implements LoaderErrorThrower {
           obtainMessage(MSG_FATAL_ERROR, e).sendToTarget();
         }
         throw e;
+      } finally {
+        synchronized (this) {
+          executorThread = null;
+          // Clear any interrupt from a cancellation that the load didn't handle.
+          Thread.interrupted();
+        }
       }
     }
 
@@ -490,7 +532,14 @@ public final class Loader implements LoaderErrorThrower {
 
     private void execute() {
       currentError = null;
-      downloadExecutorService.execute(Assertions.checkNotNull(currentTask));
+      downloadExecutor.execute(Assertions.checkNotNull(currentTask));
+    }
+
+    /** Called instead of {@link #run()} if the executor rejected the task. */
+    private void onExecutionRejected(RejectedExecutionException e) {
+      if (!released) {
+        obtainMessage(MSG_IO_EXCEPTION, new UnexpectedLoaderException(e)).sendToTarget();
+      }
     }
 
     private void finish() {
@@ -503,6 +552,68 @@ public final class Loader implements LoaderErrorThrower {
 
   }
 
+  /**
+   * Runs tasks one at a time on an underlying executor, in the order in which they're submitted.
+   * This preserves the ordering guarantees of a single thread executor, which are needed so that
+   * {@link ReleaseCallback#onLoaderReleased()} is called after any canceled load has finished.
+   */
+  private static final class SerialExecutor implements Executor {
+
+    private final Executor executor;
+    private final ArrayDeque<Runnable> tasks;
+
+    @Nullable private Runnable activeTask;
+
+    public SerialExecutor(Executor executor) {
+      this.executor = executor;
+      tasks = new ArrayDeque<>();
+    }
+
+    @Override
+    public synchronized void execute(Runnable runnable) {
+      tasks.add(runnable);
+      if (activeTask == null) {
+        scheduleNext();
+      }
+    }
+
+    private synchronized void scheduleNext() {
+      @Nullable Runnable task = tasks.poll();
+      activeTask = task;
+      if (task == null) {
+        return;
+      }
+      try {
+        executor.execute(
+            () -> {
+              try {
+                task.run();
+              } finally {
+                scheduleNext();
+              }
+            });
+      } catch (RejectedExecutionException e) {
+        // The executor has been shut down, or is saturated. Fail the pending tasks rather than
+        // dropping them, so that nothing waits for them to run.
+        activeTask = null;
+        reject(task, e);
+        @Nullable Runnable pendingTask;
+        while ((pendingTask = tasks.poll()) != null) {
+          reject(pendingTask, e);
+        }
+      }
+    }
+
+    private static void reject(Runnable task, RejectedExecutionException e) {
+      if (task instanceof LoadTask) {
+        ((LoadTask<?>) task).onExecutionRejected(e);
+      } else {
+        // Release callbacks must still be called. No load is running, so they can run here.
+        task.run();
+      }
+    }
+  }
+
   private static final class ReleaseTask implements Runnable {
 
     private final ReleaseCallback callback;
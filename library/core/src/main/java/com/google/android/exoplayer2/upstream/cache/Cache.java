@@ -62,6 +62,22 @@ public interface Cache {
      * @param newSpan The new {@link CacheSpan}, which has been added to the cache.
      */
     void onSpanTouched(Cache cache, CacheSpan oldSpan, CacheSpan newSpan);
+
+    /**
+     * Called when the data of an existing {@link CacheSpan} is moved within the cache, causing it
+     * to be replaced. Unlike {@link #onSpanTouched(Cache, CacheSpan, CacheSpan)}, this isn't caused
+     * by an access to the data. The new {@link CacheSpan} represents the same data as the one it
+     * replaces, however {@link CacheSpan#file} and {@link CacheSpan#fileOffset} may have changed.
+     *
+     * <p>The default implementation calls {@link #onSpanTouched(Cache, CacheSpan, CacheSpan)}.
+     *
+     * @param cache The source of the event.
+     * @param oldSpan The old {@link CacheSpan}, which has been removed from the cache.
+     * @param newSpan The new {@link CacheSpan}, which has been added to the cache.
+     */
+    default void onSpanMoved(Cache cache, CacheSpan oldSpan, CacheSpan newSpan) {
+      onSpanTouched(cache, oldSpan, newSpan);
+    }
   }
 
   /**
@@ -221,6 +237,42 @@ public interface Cache {
   @WorkerThread
   void commitFile(File file, long length) throws CacheException;
 
+  /**
+   * Commits a file into the cache, together with a checksum of its data that can be used to detect
+   * if the file is damaged later. Must only be called when holding a corresponding hole {@link
+   * CacheSpan} obtained from {@link #startReadWrite(String, long)}.
+   *
+   * <p>The default implementation ignores the checksum and calls {@link #commitFile(File, long)}.
+   *
+   * <p>This method may be slow and shouldn't normally be called on the main thread.
+   *
+   * @param file A newly written cache file.
+   * @param length The length of the newly written cache file in bytes.
+   * @param checksum The {@link java.util.zip.CRC32} checksum of the data of the file.
+   * @throws CacheException If an error is encountered.
+   */
+  @WorkerThread
+  default void commitFile(File file, long length, long checksum) throws CacheException {
+    commitFile(file, length);
+  }
+
+  /**
+   * Verifies the data of the cached spans for a key against the checksums with which their files
+   * were committed, and removes spans whose data is damaged so that it can be loaded again.
+   *
+   * <p>The default implementation does nothing and returns 0.
+   *
+   * <p>This method may be slow and shouldn't normally be called on the main thread.
+   *
+   * @param key The cache key for the data.
+   * @return The number of bytes that were removed from the cache because they were damaged.
+   * @throws CacheException If an error is encountered.
+   */
+  @WorkerThread
+  default long verifySpans(String key) throws CacheException {
+    return 0;
+  }
+
   /**
    * Releases a {@link CacheSpan} obtained from {@link #startReadWrite(String, long)} which
    * corresponded to a hole in the cache.
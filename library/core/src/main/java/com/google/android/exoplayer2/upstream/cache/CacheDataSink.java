@@ -15,6 +15,7 @@
  */
 package com.google.android.exoplayer2.upstream.cache;
 
+import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.upstream.DataSink;
 import com.google.android.exoplayer2.upstream.DataSpec;
@@ -23,10 +24,12 @@ import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Log;
 import com.google.android.exoplayer2.util.ReusableBufferedOutputStream;
 import com.google.android.exoplayer2.util.Util;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.zip.CRC32;
 
 /**
  * Writes data into a cache.
@@ -34,6 +37,9 @@ import java.io.OutputStream;
  * <p>If the {@link DataSpec} passed to {@link #open(DataSpec)} has the {@code length} field set to
  * {@link C#LENGTH_UNSET} and {@link DataSpec#FLAG_DONT_CACHE_IF_LENGTH_UNKNOWN} set, then {@link
  * #write(byte[], int, int)} calls are ignored.
+ *
+ * <p>Cache files are committed with a checksum of their data using {@link Cache#commitFile(File,
+ * long, long)}.
  */
 public final class CacheDataSink implements DataSink {
 
@@ -48,10 +54,15 @@ public final class CacheDataSink implements DataSink {
   private final Cache cache;
   private final long fragmentSize;
   private final int bufferSize;
+  @Nullable private final MemoryCacheTier memoryCacheTier;
+  @Nullable private final ByteArrayOutputStream memoryBuffer;
+  private final CRC32 fileChecksum;
 
   private DataSpec dataSpec;
   private long dataSpecFragmentSize;
   private File file;
+  private long filePosition;
+  private boolean fileFitsInMemory;
   private OutputStream outputStream;
   private long outputStreamBytesWritten;
   private long dataSpecBytesWritten;
@@ -93,6 +104,24 @@ public final class CacheDataSink implements DataSink {
    *     value disables buffering.
    */
   public CacheDataSink(Cache cache, long fragmentSize, int bufferSize) {
+    this(cache, fragmentSize, bufferSize, /* memoryCacheTier= */ null);
+  }
+
+  /**
+   * @param cache The cache into which data should be written.
+   * @param fragmentSize For requests that should be fragmented into multiple cache files, this is
+   *     the maximum size of a cache file in bytes. If set to {@link C#LENGTH_UNSET} then no
+   *     fragmentation will occur. Using a small value allows for finer-grained cache eviction
+   *     policies, at the cost of increased overhead both on the cache implementation and the file
+   *     system. Values under {@code (2 * 1024 * 1024)} are not recommended.
+   * @param bufferSize The buffer size in bytes for writing to a cache file. A zero or negative
+   *     value disables buffering.
+   * @param memoryCacheTier An optional {@link MemoryCacheTier} in which to put the data of cache
+   *     files that are no larger than {@link MemoryCacheTier#getMaxSpanSize()} when they're
+   *     committed.
+   */
+  public CacheDataSink(
+      Cache cache, long fragmentSize, int bufferSize, @Nullable MemoryCacheTier memoryCacheTier) {
     Assertions.checkState(
         fragmentSize > 0 || fragmentSize == C.LENGTH_UNSET,
         "fragmentSize must be positive or C.LENGTH_UNSET.");
@@ -106,6 +135,9 @@ public final class CacheDataSink implements DataSink {
     this.cache = Assertions.checkNotNull(cache);
     this.fragmentSize = fragmentSize == C.LENGTH_UNSET ? Long.MAX_VALUE : fragmentSize;
     this.bufferSize = bufferSize;
+    this.memoryCacheTier = memoryCacheTier;
+    memoryBuffer = memoryCacheTier != null ? new ByteArrayOutputStream() : null;
+    fileChecksum = new CRC32();
   }
 
   @Override
@@ -141,6 +173,10 @@ public final class CacheDataSink implements DataSink {
         int bytesToWrite =
             (int) Math.min(length - bytesWritten, dataSpecFragmentSize - outputStreamBytesWritten);
         outputStream.write(buffer, offset + bytesWritten, bytesToWrite);
+        fileChecksum.update(buffer, offset + bytesWritten, bytesToWrite);
+        if (fileFitsInMemory) {
+          maybeWriteToMemoryBuffer(buffer, offset + bytesWritten, bytesToWrite);
+        }
         bytesWritten += bytesToWrite;
         outputStreamBytesWritten += bytesToWrite;
         dataSpecBytesWritten += bytesToWrite;
@@ -167,9 +203,12 @@ public final class CacheDataSink implements DataSink {
         dataSpec.length == C.LENGTH_UNSET
             ? C.LENGTH_UNSET
             : Math.min(dataSpec.length - dataSpecBytesWritten, dataSpecFragmentSize);
-    file =
-        cache.startFile(
-            dataSpec.key, dataSpec.absoluteStreamPosition + dataSpecBytesWritten, length);
+    filePosition = dataSpec.absoluteStreamPosition + dataSpecBytesWritten;
+    file = cache.startFile(dataSpec.key, filePosition, length);
+    if (memoryCacheTier != null && memoryBuffer != null) {
+      memoryBuffer.reset();
+      fileFitsInMemory = length == C.LENGTH_UNSET || length <= memoryCacheTier.getMaxSpanSize();
+    }
     FileOutputStream underlyingFileOutputStream = new FileOutputStream(file);
     if (bufferSize > 0) {
       if (bufferedOutputStream == null) {
@@ -183,6 +222,7 @@ public final class CacheDataSink implements DataSink {
       outputStream = underlyingFileOutputStream;
     }
     outputStreamBytesWritten = 0;
+    fileChecksum.reset();
   }
 
   private void closeCurrentOutputStream() throws IOException {
@@ -200,11 +240,28 @@ public final class CacheDataSink implements DataSink {
       File fileToCommit = file;
       file = null;
       if (success) {
-        cache.commitFile(fileToCommit, outputStreamBytesWritten);
+        cache.commitFile(fileToCommit, outputStreamBytesWritten, fileChecksum.getValue());
+        if (fileFitsInMemory && memoryCacheTier != null && memoryBuffer != null) {
+          memoryCacheTier.put(dataSpec.key, filePosition, memoryBuffer.toByteArray());
+        }
       } else {
         fileToCommit.delete();
       }
+      fileFitsInMemory = false;
+    }
+  }
+
+  private void maybeWriteToMemoryBuffer(byte[] buffer, int offset, int length) {
+    if (memoryCacheTier == null || memoryBuffer == null) {
+      return;
+    }
+    if (memoryBuffer.size() + length > memoryCacheTier.getMaxSpanSize()) {
+      // The file is too large to be kept in memory.
+      fileFitsInMemory = false;
+      memoryBuffer.reset();
+      return;
     }
+    memoryBuffer.write(buffer, offset, length);
   }
 
 }
@@ -15,6 +15,7 @@
  */
 package com.google.android.exoplayer2.upstream.cache;
 
+import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.upstream.DataSink;
 
 /**
@@ -25,6 +26,7 @@ public final class CacheDataSinkFactory implements DataSink.Factory {
   private final Cache cache;
   private final long fragmentSize;
   private final int bufferSize;
+  @Nullable private final MemoryCacheTier memoryCacheTier;
 
   /** @see CacheDataSink#CacheDataSink(Cache, long) */
   public CacheDataSinkFactory(Cache cache, long fragmentSize) {
@@ -33,13 +35,20 @@ public final class CacheDataSinkFactory implements DataSink.Factory {
 
   /** @see CacheDataSink#CacheDataSink(Cache, long, int) */
   public CacheDataSinkFactory(Cache cache, long fragmentSize, int bufferSize) {
+    this(cache, fragmentSize, bufferSize, /* memoryCacheTier= */ null);
+  }
+
+  /** @see CacheDataSink#CacheDataSink(Cache, long, int, MemoryCacheTier) */
+  public CacheDataSinkFactory(
+      Cache cache, long fragmentSize, int bufferSize, @Nullable MemoryCacheTier memoryCacheTier) {
     this.cache = cache;
     this.fragmentSize = fragmentSize;
     this.bufferSize = bufferSize;
+    this.memoryCacheTier = memoryCacheTier;
   }
 
   @Override
   public DataSink createDataSink() {
-    return new CacheDataSink(cache, fragmentSize, bufferSize);
+    return new CacheDataSink(cache, fragmentSize, bufferSize, memoryCacheTier);
   }
 }
@@ -16,9 +16,11 @@
 package com.google.android.exoplayer2.upstream.cache;
 
 import android.net.Uri;
+import android.os.SystemClock;
 import androidx.annotation.IntDef;
 import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.ByteArrayDataSource;
 import com.google.android.exoplayer2.upstream.DataSink;
 import com.google.android.exoplayer2.upstream.DataSource;
 import com.google.android.exoplayer2.upstream.DataSourceException;
@@ -29,6 +31,7 @@ import com.google.android.exoplayer2.upstream.TeeDataSource;
 import com.google.android.exoplayer2.upstream.TransferListener;
 import com.google.android.exoplayer2.upstream.cache.Cache.CacheException;
 import com.google.android.exoplayer2.util.Assertions;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.lang.annotation.Documented;
@@ -47,8 +50,8 @@ public final class CacheDataSource implements DataSource {
 
   /**
    * Flags controlling the CacheDataSource's behavior. Possible flag values are {@link
-   * #FLAG_BLOCK_ON_CACHE}, {@link #FLAG_IGNORE_CACHE_ON_ERROR} and {@link
-   * #FLAG_IGNORE_CACHE_FOR_UNSET_LENGTH_REQUESTS}.
+   * #FLAG_BLOCK_ON_CACHE}, {@link #FLAG_IGNORE_CACHE_ON_ERROR}, {@link
+   * #FLAG_IGNORE_CACHE_FOR_UNSET_LENGTH_REQUESTS} and {@link #FLAG_COALESCE_READS}.
    */
   @Documented
   @Retention(RetentionPolicy.SOURCE)
@@ -57,7 +60,8 @@ public final class CacheDataSource implements DataSource {
       value = {
         FLAG_BLOCK_ON_CACHE,
         FLAG_IGNORE_CACHE_ON_ERROR,
-        FLAG_IGNORE_CACHE_FOR_UNSET_LENGTH_REQUESTS
+        FLAG_IGNORE_CACHE_FOR_UNSET_LENGTH_REQUESTS,
+        FLAG_COALESCE_READS
       })
   public @interface Flags {}
   /**
@@ -79,6 +83,28 @@ public final class CacheDataSource implements DataSource {
    */
   public static final int FLAG_IGNORE_CACHE_FOR_UNSET_LENGTH_REQUESTS = 1 << 2; // 4
 
+  /**
+   * A flag indicating that if the cache key is locked because another data source is writing the
+   * data at the read position into the cache, we will wait for that data rather than requesting it
+   * from upstream a second time. Data is read from upstream if the other data source writes data
+   * that shows it isn't writing towards the read position, or if the data at the read position
+   * isn't written within {@link #COALESCE_READS_TIMEOUT_MS}. Has no effect if {@link
+   * #FLAG_BLOCK_ON_CACHE} is set.
+   *
+   * <p>Data becomes available to waiting readers each time the writer commits a fragment to the
+   * cache, so a smaller {@link CacheDataSink} fragment size allows them to start reading sooner.
+   */
+  public static final int FLAG_COALESCE_READS = 1 << 3; // 8
+
+  /**
+   * The maximum time to wait for another data source to write data when {@link
+   * #FLAG_COALESCE_READS} is set, in milliseconds.
+   */
+  public static final long COALESCE_READS_TIMEOUT_MS = 5000;
+
+  /** The interval at which to check whether the cache key has been unlocked, in milliseconds. */
+  private static final long COALESCE_READS_POLL_INTERVAL_MS = 100;
+
   /**
    * Reasons the cache may be ignored. One of {@link #CACHE_IGNORED_REASON_ERROR} or {@link
    * #CACHE_IGNORED_REASON_UNSET_LENGTH}.
@@ -116,6 +142,16 @@ public final class CacheDataSource implements DataSource {
      * @param reason Reason cache is bypassed.
      */
     void onCacheIgnored(@CacheIgnoredReason int reason);
+
+    /**
+     * Called when a cached span is opened for reading, if a {@link MemoryCacheTier} is used and
+     * the span isn't larger than {@link MemoryCacheTier#getMaxSpanSize()}.
+     *
+     * @param hit Whether the span was read from memory. If false, it was read from the cache, and
+     *     put in memory if the whole span was requested.
+     * @param spanLength The length of the span, in bytes.
+     */
+    default void onMemoryCacheTierAccess(boolean hit, long spanLength) {}
   }
 
   /** Minimum number of bytes to read before checking cache for availability. */
@@ -127,12 +163,15 @@ public final class CacheDataSource implements DataSource {
   private final DataSource upstreamDataSource;
   private final CacheKeyFactory cacheKeyFactory;
   @Nullable private final EventListener eventListener;
+  @Nullable private final MemoryCacheTier memoryCacheTier;
 
   private final boolean blockOnCache;
   private final boolean ignoreCacheOnError;
   private final boolean ignoreCacheForUnsetLengthRequests;
+  private final boolean coalesceReads;
 
   @Nullable private DataSource currentDataSource;
+  private boolean currentDataSourceIsMemory;
   private boolean currentDataSpecLengthUnset;
   @Nullable private Uri uri;
   @Nullable private Uri actualUri;
@@ -166,8 +205,9 @@ public final class CacheDataSource implements DataSource {
    *
    * @param cache The cache.
    * @param upstream A {@link DataSource} for reading data not in the cache.
-   * @param flags A combination of {@link #FLAG_BLOCK_ON_CACHE}, {@link #FLAG_IGNORE_CACHE_ON_ERROR}
-   *     and {@link #FLAG_IGNORE_CACHE_FOR_UNSET_LENGTH_REQUESTS}, or 0.
+   * @param flags A combination of {@link #FLAG_BLOCK_ON_CACHE}, {@link
+   *     #FLAG_IGNORE_CACHE_ON_ERROR}, {@link #FLAG_IGNORE_CACHE_FOR_UNSET_LENGTH_REQUESTS} and
+   *     {@link #FLAG_COALESCE_READS}, or 0.
    */
   public CacheDataSource(Cache cache, DataSource upstream, @Flags int flags) {
     this(
@@ -189,8 +229,9 @@ public final class CacheDataSource implements DataSource {
    * @param cacheReadDataSource A {@link DataSource} for reading data from the cache.
    * @param cacheWriteDataSink A {@link DataSink} for writing data to the cache. If null, cache is
    *     accessed read-only.
-   * @param flags A combination of {@link #FLAG_BLOCK_ON_CACHE}, {@link #FLAG_IGNORE_CACHE_ON_ERROR}
-   *     and {@link #FLAG_IGNORE_CACHE_FOR_UNSET_LENGTH_REQUESTS}, or 0.
+   * @param flags A combination of {@link #FLAG_BLOCK_ON_CACHE}, {@link
+   *     #FLAG_IGNORE_CACHE_ON_ERROR}, {@link #FLAG_IGNORE_CACHE_FOR_UNSET_LENGTH_REQUESTS} and
+   *     {@link #FLAG_COALESCE_READS}, or 0.
    * @param eventListener An optional {@link EventListener} to receive events.
    */
   public CacheDataSource(
@@ -220,8 +261,9 @@ public final class CacheDataSource implements DataSource {
    * @param cacheReadDataSource A {@link DataSource} for reading data from the cache.
    * @param cacheWriteDataSink A {@link DataSink} for writing data to the cache. If null, cache is
    *     accessed read-only.
-   * @param flags A combination of {@link #FLAG_BLOCK_ON_CACHE}, {@link #FLAG_IGNORE_CACHE_ON_ERROR}
-   *     and {@link #FLAG_IGNORE_CACHE_FOR_UNSET_LENGTH_REQUESTS}, or 0.
+   * @param flags A combination of {@link #FLAG_BLOCK_ON_CACHE}, {@link
+   *     #FLAG_IGNORE_CACHE_ON_ERROR}, {@link #FLAG_IGNORE_CACHE_FOR_UNSET_LENGTH_REQUESTS} and
+   *     {@link #FLAG_COALESCE_READS}, or 0.
    * @param eventListener An optional {@link EventListener} to receive events.
    * @param cacheKeyFactory An optional factory for cache keys.
    */
@@ -233,6 +275,47 @@ public final class CacheDataSource implements DataSource {
       @Flags int flags,
       @Nullable EventListener eventListener,
       @Nullable CacheKeyFactory cacheKeyFactory) {
+    this(
+        cache,
+        upstream,
+        cacheReadDataSource,
+        cacheWriteDataSink,
+        flags,
+        eventListener,
+        cacheKeyFactory,
+        /* memoryCacheTier= */ null);
+  }
+
+  /**
+   * Constructs an instance with arbitrary {@link DataSource} and {@link DataSink} instances for
+   * reading and writing the cache, and a {@link MemoryCacheTier} that keeps recently read spans in
+   * memory.
+   *
+   * @param cache The cache.
+   * @param upstream A {@link DataSource} for reading data not in the cache.
+   * @param cacheReadDataSource A {@link DataSource} for reading data from the cache. Not used for
+   *     spans that are read from the {@code memoryCacheTier}.
+   * @param cacheWriteDataSink A {@link DataSink} for writing data to the cache. If null, cache is
+   *     accessed read-only. To put written spans in memory, pass the {@code memoryCacheTier} to
+   *     the {@link CacheDataSink} as well, unless the data is transformed before it's written to
+   *     the sink, for example encrypted.
+   * @param flags A combination of {@link #FLAG_BLOCK_ON_CACHE}, {@link
+   *     #FLAG_IGNORE_CACHE_ON_ERROR}, {@link #FLAG_IGNORE_CACHE_FOR_UNSET_LENGTH_REQUESTS} and
+   *     {@link #FLAG_COALESCE_READS}, or 0.
+   * @param eventListener An optional {@link EventListener} to receive events.
+   * @param cacheKeyFactory An optional factory for cache keys.
+   * @param memoryCacheTier An optional {@link MemoryCacheTier} to read cached spans from, and to
+   *     put spans in when they're read from the cache files.
+   */
+  public CacheDataSource(
+      Cache cache,
+      DataSource upstream,
+      DataSource cacheReadDataSource,
+      @Nullable DataSink cacheWriteDataSink,
+      @Flags int flags,
+      @Nullable EventListener eventListener,
+      @Nullable CacheKeyFactory cacheKeyFactory,
+      @Nullable MemoryCacheTier memoryCacheTier) {
     this.cache = cache;
     this.cacheReadDataSource = cacheReadDataSource;
     this.cacheKeyFactory =
@@ -241,6 +324,7 @@ public final class CacheDataSource implements DataSource {
     this.ignoreCacheOnError = (flags & FLAG_IGNORE_CACHE_ON_ERROR) != 0;
     this.ignoreCacheForUnsetLengthRequests =
         (flags & FLAG_IGNORE_CACHE_FOR_UNSET_LENGTH_REQUESTS) != 0;
+    this.coalesceReads = (flags & FLAG_COALESCE_READS) != 0;
     this.upstreamDataSource = upstream;
     if (cacheWriteDataSink != null) {
       this.cacheWriteDataSource = new TeeDataSource(upstream, cacheWriteDataSink);
@@ -248,6 +332,7 @@ public final class CacheDataSource implements DataSource {
       this.cacheWriteDataSource = null;
     }
     this.eventListener = eventListener;
+    this.memoryCacheTier = memoryCacheTier;
   }
 
   @Override
@@ -393,12 +478,15 @@ public final class CacheDataSource implements DataSource {
         Thread.currentThread().interrupt();
         throw new InterruptedIOException();
       }
+    } else if (coalesceReads && !checkCache) {
+      nextSpan = startReadWriteCoalescing(key, readPosition);
     } else {
       nextSpan = cache.startReadWriteNonBlocking(key, readPosition);
     }
 
     DataSpec nextDataSpec;
     DataSource nextDataSource;
+    boolean nextDataSourceIsMemory = false;
     if (nextSpan == null) {
       // The data is locked in the cache, or we're ignoring the cache. Bypass the cache and read
       // from upstream.
@@ -417,15 +505,32 @@ public final class CacheDataSource implements DataSource {
     } else if (nextSpan.isCached) {
       // Data is cached, read from cache.
       Uri fileUri = Uri.fromFile(nextSpan.file);
-      long filePosition = readPosition - nextSpan.position;
-      long length = nextSpan.length - filePosition;
+      long positionInSpan = readPosition - nextSpan.position;
+      long filePosition = nextSpan.fileOffset + positionInSpan;
+      long length = nextSpan.length - positionInSpan;
       if (bytesRemaining != C.LENGTH_UNSET) {
         length = Math.min(length, bytesRemaining);
       }
-      // Deliberately skip the HTTP-related parameters since we're reading from the cache, not
-      // making an HTTP request.
-      nextDataSpec = new DataSpec(fileUri, readPosition, filePosition, length, key, flags);
-      nextDataSource = cacheReadDataSource;
+      @Nullable byte[] spanData;
+      try {
+        spanData = getSpanDataFromMemoryCacheTier(nextSpan, positionInSpan, length);
+      } catch (IOException e) {
+        if (isSpanFileMissing(nextSpan)) {
+          openNextSource(checkCache);
+          return;
+        }
+        throw e;
+      }
+      if (spanData != null) {
+        nextDataSpec = new DataSpec(fileUri, readPosition, positionInSpan, length, key, flags);
+        nextDataSource = new ByteArrayDataSource(spanData);
+        nextDataSourceIsMemory = true;
+      } else {
+        // Deliberately skip the HTTP-related parameters since we're reading from the cache, not
+        // making an HTTP request.
+        nextDataSpec = new DataSpec(fileUri, readPosition, filePosition, length, key, flags);
+        nextDataSource = cacheReadDataSource;
+      }
     } else {
       // Data is not cached, and data is not locked, read from upstream with cache backing.
       long length;
@@ -483,8 +588,19 @@ public final class CacheDataSource implements DataSource {
       currentHoleSpan = nextSpan;
     }
     currentDataSource = nextDataSource;
+    currentDataSourceIsMemory = nextDataSourceIsMemory;
     currentDataSpecLengthUnset = nextDataSpec.length == C.LENGTH_UNSET;
-    long resolvedLength = nextDataSource.open(nextDataSpec);
+    long resolvedLength;
+    try {
+      resolvedLength = nextDataSource.open(nextDataSpec);
+    } catch (IOException e) {
+      if (nextDataSource == cacheReadDataSource && isSpanFileMissing(nextSpan)) {
+        closeCurrentSource();
+        openNextSource(/* checkCache= */ false);
+        return;
+      }
+      throw e;
+    }
 
     // Update bytesRemaining, actualUri and (if writing to cache) the cache metadata.
     ContentMetadataMutations mutations = new ContentMetadataMutations();
@@ -502,6 +618,141 @@ public final class CacheDataSource implements DataSource {
     }
   }
 
+  /**
+   * Starts a read or write operation at the given position, waiting for data that another data
+   * source is writing into the cache if the cache key is locked.
+   *
+   * <p>The wait ends early if the spans added by the writer show that it isn't filling the uncached
+   * region that contains the position, i.e. if it adds data after the position, or before cached
+   * data that precedes the position.
+   *
+   * @param key The cache key of the data.
+   * @param position The position of the data.
+   * @return The {@link CacheSpan} returned by {@link Cache#startReadWriteNonBlocking(String,
+   *     long)}, or null if the cache key is still locked by a writer that isn't writing towards the
+   *     position, or that hasn't written the data at the position within {@link
+   *     #COALESCE_READS_TIMEOUT_MS}.
+   */
+  @Nullable
+  private CacheSpan startReadWriteCoalescing(String key, long position) throws IOException {
+    @Nullable CacheSpan span = cache.startReadWriteNonBlocking(key, position);
+    if (span != null) {
+      return span;
+    }
+    SpanAddedListener listener = new SpanAddedListener();
+    cache.addListener(key, listener);
+    try {
+      long deadlineMs = SystemClock.elapsedRealtime() + COALESCE_READS_TIMEOUT_MS;
+      while (true) {
+        // Check again after adding the listener, in case the data was written in the meantime.
+        span = cache.startReadWriteNonBlocking(key, position);
+        if (span != null) {
+          return span;
+        }
+        long nowMs = SystemClock.elapsedRealtime();
+        if (nowMs >= deadlineMs) {
+          return null;
+        }
+        // The listener isn't notified when the key is unlocked without data being written, so
+        // wait for at most the poll interval before checking again.
+        @Nullable
+        CacheSpan addedSpan =
+            listener.await(Math.min(deadlineMs - nowMs, COALESCE_READS_POLL_INTERVAL_MS));
+        if (addedSpan != null && !isWritingTowardsPosition(key, addedSpan, position)) {
+          return null;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } finally {
+      cache.removeListener(key, listener);
+    }
+  }
+
+  /**
+   * Returns whether a writer that has just added {@code addedSpan} may be filling the uncached
+   * region that contains {@code position}, or the region that ends right before it.
+   */
+  private boolean isWritingTowardsPosition(String key, CacheSpan addedSpan, long position) {
+    if (addedSpan.position > position) {
+      return false;
+    }
+    long writePosition = addedSpan.position + addedSpan.length;
+    if (writePosition >= position) {
+      return true;
+    }
+    // The writer's hole ends where cached data starts, so there must be no cached data between the
+    // write position and the position.
+    long gapLength = position - writePosition;
+    return -cache.getCachedLength(key, writePosition, gapLength) == gapLength;
+  }
+
+  /**
+   * Returns the data of a cached span from the {@link #memoryCacheTier}. If the span isn't in
+   * memory and the whole span is being read, its data is read through the {@link
+   * #cacheReadDataSource} and put in memory.
+   *
+   * @param span The cached span.
+   * @param positionInSpan The position in the span from which data is being read.
+   * @param length The length of the data being read.
+   * @return The data of the span, or null if there's no {@link #memoryCacheTier}, if the span is
+   *     too large to be kept in memory, or if the span isn't in memory and only part of it is
+   *     being read.
+   * @throws CacheException If an error occurs reading the span.
+   */
+  @Nullable
+  private byte[] getSpanDataFromMemoryCacheTier(CacheSpan span, long positionInSpan, long length)
+      throws CacheException {
+    if (memoryCacheTier == null || span.length > memoryCacheTier.getMaxSpanSize()) {
+      return null;
+    }
+    @Nullable byte[] data = memoryCacheTier.get(span.key, span.position, span.length);
+    boolean hit = data != null;
+    if (eventListener != null) {
+      eventListener.onMemoryCacheTierAccess(hit, span.length);
+    }
+    if (data == null && positionInSpan == 0 && length == span.length) {
+      try {
+        data = readSpanData(span);
+      } catch (IOException e) {
+        throw new CacheException(e);
+      }
+      memoryCacheTier.put(span.key, span.position, data);
+    }
+    return data;
+  }
+
+  /**
+   * Reads the data of a cached span through the {@link #cacheReadDataSource}, so that it's
+   * transformed in the same way as data read from the cache directly, for example decrypted.
+   */
+  private byte[] readSpanData(CacheSpan span) throws IOException {
+    byte[] data = new byte[(int) span.length];
+    DataSpec spanDataSpec =
+        new DataSpec(
+            Uri.fromFile(Assertions.checkNotNull(span.file)),
+            /* absoluteStreamPosition= */ span.position,
+            /* position= */ span.fileOffset,
+            span.length,
+            span.key,
+            /* flags= */ 0);
+    try {
+      cacheReadDataSource.open(spanDataSpec);
+      int bytesRead = 0;
+      while (bytesRead < data.length) {
+        int result = cacheReadDataSource.read(data, bytesRead, data.length - bytesRead);
+        if (result == C.RESULT_END_OF_INPUT) {
+          throw new EOFException();
+        }
+        bytesRead += result;
+      }
+    } finally {
+      cacheReadDataSource.close();
+    }
+    return data;
+  }
+
   private void setNoBytesRemainingAndMaybeStoreLength() throws IOException {
     bytesRemaining = 0;
     if (isWritingToCache()) {
@@ -525,13 +776,23 @@ public final class CacheDataSource implements DataSource {
   }
 
   private boolean isReadingFromCache() {
-    return currentDataSource == cacheReadDataSource;
+    return currentDataSource == cacheReadDataSource || currentDataSourceIsMemory;
   }
 
   private boolean isWritingToCache() {
     return currentDataSource == cacheWriteDataSource;
   }
 
+  /**
+   * Returns whether the file of a cached span no longer exists. This is the case if the span was
+   * removed, or moved to another file (for example by {@link SegmentedCache} compaction), after it
+   * was returned by the cache. Looking up the span again then returns its current location, or a
+   * hole.
+   */
+  private static boolean isSpanFileMissing(@Nullable CacheSpan span) {
+    return span != null && span.isCached && !Assertions.checkNotNull(span.file).exists();
+  }
+
   private void closeCurrentSource() throws IOException {
     if (currentDataSource == null) {
       return;
@@ -540,6 +801,7 @@ public final class CacheDataSource implements DataSource {
       currentDataSource.close();
     } finally {
       currentDataSource = null;
+      currentDataSourceIsMemory = false;
       currentDataSpecLengthUnset = false;
       if (currentHoleSpan != null) {
         cache.releaseHoleSpan(currentHoleSpan);
@@ -577,4 +839,42 @@ public final class CacheDataSource implements DataSource {
     }
   }
 
+  /** Listens for spans that are added to the cache. */
+  private static final class SpanAddedListener implements Cache.Listener {
+
+    @Nullable private CacheSpan lastAddedSpan;
+
+    /**
+     * Waits for a span to be added.
+     *
+     * @param timeoutMs The maximum time to wait, in milliseconds.
+     * @return The span that was added last since the previous call, or null if none was added.
+     * @throws InterruptedException If the thread is interrupted.
+     */
+    @Nullable
+    public synchronized CacheSpan await(long timeoutMs) throws InterruptedException {
+      if (lastAddedSpan == null) {
+        wait(timeoutMs);
+      }
+      @Nullable CacheSpan result = lastAddedSpan;
+      lastAddedSpan = null;
+      return result;
+    }
+
+    @Override
+    public synchronized void onSpanAdded(Cache cache, CacheSpan span) {
+      lastAddedSpan = span;
+      notifyAll();
+    }
+
+    @Override
+    public void onSpanRemoved(Cache cache, CacheSpan span) {
+      // Do nothing.
+    }
+
+    @Override
+    public void onSpanTouched(Cache cache, CacheSpan oldSpan, CacheSpan newSpan) {
+      // Do nothing.
+    }
+  }
 }
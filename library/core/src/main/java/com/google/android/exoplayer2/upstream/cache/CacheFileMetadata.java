@@ -15,14 +15,34 @@
  */
 package com.google.android.exoplayer2.upstream.cache;
 
+import androidx.annotation.Nullable;
+
 /** Metadata associated with a cache file. */
 /* package */ final class CacheFileMetadata {
 
+  /** Value for {@link #checksum} if the checksum of the file is unknown. */
+  public static final long CHECKSUM_UNSET = -1;
+
+  /**
+   * The name of the subdirectory of the cache directory that contains the file, an empty string if
+   * the file is in the cache directory itself, or null if unknown.
+   */
+  @Nullable public final String directory;
+
   public final long length;
   public final long lastTouchTimestamp;
+  /** The CRC32 checksum of the data of the file, or {@link #CHECKSUM_UNSET} if unknown. */
+  public final long checksum;
+
+  public CacheFileMetadata(@Nullable String directory, long length, long lastTouchTimestamp) {
+    this(directory, length, lastTouchTimestamp, CHECKSUM_UNSET);
+  }
 
-  public CacheFileMetadata(long length, long lastTouchTimestamp) {
+  public CacheFileMetadata(
+      @Nullable String directory, long length, long lastTouchTimestamp, long checksum) {
+    this.directory = directory;
     this.length = length;
     this.lastTouchTimestamp = lastTouchTimestamp;
+    this.checksum = checksum;
   }
 }
@@ -19,6 +19,7 @@ import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
+import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
 import com.google.android.exoplayer2.database.DatabaseIOException;
 import com.google.android.exoplayer2.database.DatabaseProvider;
@@ -33,21 +34,27 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 /* package */ final class CacheFileMetadataIndex {
 
   private static final String TABLE_PREFIX = DatabaseProvider.TABLE_PREFIX + "CacheFileMetadata";
-  private static final int TABLE_VERSION = 1;
+  private static final int TABLE_VERSION = 2;
+  // Version 2 added the directory and checksum columns.
+  private static final int TABLE_VERSION_WITHOUT_DIRECTORY = 1;
 
   private static final String COLUMN_NAME = "name";
   private static final String COLUMN_LENGTH = "length";
   private static final String COLUMN_LAST_TOUCH_TIMESTAMP = "last_touch_timestamp";
+  private static final String COLUMN_DIRECTORY = "directory";
+  private static final String COLUMN_CHECKSUM = "checksum";
 
   private static final int COLUMN_INDEX_NAME = 0;
   private static final int COLUMN_INDEX_LENGTH = 1;
   private static final int COLUMN_INDEX_LAST_TOUCH_TIMESTAMP = 2;
+  private static final int COLUMN_INDEX_DIRECTORY = 3;
+  private static final int COLUMN_INDEX_CHECKSUM = 4;
 
   private static final String WHERE_NAME_EQUALS = COLUMN_NAME + " = ?";
 
   private static final String[] COLUMNS =
       new String[] {
-        COLUMN_NAME, COLUMN_LENGTH, COLUMN_LAST_TOUCH_TIMESTAMP,
+        COLUMN_NAME, COLUMN_LENGTH, COLUMN_LAST_TOUCH_TIMESTAMP, COLUMN_DIRECTORY, COLUMN_CHECKSUM,
       };
   private static final String TABLE_SCHEMA =
       "("
@@ -56,7 +63,11 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
           + COLUMN_LENGTH
           + " INTEGER NOT NULL,"
           + COLUMN_LAST_TOUCH_TIMESTAMP
-          + " INTEGER NOT NULL)";
+          + " INTEGER NOT NULL,"
+          + COLUMN_DIRECTORY
+          + " TEXT,"
+          + COLUMN_CHECKSUM
+          + " INTEGER)";
 
   private final DatabaseProvider databaseProvider;
 
@@ -120,8 +131,17 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
         try {
           VersionTable.setVersion(
               writableDatabase, VersionTable.FEATURE_CACHE_FILE_METADATA, hexUid, TABLE_VERSION);
-          dropTable(writableDatabase, tableName);
-          writableDatabase.execSQL("CREATE TABLE " + tableName + " " + TABLE_SCHEMA);
+          if (version == TABLE_VERSION_WITHOUT_DIRECTORY) {
+            // Keep the existing metadata. The directories and checksums of the existing files are
+            // unknown.
+            writableDatabase.execSQL(
+                "ALTER TABLE " + tableName + " ADD COLUMN " + COLUMN_DIRECTORY + " TEXT");
+            writableDatabase.execSQL(
+                "ALTER TABLE " + tableName + " ADD COLUMN " + COLUMN_CHECKSUM + " INTEGER");
+          } else {
+            dropTable(writableDatabase, tableName);
+            writableDatabase.execSQL("CREATE TABLE " + tableName + " " + TABLE_SCHEMA);
+          }
           writableDatabase.setTransactionSuccessful();
         } finally {
           writableDatabase.endTransaction();
@@ -149,7 +169,15 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
         String name = cursor.getString(COLUMN_INDEX_NAME);
         long length = cursor.getLong(COLUMN_INDEX_LENGTH);
         long lastTouchTimestamp = cursor.getLong(COLUMN_INDEX_LAST_TOUCH_TIMESTAMP);
-        fileMetadata.put(name, new CacheFileMetadata(length, lastTouchTimestamp));
+        @Nullable
+        String directory =
+            cursor.isNull(COLUMN_INDEX_DIRECTORY) ? null : cursor.getString(COLUMN_INDEX_DIRECTORY);
+        long checksum =
+            cursor.isNull(COLUMN_INDEX_CHECKSUM)
+                ? CacheFileMetadata.CHECKSUM_UNSET
+                : cursor.getLong(COLUMN_INDEX_CHECKSUM);
+        fileMetadata.put(
+            name, new CacheFileMetadata(directory, length, lastTouchTimestamp, checksum));
       }
       return fileMetadata;
     } catch (SQLException e) {
@@ -163,20 +191,104 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
    * <p>This method may be slow and shouldn't normally be called on the main thread.
    *
    * @param name The name of the file.
+   * @param directory The name of the subdirectory of the cache directory that contains the file,
+   *     or an empty string if the file is in the cache directory itself.
+   * @param length The file length.
+   * @param lastTouchTimestamp The file last touch timestamp.
+   * @throws DatabaseIOException If an error occurs setting the metadata.
+   */
+  @WorkerThread
+  public void set(String name, String directory, long length, long lastTouchTimestamp)
+      throws DatabaseIOException {
+    set(name, directory, length, lastTouchTimestamp, CacheFileMetadata.CHECKSUM_UNSET);
+  }
+
+  /**
+   * Sets metadata for a given file.
+   *
+   * <p>This method may be slow and shouldn't normally be called on the main thread.
+   *
+   * @param name The name of the file.
+   * @param directory The name of the subdirectory of the cache directory that contains the file,
+   *     or an empty string if the file is in the cache directory itself.
    * @param length The file length.
    * @param lastTouchTimestamp The file last touch timestamp.
+   * @param checksum The CRC32 checksum of the data of the file, or {@link
+   *     CacheFileMetadata#CHECKSUM_UNSET} if unknown.
    * @throws DatabaseIOException If an error occurs setting the metadata.
    */
   @WorkerThread
-  public void set(String name, long length, long lastTouchTimestamp) throws DatabaseIOException {
+  public void set(
+      String name, String directory, long length, long lastTouchTimestamp, long checksum)
+      throws DatabaseIOException {
+    Assertions.checkNotNull(tableName);
+    try {
+      SQLiteDatabase writableDatabase = databaseProvider.getWritableDatabase();
+      writableDatabase.replaceOrThrow(
+          tableName,
+          /* nullColumnHack= */ null,
+          getContentValues(name, directory, length, lastTouchTimestamp, checksum));
+    } catch (SQLException e) {
+      throw new DatabaseIOException(e);
+    }
+  }
+
+  /**
+   * Sets the last touch timestamp of a file, keeping the rest of its metadata. Does nothing if
+   * there's no metadata for the file.
+   *
+   * <p>This method may be slow and shouldn't normally be called on the main thread.
+   *
+   * @param name The name of the file.
+   * @param lastTouchTimestamp The file last touch timestamp.
+   * @throws DatabaseIOException If an error occurs setting the timestamp.
+   */
+  @WorkerThread
+  public void setLastTouchTimestamp(String name, long lastTouchTimestamp)
+      throws DatabaseIOException {
     Assertions.checkNotNull(tableName);
     try {
       SQLiteDatabase writableDatabase = databaseProvider.getWritableDatabase();
       ContentValues values = new ContentValues();
-      values.put(COLUMN_NAME, name);
-      values.put(COLUMN_LENGTH, length);
       values.put(COLUMN_LAST_TOUCH_TIMESTAMP, lastTouchTimestamp);
-      writableDatabase.replaceOrThrow(tableName, /* nullColumnHack= */ null, values);
+      writableDatabase.update(tableName, values, WHERE_NAME_EQUALS, new String[] {name});
+    } catch (SQLException e) {
+      throw new DatabaseIOException(e);
+    }
+  }
+
+  /**
+   * Sets metadata for a number of files in a single transaction.
+   *
+   * <p>This method may be slow and shouldn't normally be called on the main thread.
+   *
+   * @param fileMetadata The metadata to set, keyed by file name. The directory of each {@link
+   *     CacheFileMetadata} must be known.
+   * @throws DatabaseIOException If an error occurs setting the metadata.
+   */
+  @WorkerThread
+  public void setAll(Map<String, CacheFileMetadata> fileMetadata) throws DatabaseIOException {
+    Assertions.checkNotNull(tableName);
+    try {
+      SQLiteDatabase writableDatabase = databaseProvider.getWritableDatabase();
+      writableDatabase.beginTransactionNonExclusive();
+      try {
+        for (Map.Entry<String, CacheFileMetadata> entry : fileMetadata.entrySet()) {
+          CacheFileMetadata metadata = entry.getValue();
+          writableDatabase.replaceOrThrow(
+              tableName,
+              /* nullColumnHack= */ null,
+              getContentValues(
+                  entry.getKey(),
+                  Assertions.checkNotNull(metadata.directory),
+                  metadata.length,
+                  metadata.lastTouchTimestamp,
+                  metadata.checksum));
+        }
+        writableDatabase.setTransactionSuccessful();
+      } finally {
+        writableDatabase.endTransaction();
+      }
     } catch (SQLException e) {
       throw new DatabaseIOException(e);
     }
@@ -242,6 +354,21 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
             /* orderBy= */ null);
   }
 
+  private static ContentValues getContentValues(
+      String name, String directory, long length, long lastTouchTimestamp, long checksum) {
+    ContentValues values = new ContentValues();
+    values.put(COLUMN_NAME, name);
+    values.put(COLUMN_LENGTH, length);
+    values.put(COLUMN_LAST_TOUCH_TIMESTAMP, lastTouchTimestamp);
+    values.put(COLUMN_DIRECTORY, directory);
+    if (checksum != CacheFileMetadata.CHECKSUM_UNSET) {
+      values.put(COLUMN_CHECKSUM, checksum);
+    } else {
+      values.putNull(COLUMN_CHECKSUM);
+    }
+    return values;
+  }
+
   private static void dropTable(SQLiteDatabase writableDatabase, String tableName) {
     writableDatabase.execSQL("DROP TABLE IF EXISTS " + tableName);
   }
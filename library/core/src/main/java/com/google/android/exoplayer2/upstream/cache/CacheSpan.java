@@ -43,6 +43,11 @@ public class CacheSpan implements Comparable<CacheSpan> {
   public final boolean isCached;
   /** The file corresponding to this {@link CacheSpan}, or null if {@link #isCached} is false. */
   @Nullable public final File file;
+  /**
+   * The offset of the data of this {@link CacheSpan} in {@link #file}. Non-zero only if the file
+   * contains the data of several spans.
+   */
+  public final long fileOffset;
   /** The last touch timestamp, or {@link C#TIME_UNSET} if {@link #isCached} is false. */
   public final long lastTouchTimestamp;
 
@@ -72,11 +77,34 @@ public class CacheSpan implements Comparable<CacheSpan> {
    */
   public CacheSpan(
       String key, long position, long length, long lastTouchTimestamp, @Nullable File file) {
+    this(key, position, length, lastTouchTimestamp, file, /* fileOffset= */ 0);
+  }
+
+  /**
+   * Creates a CacheSpan whose data is stored at an offset in a file.
+   *
+   * @param key The cache key that uniquely identifies the original stream.
+   * @param position The position of the {@link CacheSpan} in the original stream.
+   * @param length The length of the {@link CacheSpan}, or {@link C#LENGTH_UNSET} if this is an
+   *     open-ended hole.
+   * @param lastTouchTimestamp The last touch timestamp, or {@link C#TIME_UNSET} if {@link
+   *     #isCached} is false.
+   * @param file The file corresponding to this {@link CacheSpan}, or null if it's a hole.
+   * @param fileOffset The offset of the data of the {@link CacheSpan} in {@code file}.
+   */
+  public CacheSpan(
+      String key,
+      long position,
+      long length,
+      long lastTouchTimestamp,
+      @Nullable File file,
+      long fileOffset) {
     this.key = key;
     this.position = position;
     this.length = length;
     this.isCached = file != null;
     this.file = file;
+    this.fileOffset = fileOffset;
     this.lastTouchTimestamp = lastTouchTimestamp;
   }
 
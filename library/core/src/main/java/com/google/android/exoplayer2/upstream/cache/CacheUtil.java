@@ -337,6 +337,25 @@ public final class CacheUtil {
     }
   }
 
+  /**
+   * Verifies the cached data for the {@code dataSpec} against the checksums with which it was
+   * cached, and removes any data that's damaged. See {@link Cache#verifySpans(String)}.
+   *
+   * <p>This methods blocks until the operation is complete.
+   *
+   * @param dataSpec Defines the data to be verified. All cached data for its cache key is verified.
+   * @param cache A {@link Cache} to store the data.
+   * @param cacheKeyFactory An optional factory for cache keys.
+   * @return The number of bytes that were removed because they were damaged.
+   * @throws Cache.CacheException If an error occurs verifying the data.
+   */
+  @WorkerThread
+  public static long verify(
+      DataSpec dataSpec, Cache cache, @Nullable CacheKeyFactory cacheKeyFactory)
+      throws Cache.CacheException {
+    return cache.verifySpans(buildCacheKey(dataSpec, cacheKeyFactory));
+  }
+
   /**
    * Removes all of the data specified by the {@code dataSpec}.
    *
@@ -366,7 +366,7 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
    * @return a {@link DefaultContentMetadata} instance.
    * @throws IOException If an error occurs during reading from the input.
    */
-  private static DefaultContentMetadata readContentMetadata(DataInputStream input)
+  /* package */ static DefaultContentMetadata readContentMetadata(DataInputStream input)
       throws IOException {
     int size = input.readInt();
     HashMap<String, byte[]> metadata = new HashMap<>();
@@ -399,8 +399,8 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
    * @param output Output stream to store the values.
    * @throws IOException If an error occurs writing to the output.
    */
-  private static void writeContentMetadata(DefaultContentMetadata metadata, DataOutputStream output)
-      throws IOException {
+  /* package */ static void writeContentMetadata(
+      DefaultContentMetadata metadata, DataOutputStream output) throws IOException {
     Set<Map.Entry<String, byte[]>> entrySet = metadata.entrySet();
     output.writeInt(entrySet.size());
     for (Map.Entry<String, byte[]> entry : entrySet) {
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+/**
+ * Estimates how often items have been accessed recently, using a count-min sketch of 4-bit
+ * counters.
+ *
+ * <p>Each item is counted in four of the counters, and its estimated frequency is the smallest of
+ * them. Counters saturate at 15. Once the number of recorded accesses reaches ten times the
+ * capacity of the sketch, all counters are halved so that old accesses are gradually forgotten.
+ */
+/* package */ final class FrequencySketch {
+
+  private static final int MAX_FREQUENCY = 15;
+  private static final long RESET_MASK = 0x7777777777777777L;
+  private static final int[] SEEDS = {0x97CB3127, 0xB50B9E2D, 0x5C6A8BD1, 0x8C2DE473};
+
+  private final long[] table;
+  private final int counterMask;
+  private final int sampleSize;
+
+  private int size;
+
+  /**
+   * @param capacity The number of distinct items for which the sketch should give accurate
+   *     estimates.
+   */
+  public FrequencySketch(int capacity) {
+    // Each long holds 16 counters, and each item uses 4 of them.
+    int tableLength = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+    table = new long[tableLength];
+    counterMask = tableLength * 16 - 1;
+    sampleSize = 10 * tableLength;
+  }
+
+  /** Records an access to the item with the given hash code. */
+  public void increment(int hashCode) {
+    int hash = spread(hashCode);
+    boolean incremented = false;
+    for (int i = 0; i < SEEDS.length; i++) {
+      incremented |= incrementCounter(getCounterIndex(hash, i));
+    }
+    if (incremented && ++size >= sampleSize) {
+      reset();
+    }
+  }
+
+  /** Returns the estimated number of recent accesses to the item with the given hash code. */
+  public int getFrequency(int hashCode) {
+    int hash = spread(hashCode);
+    int frequency = MAX_FREQUENCY;
+    for (int i = 0; i < SEEDS.length; i++) {
+      frequency = Math.min(frequency, getCounter(getCounterIndex(hash, i)));
+    }
+    return frequency;
+  }
+
+  private int getCounterIndex(int hash, int i) {
+    int counterHash = (hash + SEEDS[i]) * SEEDS[i];
+    counterHash += counterHash >>> 16;
+    return counterHash & counterMask;
+  }
+
+  private int getCounter(int counterIndex) {
+    int shift = (counterIndex & 15) << 2;
+    return (int) ((table[counterIndex >>> 4] >>> shift) & 0xF);
+  }
+
+  private boolean incrementCounter(int counterIndex) {
+    if (getCounter(counterIndex) == MAX_FREQUENCY) {
+      return false;
+    }
+    int shift = (counterIndex & 15) << 2;
+    table[counterIndex >>> 4] += 1L << shift;
+    return true;
+  }
+
+  /** Halves all counters. */
+  private void reset() {
+    for (int i = 0; i < table.length; i++) {
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+    size /= 2;
+  }
+
+  private static int spread(int hashCode) {
+    int hash = hashCode * 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+}
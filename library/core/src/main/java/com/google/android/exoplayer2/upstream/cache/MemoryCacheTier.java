@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.util.Assertions;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the data of recently used cache spans in memory, so that data that's read repeatedly
+ * doesn't have to be read from the cache files each time.
+ *
+ * <p>An instance can be passed to {@link CacheDataSource} and {@link CacheDataSink}, which fill it
+ * when they read and write spans that are no larger than {@link #getMaxSpanSize()}. Spans are
+ * evicted in least recently used order when the total size of the data exceeds the maximum size.
+ * An instance can be shared by any number of data sources and sinks that use the same {@link
+ * Cache}.
+ *
+ * <p>The data of a span is only read from memory after the {@link Cache} has confirmed that the
+ * span is cached, so spans that are evicted from the cache are never read. The data is kept as it's
+ * stored in the cache files, so an instance must not be used if the cache is read and written
+ * through data sources and sinks that transform the data, for example to encrypt it.
+ */
+public final class MemoryCacheTier {
+
+  /** The default maximum size of a span that's kept in memory, in bytes. */
+  public static final int DEFAULT_MAX_SPAN_SIZE = 1024 * 1024;
+
+  private final long maxBytes;
+  private final int maxSpanSize;
+  private final LinkedHashMap<SpanKey, byte[]> spans;
+
+  private long currentBytes;
+
+  /**
+   * Creates an instance that keeps spans of at most {@link #DEFAULT_MAX_SPAN_SIZE} in memory.
+   *
+   * @param maxBytes The maximum number of bytes to keep in memory.
+   */
+  public MemoryCacheTier(long maxBytes) {
+    this(maxBytes, DEFAULT_MAX_SPAN_SIZE);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param maxBytes The maximum number of bytes to keep in memory.
+   * @param maxSpanSize The maximum size of a span that's kept in memory, in bytes.
+   */
+  public MemoryCacheTier(long maxBytes, int maxSpanSize) {
+    Assertions.checkArgument(maxSpanSize > 0);
+    this.maxBytes = maxBytes;
+    this.maxSpanSize = (int) Math.min(maxSpanSize, maxBytes);
+    spans =
+        new LinkedHashMap<>(
+            /* initialCapacity= */ 16, /* loadFactor= */ 0.75f, /* accessOrder= */ true);
+  }
+
+  /** Returns the maximum size of a span that's kept in memory, in bytes. */
+  public int getMaxSpanSize() {
+    return maxSpanSize;
+  }
+
+  /** Returns the number of bytes that are currently kept in memory. */
+  public synchronized long getCurrentBytes() {
+    return currentBytes;
+  }
+
+  /**
+   * Returns the data of a span, if it's in memory.
+   *
+   * @param key The cache key of the span.
+   * @param position The position of the span.
+   * @param length The length of the span.
+   * @return The data of the span, or null if it's not in memory. The returned array must not be
+   *     modified.
+   */
+  @Nullable
+  public synchronized byte[] get(String key, long position, long length) {
+    SpanKey spanKey = new SpanKey(key, position);
+    @Nullable byte[] data = spans.get(spanKey);
+    if (data != null && data.length != length) {
+      // The span has been replaced by one with a different length.
+      spans.remove(spanKey);
+      currentBytes -= data.length;
+      data = null;
+    }
+    return data;
+  }
+
+  /**
+   * Puts the data of a span in memory, replacing any data for a span at the same position. Does
+   * nothing if the data is empty or larger than {@link #getMaxSpanSize()}.
+   *
+   * @param key The cache key of the span.
+   * @param position The position of the span.
+   * @param data The data of the span. The array must not be modified after this call.
+   */
+  public synchronized void put(String key, long position, byte[] data) {
+    if (data.length == 0 || data.length > maxSpanSize) {
+      return;
+    }
+    @Nullable byte[] oldData = spans.put(new SpanKey(key, position), data);
+    if (oldData != null) {
+      currentBytes -= oldData.length;
+    }
+    currentBytes += data.length;
+    Iterator<byte[]> iterator = spans.values().iterator();
+    while (currentBytes > maxBytes) {
+      currentBytes -= iterator.next().length;
+      iterator.remove();
+    }
+  }
+
+  /**
+   * Removes the data of all spans of a content from memory. Should be called if the content is
+   * removed from the cache by other means than the data sources and sinks that use this instance,
+   * so that it can't be confused with content that's written later with the same key.
+   *
+   * @param key The cache key of the content.
+   */
+  public synchronized void removeContent(String key) {
+    Iterator<Map.Entry<SpanKey, byte[]>> iterator = spans.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<SpanKey, byte[]> entry = iterator.next();
+      if (entry.getKey().key.equals(key)) {
+        currentBytes -= entry.getValue().length;
+        iterator.remove();
+      }
+    }
+  }
+
+  /** Removes the data of all spans from memory. */
+  public synchronized void clear() {
+    spans.clear();
+    currentBytes = 0;
+  }
+
+  private static final class SpanKey {
+
+    public final String key;
+    public final long position;
+
+    public SpanKey(String key, long position) {
+      this.key = key;
+      this.position = position;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (obj == null || getClass() != obj.getClass()) {
+        return false;
+      }
+      SpanKey other = (SpanKey) obj;
+      return position == other.position && key.equals(other.key);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * key.hashCode() + (int) (position ^ (position >>> 32));
+    }
+  }
+}
@@ -0,0 +1,1230 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+import android.os.ConditionVariable;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.AtomicFile;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.Util;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
+
+/**
+ * A {@link Cache} implementation that stores the data of many spans in each of a small number of
+ * large segment files, rather than storing each span in its own file.
+ *
+ * <p>A {@link SimpleCache} holding segmented media with short segments consists of a very large
+ * number of small files. This cache instead appends the data of each committed span to the current
+ * segment file, and records the location of each span in an append-only journal. Segment files of
+ * which less than half of the data is still in use are compacted on a background thread, by copying
+ * their remaining spans to a new segment file.
+ *
+ * <p>Data is written to a staging file returned by {@link #startFile(String, long, long)}, and is
+ * copied into the current segment file when it's committed. The {@link CacheSpan#file} of a cached
+ * span is the segment file that contains it, and its data starts at {@link CacheSpan#fileOffset}.
+ * A compacted segment file is deleted once its spans have moved, including spans that readers have
+ * obtained but not yet opened. {@link CacheDataSource} looks such a span up again when it finds its
+ * file missing.
+ *
+ * <p>Only one instance of SegmentedCache is allowed for a given directory at a given time. The
+ * cache will delete any unrecognized files from the directory. Hence the directory cannot be used
+ * to store other files.
+ */
+public final class SegmentedCache implements Cache {
+
+  /** The default maximum size of a segment file, in bytes. */
+  public static final long DEFAULT_MAX_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+  private static final String TAG = "SegmentedCache";
+
+  private static final String JOURNAL_FILE_NAME = "journal";
+  private static final String STAGING_DIRECTORY_NAME = "staging";
+  private static final String SEGMENT_FILE_SUFFIX = ".seg";
+  private static final String STAGING_FILE_SUFFIX = ".tmp";
+
+  private static final int JOURNAL_VERSION = 1;
+
+  private static final int RECORD_TYPE_ADD_SPAN = 0;
+  private static final int RECORD_TYPE_REMOVE_SPAN = 1;
+  private static final int RECORD_TYPE_TOUCH_SPAN = 2;
+  private static final int RECORD_TYPE_SET_METADATA = 3;
+  private static final int RECORD_TYPE_REMOVE_CONTENT = 4;
+
+  /** Segment files are compacted once less than this fraction of their data is in use. */
+  private static final float MIN_SEGMENT_UTILIZATION = 0.5f;
+  /** The minimum number of redundant records in the journal before it's rewritten. */
+  private static final int MIN_REDUNDANT_JOURNAL_RECORDS = 1000;
+
+  private static final HashSet<File> lockedCacheDirs = new HashSet<>();
+
+  private final File cacheDir;
+  private final File stagingDir;
+  private final File journalFile;
+  private final CacheEvictor evictor;
+  private final long maxSegmentSize;
+  private final boolean touchCacheSpans;
+  private final HashMap<String, Content> contents;
+  private final HashMap<Integer, Segment> segments;
+  private final HashMap<File, SegmentSpan> stagingFiles;
+  private final HashMap<String, ArrayList<Listener>> listeners;
+  private final ExecutorService compactionExecutor;
+
+  private long uid;
+  private long totalSpace;
+  private int spanCount;
+  private int nextSegmentId;
+  private int nextStagingFileId;
+  private int journalRecordCount;
+  private boolean released;
+  @Nullable private DataOutputStream journalOutput;
+  @Nullable private Segment currentSegment;
+  @Nullable private RandomAccessFile currentSegmentFile;
+  private @MonotonicNonNull CacheException initializationException;
+
+  /**
+   * Constructs the cache, using segment files of up to {@link #DEFAULT_MAX_SEGMENT_SIZE} bytes.
+   *
+   * @param cacheDir A dedicated cache directory.
+   * @param evictor The evictor to be used. For download use cases where cache eviction should not
+   *     occur, use {@link NoOpCacheEvictor}.
+   */
+  public SegmentedCache(File cacheDir, CacheEvictor evictor) {
+    this(cacheDir, evictor, DEFAULT_MAX_SEGMENT_SIZE);
+  }
+
+  /**
+   * Constructs the cache.
+   *
+   * @param cacheDir A dedicated cache directory.
+   * @param evictor The evictor to be used. For download use cases where cache eviction should not
+   *     occur, use {@link NoOpCacheEvictor}.
+   * @param maxSegmentSize The size in bytes after which a new segment file is started. Spans are
+   *     never split between segment files, so a segment file that contains a single large span may
+   *     exceed this size.
+   */
+  public SegmentedCache(File cacheDir, CacheEvictor evictor, long maxSegmentSize) {
+    if (!lockFolder(cacheDir)) {
+      throw new IllegalStateException(
+          "Another SegmentedCache instance uses the folder: " + cacheDir);
+    }
+    this.cacheDir = cacheDir;
+    this.evictor = evictor;
+    this.maxSegmentSize = maxSegmentSize;
+    stagingDir = new File(cacheDir, STAGING_DIRECTORY_NAME);
+    journalFile = new File(cacheDir, JOURNAL_FILE_NAME);
+    touchCacheSpans = evictor.requiresCacheSpanTouches();
+    contents = new HashMap<>();
+    segments = new HashMap<>();
+    stagingFiles = new HashMap<>();
+    listeners = new HashMap<>();
+    compactionExecutor = Util.newSingleThreadExecutor("SegmentedCache:compaction");
+    uid = UID_UNSET;
+
+    // Start cache initialization.
+    final ConditionVariable conditionVariable = new ConditionVariable();
+    new Thread("SegmentedCache.initialize()") {
+      @Override
+      public void run() {
+        synchronized (SegmentedCache.this) {
+          conditionVariable.open();
+          initialize();
+          SegmentedCache.this.evictor.onCacheInitialized();
+        }
+      }
+    }.start();
+    conditionVariable.block();
+  }
+
+  /**
+   * Checks whether the cache was initialized successfully.
+   *
+   * @throws CacheException If an error occurred during initialization.
+   */
+  public synchronized void checkInitialization() throws CacheException {
+    if (initializationException != null) {
+      throw initializationException;
+    }
+  }
+
+  @Override
+  public synchronized long getUid() {
+    return uid;
+  }
+
+  @Override
+  public void release() {
+    synchronized (this) {
+      if (released) {
+        return;
+      }
+      listeners.clear();
+      // Compactions that are in progress are abandoned when they next acquire the lock.
+      compactionExecutor.shutdown();
+      try {
+        maybeRewriteJournal();
+      } finally {
+        Util.closeQuietly(journalOutput);
+        journalOutput = null;
+        Util.closeQuietly(currentSegmentFile);
+        currentSegmentFile = null;
+        released = true;
+      }
+    }
+    // Wait for an abandoned compaction to delete its staging file without holding the lock, which
+    // the compaction needs. The folder is unlocked afterwards, so that the staging files of a new
+    // instance for the same folder can't collide with the staging file of the compaction.
+    boolean interrupted = false;
+    while (true) {
+      try {
+        compactionExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    unlockFolder(cacheDir);
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public synchronized NavigableSet<CacheSpan> addListener(String key, Listener listener) {
+    Assertions.checkState(!released);
+    ArrayList<Listener> listenersForKey = listeners.get(key);
+    if (listenersForKey == null) {
+      listenersForKey = new ArrayList<>();
+      listeners.put(key, listenersForKey);
+    }
+    listenersForKey.add(listener);
+    return getCachedSpans(key);
+  }
+
+  @Override
+  public synchronized void removeListener(String key, Listener listener) {
+    if (released) {
+      return;
+    }
+    ArrayList<Listener> listenersForKey = listeners.get(key);
+    if (listenersForKey != null) {
+      listenersForKey.remove(listener);
+      if (listenersForKey.isEmpty()) {
+        listeners.remove(key);
+      }
+    }
+  }
+
+  @NonNull
+  @Override
+  public synchronized NavigableSet<CacheSpan> getCachedSpans(String key) {
+    Assertions.checkState(!released);
+    Content content = contents.get(key);
+    return content == null || content.spans.isEmpty()
+        ? new TreeSet<>()
+        : new TreeSet<CacheSpan>(content.spans);
+  }
+
+  @Override
+  public synchronized Set<String> getKeys() {
+    Assertions.checkState(!released);
+    return new HashSet<>(contents.keySet());
+  }
+
+  @Override
+  public synchronized long getCacheSpace() {
+    Assertions.checkState(!released);
+    return totalSpace;
+  }
+
+  @Override
+  public synchronized CacheSpan startReadWrite(String key, long position)
+      throws InterruptedException, CacheException {
+    Assertions.checkState(!released);
+    checkInitialization();
+
+    while (true) {
+      CacheSpan span = startReadWriteNonBlocking(key, position);
+      if (span != null) {
+        return span;
+      } else {
+        // Lock not available. We'll be woken up when a span is added, or when a locked span is
+        // released.
+        wait();
+      }
+    }
+  }
+
+  @Override
+  @Nullable
+  public synchronized CacheSpan startReadWriteNonBlocking(String key, long position)
+      throws CacheException {
+    Assertions.checkState(!released);
+    checkInitialization();
+
+    SegmentSpan span = getSpan(key, position);
+
+    if (span.isCached) {
+      // Read case.
+      return touchSpan(span);
+    }
+
+    Content content = getOrAddContent(key);
+    if (!content.locked) {
+      // Write case.
+      content.locked = true;
+      return span;
+    }
+
+    // Lock not available.
+    return null;
+  }
+
+  @Override
+  public synchronized File startFile(String key, long position, long length) throws CacheException {
+    Assertions.checkState(!released);
+    checkInitialization();
+
+    Content content = Assertions.checkNotNull(contents.get(key));
+    Assertions.checkState(content.locked);
+    if (!stagingDir.exists() && !stagingDir.mkdirs()) {
+      throw new CacheException("Failed to create staging directory: " + stagingDir);
+    }
+    evictor.onStartFile(this, key, position, length);
+    File file = new File(stagingDir, nextStagingFileId++ + STAGING_FILE_SUFFIX);
+    stagingFiles.put(file, SegmentSpan.createHole(key, position, C.LENGTH_UNSET));
+    return file;
+  }
+
+  @Override
+  public synchronized void commitFile(File file, long length) throws CacheException {
+    Assertions.checkState(!released);
+    SegmentSpan stagingSpan = stagingFiles.remove(file);
+    if (!file.exists()) {
+      return;
+    }
+    if (length == 0 || stagingSpan == null) {
+      file.delete();
+      return;
+    }
+
+    Content content = Assertions.checkNotNull(contents.get(stagingSpan.key));
+    Assertions.checkState(content.locked);
+
+    // Check if the span conflicts with the set content length
+    long contentLength = ContentMetadata.getContentLength(content.metadata);
+    if (contentLength != C.LENGTH_UNSET) {
+      Assertions.checkState((stagingSpan.position + length) <= contentLength);
+    }
+
+    SegmentSpan span;
+    try (FileInputStream inputStream = new FileInputStream(file)) {
+      span =
+          appendToCurrentSegment(
+              stagingSpan.key,
+              stagingSpan.position,
+              length,
+              System.currentTimeMillis(),
+              inputStream.getChannel(),
+              /* sourcePosition= */ 0);
+      writeAddSpanRecord(span);
+    } catch (IOException e) {
+      throw new CacheException(e);
+    } finally {
+      file.delete();
+    }
+    addSpan(span);
+    maybeRewriteJournal();
+    notifyAll();
+  }
+
+  @Override
+  public synchronized void releaseHoleSpan(CacheSpan holeSpan) {
+    Assertions.checkState(!released);
+    Content content = Assertions.checkNotNull(contents.get(holeSpan.key));
+    Assertions.checkState(content.locked);
+    content.locked = false;
+    maybeRemoveContent(content);
+    notifyAll();
+  }
+
+  @Override
+  public synchronized void removeSpan(CacheSpan span) {
+    Assertions.checkState(!released);
+    removeSpanInternal(span);
+    maybeRewriteJournal();
+  }
+
+  @Override
+  public synchronized boolean isCached(String key, long position, long length) {
+    Assertions.checkState(!released);
+    return getCachedLength(key, position, length) >= length;
+  }
+
+  @Override
+  public synchronized long getCachedLength(String key, long position, long length) {
+    Assertions.checkState(!released);
+    Content content = contents.get(key);
+    if (content == null) {
+      return -length;
+    }
+    SegmentSpan span = content.getSpan(position);
+    if (span.isHoleSpan()) {
+      // We don't have a span covering the start of the queried region.
+      return -Math.min(span.isOpenEnded() ? Long.MAX_VALUE : span.length, length);
+    }
+    long queryEndPosition = position + length;
+    long currentEndPosition = span.position + span.length;
+    if (currentEndPosition < queryEndPosition) {
+      for (SegmentSpan next : content.spans.tailSet(span, false)) {
+        if (next.position > currentEndPosition) {
+          // There's a hole in the cache within the queried region.
+          break;
+        }
+        currentEndPosition = Math.max(currentEndPosition, next.position + next.length);
+        if (currentEndPosition >= queryEndPosition) {
+          // We've found spans covering the queried region.
+          break;
+        }
+      }
+    }
+    return Math.min(currentEndPosition - position, length);
+  }
+
+  @Override
+  public synchronized void applyContentMetadataMutations(
+      String key, ContentMetadataMutations mutations) throws CacheException {
+    Assertions.checkState(!released);
+    checkInitialization();
+
+    Content content = getOrAddContent(key);
+    DefaultContentMetadata oldMetadata = content.metadata;
+    content.metadata = oldMetadata.copyWithMutationsApplied(mutations);
+    if (!content.metadata.equals(oldMetadata)) {
+      try {
+        DataOutputStream output = getJournalOutput();
+        output.writeByte(RECORD_TYPE_SET_METADATA);
+        output.writeUTF(key);
+        CachedContentIndex.writeContentMetadata(content.metadata, output);
+        onJournalRecordWritten(output);
+      } catch (IOException e) {
+        throw new CacheException(e);
+      }
+    }
+  }
+
+  @Override
+  public synchronized ContentMetadata getContentMetadata(String key) {
+    Assertions.checkState(!released);
+    Content content = contents.get(key);
+    return content != null ? content.metadata : DefaultContentMetadata.EMPTY;
+  }
+
+  /** Returns the number of segment files. */
+  @VisibleForTesting
+  /* package */ synchronized int getSegmentCount() {
+    return segments.size();
+  }
+
+  /** Waits for the segment compactions that have been scheduled so far to complete. */
+  @VisibleForTesting
+  /* package */ void awaitCompactions() throws InterruptedException, ExecutionException {
+    compactionExecutor.submit(() -> {}).get();
+  }
+
+  /** Ensures that the cache's in-memory representation has been initialized. */
+  private void initialize() {
+    if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+      String message = "Failed to create cache directory: " + cacheDir;
+      Log.e(TAG, message);
+      initializationException = new CacheException(message);
+      return;
+    }
+    // Staging files of a previous instance were never committed.
+    Util.recursiveDelete(stagingDir);
+
+    File[] files = cacheDir.listFiles();
+    if (files == null) {
+      String message = "Failed to list cache directory files: " + cacheDir;
+      Log.e(TAG, message);
+      initializationException = new CacheException(message);
+      return;
+    }
+    for (File file : files) {
+      String fileName = file.getName();
+      if (fileName.endsWith(SEGMENT_FILE_SUFFIX)) {
+        int id = parseSegmentId(fileName);
+        if (id != C.INDEX_UNSET) {
+          segments.put(id, new Segment(id, file, file.length()));
+          nextSegmentId = Math.max(nextSegmentId, id + 1);
+          continue;
+        }
+      }
+      if (!fileName.startsWith(JOURNAL_FILE_NAME)) {
+        Util.recursiveDelete(file);
+      }
+    }
+
+    AtomicFile atomicJournalFile = new AtomicFile(journalFile);
+    boolean isJournalComplete = atomicJournalFile.exists() && readJournal(atomicJournalFile);
+    if (uid == UID_UNSET) {
+      uid = createUid();
+    }
+
+    // Remove spans whose data is missing, and delete segment files that contain no spans.
+    ArrayList<Content> loadedContents = new ArrayList<>(contents.values());
+    for (Content content : loadedContents) {
+      ArrayList<SegmentSpan> loadedSpans = new ArrayList<>(content.spans);
+      content.spans.clear();
+      for (SegmentSpan span : loadedSpans) {
+        Segment segment = segments.get(span.segmentId);
+        if (segment != null && span.fileOffset + span.length <= segment.length) {
+          content.spans.add(span);
+          segment.addSpan(span);
+          totalSpace += span.length;
+          spanCount++;
+        } else {
+          isJournalComplete = false;
+        }
+      }
+      maybeRemoveContent(content);
+    }
+    ArrayList<Segment> loadedSegments = new ArrayList<>(segments.values());
+    for (Segment segment : loadedSegments) {
+      if (segment.spans.isEmpty()) {
+        deleteSegment(segment);
+      } else if (segment.length < maxSegmentSize
+          && (currentSegment == null || segment.id > currentSegment.id)) {
+        currentSegment = segment;
+      }
+    }
+
+    // Notify once all spans are known, since the evictor may remove spans as they're added.
+    ArrayList<SegmentSpan> spans = new ArrayList<>();
+    for (Content content : contents.values()) {
+      spans.addAll(content.spans);
+    }
+    for (int i = 0; i < spans.size(); i++) {
+      notifySpanAdded(spans.get(i));
+    }
+
+    try {
+      if (isJournalComplete) {
+        maybeRewriteJournal();
+      } else {
+        rewriteJournal();
+      }
+    } catch (IOException e) {
+      String message = "Failed to write cache journal: " + journalFile;
+      Log.e(TAG, message, e);
+      initializationException = new CacheException(message, e);
+    }
+  }
+
+  /**
+   * Reads the journal into the in-memory representation.
+   *
+   * @param atomicJournalFile The journal file.
+   * @return Whether the journal was read completely. False if it was truncated or malformed, in
+   *     which case the records that could be read have been applied.
+   */
+  private boolean readJournal(AtomicFile atomicJournalFile) {
+    DataInputStream input = null;
+    try {
+      input = new DataInputStream(new BufferedInputStream(atomicJournalFile.openRead()));
+      int version = input.readInt();
+      if (version != JOURNAL_VERSION) {
+        return false;
+      }
+      uid = input.readLong();
+      while (true) {
+        int recordType = input.read();
+        if (recordType == -1) {
+          return true;
+        }
+        readJournalRecord(recordType, input);
+        journalRecordCount++;
+      }
+    } catch (EOFException e) {
+      // The last record was only partially written.
+      return false;
+    } catch (IOException e) {
+      Log.e(TAG, "Error reading cache journal: " + journalFile, e);
+      return false;
+    } finally {
+      Util.closeQuietly(input);
+    }
+  }
+
+  private void readJournalRecord(int recordType, DataInputStream input) throws IOException {
+    String key = input.readUTF();
+    switch (recordType) {
+      case RECORD_TYPE_ADD_SPAN:
+        long position = input.readLong();
+        long length = input.readLong();
+        int segmentId = input.readInt();
+        long fileOffset = input.readLong();
+        long lastTouchTimestamp = input.readLong();
+        Content content = getOrAddContent(key);
+        content.spans.remove(SegmentSpan.createHole(key, position, C.LENGTH_UNSET));
+        content.spans.add(
+            new SegmentSpan(
+                key,
+                position,
+                length,
+                lastTouchTimestamp,
+                getSegmentFile(segmentId),
+                fileOffset,
+                segmentId));
+        break;
+      case RECORD_TYPE_REMOVE_SPAN:
+        position = input.readLong();
+        content = contents.get(key);
+        if (content != null) {
+          content.spans.remove(SegmentSpan.createHole(key, position, C.LENGTH_UNSET));
+        }
+        break;
+      case RECORD_TYPE_TOUCH_SPAN:
+        position = input.readLong();
+        lastTouchTimestamp = input.readLong();
+        content = contents.get(key);
+        SegmentSpan span = content != null ? content.getCachedSpan(position) : null;
+        if (span != null) {
+          content.spans.remove(span);
+          content.spans.add(
+              span.copyWithLocation(span.segmentId, span.fileOffset, lastTouchTimestamp));
+        }
+        break;
+      case RECORD_TYPE_SET_METADATA:
+        getOrAddContent(key).metadata = CachedContentIndex.readContentMetadata(input);
+        break;
+      case RECORD_TYPE_REMOVE_CONTENT:
+        contents.remove(key);
+        break;
+      default:
+        throw new IOException("Unexpected journal record type: " + recordType);
+    }
+  }
+
+  /** Rewrites the journal if it contains many records that are no longer needed. */
+  private void maybeRewriteJournal() {
+    // Each span needs an add record, and each content may need a metadata record.
+    int requiredRecordCount = spanCount + contents.size();
+    if (journalRecordCount - requiredRecordCount
+        < Math.max(MIN_REDUNDANT_JOURNAL_RECORDS, requiredRecordCount)) {
+      return;
+    }
+    try {
+      rewriteJournal();
+    } catch (IOException e) {
+      Log.w(TAG, "Failed to rewrite cache journal", e);
+    }
+  }
+
+  /** Rewrites the journal so that it contains only the records needed to describe the cache. */
+  private void rewriteJournal() throws IOException {
+    Util.closeQuietly(journalOutput);
+    journalOutput = null;
+    AtomicFile atomicJournalFile = new AtomicFile(journalFile);
+    DataOutputStream output = null;
+    try {
+      output = new DataOutputStream(new BufferedOutputStream(atomicJournalFile.startWrite()));
+      output.writeInt(JOURNAL_VERSION);
+      output.writeLong(uid);
+      int recordCount = 0;
+      for (Content content : contents.values()) {
+        if (!content.metadata.entrySet().isEmpty()) {
+          output.writeByte(RECORD_TYPE_SET_METADATA);
+          output.writeUTF(content.key);
+          CachedContentIndex.writeContentMetadata(content.metadata, output);
+          recordCount++;
+        }
+        for (SegmentSpan span : content.spans) {
+          output.writeByte(RECORD_TYPE_ADD_SPAN);
+          writeSpan(span, output);
+          recordCount++;
+        }
+      }
+      atomicJournalFile.endWrite(output);
+      output = null;
+      journalRecordCount = recordCount;
+    } finally {
+      Util.closeQuietly(output);
+    }
+  }
+
+  private DataOutputStream getJournalOutput() throws IOException {
+    if (journalOutput == null) {
+      journalOutput =
+          new DataOutputStream(
+              new BufferedOutputStream(new FileOutputStream(journalFile, /* append= */ true)));
+    }
+    return journalOutput;
+  }
+
+  private void onJournalRecordWritten(DataOutputStream output) throws IOException {
+    output.flush();
+    journalRecordCount++;
+  }
+
+  private void writeAddSpanRecord(SegmentSpan span) throws IOException {
+    DataOutputStream output = getJournalOutput();
+    output.writeByte(RECORD_TYPE_ADD_SPAN);
+    writeSpan(span, output);
+    onJournalRecordWritten(output);
+  }
+
+  private static void writeSpan(SegmentSpan span, DataOutputStream output) throws IOException {
+    output.writeUTF(span.key);
+    output.writeLong(span.position);
+    output.writeLong(span.length);
+    output.writeInt(span.segmentId);
+    output.writeLong(span.fileOffset);
+    output.writeLong(span.lastTouchTimestamp);
+  }
+
+  /**
+   * Appends data to the current segment file, starting a new segment file if the current one is
+   * full, and syncs the segment file.
+   *
+   * @param key The cache key of the data.
+   * @param position The position of the data in the original stream.
+   * @param length The length of the data.
+   * @param lastTouchTimestamp The last touch timestamp of the span that's returned.
+   * @param source The channel from which the data is read.
+   * @param sourcePosition The position of the data in {@code source}.
+   * @return A span describing the location of the appended data.
+   * @throws IOException If an error occurs copying the data.
+   */
+  private SegmentSpan appendToCurrentSegment(
+      String key,
+      long position,
+      long length,
+      long lastTouchTimestamp,
+      FileChannel source,
+      long sourcePosition)
+      throws IOException {
+    Segment segment = currentSegment;
+    if (segment == null || (segment.length > 0 && segment.length + length > maxSegmentSize)) {
+      segment = startNewSegment();
+    }
+    RandomAccessFile segmentFile = currentSegmentFile;
+    if (segmentFile == null) {
+      segmentFile = new RandomAccessFile(segment.file, "rw");
+      currentSegmentFile = segmentFile;
+    }
+    long fileOffset = segment.length;
+    FileChannel segmentChannel = segmentFile.getChannel();
+    copyData(source, sourcePosition, segmentChannel, fileOffset, length);
+    // The data must be on disk before a journal record refers to it.
+    segmentChannel.force(/* metaData= */ false);
+    segment.length = fileOffset + length;
+    return new SegmentSpan(
+        key, position, length, lastTouchTimestamp, segment.file, fileOffset, segment.id);
+  }
+
+  private Segment startNewSegment() {
+    Util.closeQuietly(currentSegmentFile);
+    currentSegmentFile = null;
+    int id = nextSegmentId++;
+    Segment segment = new Segment(id, getSegmentFile(id), /* length= */ 0);
+    segments.put(id, segment);
+    currentSegment = segment;
+    return segment;
+  }
+
+  private void scheduleCompaction(Segment segment) {
+    segment.compactionScheduled = true;
+    compactionExecutor.execute(() -> compactSegment(segment));
+  }
+
+  /**
+   * Copies the spans of a segment file to a new segment file, then moves the spans and deletes the
+   * segment file. Called on the compaction thread. The data is copied without holding the lock, so
+   * that compaction doesn't block other cache operations.
+   */
+  private void compactSegment(Segment segment) {
+    ArrayList<SegmentSpan> spans;
+    File stagingFile;
+    synchronized (this) {
+      if (released || segments.get(segment.id) != segment) {
+        return;
+      }
+      if (!stagingDir.exists() && !stagingDir.mkdirs()) {
+        Log.w(TAG, "Failed to create staging directory: " + stagingDir);
+        segment.compactionScheduled = false;
+        return;
+      }
+      spans = new ArrayList<>(segment.spans);
+      stagingFile = new File(stagingDir, nextStagingFileId++ + STAGING_FILE_SUFFIX);
+    }
+    long[] fileOffsets = new long[spans.size()];
+    try (RandomAccessFile sourceFile = new RandomAccessFile(segment.file, "r");
+        RandomAccessFile targetFile = new RandomAccessFile(stagingFile, "rw")) {
+      FileChannel target = targetFile.getChannel();
+      long fileOffset = 0;
+      for (int i = 0; i < spans.size(); i++) {
+        SegmentSpan span = spans.get(i);
+        copyData(sourceFile.getChannel(), span.fileOffset, target, fileOffset, span.length);
+        fileOffsets[i] = fileOffset;
+        fileOffset += span.length;
+      }
+      target.force(/* metaData= */ false);
+    } catch (IOException e) {
+      Log.w(TAG, "Failed to compact segment file: " + segment.file, e);
+      stagingFile.delete();
+      synchronized (this) {
+        segment.compactionScheduled = false;
+      }
+      return;
+    }
+    synchronized (this) {
+      commitCompactedSegment(segment, spans, fileOffsets, stagingFile);
+    }
+  }
+
+  /**
+   * Moves the spans of a compacted segment file to the new segment file that contains their data,
+   * and deletes the compacted segment file if none of its spans remain.
+   *
+   * @param segment The compacted segment.
+   * @param spans The spans that were copied.
+   * @param fileOffsets The offsets of the copied spans in {@code stagingFile}.
+   * @param stagingFile The file to which the spans were copied.
+   */
+  private void commitCompactedSegment(
+      Segment segment, ArrayList<SegmentSpan> spans, long[] fileOffsets, File stagingFile) {
+    if (released || segments.get(segment.id) != segment) {
+      // The cache was released, or the segment's spans were all removed while they were copied.
+      stagingFile.delete();
+      return;
+    }
+    int id = nextSegmentId++;
+    File file = getSegmentFile(id);
+    if (!stagingFile.renameTo(file)) {
+      Log.w(TAG, "Failed to rename compacted segment file: " + stagingFile);
+      stagingFile.delete();
+      segment.compactionScheduled = false;
+      return;
+    }
+    Segment newSegment = new Segment(id, file, file.length());
+    segments.put(id, newSegment);
+    try {
+      for (int i = 0; i < spans.size(); i++) {
+        SegmentSpan span = spans.get(i);
+        @Nullable Content content = contents.get(span.key);
+        @Nullable
+        SegmentSpan currentSpan = content != null ? content.getCachedSpan(span.position) : null;
+        if (currentSpan == null
+            || currentSpan.segmentId != segment.id
+            || currentSpan.fileOffset != span.fileOffset) {
+          // The span was removed while it was copied.
+          continue;
+        }
+        SegmentSpan newSpan =
+            new SegmentSpan(
+                currentSpan.key,
+                currentSpan.position,
+                currentSpan.length,
+                currentSpan.lastTouchTimestamp,
+                file,
+                fileOffsets[i],
+                id);
+        writeAddSpanRecord(newSpan);
+        replaceSpan(currentSpan, newSpan);
+        notifySpanMoved(currentSpan, newSpan);
+      }
+    } catch (IOException e) {
+      Log.w(TAG, "Failed to write compacted spans to the journal", e);
+    }
+    if (newSegment.spans.isEmpty()) {
+      deleteSegment(newSegment);
+    }
+    if (segment.spans.isEmpty()) {
+      deleteSegment(segment);
+    } else {
+      segment.compactionScheduled = false;
+    }
+    maybeRewriteJournal();
+  }
+
+  private void deleteSegment(Segment segment) {
+    segments.remove(segment.id);
+    segment.file.delete();
+    if (segment == currentSegment) {
+      Util.closeQuietly(currentSegmentFile);
+      currentSegmentFile = null;
+      currentSegment = null;
+    }
+  }
+
+  /**
+   * Returns the cache span corresponding to the provided lookup span.
+   *
+   * <p>If the lookup position is contained by an existing entry in the cache, then the returned
+   * span defines the segment file and offset at which the data is stored. If the lookup position
+   * is not contained by an existing entry, then the returned span defines the maximum extents of
+   * the hole in the cache.
+   */
+  private SegmentSpan getSpan(String key, long position) {
+    Content content = contents.get(key);
+    if (content == null) {
+      return SegmentSpan.createHole(key, position, C.LENGTH_UNSET);
+    }
+    while (true) {
+      SegmentSpan span = content.getSpan(position);
+      if (span.isCached && !Assertions.checkNotNull(span.file).exists()) {
+        // The segment file has been deleted underneath us.
+        removeSegmentSpans(Assertions.checkNotNull(segments.get(span.segmentId)));
+        continue;
+      }
+      return span;
+    }
+  }
+
+  private SegmentSpan touchSpan(SegmentSpan span) {
+    if (!touchCacheSpans) {
+      return span;
+    }
+    long lastTouchTimestamp = System.currentTimeMillis();
+    SegmentSpan newSpan =
+        span.copyWithLocation(span.segmentId, span.fileOffset, lastTouchTimestamp);
+    try {
+      DataOutputStream output = getJournalOutput();
+      output.writeByte(RECORD_TYPE_TOUCH_SPAN);
+      output.writeUTF(span.key);
+      output.writeLong(span.position);
+      output.writeLong(lastTouchTimestamp);
+      onJournalRecordWritten(output);
+    } catch (IOException e) {
+      Log.w(TAG, "Failed to write new touch timestamp to the journal.");
+    }
+    replaceSpan(span, newSpan);
+    notifySpanTouched(span, newSpan);
+    return newSpan;
+  }
+
+  private Content getOrAddContent(String key) {
+    Content content = contents.get(key);
+    if (content == null) {
+      content = new Content(key);
+      contents.put(key, content);
+    }
+    return content;
+  }
+
+  /** Removes {@code content} if it's empty and not locked. */
+  private void maybeRemoveContent(Content content) {
+    if (!content.spans.isEmpty() || content.locked) {
+      return;
+    }
+    contents.remove(content.key);
+    if (content.metadata.entrySet().isEmpty()) {
+      return;
+    }
+    try {
+      DataOutputStream output = getJournalOutput();
+      output.writeByte(RECORD_TYPE_REMOVE_CONTENT);
+      output.writeUTF(content.key);
+      onJournalRecordWritten(output);
+    } catch (IOException e) {
+      // The content will be removed next time the cache is initialized, since it has no spans.
+      Log.w(TAG, "Failed to write content removal to the journal: " + content.key);
+    }
+  }
+
+  private void addSpan(SegmentSpan span) {
+    getOrAddContent(span.key).spans.add(span);
+    Assertions.checkNotNull(segments.get(span.segmentId)).addSpan(span);
+    totalSpace += span.length;
+    spanCount++;
+    notifySpanAdded(span);
+  }
+
+  private void replaceSpan(SegmentSpan oldSpan, SegmentSpan newSpan) {
+    Content content = Assertions.checkNotNull(contents.get(oldSpan.key));
+    content.spans.remove(oldSpan);
+    content.spans.add(newSpan);
+    Assertions.checkNotNull(segments.get(oldSpan.segmentId)).removeSpan(oldSpan);
+    Assertions.checkNotNull(segments.get(newSpan.segmentId)).addSpan(newSpan);
+  }
+
+  private void removeSpanInternal(CacheSpan span) {
+    Content content = contents.get(span.key);
+    if (content == null) {
+      return;
+    }
+    SegmentSpan segmentSpan = content.getCachedSpan(span.position);
+    if (segmentSpan == null || !content.spans.remove(segmentSpan)) {
+      return;
+    }
+    totalSpace -= segmentSpan.length;
+    spanCount--;
+    try {
+      DataOutputStream output = getJournalOutput();
+      output.writeByte(RECORD_TYPE_REMOVE_SPAN);
+      output.writeUTF(segmentSpan.key);
+      output.writeLong(segmentSpan.position);
+      onJournalRecordWritten(output);
+    } catch (IOException e) {
+      // The span will reappear next time the cache is initialized.
+      Log.w(TAG, "Failed to write span removal to the journal: " + segmentSpan.key);
+    }
+    maybeRemoveContent(content);
+    notifySpanRemoved(segmentSpan);
+
+    @Nullable Segment segment = segments.get(segmentSpan.segmentId);
+    if (segment != null && segment.removeSpan(segmentSpan) && segment != currentSegment) {
+      if (segment.spans.isEmpty()) {
+        deleteSegment(segment);
+      } else if (!segment.compactionScheduled
+          && segment.usedLength < segment.length * MIN_SEGMENT_UTILIZATION) {
+        scheduleCompaction(segment);
+      }
+    }
+  }
+
+  /** Removes all spans of a segment whose file is missing. */
+  private void removeSegmentSpans(Segment segment) {
+    ArrayList<SegmentSpan> spans = new ArrayList<>(segment.spans);
+    for (int i = 0; i < spans.size(); i++) {
+      removeSpanInternal(spans.get(i));
+    }
+    deleteSegment(segment);
+  }
+
+  private void notifySpanRemoved(CacheSpan span) {
+    ArrayList<Listener> keyListeners = listeners.get(span.key);
+    if (keyListeners != null) {
+      for (int i = keyListeners.size() - 1; i >= 0; i--) {
+        keyListeners.get(i).onSpanRemoved(this, span);
+      }
+    }
+    evictor.onSpanRemoved(this, span);
+  }
+
+  private void notifySpanAdded(CacheSpan span) {
+    ArrayList<Listener> keyListeners = listeners.get(span.key);
+    if (keyListeners != null) {
+      for (int i = keyListeners.size() - 1; i >= 0; i--) {
+        keyListeners.get(i).onSpanAdded(this, span);
+      }
+    }
+    evictor.onSpanAdded(this, span);
+  }
+
+  private void notifySpanTouched(CacheSpan oldSpan, CacheSpan newSpan) {
+    ArrayList<Listener> keyListeners = listeners.get(oldSpan.key);
+    if (keyListeners != null) {
+      for (int i = keyListeners.size() - 1; i >= 0; i--) {
+        keyListeners.get(i).onSpanTouched(this, oldSpan, newSpan);
+      }
+    }
+    evictor.onSpanTouched(this, oldSpan, newSpan);
+  }
+
+  private void notifySpanMoved(CacheSpan oldSpan, CacheSpan newSpan) {
+    ArrayList<Listener> keyListeners = listeners.get(oldSpan.key);
+    if (keyListeners != null) {
+      for (int i = keyListeners.size() - 1; i >= 0; i--) {
+        keyListeners.get(i).onSpanMoved(this, oldSpan, newSpan);
+      }
+    }
+    evictor.onSpanMoved(this, oldSpan, newSpan);
+  }
+
+  private static void copyData(
+      FileChannel source, long sourcePosition, FileChannel target, long targetPosition, long length)
+      throws IOException {
+    source.position(sourcePosition);
+    long bytesCopied = 0;
+    while (bytesCopied < length) {
+      long bytesTransferred =
+          target.transferFrom(source, targetPosition + bytesCopied, length - bytesCopied);
+      if (bytesTransferred <= 0) {
+        throw new EOFException();
+      }
+      bytesCopied += bytesTransferred;
+    }
+  }
+
+  private File getSegmentFile(int segmentId) {
+    return new File(cacheDir, segmentId + SEGMENT_FILE_SUFFIX);
+  }
+
+  private static int parseSegmentId(String fileName) {
+    try {
+      int id =
+          Integer.parseInt(
+              fileName.substring(0, fileName.length() - SEGMENT_FILE_SUFFIX.length()));
+      return id >= 0 ? id : C.INDEX_UNSET;
+    } catch (NumberFormatException e) {
+      return C.INDEX_UNSET;
+    }
+  }
+
+  @SuppressWarnings("TrulyRandom")
+  private static long createUid() {
+    // Generate a non-negative UID.
+    long uid = new SecureRandom().nextLong();
+    return uid == Long.MIN_VALUE ? 0 : Math.abs(uid);
+  }
+
+  private static synchronized boolean lockFolder(File cacheDir) {
+    return lockedCacheDirs.add(cacheDir.getAbsoluteFile());
+  }
+
+  private static synchronized void unlockFolder(File cacheDir) {
+    lockedCacheDirs.remove(cacheDir.getAbsoluteFile());
+  }
+
+  /** The cached content for a single stream. */
+  private static final class Content {
+
+    public final String key;
+    public final TreeSet<SegmentSpan> spans;
+
+    public DefaultContentMetadata metadata;
+    public boolean locked;
+
+    public Content(String key) {
+      this.key = key;
+      spans = new TreeSet<>();
+      metadata = DefaultContentMetadata.EMPTY;
+    }
+
+    /**
+     * Returns the span containing the position. If there isn't one, returns a hole span which
+     * defines the maximum extents of the hole in the cache.
+     */
+    public SegmentSpan getSpan(long position) {
+      SegmentSpan lookupSpan = SegmentSpan.createHole(key, position, C.LENGTH_UNSET);
+      SegmentSpan floorSpan = spans.floor(lookupSpan);
+      if (floorSpan != null && floorSpan.position + floorSpan.length > position) {
+        return floorSpan;
+      }
+      SegmentSpan ceilSpan = spans.ceiling(lookupSpan);
+      return ceilSpan == null
+          ? lookupSpan
+          : SegmentSpan.createHole(key, position, ceilSpan.position - position);
+    }
+
+    /** Returns the cached span starting at {@code position}, or null if there isn't one. */
+    @Nullable
+    public SegmentSpan getCachedSpan(long position) {
+      SegmentSpan span = spans.floor(SegmentSpan.createHole(key, position, C.LENGTH_UNSET));
+      return span != null && span.position == position ? span : null;
+    }
+  }
+
+  /** A segment file. */
+  private static final class Segment {
+
+    public final int id;
+    public final File file;
+    /** The spans stored in the segment file. Spans are compared by identity. */
+    public final HashSet<SegmentSpan> spans;
+
+    /** The length of the segment file, including data that's no longer used. */
+    public long length;
+    /** The number of bytes of the segment file that belong to spans. */
+    public long usedLength;
+    /** Whether the segment file has been scheduled for compaction. */
+    public boolean compactionScheduled;
+
+    public Segment(int id, File file, long length) {
+      this.id = id;
+      this.file = file;
+      this.length = length;
+      spans = new HashSet<>();
+    }
+
+    public void addSpan(SegmentSpan span) {
+      if (spans.add(span)) {
+        usedLength += span.length;
+      }
+    }
+
+    public boolean removeSpan(SegmentSpan span) {
+      if (!spans.remove(span)) {
+        return false;
+      }
+      usedLength -= span.length;
+      return true;
+    }
+  }
+
+  /** A {@link CacheSpan} whose data is stored in a segment file. */
+  private static final class SegmentSpan extends CacheSpan {
+
+    /** The id of the segment file, or {@link C#INDEX_UNSET} if this is a hole span. */
+    public final int segmentId;
+
+    public static SegmentSpan createHole(String key, long position, long length) {
+      return new SegmentSpan(
+          key,
+          position,
+          length,
+          C.TIME_UNSET,
+          /* file= */ null,
+          /* fileOffset= */ 0,
+          /* segmentId= */ C.INDEX_UNSET);
+    }
+
+    public SegmentSpan(
+        String key,
+        long position,
+        long length,
+        long lastTouchTimestamp,
+        @Nullable File file,
+        long fileOffset,
+        int segmentId) {
+      super(key, position, length, lastTouchTimestamp, file, fileOffset);
+      this.segmentId = segmentId;
+    }
+
+    public SegmentSpan copyWithLocation(int segmentId, long fileOffset, long lastTouchTimestamp) {
+      Assertions.checkState(isCached);
+      return new SegmentSpan(
+          key, position, length, lastTouchTimestamp, file, fileOffset, segmentId);
+    }
+  }
+}
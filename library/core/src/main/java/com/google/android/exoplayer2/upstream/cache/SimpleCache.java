@@ -18,6 +18,7 @@ package com.google.android.exoplayer2.upstream.cache;
 import android.os.ConditionVariable;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.database.DatabaseIOException;
@@ -26,7 +27,9 @@ import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Log;
 import com.google.android.exoplayer2.util.Util;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -36,6 +39,7 @@ import java.util.NavigableSet;
 import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.zip.CRC32;
 import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 
 /**
@@ -43,6 +47,11 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
  *
  * <p>Only one instance of SimpleCache is allowed for a given directory at a given time.
  *
+ * <p>If a database index is used, the checksums with which files are committed are stored in the
+ * index. Files that were loaded from the index when the cache was initialized can then be verified
+ * using {@link #verifySpans(String)}, for example after the application crashed while the cache was
+ * being written.
+ *
  * <p>To delete a SimpleCache, use {@link #delete(File, DatabaseProvider)} rather than deleting the
  * directory and its contents directly. This is necessary to ensure that associated index data is
  * also removed.
@@ -59,6 +68,7 @@ public final class SimpleCache implements Cache {
   private static final int SUBDIRECTORY_COUNT = 10;
 
   private static final String UID_FILE_SUFFIX = ".uid";
+  private static final int CHECKSUM_BUFFER_SIZE = 16 * 1024;
 
   private static final HashSet<File> lockedCacheDirs = new HashSet<>();
 
@@ -69,10 +79,17 @@ public final class SimpleCache implements Cache {
   private final HashMap<String, ArrayList<Listener>> listeners;
   private final Random random;
   private final boolean touchCacheSpans;
+  private final boolean trustIndex;
+  /**
+   * The checksums of the files that were loaded with a checksum when the cache was initialized and
+   * that haven't been verified since, keyed by file name.
+   */
+  private final HashMap<String, Long> unverifiedChecksums;
 
   private long uid;
   private long totalSpace;
   private boolean released;
+  private boolean isReconciliationPending;
   private @MonotonicNonNull CacheException initializationException;
 
   /**
@@ -226,6 +243,51 @@ public final class SimpleCache implements Cache {
       @Nullable byte[] legacyIndexSecretKey,
       boolean legacyIndexEncrypt,
       boolean preferLegacyIndex) {
+    this(
+        cacheDir,
+        evictor,
+        databaseProvider,
+        legacyIndexSecretKey,
+        legacyIndexEncrypt,
+        preferLegacyIndex,
+        /* trustIndex= */ false);
+  }
+
+  /**
+   * Constructs the cache. The cache will delete any unrecognized files from the cache directory.
+   * Hence the directory cannot be used to store other files.
+   *
+   * <p>If {@code trustIndex} is true, the cache is initialized from the database index alone,
+   * which makes it available much sooner if it contains many files. Files are then only checked
+   * when they are read, and the cache directory is reconciled with the index on a low priority
+   * background thread once the cache is initialized. Files that are missing from the index only
+   * become available once this has completed.
+   *
+   * @param cacheDir A dedicated cache directory.
+   * @param evictor The evictor to be used. For download use cases where cache eviction should not
+   *     occur, use {@link NoOpCacheEvictor}.
+   * @param databaseProvider Provides the database in which the cache index is stored, or {@code
+   *     null} to use a legacy index. Using a database index is highly recommended for performance
+   *     reasons.
+   * @param legacyIndexSecretKey A 16 byte AES key for reading, and optionally writing, the legacy
+   *     index. Not used by the database index, however should still be provided when using the
+   *     database index in cases where upgrading from the legacy index may be necessary.
+   * @param legacyIndexEncrypt Whether to encrypt when writing to the legacy index. Must be {@code
+   *     false} if {@code legacyIndexSecretKey} is {@code null}. Not used by the database index.
+   * @param preferLegacyIndex Whether to use the legacy index even if a {@code databaseProvider} is
+   *     provided. Should be {@code false} in nearly all cases. Setting this to {@code true} is only
+   *     useful for downgrading from the database index back to the legacy index.
+   * @param trustIndex Whether to initialize the cache from the database index without scanning the
+   *     cache directory. Ignored if the legacy index is used.
+   */
+  public SimpleCache(
+      File cacheDir,
+      CacheEvictor evictor,
+      @Nullable DatabaseProvider databaseProvider,
+      @Nullable byte[] legacyIndexSecretKey,
+      boolean legacyIndexEncrypt,
+      boolean preferLegacyIndex,
+      boolean trustIndex) {
     this(
         cacheDir,
         evictor,
@@ -237,7 +299,8 @@ public final class SimpleCache implements Cache {
             preferLegacyIndex),
         databaseProvider != null && !preferLegacyIndex
             ? new CacheFileMetadataIndex(databaseProvider)
-            : null);
+            : null,
+        trustIndex);
   }
 
   /* package */ SimpleCache(
@@ -245,6 +308,15 @@ public final class SimpleCache implements Cache {
       CacheEvictor evictor,
       CachedContentIndex contentIndex,
       @Nullable CacheFileMetadataIndex fileIndex) {
+    this(cacheDir, evictor, contentIndex, fileIndex, /* trustIndex= */ false);
+  }
+
+  /* package */ SimpleCache(
+      File cacheDir,
+      CacheEvictor evictor,
+      CachedContentIndex contentIndex,
+      @Nullable CacheFileMetadataIndex fileIndex,
+      boolean trustIndex) {
     if (!lockFolder(cacheDir)) {
       throw new IllegalStateException("Another SimpleCache instance uses the folder: " + cacheDir);
     }
@@ -253,7 +325,9 @@ public final class SimpleCache implements Cache {
     this.evictor = evictor;
     this.contentIndex = contentIndex;
     this.fileIndex = fileIndex;
+    this.trustIndex = trustIndex && fileIndex != null;
     listeners = new HashMap<>();
+    unverifiedChecksums = new HashMap<>();
     random = new Random();
     touchCacheSpans = evictor.requiresCacheSpanTouches();
     uid = UID_UNSET;
@@ -268,6 +342,17 @@ public final class SimpleCache implements Cache {
           initialize();
           SimpleCache.this.evictor.onCacheInitialized();
         }
+        if (isReconciliationPending) {
+          Thread reconciliationThread =
+              new Thread("SimpleCache.reconcileCacheFiles()") {
+                @Override
+                public void run() {
+                  reconcileCacheFiles();
+                }
+              };
+          reconciliationThread.setPriority(Thread.MIN_PRIORITY);
+          reconciliationThread.start();
+        }
       }
     }.start();
     conditionVariable.block();
@@ -295,7 +380,10 @@ public final class SimpleCache implements Cache {
       return;
     }
     listeners.clear();
-    removeStaleSpans();
+    if (!trustIndex) {
+      // If the index is trusted, files are only checked when they are read.
+      removeStaleSpans();
+    }
     try {
       contentIndex.store();
     } catch (IOException e) {
@@ -425,6 +513,12 @@ public final class SimpleCache implements Cache {
 
   @Override
   public synchronized void commitFile(File file, long length) throws CacheException {
+    commitFile(file, length, CacheFileMetadata.CHECKSUM_UNSET);
+  }
+
+  @Override
+  public synchronized void commitFile(File file, long length, long checksum)
+      throws CacheException {
     Assertions.checkState(!released);
     if (!file.exists()) {
       return;
@@ -448,7 +542,8 @@ public final class SimpleCache implements Cache {
     if (fileIndex != null) {
       String fileName = file.getName();
       try {
-        fileIndex.set(fileName, span.length, span.lastTouchTimestamp);
+        fileIndex.set(
+            fileName, getDirectoryName(file), span.length, span.lastTouchTimestamp, checksum);
       } catch (IOException e) {
         throw new CacheException(e);
       }
@@ -462,6 +557,51 @@ public final class SimpleCache implements Cache {
     notifyAll();
   }
 
+  @Override
+  @WorkerThread
+  public long verifySpans(String key) throws CacheException {
+    ArrayList<CacheSpan> spansToVerify = new ArrayList<>();
+    synchronized (this) {
+      Assertions.checkState(!released);
+      checkInitialization();
+      CachedContent cachedContent = contentIndex.get(key);
+      if (cachedContent == null || unverifiedChecksums.isEmpty()) {
+        return 0;
+      }
+      for (CacheSpan span : cachedContent.getSpans()) {
+        if (unverifiedChecksums.containsKey(span.file.getName())) {
+          spansToVerify.add(span);
+        }
+      }
+    }
+
+    long removedBytes = 0;
+    for (int i = 0; i < spansToVerify.size(); i++) {
+      CacheSpan span = spansToVerify.get(i);
+      File file = Assertions.checkNotNull(span.file);
+      // Files are read without holding the lock on the cache, so that the cache remains responsive.
+      long checksum;
+      try {
+        checksum = computeChecksum(file);
+      } catch (IOException e) {
+        checksum = CacheFileMetadata.CHECKSUM_UNSET;
+      }
+      synchronized (this) {
+        if (released) {
+          break;
+        }
+        // The span may have been removed, or verified by another thread, in the meantime.
+        @Nullable Long expectedChecksum = unverifiedChecksums.remove(file.getName());
+        if (expectedChecksum != null && expectedChecksum != checksum) {
+          Log.w(TAG, "Removing damaged cache file: " + file);
+          removedBytes += span.length;
+          removeSpanInternal(span);
+        }
+      }
+    }
+    return removedBytes;
+  }
+
   @Override
   public synchronized void releaseHoleSpan(CacheSpan holeSpan) {
     Assertions.checkState(!released);
@@ -549,10 +689,24 @@ public final class SimpleCache implements Cache {
       if (fileIndex != null) {
         fileIndex.initialize(uid);
         Map<String, CacheFileMetadata> fileMetadata = fileIndex.getAll();
-        loadDirectory(cacheDir, /* isRoot= */ true, files, fileMetadata);
-        fileIndex.removeAll(fileMetadata.keySet());
+        if (trustIndex && containsAllDirectories(fileMetadata)) {
+          loadFileIndex(fileMetadata);
+          isReconciliationPending = true;
+        } else {
+          Map<String, CacheFileMetadata> newFileMetadata = new HashMap<>();
+          loadDirectory(cacheDir, /* isRoot= */ true, files, fileMetadata, newFileMetadata);
+          fileIndex.removeAll(fileMetadata.keySet());
+          if (!newFileMetadata.isEmpty()) {
+            fileIndex.setAll(newFileMetadata);
+          }
+        }
       } else {
-        loadDirectory(cacheDir, /* isRoot= */ true, files, /* fileMetadata= */ null);
+        loadDirectory(
+            cacheDir,
+            /* isRoot= */ true,
+            files,
+            /* fileMetadata= */ null,
+            /* newFileMetadata= */ null);
       }
     } catch (IOException e) {
       String message = "Failed to initialize cache indices: " + cacheDir;
@@ -561,7 +715,11 @@ public final class SimpleCache implements Cache {
       return;
     }
 
-    contentIndex.removeEmpty();
+    if (!isReconciliationPending) {
+      // Content whose files are missing from the index is kept until the cache directory has been
+      // reconciled with the index.
+      contentIndex.removeEmpty();
+    }
     try {
       contentIndex.store();
     } catch (IOException e) {
@@ -578,12 +736,16 @@ public final class SimpleCache implements Cache {
    * @param fileMetadata A mutable map containing cache file metadata, keyed by file name. The map
    *     is modified by removing entries for all loaded files. When the method call returns, the map
    *     will contain only metadata that was unused. May be null if no file metadata is available.
+   * @param newFileMetadata A map to which metadata is added for loaded files whose metadata is
+   *     missing from {@code fileMetadata}, or doesn't include their directory. May be null if file
+   *     metadata isn't stored.
    */
   private void loadDirectory(
       File directory,
       boolean isRoot,
       @Nullable File[] files,
-      @Nullable Map<String, CacheFileMetadata> fileMetadata) {
+      @Nullable Map<String, CacheFileMetadata> fileMetadata,
+      @Nullable Map<String, CacheFileMetadata> newFileMetadata) {
     if (files == null || files.length == 0) {
       // Either (a) directory isn't really a directory (b) it's empty, or (c) listing files failed.
       if (!isRoot) {
@@ -596,7 +758,8 @@ public final class SimpleCache implements Cache {
     for (File file : files) {
       String fileName = file.getName();
       if (isRoot && fileName.indexOf('.') == -1) {
-        loadDirectory(file, /* isRoot= */ false, file.listFiles(), fileMetadata);
+        loadDirectory(
+            file, /* isRoot= */ false, file.listFiles(), fileMetadata, newFileMetadata);
       } else {
         if (isRoot
             && (CachedContentIndex.isIndexFile(fileName) || fileName.endsWith(UID_FILE_SUFFIX))) {
@@ -614,6 +777,15 @@ public final class SimpleCache implements Cache {
             SimpleCacheSpan.createCacheEntry(file, length, lastTouchTimestamp, contentIndex);
         if (span != null) {
           addSpan(span);
+          if (metadata != null && metadata.checksum != CacheFileMetadata.CHECKSUM_UNSET) {
+            unverifiedChecksums.put(span.file.getName(), metadata.checksum);
+          }
+          if (newFileMetadata != null && (metadata == null || metadata.directory == null)) {
+            newFileMetadata.put(
+                span.file.getName(),
+                new CacheFileMetadata(
+                    isRoot ? "" : directory.getName(), span.length, span.lastTouchTimestamp));
+          }
         } else {
           file.delete();
         }
@@ -621,6 +793,182 @@ public final class SimpleCache implements Cache {
     }
   }
 
+  /**
+   * Loads the cached spans from the file index, without listing or querying the cache files.
+   *
+   * @param fileMetadata The cache file metadata, keyed by file name. The directories of all files
+   *     must be known.
+   * @throws DatabaseIOException If an error occurs removing metadata for unknown files.
+   */
+  private void loadFileIndex(Map<String, CacheFileMetadata> fileMetadata)
+      throws DatabaseIOException {
+    Set<String> unknownFileNames = new HashSet<>();
+    for (Map.Entry<String, CacheFileMetadata> entry : fileMetadata.entrySet()) {
+      String fileName = entry.getKey();
+      CacheFileMetadata metadata = entry.getValue();
+      String directoryName = Assertions.checkNotNull(metadata.directory);
+      File directory = directoryName.isEmpty() ? cacheDir : new File(cacheDir, directoryName);
+      SimpleCacheSpan span =
+          SimpleCacheSpan.createCacheEntry(
+              new File(directory, fileName),
+              metadata.length,
+              metadata.lastTouchTimestamp,
+              contentIndex);
+      if (span != null) {
+        addSpan(span);
+        if (metadata.checksum != CacheFileMetadata.CHECKSUM_UNSET) {
+          unverifiedChecksums.put(fileName, metadata.checksum);
+        }
+      } else {
+        unknownFileNames.add(fileName);
+      }
+    }
+    Assertions.checkNotNull(fileIndex).removeAll(unknownFileNames);
+  }
+
+  /**
+   * Reconciles the in-memory representation with the files in the cache directory, after the cache
+   * was initialized from the file index. Files that are missing from the index are added to the
+   * cache if they're valid cache files, and are deleted otherwise. Spans whose files no longer
+   * exist are removed.
+   *
+   * <p>The cache directory is listed without holding the lock on the cache, and each directory is
+   * reconciled separately so that the cache remains responsive.
+   */
+  @VisibleForTesting
+  @WorkerThread
+  /* package */ void reconcileCacheFiles() {
+    Set<File> indexedFiles = new HashSet<>();
+    synchronized (this) {
+      if (released) {
+        return;
+      }
+      for (CachedContent cachedContent : contentIndex.getAll()) {
+        for (CacheSpan span : cachedContent.getSpans()) {
+          indexedFiles.add(span.file);
+        }
+      }
+    }
+
+    File[] rootFiles = cacheDir.listFiles();
+    if (rootFiles == null) {
+      return;
+    }
+    Set<File> listedFiles = new HashSet<>();
+    if (!reconcileFiles(rootFiles, /* isRoot= */ true, indexedFiles, listedFiles)) {
+      return;
+    }
+    for (File file : rootFiles) {
+      if (file.getName().indexOf('.') == -1) {
+        File[] files = file.listFiles();
+        if (files != null
+            && !reconcileFiles(files, /* isRoot= */ false, indexedFiles, listedFiles)) {
+          return;
+        }
+      }
+    }
+
+    synchronized (this) {
+      if (released) {
+        return;
+      }
+      ArrayList<CacheSpan> spansToBeRemoved = new ArrayList<>();
+      for (CachedContent cachedContent : contentIndex.getAll()) {
+        for (CacheSpan span : cachedContent.getSpans()) {
+          // Spans added after the directory was listed have files that weren't listed.
+          if (!listedFiles.contains(span.file) && !span.file.exists()) {
+            spansToBeRemoved.add(span);
+          }
+        }
+      }
+      for (int i = 0; i < spansToBeRemoved.size(); i++) {
+        removeSpanInternal(spansToBeRemoved.get(i));
+      }
+      contentIndex.removeEmpty();
+      try {
+        contentIndex.store();
+      } catch (IOException e) {
+        Log.e(TAG, "Storing index file failed", e);
+      }
+      isReconciliationPending = false;
+    }
+  }
+
+  /**
+   * Reconciles the files of one directory with the in-memory representation.
+   *
+   * @param files The files belonging to the directory.
+   * @param isRoot Whether the directory is the root directory.
+   * @param indexedFiles The files of the spans that were loaded from the file index.
+   * @param listedFiles A set to which the cache files of the directory are added.
+   * @return Whether reconciliation should continue, which is false if the cache was released.
+   */
+  private synchronized boolean reconcileFiles(
+      File[] files, boolean isRoot, Set<File> indexedFiles, Set<File> listedFiles) {
+    if (released) {
+      return false;
+    }
+    for (File file : files) {
+      String fileName = file.getName();
+      if (isRoot
+          && (fileName.indexOf('.') == -1
+              || CachedContentIndex.isIndexFile(fileName)
+              || fileName.endsWith(UID_FILE_SUFFIX))) {
+        // Skip subdirectories, and expected UID and index files in the root directory.
+        continue;
+      }
+      listedFiles.add(file);
+      if (!indexedFiles.contains(file)) {
+        reconcileFile(file);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Adds a file that wasn't loaded from the file index to the cache, or deletes it if it's not a
+   * valid cache file.
+   */
+  private void reconcileFile(File file) {
+    int id = SimpleCacheSpan.getCacheFileId(file.getName());
+    @Nullable String key = id != C.INDEX_UNSET ? contentIndex.getKeyForId(id) : null;
+    @Nullable CachedContent cachedContent = key != null ? contentIndex.get(key) : null;
+    if (cachedContent != null && cachedContent.isLocked()) {
+      // The file may still be being written.
+      return;
+    }
+    SimpleCacheSpan span =
+        SimpleCacheSpan.createCacheEntry(file, /* length= */ C.LENGTH_UNSET, contentIndex);
+    if (span == null) {
+      file.delete();
+      return;
+    }
+    // The file may have been renamed if it was created by an earlier version of SimpleCache.
+    File spanFile = Assertions.checkNotNull(span.file);
+    SimpleCacheSpan existingSpan = contentIndex.getOrAdd(span.key).getSpan(span.position);
+    if (existingSpan.isCached) {
+      if (!spanFile.equals(existingSpan.file)) {
+        // The file overlaps a span that's already in the cache.
+        spanFile.delete();
+      }
+      return;
+    }
+    if (!existingSpan.isOpenEnded() && span.length > existingSpan.length) {
+      // The file overlaps the next span that's already in the cache.
+      spanFile.delete();
+      return;
+    }
+    if (fileIndex != null) {
+      try {
+        fileIndex.set(
+            spanFile.getName(), getDirectoryName(spanFile), span.length, span.lastTouchTimestamp);
+      } catch (IOException e) {
+        Log.w(TAG, "Failed to add file index entry for: " + spanFile.getName());
+      }
+    }
+    addSpan(span);
+  }
+
   /**
    * Touches a cache span, returning the updated result. If the evictor does not require cache spans
    * to be touched, then this method does nothing and the span is returned without modification.
@@ -633,13 +981,13 @@ public final class SimpleCache implements Cache {
     if (!touchCacheSpans) {
       return span;
     }
-    String fileName = Assertions.checkNotNull(span.file).getName();
+    File file = Assertions.checkNotNull(span.file);
     long length = span.length;
     long lastTouchTimestamp = System.currentTimeMillis();
     boolean updateFile = false;
     if (fileIndex != null) {
       try {
-        fileIndex.set(fileName, length, lastTouchTimestamp);
+        fileIndex.setLastTouchTimestamp(file.getName(), lastTouchTimestamp);
       } catch (IOException e) {
         Log.w(TAG, "Failed to update index with new touch timestamp.");
       }
@@ -673,9 +1021,15 @@ public final class SimpleCache implements Cache {
     while (true) {
       SimpleCacheSpan span = cachedContent.getSpan(position);
       if (span.isCached && span.file.length() != span.length) {
-        // The file has been modified or deleted underneath us. It's likely that other files will
-        // have been modified too, so scan the whole in-memory representation.
-        removeStaleSpans();
+        if (trustIndex) {
+          // Scanning the whole in-memory representation is too expensive if the index is trusted,
+          // so only the span that was found to be stale is removed.
+          removeSpanInternal(span);
+        } else {
+          // The file has been modified or deleted underneath us. It's likely that other files will
+          // have been modified too, so scan the whole in-memory representation.
+          removeStaleSpans();
+        }
         continue;
       }
       return span;
@@ -699,6 +1053,7 @@ public final class SimpleCache implements Cache {
       return;
     }
     totalSpace -= span.length;
+    unverifiedChecksums.remove(span.file.getName());
     if (fileIndex != null) {
       String fileName = span.file.getName();
       try {
@@ -761,6 +1116,38 @@ public final class SimpleCache implements Cache {
     evictor.onSpanTouched(this, oldSpan, newSpan);
   }
 
+  /**
+   * Returns the name of the subdirectory of the cache directory that contains {@code file}, or an
+   * empty string if it's in the cache directory itself.
+   */
+  private String getDirectoryName(File file) {
+    File directory = file.getParentFile();
+    return directory == null || directory.equals(cacheDir) ? "" : directory.getName();
+  }
+
+  /** Returns the {@link CRC32} checksum of the data of a file. */
+  private static long computeChecksum(File file) throws IOException {
+    CRC32 checksum = new CRC32();
+    byte[] buffer = new byte[CHECKSUM_BUFFER_SIZE];
+    try (InputStream inputStream = new FileInputStream(file)) {
+      int bytesRead;
+      while ((bytesRead = inputStream.read(buffer)) != -1) {
+        checksum.update(buffer, 0, bytesRead);
+      }
+    }
+    return checksum.getValue();
+  }
+
+  /** Returns whether the directories of all files in {@code fileMetadata} are known. */
+  private static boolean containsAllDirectories(Map<String, CacheFileMetadata> fileMetadata) {
+    for (CacheFileMetadata metadata : fileMetadata.values()) {
+      if (metadata.directory == null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * Loads the cache UID from the files belonging to the root directory.
    *
@@ -50,6 +50,18 @@ import java.util.regex.Pattern;
     return new File(cacheDir, id + "." + position + "." + timestamp + SUFFIX);
   }
 
+  /**
+   * Returns the cache file id encoded in the name of a cache file, or {@link C#INDEX_UNSET} if the
+   * name is not that of a cache file created by the current version of {@link SimpleCache}.
+   *
+   * @param fileName The name of the cache file.
+   * @return The cache file id, or {@link C#INDEX_UNSET}.
+   */
+  public static int getCacheFileId(String fileName) {
+    Matcher matcher = CACHE_FILE_PATTERN_V3.matcher(fileName);
+    return matcher.matches() ? Integer.parseInt(matcher.group(1)) : C.INDEX_UNSET;
+  }
+
   /**
    * Creates a lookup span.
    *
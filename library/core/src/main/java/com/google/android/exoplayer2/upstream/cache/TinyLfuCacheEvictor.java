@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.upstream.cache.Cache.CacheException;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Util;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+/**
+ * Evicts cache files using the W-TinyLFU policy, which takes into account how often data is
+ * accessed as well as how recently.
+ *
+ * <p>New spans are added to a small window, which is evicted in least recently used order. When a
+ * span leaves the window, it's only admitted to the main part of the cache if it has been accessed
+ * more often than the span that would be evicted to make room for it. Access frequencies are
+ * estimated using a compact sketch, and include accesses to data that's not in the cache. The main
+ * part of the cache is a segmented LRU: spans that are accessed again are promoted from a
+ * probation segment to a protected segment, and spans are evicted from the probation segment
+ * first.
+ *
+ * <p>Unlike {@link LeastRecentlyUsedCacheEvictor}, this evictor keeps frequently accessed data in
+ * the cache when a large amount of data is written once, for example by a download.
+ */
+public final class TinyLfuCacheEvictor implements CacheEvictor {
+
+  /** The default fraction of the cache used by the window. */
+  public static final float DEFAULT_WINDOW_FRACTION = 0.01f;
+  /** The default span size used to size the frequency sketch, in bytes. */
+  public static final long DEFAULT_EXPECTED_SPAN_SIZE = 256 * 1024;
+
+  /** The fraction of the main part of the cache used by the protected segment. */
+  private static final float PROTECTED_FRACTION = 0.8f;
+  private static final int MIN_SKETCH_CAPACITY = 256;
+  private static final int MAX_SKETCH_CAPACITY = 1 << 20;
+
+  private final long maxBytes;
+  private final long maxWindowBytes;
+  private final long maxProtectedBytes;
+  private final FrequencySketch sketch;
+  private final LinkedHashSet<CacheSpan> window;
+  private final LinkedHashSet<CacheSpan> probation;
+  private final LinkedHashSet<CacheSpan> protectedSpans;
+
+  private long windowBytes;
+  private long probationBytes;
+  private long protectedBytes;
+  private boolean initialized;
+
+  /**
+   * Creates an evictor that uses {@link #DEFAULT_WINDOW_FRACTION} of the cache for the window.
+   *
+   * @param maxBytes The maximum size of the cache, in bytes.
+   */
+  public TinyLfuCacheEvictor(long maxBytes) {
+    this(maxBytes, DEFAULT_WINDOW_FRACTION, DEFAULT_EXPECTED_SPAN_SIZE);
+  }
+
+  /**
+   * Creates an evictor.
+   *
+   * @param maxBytes The maximum size of the cache, in bytes.
+   * @param windowFraction The fraction of the cache used by the window, in which new spans are
+   *     kept before competing for admission to the main part of the cache.
+   * @param expectedSpanSize The expected average size of a span, in bytes. Used to size the
+   *     frequency sketch.
+   */
+  public TinyLfuCacheEvictor(long maxBytes, float windowFraction, long expectedSpanSize) {
+    Assertions.checkArgument(windowFraction >= 0 && windowFraction <= 1);
+    Assertions.checkArgument(expectedSpanSize > 0);
+    this.maxBytes = maxBytes;
+    maxWindowBytes = (long) (maxBytes * windowFraction);
+    maxProtectedBytes = (long) ((maxBytes - maxWindowBytes) * PROTECTED_FRACTION);
+    int sketchCapacity =
+        (int)
+            Util.constrainValue(
+                maxBytes / expectedSpanSize, MIN_SKETCH_CAPACITY, MAX_SKETCH_CAPACITY);
+    sketch = new FrequencySketch(sketchCapacity);
+    window = new LinkedHashSet<>();
+    probation = new LinkedHashSet<>();
+    protectedSpans = new LinkedHashSet<>();
+  }
+
+  @Override
+  public boolean requiresCacheSpanTouches() {
+    return true;
+  }
+
+  @Override
+  public void onCacheInitialized() {
+    initialized = true;
+  }
+
+  @Override
+  public void onStartFile(Cache cache, String key, long position, long length) {
+    // The data isn't cached, so this is an access that missed.
+    sketch.increment(getHashCode(key, position));
+  }
+
+  @Override
+  public void onSpanAdded(Cache cache, CacheSpan span) {
+    if (!initialized) {
+      // Spans loaded by the cache have already been admitted.
+      probation.add(span);
+      probationBytes += span.length;
+    } else {
+      window.add(span);
+      windowBytes += span.length;
+      drainWindow(cache);
+    }
+    evictCache(cache);
+  }
+
+  @Override
+  public void onSpanRemoved(Cache cache, CacheSpan span) {
+    if (window.remove(span)) {
+      windowBytes -= span.length;
+    } else if (probation.remove(span)) {
+      probationBytes -= span.length;
+    } else if (protectedSpans.remove(span)) {
+      protectedBytes -= span.length;
+    }
+  }
+
+  @Override
+  public void onSpanTouched(Cache cache, CacheSpan oldSpan, CacheSpan newSpan) {
+    sketch.increment(getHashCode(newSpan.key, newSpan.position));
+    if (window.remove(oldSpan)) {
+      window.add(newSpan);
+    } else if (probation.remove(oldSpan)) {
+      probationBytes -= oldSpan.length;
+      protectedSpans.add(newSpan);
+      protectedBytes += newSpan.length;
+      demoteProtectedSpans();
+    } else if (protectedSpans.remove(oldSpan)) {
+      protectedSpans.add(newSpan);
+    }
+  }
+
+  @Override
+  public void onSpanMoved(Cache cache, CacheSpan oldSpan, CacheSpan newSpan) {
+    // Moving data isn't an access, so keep the span where it is in its segment.
+    if (!replaceSpan(window, oldSpan, newSpan) && !replaceSpan(probation, oldSpan, newSpan)) {
+      replaceSpan(protectedSpans, oldSpan, newSpan);
+    }
+  }
+
+  /** Moves spans that don't fit in the window to the main part of the cache, if admitted. */
+  private void drainWindow(Cache cache) {
+    long maxMainBytes = maxBytes - maxWindowBytes;
+    while (windowBytes > maxWindowBytes && !window.isEmpty()) {
+      CacheSpan candidate = removeFirst(window);
+      windowBytes -= candidate.length;
+      int candidateFrequency = sketch.getFrequency(getHashCode(candidate.key, candidate.position));
+      boolean admit = true;
+      while (admit && probationBytes + protectedBytes + candidate.length > maxMainBytes) {
+        @Nullable CacheSpan victim = getFirst(probation.isEmpty() ? protectedSpans : probation);
+        if (victim == null) {
+          break;
+        }
+        if (candidateFrequency > sketch.getFrequency(getHashCode(victim.key, victim.position))) {
+          removeSpan(cache, victim);
+        } else {
+          admit = false;
+        }
+      }
+      if (admit) {
+        probation.add(candidate);
+        probationBytes += candidate.length;
+      } else {
+        removeSpan(cache, candidate);
+      }
+    }
+  }
+
+  /** Moves least recently used spans from the protected segment to the probation segment. */
+  private void demoteProtectedSpans() {
+    while (protectedBytes > maxProtectedBytes && protectedSpans.size() > 1) {
+      CacheSpan span = removeFirst(protectedSpans);
+      protectedBytes -= span.length;
+      probation.add(span);
+      probationBytes += span.length;
+    }
+  }
+
+  /** Evicts spans until the cache is no larger than its maximum size. */
+  private void evictCache(Cache cache) {
+    while (windowBytes + probationBytes + protectedBytes > maxBytes) {
+      @Nullable
+      CacheSpan span =
+          getFirst(
+              !window.isEmpty() ? window : !probation.isEmpty() ? probation : protectedSpans);
+      if (span == null) {
+        break;
+      }
+      removeSpan(cache, span);
+    }
+  }
+
+  /** Removes a span from the cache, and from this evictor's bookkeeping. */
+  private void removeSpan(Cache cache, CacheSpan span) {
+    try {
+      cache.removeSpan(span);
+    } catch (CacheException e) {
+      // do nothing.
+    }
+    // The cache calls onSpanRemoved, but ensure the span doesn't stay in a segment if it doesn't.
+    onSpanRemoved(cache, span);
+  }
+
+  /**
+   * Replaces {@code oldSpan} with {@code newSpan} in {@code spans}, keeping its position in the
+   * iteration order. Spans are only moved occasionally, so rebuilding the set is acceptable.
+   *
+   * @return Whether {@code spans} contained {@code oldSpan}.
+   */
+  private static boolean replaceSpan(
+      LinkedHashSet<CacheSpan> spans, CacheSpan oldSpan, CacheSpan newSpan) {
+    if (!spans.contains(oldSpan)) {
+      return false;
+    }
+    ArrayList<CacheSpan> orderedSpans = new ArrayList<>(spans);
+    spans.clear();
+    for (int i = 0; i < orderedSpans.size(); i++) {
+      CacheSpan span = orderedSpans.get(i);
+      spans.add(span == oldSpan ? newSpan : span);
+    }
+    return true;
+  }
+
+  private static CacheSpan removeFirst(LinkedHashSet<CacheSpan> spans) {
+    Iterator<CacheSpan> iterator = spans.iterator();
+    CacheSpan span = iterator.next();
+    iterator.remove();
+    return span;
+  }
+
+  @Nullable
+  private static CacheSpan getFirst(LinkedHashSet<CacheSpan> spans) {
+    return spans.isEmpty() ? null : spans.iterator().next();
+  }
+
+  private static int getHashCode(String key, long position) {
+    return 31 * key.hashCode() + (int) (position ^ (position >>> 32));
+  }
+}
@@ -19,7 +19,12 @@ import static com.google.common.truth.Truth.assertThat;
 
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.android.exoplayer2.DefaultLoadControl.Builder;
+import com.google.android.exoplayer2.source.TrackGroup;
+import com.google.android.exoplayer2.testutil.FakeRenderer;
+import com.google.android.exoplayer2.trackselection.FixedTrackSelection;
+import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
 import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import com.google.android.exoplayer2.util.MimeTypes;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -32,6 +37,7 @@ public class DefaultLoadControlTest {
   private static final long MIN_BUFFER_US = C.msToUs(DefaultLoadControl.DEFAULT_MIN_BUFFER_MS);
   private static final long MAX_BUFFER_US = C.msToUs(DefaultLoadControl.DEFAULT_MAX_BUFFER_MS);
   private static final int TARGET_BUFFER_BYTES = C.DEFAULT_BUFFER_SEGMENT_SIZE * 2;
+  private static final int MEGABYTE = 1024 * 1024;
 
   private Builder builder;
   private DefaultAllocator allocator;
@@ -111,6 +117,97 @@ public class DefaultLoadControlTest {
         .isTrue();
   }
 
+  @Test
+  public void testAdaptiveBuffering_dropsBackBufferAndCapsTargetUnderMemoryPressure() {
+    FakeHeapLoadControl loadControl = new FakeHeapLoadControl(/* backBufferDurationMs= */ 10000);
+    loadControl.onTracksSelected(new Renderer[0], null, null);
+    assertThat(loadControl.getBackBufferDurationUs()).isEqualTo(C.msToUs(10000));
+
+    // Leave 20MB of heap available, of which half may be used for buffering.
+    loadControl.otherHeapBytesUsed = FakeHeapLoadControl.MAX_HEAP_BYTES - 20 * MEGABYTE;
+    assertThat(loadControl.shouldContinueLoading(/* bufferedDurationUs= */ 0, SPEED)).isTrue();
+    assertThat(loadControl.getBackBufferDurationUs()).isEqualTo(0);
+    while (allocator.getTotalBytesAllocated() < 10 * MEGABYTE) {
+      allocator.allocate();
+    }
+    assertThat(loadControl.shouldContinueLoading(MIN_BUFFER_US, SPEED)).isFalse();
+
+    loadControl.otherHeapBytesUsed = 0;
+    assertThat(loadControl.shouldContinueLoading(MIN_BUFFER_US - 1, SPEED)).isTrue();
+    assertThat(loadControl.getBackBufferDurationUs()).isEqualTo(C.msToUs(10000));
+  }
+
+  @Test
+  public void testAdaptiveBuffering_increasesMinBufferAfterRebuffer() {
+    FakeHeapLoadControl loadControl = new FakeHeapLoadControl(/* backBufferDurationMs= */ 0);
+    loadControl.onTracksSelected(new Renderer[0], null, null);
+    assertThat(loadControl.shouldContinueLoading(MIN_BUFFER_US, SPEED)).isFalse();
+
+    // Repeated calls while the same rebuffer is ongoing count as a single rebuffer.
+    loadControl.shouldStartPlayback(/* bufferedDurationUs= */ 0, SPEED, /* rebuffering= */ true);
+    loadControl.shouldStartPlayback(/* bufferedDurationUs= */ 0, SPEED, /* rebuffering= */ true);
+
+    long increasedMinBufferUs =
+        MIN_BUFFER_US + C.msToUs(DefaultLoadControl.ADAPTIVE_REBUFFER_MIN_BUFFER_INCREMENT_MS);
+    assertThat(loadControl.shouldContinueLoading(increasedMinBufferUs - 1, SPEED)).isTrue();
+    assertThat(loadControl.shouldContinueLoading(MAX_BUFFER_US, SPEED)).isFalse();
+    assertThat(loadControl.shouldContinueLoading(increasedMinBufferUs, SPEED)).isFalse();
+  }
+
+  @Test
+  public void testGetBackBufferDurationUs_limitedByBackBufferBytes() {
+    builder.setBackBuffer(
+        /* backBufferDurationMs= */ 30000, /* retainBackBufferFromKeyframe= */ false);
+    builder.setBackBufferBytes(/* backBufferBytes= */ 1000000);
+    createDefaultLoadControl();
+
+    selectVideoTrack(/* bitrate= */ 1000000);
+    // 1,000,000 bytes at 1,000,000 bits per second.
+    assertThat(loadControl.getBackBufferDurationUs()).isEqualTo(C.msToUs(8000));
+
+    selectVideoTrack(/* bitrate= */ 100000);
+    assertThat(loadControl.getBackBufferDurationUs()).isEqualTo(C.msToUs(30000));
+
+    selectVideoTrack(/* bitrate= */ Format.NO_VALUE);
+    assertThat(loadControl.getBackBufferDurationUs()).isEqualTo(C.msToUs(30000));
+  }
+
+  @Test
+  public void testShouldPreloadMediaPeriod_untilCountOrTargetBufferBytesReached() {
+    builder.setPreloadMediaPeriodCount(2);
+    createDefaultLoadControl();
+
+    assertThat(loadControl.shouldPreloadMediaPeriod(/* preloadedPeriodCount= */ 0)).isTrue();
+    assertThat(loadControl.shouldPreloadMediaPeriod(/* preloadedPeriodCount= */ 1)).isTrue();
+    assertThat(loadControl.shouldPreloadMediaPeriod(/* preloadedPeriodCount= */ 2)).isFalse();
+
+    makeSureTargetBufferBytesReached();
+
+    assertThat(loadControl.shouldPreloadMediaPeriod(/* preloadedPeriodCount= */ 0)).isFalse();
+  }
+
+  @Test
+  public void testShouldContinueLoading_withSharedAllocator_stopsWhenSharedBudgetReached() {
+    DefaultLoadControl otherLoadControl =
+        new Builder()
+            .setSharedAllocator(allocator, TARGET_BUFFER_BYTES)
+            .createDefaultLoadControl();
+    otherLoadControl.onTracksSelected(new Renderer[0], null, null);
+    builder.setPrioritizeTimeOverSizeThresholds(false);
+    builder.setSharedAllocator(allocator, TARGET_BUFFER_BYTES);
+    loadControl = builder.createDefaultLoadControl();
+    loadControl.onTracksSelected(new Renderer[0], null, null);
+    assertThat(loadControl.shouldContinueLoading(/* bufferedDurationUs= */ 0, SPEED)).isTrue();
+
+    // The other player fills the shared budget.
+    makeSureTargetBufferBytesReached();
+    assertThat(loadControl.shouldContinueLoading(/* bufferedDurationUs= */ 0, SPEED)).isFalse();
+
+    // Stopping the other player doesn't release allocations that are still in use.
+    otherLoadControl.onStopped();
+    assertThat(allocator.getTotalBytesAllocated()).isAtLeast(TARGET_BUFFER_BYTES);
+  }
+
   private void createDefaultLoadControl() {
     builder.setAllocator(allocator);
     builder.setTargetBufferBytes(TARGET_BUFFER_BYTES);
@@ -118,10 +215,65 @@ public class DefaultLoadControlTest {
     loadControl.onTracksSelected(new Renderer[0], null, null);
   }
 
+  private void selectVideoTrack(int bitrate) {
+    Format format =
+        Format.createVideoSampleFormat(
+            /* id= */ null,
+            MimeTypes.VIDEO_H264,
+            /* codecs= */ null,
+            bitrate,
+            /* maxInputSize= */ Format.NO_VALUE,
+            /* width= */ 1280,
+            /* height= */ 720,
+            /* frameRate= */ Format.NO_VALUE,
+            /* initializationData= */ null,
+            /* drmInitData= */ null);
+    loadControl.onTracksSelected(
+        new Renderer[] {new FakeRenderer(format)},
+        /* trackGroups= */ null,
+        new TrackSelectionArray(new FixedTrackSelection(new TrackGroup(format), /* track= */ 0)));
+  }
+
   private void makeSureTargetBufferBytesReached() {
     while (allocator.getTotalBytesAllocated() < TARGET_BUFFER_BYTES) {
       allocator.allocate();
     }
   }
 
+  /** A {@link DefaultLoadControl} in adaptive mode, backed by a fake heap. */
+  private final class FakeHeapLoadControl extends DefaultLoadControl {
+
+    private static final long MAX_HEAP_BYTES = 256 * MEGABYTE;
+
+    private long otherHeapBytesUsed;
+
+    private FakeHeapLoadControl(int backBufferDurationMs) {
+      super(
+          allocator,
+          /* allocatorShared= */ false,
+          /* minBufferAudioMs= */ DEFAULT_MIN_BUFFER_MS,
+          /* minBufferVideoMs= */ DEFAULT_MIN_BUFFER_MS,
+          DEFAULT_MAX_BUFFER_MS,
+          DEFAULT_BUFFER_FOR_PLAYBACK_MS,
+          DEFAULT_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS,
+          /* targetBufferBytes= */ 64 * MEGABYTE,
+          /* prioritizeTimeOverSizeThresholds= */ false,
+          backBufferDurationMs,
+          DEFAULT_RETAIN_BACK_BUFFER_FROM_KEYFRAME,
+          DEFAULT_BACK_BUFFER_BYTES,
+          DEFAULT_PRELOAD_MEDIA_PERIOD_COUNT,
+          /* adaptiveBufferingEnabled= */ true);
+    }
+
+    @Override
+    protected long getMaxHeapBytes() {
+      return MAX_HEAP_BYTES;
+    }
+
+    @Override
+    protected long getAvailableHeapBytes() {
+      return MAX_HEAP_BYTES - otherHeapBytesUsed - allocator.getTotalBytesAllocated();
+    }
+  }
+
 }
@@ -17,10 +17,16 @@ package com.google.android.exoplayer2;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import android.net.Uri;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.source.MediaPeriod;
 import com.google.android.exoplayer2.source.MediaSource;
 import com.google.android.exoplayer2.source.MediaSource.MediaPeriodId;
 import com.google.android.exoplayer2.source.SinglePeriodTimeline;
@@ -30,6 +36,7 @@ import com.google.android.exoplayer2.trackselection.TrackSelection;
 import com.google.android.exoplayer2.trackselection.TrackSelector;
 import com.google.android.exoplayer2.trackselection.TrackSelectorResult;
 import com.google.android.exoplayer2.upstream.Allocator;
+import java.io.IOException;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -347,6 +354,102 @@ public final class MediaPeriodQueueTest {
     assertThat(getQueueLength()).isEqualTo(3);
   }
 
+  @Test
+  public void enqueueNextMediaPeriodHolder_withMatchingPreloadingPeriod_enqueuesPreloadedHolder() {
+    setupTimeline(/* initialPositionUs= */ 0, /* adGroupTimesUs...= */ FIRST_AD_START_TIME_US);
+    setAdGroupLoaded(/* adGroupIndex= */ 0);
+    enqueueNext(); // Content before ad.
+    assertThat(getNextPreloadingMediaPeriodInfo()).isNull();
+
+    mediaPeriodQueue.getLoadingPeriod().prepared = true;
+    MediaPeriodInfo preloadingInfo = getNextPreloadingMediaPeriodInfo();
+    assertThat(preloadingInfo.id.isAd()).isTrue();
+    MediaPeriodHolder preloadingHolder = addPreloading(preloadingInfo);
+    assertThat(mediaPeriodQueue.getPreloadingPeriodCount()).isEqualTo(1);
+    assertThat(mediaPeriodQueue.getPreloadingPeriod(preloadingHolder.mediaPeriod))
+        .isSameInstanceAs(preloadingHolder);
+
+    enqueueNext(); // Ad.
+
+    assertThat(mediaPeriodQueue.getLoadingPeriod()).isSameInstanceAs(preloadingHolder);
+    assertThat(preloadingHolder.preloaded).isTrue();
+    assertThat(mediaPeriodQueue.getPreloadingPeriodCount()).isEqualTo(0);
+    assertThat(getQueueLength()).isEqualTo(2);
+  }
+
+  @Test
+  public void enqueueNextMediaPeriodHolder_withPreloadingPeriod_updatesPreloadedInfo() {
+    setupTimeline(/* initialPositionUs= */ 0, /* adGroupTimesUs...= */ FIRST_AD_START_TIME_US);
+    setAdGroupLoaded(/* adGroupIndex= */ 0);
+    enqueueNext(); // Content before ad.
+    mediaPeriodQueue.getLoadingPeriod().prepared = true;
+    MediaPeriodHolder preloadingHolder = addPreloading(getNextPreloadingMediaPeriodInfo());
+    MediaPeriodInfo nextInfo = getNextMediaPeriodInfo();
+
+    enqueueNext(); // Ad.
+
+    assertThat(mediaPeriodQueue.getLoadingPeriod()).isSameInstanceAs(preloadingHolder);
+    assertThat(preloadingHolder.info).isEqualTo(nextInfo);
+  }
+
+  @Test
+  public void updateQueuedPeriods_withUnchangedNextPeriod_keepsPreloadingPeriod() {
+    setupTimeline(/* initialPositionUs= */ 0, /* adGroupTimesUs...= */ FIRST_AD_START_TIME_US);
+    setAdGroupLoaded(/* adGroupIndex= */ 0);
+    enqueueNext(); // Content before ad.
+    mediaPeriodQueue.getLoadingPeriod().prepared = true;
+    MediaPeriodHolder preloadingHolder = addPreloading(getNextPreloadingMediaPeriodInfo());
+
+    updateTimeline();
+    mediaPeriodQueue.updateQueuedPeriods(
+        /* rendererPositionUs= */ 0, /* maxRendererReadPositionUs= */ 0);
+
+    assertThat(mediaPeriodQueue.getPreloadingPeriodCount()).isEqualTo(1);
+    assertThat(mediaPeriodQueue.getPreloadingPeriod(preloadingHolder.mediaPeriod))
+        .isSameInstanceAs(preloadingHolder);
+    assertThat(getQueueLength()).isEqualTo(1);
+  }
+
+  @Test
+  public void updateQueuedPeriods_withSkippedNextPeriod_releasesPreloadingPeriod() {
+    setupTimeline(
+        /* initialPositionUs= */ 0,
+        /* adGroupTimesUs...= */ FIRST_AD_START_TIME_US,
+        SECOND_AD_START_TIME_US);
+    setAdGroupLoaded(/* adGroupIndex= */ 0);
+    enqueueNext(); // Content before first ad.
+    mediaPeriodQueue.getLoadingPeriod().prepared = true;
+    addPreloading(getNextPreloadingMediaPeriodInfo());
+
+    adPlaybackState = adPlaybackState.withSkippedAdGroup(/* adGroupIndex= */ 0);
+    updateTimeline();
+    mediaPeriodQueue.updateQueuedPeriods(
+        /* rendererPositionUs= */ 0, /* maxRendererReadPositionUs= */ 0);
+
+    assertThat(mediaPeriodQueue.getPreloadingPeriodCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void releaseFailedPreloadingPeriods_withPrepareError_releasesPreloadingPeriod()
+      throws Exception {
+    MediaPeriod failingMediaPeriod = mock(MediaPeriod.class);
+    IOException prepareError = new IOException();
+    doThrow(prepareError).when(failingMediaPeriod).maybeThrowPrepareError();
+    setupTimeline(/* initialPositionUs= */ 0, /* adGroupTimesUs...= */ FIRST_AD_START_TIME_US);
+    setAdGroupLoaded(/* adGroupIndex= */ 0);
+    enqueueNext(); // Content before ad.
+    mediaPeriodQueue.getLoadingPeriod().prepared = true;
+    when(mediaSource.createPeriod(any(), any(), anyLong())).thenReturn(failingMediaPeriod);
+    addPreloading(getNextPreloadingMediaPeriodInfo());
+
+    assertThat(mediaPeriodQueue.releaseFailedPreloadingPeriods()).isSameInstanceAs(prepareError);
+
+    verify(mediaSource).releasePeriod(failingMediaPeriod);
+    assertThat(mediaPeriodQueue.getPreloadingPeriodCount()).isEqualTo(0);
+    assertThat(getNextPreloadingMediaPeriodInfo()).isNull();
+    assertThat(getQueueLength()).isEqualTo(1);
+  }
+
   private void setupTimeline(long initialPositionUs, long... adGroupTimesUs) {
     adPlaybackState =
         new AdPlaybackState(adGroupTimesUs).withContentDurationUs(CONTENT_DURATION_US);
@@ -396,6 +499,21 @@ public final class MediaPeriodQueueTest {
             new RendererConfiguration[0], new TrackSelection[0], /* info= */ null));
   }
 
+  private MediaPeriodHolder addPreloading(MediaPeriodInfo info) {
+    return mediaPeriodQueue.addPreloadingMediaPeriodHolder(
+        rendererCapabilities,
+        trackSelector,
+        allocator,
+        mediaSource,
+        info,
+        new TrackSelectorResult(
+            new RendererConfiguration[0], new TrackSelection[0], /* info= */ null));
+  }
+
+  private MediaPeriodInfo getNextPreloadingMediaPeriodInfo() {
+    return mediaPeriodQueue.getNextPreloadingMediaPeriodInfo(/* rendererPositionUs= */ 0);
+  }
+
   private MediaPeriodInfo getNextMediaPeriodInfo() {
     return mediaPeriodQueue.getNextMediaPeriodInfo(/* rendererPositionUs= */ 0, playbackInfo);
   }
@@ -48,6 +48,7 @@ public final class DefaultAudioSinkTest {
   private static final int CHANNEL_COUNT_MONO = 1;
   private static final int CHANNEL_COUNT_STEREO = 2;
   private static final int BYTES_PER_FRAME_16_BIT = 2;
+  private static final int BYTES_PER_FRAME_FLOAT = 4;
   private static final int SAMPLE_RATE_44_1 = 44100;
   private static final int TRIM_100_MS_FRAME_COUNT = 4410;
   private static final int TRIM_10_MS_FRAME_COUNT = 441;
@@ -199,6 +200,58 @@ public final class DefaultAudioSinkTest {
         .isTrue();
   }
 
+  @Config(minSdk = 21, maxSdk = TARGET_SDK)
+  @Test
+  public void appliesPlaybackParametersWithFloatOutput() throws Exception {
+    SonicAudioProcessor sonicAudioProcessor = new SonicAudioProcessor();
+    defaultAudioSink =
+        new DefaultAudioSink(
+            AudioCapabilities.DEFAULT_AUDIO_CAPABILITIES,
+            new SonicAudioProcessorChain(sonicAudioProcessor),
+            /* enableFloatOutput= */ true);
+    defaultAudioSink.configure(
+        C.ENCODING_PCM_FLOAT,
+        CHANNEL_COUNT_STEREO,
+        SAMPLE_RATE_44_1,
+        /* specifiedBufferSize= */ 0,
+        /* outputChannels= */ null,
+        /* trimStartFrames= */ 0,
+        /* trimEndFrames= */ 0);
+    PlaybackParameters playbackParameters = new PlaybackParameters(1.5f);
+
+    defaultAudioSink.setPlaybackParameters(playbackParameters);
+    defaultAudioSink.handleBuffer(
+        ByteBuffer.allocateDirect(SAMPLE_RATE_44_1 * CHANNEL_COUNT_STEREO * BYTES_PER_FRAME_FLOAT)
+            .order(ByteOrder.nativeOrder()),
+        /* presentationTimeUs= */ 0);
+
+    assertThat(defaultAudioSink.getPlaybackParameters()).isEqualTo(playbackParameters);
+    assertThat(sonicAudioProcessor.isActive()).isTrue();
+  }
+
+  @Config(minSdk = 21, maxSdk = TARGET_SDK)
+  @Test
+  public void doesNotApplyPlaybackParametersWithFloatOutputAndChainWithoutSonic()
+      throws Exception {
+    defaultAudioSink =
+        new DefaultAudioSink(
+            AudioCapabilities.DEFAULT_AUDIO_CAPABILITIES,
+            new SpeedReportingAudioProcessorChain(),
+            /* enableFloatOutput= */ true);
+    defaultAudioSink.configure(
+        C.ENCODING_PCM_FLOAT,
+        CHANNEL_COUNT_STEREO,
+        SAMPLE_RATE_44_1,
+        /* specifiedBufferSize= */ 0,
+        /* outputChannels= */ null,
+        /* trimStartFrames= */ 0,
+        /* trimEndFrames= */ 0);
+
+    defaultAudioSink.setPlaybackParameters(new PlaybackParameters(1.5f));
+
+    assertThat(defaultAudioSink.getPlaybackParameters()).isEqualTo(PlaybackParameters.DEFAULT);
+  }
+
   private void configureDefaultAudioSink(int channelCount) throws AudioSink.ConfigurationException {
     configureDefaultAudioSink(channelCount, /* trimStartFrames= */ 0, /* trimEndFrames= */ 0);
   }
@@ -222,6 +275,67 @@ public final class DefaultAudioSinkTest {
         .order(ByteOrder.nativeOrder());
   }
 
+  private static final class SonicAudioProcessorChain
+      implements DefaultAudioSink.AudioProcessorChain {
+
+    private final SonicAudioProcessor sonicAudioProcessor;
+
+    public SonicAudioProcessorChain(SonicAudioProcessor sonicAudioProcessor) {
+      this.sonicAudioProcessor = sonicAudioProcessor;
+    }
+
+    @Override
+    public AudioProcessor[] getAudioProcessors() {
+      return new AudioProcessor[] {sonicAudioProcessor};
+    }
+
+    @Override
+    public PlaybackParameters applyPlaybackParameters(PlaybackParameters playbackParameters) {
+      return new PlaybackParameters(
+          sonicAudioProcessor.setSpeed(playbackParameters.speed),
+          sonicAudioProcessor.setPitch(playbackParameters.pitch),
+          playbackParameters.skipSilence);
+    }
+
+    @Override
+    public long getMediaDuration(long playoutDuration) {
+      return sonicAudioProcessor.scaleDurationForSpeedup(playoutDuration);
+    }
+
+    @Override
+    public long getSkippedOutputFrameCount() {
+      return 0;
+    }
+  }
+
+  /**
+   * A chain that reports any playback parameters as applied, using processors that aren't part of
+   * the float output path.
+   */
+  private static final class SpeedReportingAudioProcessorChain
+      implements DefaultAudioSink.AudioProcessorChain {
+
+    @Override
+    public AudioProcessor[] getAudioProcessors() {
+      return new AudioProcessor[0];
+    }
+
+    @Override
+    public PlaybackParameters applyPlaybackParameters(PlaybackParameters playbackParameters) {
+      return playbackParameters;
+    }
+
+    @Override
+    public long getMediaDuration(long playoutDuration) {
+      return playoutDuration;
+    }
+
+    @Override
+    public long getSkippedOutputFrameCount() {
+      return 0;
+    }
+  }
+
   private static final class ArrayAudioBufferSink implements TeeAudioProcessor.AudioBufferSink {
 
     private byte[] output;
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.audio;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.audio.AudioProcessor.AudioFormat;
+import com.google.android.exoplayer2.audio.AudioProcessor.UnhandledAudioFormatException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link FusedPcmAudioProcessor}. */
+@RunWith(AndroidJUnit4.class)
+public final class FusedPcmAudioProcessorTest {
+
+  @Test
+  public void testSameEncodingWithoutChannelMap_isNotActive() throws Exception {
+    FusedPcmAudioProcessor processor = new FusedPcmAudioProcessor(C.ENCODING_PCM_16BIT);
+
+    processor.configure(createAudioFormat(/* channelCount= */ 2, C.ENCODING_PCM_16BIT));
+
+    assertThat(processor.isActive()).isFalse();
+  }
+
+  @Test
+  public void testIdentityChannelMap_isNotActive() throws Exception {
+    FusedPcmAudioProcessor processor = new FusedPcmAudioProcessor(C.ENCODING_PCM_FLOAT);
+    processor.setChannelMap(new int[] {0, 1});
+
+    processor.configure(createAudioFormat(/* channelCount= */ 2, C.ENCODING_PCM_FLOAT));
+
+    assertThat(processor.isActive()).isFalse();
+  }
+
+  @Test
+  public void test24BitToInt_withChannelMap_convertsAndMapsInOnePass() throws Exception {
+    FusedPcmAudioProcessor processor = new FusedPcmAudioProcessor(C.ENCODING_PCM_16BIT);
+    processor.setChannelMap(new int[] {1, 0});
+    AudioFormat outputFormat =
+        processor.configure(createAudioFormat(/* channelCount= */ 2, C.ENCODING_PCM_24BIT));
+    processor.flush();
+
+    // Two frames of 24-bit little endian samples: (0x123456, 0x7FFFFF), (0x000100, 0x800000).
+    ByteBuffer input =
+        createBuffer(
+            new byte[] {
+              0x56, 0x34, 0x12, (byte) 0xFF, (byte) 0xFF, 0x7F,
+              0x00, 0x01, 0x00, 0x00, 0x00, (byte) 0x80
+            });
+    processor.queueInput(input);
+    ByteBuffer output = processor.getOutput();
+
+    assertThat(outputFormat.encoding).isEqualTo(C.ENCODING_PCM_16BIT);
+    assertThat(outputFormat.channelCount).isEqualTo(2);
+    assertThat(input.hasRemaining()).isFalse();
+    assertThat(output.remaining()).isEqualTo(8);
+    assertThat(output.getShort()).isEqualTo((short) 0x7FFF);
+    assertThat(output.getShort()).isEqualTo((short) 0x1234);
+    assertThat(output.getShort()).isEqualTo((short) 0x8000);
+    assertThat(output.getShort()).isEqualTo((short) 0x0001);
+  }
+
+  @Test
+  public void testFloatToInt_withDownmixingChannelMap_dropsChannels() throws Exception {
+    FusedPcmAudioProcessor processor = new FusedPcmAudioProcessor(C.ENCODING_PCM_16BIT);
+    processor.setChannelMap(new int[] {2});
+    AudioFormat outputFormat =
+        processor.configure(createAudioFormat(/* channelCount= */ 3, C.ENCODING_PCM_FLOAT));
+    processor.flush();
+
+    ByteBuffer input = ByteBuffer.allocateDirect(24).order(ByteOrder.nativeOrder());
+    input.putFloat(0f).putFloat(0f).putFloat(1f).putFloat(0f).putFloat(0f).putFloat(-0.5f);
+    input.flip();
+    processor.queueInput(input);
+    ByteBuffer output = processor.getOutput();
+
+    assertThat(outputFormat.channelCount).isEqualTo(1);
+    assertThat(output.remaining()).isEqualTo(4);
+    assertThat(output.getShort()).isEqualTo(Short.MAX_VALUE);
+    assertThat(output.getShort()).isEqualTo((short) (-0.5f * Short.MAX_VALUE));
+  }
+
+  @Test
+  public void test32BitToFloat_convertsToFloat() throws Exception {
+    FusedPcmAudioProcessor processor = new FusedPcmAudioProcessor(C.ENCODING_PCM_FLOAT);
+    AudioFormat outputFormat =
+        processor.configure(createAudioFormat(/* channelCount= */ 1, C.ENCODING_PCM_32BIT));
+    processor.flush();
+
+    ByteBuffer input =
+        createBuffer(
+            new byte[] {
+              (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x7F, 0x00, 0x00, 0x00, 0x00
+            });
+    processor.queueInput(input);
+    ByteBuffer output = processor.getOutput();
+
+    assertThat(outputFormat.encoding).isEqualTo(C.ENCODING_PCM_FLOAT);
+    assertThat(output.getFloat()).isEqualTo(1f);
+    assertThat(output.getFloat()).isEqualTo(0f);
+  }
+
+  @Test
+  public void test8BitToInt_convertsToInt() throws Exception {
+    FusedPcmAudioProcessor processor = new FusedPcmAudioProcessor(C.ENCODING_PCM_16BIT);
+    processor.configure(createAudioFormat(/* channelCount= */ 1, C.ENCODING_PCM_8BIT));
+    processor.flush();
+
+    processor.queueInput(createBuffer(new byte[] {0x00, (byte) 0x80, (byte) 0xFF}));
+    ByteBuffer output = processor.getOutput();
+
+    assertThat(output.remaining()).isEqualTo(6);
+    assertThat(output.getShort()).isEqualTo(Short.MIN_VALUE);
+    assertThat(output.getShort()).isEqualTo((short) 0);
+    assertThat(output.getShort()).isEqualTo((short) 0x7F00);
+  }
+
+  @Test
+  public void test16BitBigEndianToInt_withChannelMap_swapsBytes() throws Exception {
+    FusedPcmAudioProcessor processor = new FusedPcmAudioProcessor(C.ENCODING_PCM_16BIT);
+    processor.setChannelMap(new int[] {1});
+    processor.configure(createAudioFormat(/* channelCount= */ 2, C.ENCODING_PCM_16BIT_BIG_ENDIAN));
+    processor.flush();
+
+    processor.queueInput(createBuffer(new byte[] {0x01, 0x02, 0x12, 0x34}));
+    ByteBuffer output = processor.getOutput();
+
+    assertThat(output.remaining()).isEqualTo(2);
+    assertThat(output.getShort()).isEqualTo((short) 0x1234);
+  }
+
+  @Test
+  public void testFloatOutput_doesNotSupportLowResolutionInput() throws Exception {
+    FusedPcmAudioProcessor processor = new FusedPcmAudioProcessor(C.ENCODING_PCM_FLOAT);
+    try {
+      processor.configure(createAudioFormat(/* channelCount= */ 2, C.ENCODING_PCM_16BIT));
+      fail();
+    } catch (UnhandledAudioFormatException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testChannelMapWithOutOfRangeChannel_isUnhandled() throws Exception {
+    FusedPcmAudioProcessor processor = new FusedPcmAudioProcessor(C.ENCODING_PCM_16BIT);
+    processor.setChannelMap(new int[] {0, 2});
+    try {
+      processor.configure(createAudioFormat(/* channelCount= */ 2, C.ENCODING_PCM_16BIT));
+      fail();
+    } catch (UnhandledAudioFormatException e) {
+      // Expected.
+    }
+  }
+
+  private static AudioFormat createAudioFormat(int channelCount, @C.PcmEncoding int encoding) {
+    return new AudioFormat(/* sampleRate= */ 44100, channelCount, encoding);
+  }
+
+  private static ByteBuffer createBuffer(byte[] data) {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(data.length).order(ByteOrder.nativeOrder());
+    buffer.put(data).flip();
+    return buffer;
+  }
+}
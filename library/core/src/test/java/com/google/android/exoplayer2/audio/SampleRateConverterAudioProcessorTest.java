@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.audio;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.audio.AudioProcessor.AudioFormat;
+import com.google.android.exoplayer2.audio.AudioProcessor.UnhandledAudioFormatException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link SampleRateConverterAudioProcessor}. */
+@RunWith(AndroidJUnit4.class)
+public final class SampleRateConverterAudioProcessorTest {
+
+  private static final int INPUT_BUFFER_FRAME_COUNT = 1024;
+  private static final double TEST_TONE_FREQUENCY_HZ = 1000;
+  private static final double TEST_TONE_AMPLITUDE = 0.5;
+
+  private SampleRateConverterAudioProcessor processor;
+
+  @Before
+  public void setUp() {
+    processor = new SampleRateConverterAudioProcessor();
+  }
+
+  @Test
+  public void testNoOutputSampleRate_isNotActive() throws Exception {
+    processor.configure(createAudioFormat(/* sampleRate= */ 44100, C.ENCODING_PCM_16BIT));
+
+    assertThat(processor.isActive()).isFalse();
+  }
+
+  @Test
+  public void testSameSampleRate_isNotActive() throws Exception {
+    processor.setOutputSampleRateHz(48000);
+
+    processor.configure(createAudioFormat(/* sampleRate= */ 48000, C.ENCODING_PCM_16BIT));
+
+    assertThat(processor.isActive()).isFalse();
+  }
+
+  @Test
+  public void testDifferentSampleRate_outputsAtRequestedRate() throws Exception {
+    processor.setOutputSampleRateHz(48000);
+
+    AudioFormat outputFormat =
+        processor.configure(createAudioFormat(/* sampleRate= */ 44100, C.ENCODING_PCM_FLOAT));
+
+    assertThat(processor.isActive()).isTrue();
+    assertThat(outputFormat.sampleRate).isEqualTo(48000);
+    assertThat(outputFormat.encoding).isEqualTo(C.ENCODING_PCM_FLOAT);
+  }
+
+  @Test
+  public void testUpsampling16Bit_preservesDurationAndTone() throws Exception {
+    float[] output =
+        convertTestTone(
+            /* inputSampleRate= */ 44100, /* outputSampleRate= */ 48000, C.ENCODING_PCM_16BIT);
+
+    assertThat(output).hasLength(48000);
+    assertThat(getSignalToNoiseRatioDb(output, /* sampleRate= */ 48000)).isGreaterThan(70.0);
+  }
+
+  @Test
+  public void testDownsamplingFloat_preservesDurationAndTone() throws Exception {
+    float[] output =
+        convertTestTone(
+            /* inputSampleRate= */ 48000, /* outputSampleRate= */ 44100, C.ENCODING_PCM_FLOAT);
+
+    assertThat(output).hasLength(44100);
+    assertThat(getSignalToNoiseRatioDb(output, /* sampleRate= */ 44100)).isGreaterThan(100.0);
+  }
+
+  @Test
+  public void testUpsamplingWithApproximatedPhases_preservesDurationAndTone() throws Exception {
+    // The ratio 47999 / 44100 has more phases than are precomputed.
+    float[] output =
+        convertTestTone(
+            /* inputSampleRate= */ 44100, /* outputSampleRate= */ 47999, C.ENCODING_PCM_FLOAT);
+
+    assertThat(output).hasLength(47999);
+    assertThat(getSignalToNoiseRatioDb(output, /* sampleRate= */ 47999)).isGreaterThan(70.0);
+  }
+
+  @Test
+  public void testInputBuffersWithPartialFrames_preservesDurationAndTone() throws Exception {
+    // Each input buffer ends part way through a float frame.
+    float[] output =
+        convertTestTone(
+            /* inputSampleRate= */ 48000,
+            /* outputSampleRate= */ 44100,
+            C.ENCODING_PCM_FLOAT,
+            /* inputBufferSize= */ 1023);
+
+    assertThat(output).hasLength(44100);
+    assertThat(getSignalToNoiseRatioDb(output, /* sampleRate= */ 44100)).isGreaterThan(100.0);
+  }
+
+  @Test
+  public void testUnsupportedEncoding_isUnhandled() throws Exception {
+    processor.setOutputSampleRateHz(48000);
+    try {
+      processor.configure(createAudioFormat(/* sampleRate= */ 44100, C.ENCODING_PCM_24BIT));
+      fail();
+    } catch (UnhandledAudioFormatException e) {
+      // Expected.
+    }
+  }
+
+  /**
+   * Converts one second of a mono test tone at {@code inputSampleRate} and returns the output
+   * samples.
+   */
+  private float[] convertTestTone(
+      int inputSampleRate, int outputSampleRate, @C.PcmEncoding int encoding) throws Exception {
+    int bytesPerSample = encoding == C.ENCODING_PCM_FLOAT ? 4 : 2;
+    return convertTestTone(
+        inputSampleRate, outputSampleRate, encoding, INPUT_BUFFER_FRAME_COUNT * bytesPerSample);
+  }
+
+  /**
+   * Converts one second of a mono test tone at {@code inputSampleRate}, queued in input buffers of
+   * {@code inputBufferSize} bytes, and returns the output samples.
+   */
+  private float[] convertTestTone(
+      int inputSampleRate,
+      int outputSampleRate,
+      @C.PcmEncoding int encoding,
+      int inputBufferSize)
+      throws Exception {
+    processor.setOutputSampleRateHz(outputSampleRate);
+    processor.configure(createAudioFormat(inputSampleRate, encoding));
+    processor.flush();
+    int bytesPerSample = encoding == C.ENCODING_PCM_FLOAT ? 4 : 2;
+    ByteBuffer testTone =
+        ByteBuffer.allocateDirect(inputSampleRate * bytesPerSample).order(ByteOrder.nativeOrder());
+    for (int i = 0; i < inputSampleRate; i++) {
+      double value = getTestToneSample(i, inputSampleRate);
+      if (encoding == C.ENCODING_PCM_FLOAT) {
+        testTone.putFloat((float) value);
+      } else {
+        testTone.putShort((short) Math.round(value * Short.MAX_VALUE));
+      }
+    }
+    testTone.flip();
+
+    float[] output = new float[2 * outputSampleRate];
+    int outputCount = 0;
+    while (testTone.hasRemaining()) {
+      ByteBuffer input = testTone.slice().order(ByteOrder.nativeOrder());
+      input.limit(Math.min(inputBufferSize, input.remaining()));
+      processor.queueInput(input);
+      assertThat(input.hasRemaining()).isFalse();
+      testTone.position(testTone.position() + input.limit());
+      outputCount = readOutput(processor.getOutput(), encoding, output, outputCount);
+    }
+    processor.queueEndOfStream();
+    while (!processor.isEnded()) {
+      outputCount = readOutput(processor.getOutput(), encoding, output, outputCount);
+    }
+    float[] result = new float[outputCount];
+    System.arraycopy(output, 0, result, 0, outputCount);
+    return result;
+  }
+
+  private static int readOutput(
+      ByteBuffer buffer, @C.PcmEncoding int encoding, float[] output, int outputCount) {
+    while (buffer.hasRemaining()) {
+      output[outputCount++] =
+          encoding == C.ENCODING_PCM_FLOAT ? buffer.getFloat() : buffer.getShort() / 32768f;
+    }
+    return outputCount;
+  }
+
+  private static double getSignalToNoiseRatioDb(float[] samples, int sampleRate) {
+    double signalPower = 0;
+    double noisePower = 0;
+    // Ignore the start and end, where the filter is applied to the silence outside the signal.
+    for (int i = 100; i < samples.length - 100; i++) {
+      double expected = getTestToneSample(i, sampleRate);
+      signalPower += expected * expected;
+      noisePower += (samples[i] - expected) * (samples[i] - expected);
+    }
+    return 10 * Math.log10(signalPower / noisePower);
+  }
+
+  private static double getTestToneSample(int index, int sampleRate) {
+    double phase = 2 * Math.PI * TEST_TONE_FREQUENCY_HZ * index / sampleRate;
+    return TEST_TONE_AMPLITUDE * Math.sin(phase);
+  }
+
+  private static AudioFormat createAudioFormat(int sampleRate, @C.PcmEncoding int encoding) {
+    return new AudioFormat(sampleRate, /* channelCount= */ 1, encoding);
+  }
+}
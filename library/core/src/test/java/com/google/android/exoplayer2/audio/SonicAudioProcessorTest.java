@@ -22,6 +22,9 @@ import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.audio.AudioProcessor.AudioFormat;
 import com.google.android.exoplayer2.audio.AudioProcessor.UnhandledAudioFormatException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -39,6 +42,9 @@ public final class SonicAudioProcessorTest {
   private static final AudioFormat AUDIO_FORMAT_48000_HZ =
       new AudioFormat(
           /* sampleRate= */ 48000, /* channelCount= */ 2, /* encoding= */ C.ENCODING_PCM_16BIT);
+  private static final AudioFormat AUDIO_FORMAT_44100_HZ_FLOAT =
+      new AudioFormat(
+          /* sampleRate= */ 44100, /* channelCount= */ 2, /* encoding= */ C.ENCODING_PCM_FLOAT);
 
   private SonicAudioProcessor sonicAudioProcessor;
 
@@ -100,7 +106,44 @@ public final class SonicAudioProcessorTest {
   }
 
   @Test
-  public void testDoesNotSupportNon16BitInput() throws Exception {
+  public void testConfigureWithFloatInputOutputsFloat() throws Exception {
+    sonicAudioProcessor.setSpeed(1.5f);
+    AudioFormat outputAudioFormat = sonicAudioProcessor.configure(AUDIO_FORMAT_44100_HZ_FLOAT);
+    assertThat(sonicAudioProcessor.isActive()).isTrue();
+    assertThat(outputAudioFormat.encoding).isEqualTo(C.ENCODING_PCM_FLOAT);
+  }
+
+  @Test
+  public void testFloatInputWithDoubleSpeedHalvesOutputLength() throws Exception {
+    sonicAudioProcessor.setSpeed(2f);
+    sonicAudioProcessor.configure(AUDIO_FORMAT_44100_HZ_FLOAT);
+    sonicAudioProcessor.flush();
+    int inputFrameCount = 44100;
+
+    int outputBytes =
+        processAll(createSineWave(AUDIO_FORMAT_44100_HZ_FLOAT, /* frameCount= */ inputFrameCount));
+
+    int outputFrameCount = outputBytes / (2 * 4);
+    assertThat(outputFrameCount).isWithin(inputFrameCount / 100).of(inputFrameCount / 2);
+    assertThat(sonicAudioProcessor.isEnded()).isTrue();
+  }
+
+  @Test
+  public void testFloatInputWithSampleRateChangeScalesOutputLength() throws Exception {
+    sonicAudioProcessor.setOutputSampleRateHz(48000);
+    sonicAudioProcessor.configure(AUDIO_FORMAT_44100_HZ_FLOAT);
+    sonicAudioProcessor.flush();
+    int inputFrameCount = 44100;
+
+    int outputBytes =
+        processAll(createSineWave(AUDIO_FORMAT_44100_HZ_FLOAT, /* frameCount= */ inputFrameCount));
+
+    int outputFrameCount = outputBytes / (2 * 4);
+    assertThat(outputFrameCount).isWithin(48000 / 100).of(48000);
+  }
+
+  @Test
+  public void testDoesNotSupportIntegerInputOtherThan16Bit() throws Exception {
     try {
       sonicAudioProcessor.configure(
           new AudioFormat(
@@ -131,4 +174,33 @@ public final class SonicAudioProcessorTest {
     }
   }
 
+  /** Queues {@code input} and end of stream, and returns the total number of bytes output. */
+  private int processAll(ByteBuffer input) {
+    int outputBytes = 0;
+    while (input.hasRemaining()) {
+      sonicAudioProcessor.queueInput(input);
+      outputBytes += sonicAudioProcessor.getOutput().remaining();
+    }
+    sonicAudioProcessor.queueEndOfStream();
+    while (!sonicAudioProcessor.isEnded()) {
+      sonicAudioProcessor.queueInput(AudioProcessor.EMPTY_BUFFER);
+      outputBytes += sonicAudioProcessor.getOutput().remaining();
+    }
+    return outputBytes;
+  }
+
+  private static ByteBuffer createSineWave(AudioFormat audioFormat, int frameCount) {
+    ByteBuffer buffer =
+        ByteBuffer.allocateDirect(frameCount * audioFormat.channelCount * 4)
+            .order(ByteOrder.nativeOrder());
+    FloatBuffer floatBuffer = buffer.asFloatBuffer();
+    for (int i = 0; i < frameCount; i++) {
+      float value = (float) Math.sin(2 * Math.PI * 220 * i / audioFormat.sampleRate);
+      for (int j = 0; j < audioFormat.channelCount; j++) {
+        floatBuffer.put(value * 0.5f);
+      }
+    }
+    return buffer;
+  }
+
 }
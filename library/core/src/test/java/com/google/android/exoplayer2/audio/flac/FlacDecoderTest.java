@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.audio.flac;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.annotation.Nullable;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.decoder.DecoderInputBuffer;
+import com.google.android.exoplayer2.decoder.SimpleOutputBuffer;
+import com.google.android.exoplayer2.extractor.flac.FlacExtractor;
+import com.google.android.exoplayer2.testutil.FakeTrackOutput;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit test for {@link FlacDecoder}. */
+@RunWith(AndroidJUnit4.class)
+public final class FlacDecoderTest {
+
+  private static final long TIMEOUT_MS = 10_000;
+  private static final int BUFFER_COUNT = 4;
+
+  private ExecutorService executor;
+  private FakeTrackOutput trackOutput;
+  private byte[] streamInfo;
+
+  @Before
+  public void setUp() throws Exception {
+    executor = Executors.newSingleThreadExecutor();
+    trackOutput =
+        TestUtil.extractAllSamplesFromFile(
+                new FlacExtractor(), ApplicationProvider.getApplicationContext(), "flac/bear.flac")
+            .trackOutputs
+            .get(0);
+    streamInfo = trackOutput.format.initializationData.get(0);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdown();
+  }
+
+  @Test
+  public void decode_onOwnThread_matchesStreamInfoMd5() throws Exception {
+    FlacDecoder decoder = createDecoder(/* decodeExecutor= */ null);
+    MessageDigest md5 = MessageDigest.getInstance("MD5");
+
+    int queuedCount = 0;
+    int outputCount = 0;
+    long deadlineMs = System.currentTimeMillis() + TIMEOUT_MS;
+    while (outputCount < trackOutput.getSampleCount()) {
+      queuedCount = maybeQueueInput(decoder, queuedCount);
+      outputCount += maybeDequeueOutput(decoder, md5);
+      assertThat(System.currentTimeMillis()).isLessThan(deadlineMs);
+    }
+    decoder.release();
+
+    assertThat(md5.digest()).isEqualTo(getStreamInfoMd5());
+  }
+
+  @Test
+  public void decode_withDecodersSharingExecutor_matchesStreamInfoMd5() throws Exception {
+    FlacDecoder decoder1 = createDecoder(executor);
+    FlacDecoder decoder2 = createDecoder(executor);
+    MessageDigest decoder1Md5 = MessageDigest.getInstance("MD5");
+    MessageDigest decoder2Md5 = MessageDigest.getInstance("MD5");
+
+    int queuedCount1 = 0;
+    int queuedCount2 = 0;
+    int outputCount1 = 0;
+    int outputCount2 = 0;
+    int sampleCount = trackOutput.getSampleCount();
+    long deadlineMs = System.currentTimeMillis() + TIMEOUT_MS;
+    while (outputCount1 < sampleCount || outputCount2 < sampleCount) {
+      queuedCount1 = maybeQueueInput(decoder1, queuedCount1);
+      queuedCount2 = maybeQueueInput(decoder2, queuedCount2);
+      outputCount1 += maybeDequeueOutput(decoder1, decoder1Md5);
+      outputCount2 += maybeDequeueOutput(decoder2, decoder2Md5);
+      assertThat(System.currentTimeMillis()).isLessThan(deadlineMs);
+    }
+    decoder1.release();
+    decoder2.release();
+
+    assertThat(decoder1Md5.digest()).isEqualTo(getStreamInfoMd5());
+    assertThat(decoder2Md5.digest()).isEqualTo(getStreamInfoMd5());
+  }
+
+  private FlacDecoder createDecoder(@Nullable ExecutorService decodeExecutor) throws Exception {
+    return new FlacDecoder(
+        BUFFER_COUNT,
+        BUFFER_COUNT,
+        /* maxInputBufferSize= */ Format.NO_VALUE,
+        trackOutput.format.initializationData,
+        decodeExecutor);
+  }
+
+  /** Queues the next frame output by the extractor, if an input buffer is available. */
+  private int maybeQueueInput(FlacDecoder decoder, int queuedCount) throws Exception {
+    if (queuedCount == trackOutput.getSampleCount()) {
+      return queuedCount;
+    }
+    @Nullable DecoderInputBuffer inputBuffer = decoder.dequeueInputBuffer();
+    if (inputBuffer == null) {
+      return queuedCount;
+    }
+    byte[] frame = trackOutput.getSampleData(queuedCount);
+    inputBuffer.ensureSpaceForWrite(frame.length);
+    inputBuffer.data.put(frame);
+    inputBuffer.flip();
+    inputBuffer.timeUs = trackOutput.getSampleTimeUs(queuedCount);
+    decoder.queueInputBuffer(inputBuffer);
+    return queuedCount + 1;
+  }
+
+  /** Adds the next output buffer to {@code md5}, and returns the number of buffers dequeued. */
+  private static int maybeDequeueOutput(FlacDecoder decoder, MessageDigest md5) throws Exception {
+    @Nullable SimpleOutputBuffer outputBuffer = decoder.dequeueOutputBuffer();
+    if (outputBuffer == null) {
+      return 0;
+    }
+    md5.update(outputBuffer.data);
+    outputBuffer.release();
+    return 1;
+  }
+
+  /** Returns the MD5 of the decoded audio, which ends the stream info block. */
+  private byte[] getStreamInfoMd5() {
+    return Arrays.copyOfRange(streamInfo, streamInfo.length - 16, streamInfo.length);
+  }
+}
@@ -0,0 +1,460 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.audio.flac;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ParserException;
+import com.google.android.exoplayer2.extractor.flac.FlacExtractor;
+import com.google.android.exoplayer2.testutil.FakeTrackOutput;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.util.FlacStreamMetadata;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link FlacFrameDecoder}. */
+@RunWith(AndroidJUnit4.class)
+public final class FlacFrameDecoderTest {
+
+  private static final int CHANNEL_ASSIGNMENT_LEFT_SIDE = 8;
+  private static final int CHANNEL_ASSIGNMENT_RIGHT_SIDE = 9;
+  private static final int CHANNEL_ASSIGNMENT_MID_SIDE = 10;
+  private static final int SAMPLE_SIZE_CODE_8_BIT = 1;
+  private static final int SAMPLE_SIZE_CODE_16_BIT = 4;
+  private static final int SAMPLE_SIZE_CODE_24_BIT = 6;
+  private static final int SUBFRAME_TYPE_CONSTANT = 0;
+  private static final int SUBFRAME_TYPE_VERBATIM = 1;
+  private static final int SUBFRAME_TYPE_FIXED_ORDER_0 = 8;
+  private static final int SUBFRAME_TYPE_FIXED_ORDER_2 = 10;
+  private static final int SUBFRAME_TYPE_LPC_ORDER_1 = 32;
+
+  @Test
+  public void decodeFrame_independentChannels() throws Exception {
+    BitWriter writer = new BitWriter();
+    writeFrameHeader(writer, /* channelAssignment= */ 1, /* blockSize= */ 4);
+    writeSubframeHeader(writer, SUBFRAME_TYPE_CONSTANT);
+    writer.writeBits(1000, 16);
+    writeSubframeHeader(writer, SUBFRAME_TYPE_VERBATIM);
+    writer.writeBits(1, 16);
+    writer.writeBits(-2, 16);
+    writer.writeBits(3, 16);
+    writer.writeBits(-4, 16);
+    writeFrameFooter(writer);
+
+    short[] samples = decode(/* channels= */ 2, writer.toByteArray());
+
+    assertThat(samples)
+        .asList()
+        .containsExactly(
+            (short) 1000, (short) 1, (short) 1000, (short) -2, (short) 1000, (short) 3,
+            (short) 1000, (short) -4)
+        .inOrder();
+  }
+
+  @Test
+  public void decodeFrame_fixedSubframe() throws Exception {
+    BitWriter writer = new BitWriter();
+    writeFrameHeader(writer, /* channelAssignment= */ 0, /* blockSize= */ 6);
+    writeSubframeHeader(writer, SUBFRAME_TYPE_FIXED_ORDER_2);
+    writer.writeBits(10, 16);
+    writer.writeBits(20, 16);
+    writeResidual(writer, /* riceParameter= */ 2, 0, 0, 5, -10);
+    writeFrameFooter(writer);
+
+    short[] samples = decode(/* channels= */ 1, writer.toByteArray());
+
+    assertThat(samples)
+        .asList()
+        .containsExactly((short) 10, (short) 20, (short) 30, (short) 40, (short) 55, (short) 60)
+        .inOrder();
+  }
+
+  @Test
+  public void decodeFrame_lpcSubframe() throws Exception {
+    BitWriter writer = new BitWriter();
+    writeFrameHeader(writer, /* channelAssignment= */ 0, /* blockSize= */ 4);
+    writeSubframeHeader(writer, SUBFRAME_TYPE_LPC_ORDER_1);
+    writer.writeBits(5, 16);
+    writer.writeBits(/* precision - 1 */ 3, 4);
+    writer.writeBits(/* shift */ 0, 5);
+    writer.writeBits(/* coefficient */ 1, 4);
+    writeResidual(writer, /* riceParameter= */ 0, 1, 1, 1);
+    writeFrameFooter(writer);
+
+    short[] samples = decode(/* channels= */ 1, writer.toByteArray());
+
+    assertThat(samples)
+        .asList()
+        .containsExactly((short) 5, (short) 6, (short) 7, (short) 8)
+        .inOrder();
+  }
+
+  @Test
+  public void decodeFrame_midSideChannels() throws Exception {
+    BitWriter writer = new BitWriter();
+    writeFrameHeader(writer, CHANNEL_ASSIGNMENT_MID_SIDE, /* blockSize= */ 2);
+    writeSubframeHeader(writer, SUBFRAME_TYPE_CONSTANT);
+    writer.writeBits(75, 16);
+    // The side channel has an extra bit.
+    writeSubframeHeader(writer, SUBFRAME_TYPE_CONSTANT);
+    writer.writeBits(50, 17);
+    writeFrameFooter(writer);
+
+    short[] samples = decode(/* channels= */ 2, writer.toByteArray());
+
+    assertThat(samples)
+        .asList()
+        .containsExactly((short) 100, (short) 50, (short) 100, (short) 50)
+        .inOrder();
+  }
+
+  @Test
+  public void decodeFrame_leftSideChannels() throws Exception {
+    BitWriter writer = new BitWriter();
+    writeFrameHeader(writer, CHANNEL_ASSIGNMENT_LEFT_SIDE, /* blockSize= */ 2);
+    writeSubframeHeader(writer, SUBFRAME_TYPE_CONSTANT);
+    writer.writeBits(100, 16);
+    // The side channel has an extra bit.
+    writeSubframeHeader(writer, SUBFRAME_TYPE_CONSTANT);
+    writer.writeBits(-30, 17);
+    writeFrameFooter(writer);
+
+    short[] samples = decode(/* channels= */ 2, writer.toByteArray());
+
+    assertThat(samples)
+        .asList()
+        .containsExactly((short) 100, (short) 130, (short) 100, (short) 130)
+        .inOrder();
+  }
+
+  @Test
+  public void decodeFrame_rightSideChannels() throws Exception {
+    BitWriter writer = new BitWriter();
+    writeFrameHeader(writer, CHANNEL_ASSIGNMENT_RIGHT_SIDE, /* blockSize= */ 2);
+    // The side channel comes first, and has an extra bit.
+    writeSubframeHeader(writer, SUBFRAME_TYPE_CONSTANT);
+    writer.writeBits(-30, 17);
+    writeSubframeHeader(writer, SUBFRAME_TYPE_CONSTANT);
+    writer.writeBits(130, 16);
+    writeFrameFooter(writer);
+
+    short[] samples = decode(/* channels= */ 2, writer.toByteArray());
+
+    assertThat(samples)
+        .asList()
+        .containsExactly((short) 100, (short) 130, (short) 100, (short) 130)
+        .inOrder();
+  }
+
+  @Test
+  public void decodeFrame_withWastedBits_shiftsSamples() throws Exception {
+    BitWriter writer = new BitWriter();
+    writeFrameHeader(writer, /* channelAssignment= */ 0, /* blockSize= */ 3);
+    writeSubframeHeader(writer, SUBFRAME_TYPE_VERBATIM, /* wastedBits= */ 3);
+    // The samples are stored with the wasted bits removed.
+    writer.writeBits(1, 13);
+    writer.writeBits(-5, 13);
+    writer.writeBits(4095, 13);
+    writeFrameFooter(writer);
+
+    short[] samples = decode(/* channels= */ 1, writer.toByteArray());
+
+    assertThat(samples)
+        .asList()
+        .containsExactly((short) 8, (short) -40, (short) 32760)
+        .inOrder();
+  }
+
+  @Test
+  public void decodeFrame_withEscapedResidualPartition_readsRawResidual() throws Exception {
+    BitWriter writer = new BitWriter();
+    writeFrameHeader(writer, /* channelAssignment= */ 0, /* blockSize= */ 4);
+    writeSubframeHeader(writer, SUBFRAME_TYPE_FIXED_ORDER_0);
+    writer.writeBits(/* codingMethod= */ 0, 2);
+    writer.writeBits(/* partitionOrder= */ 1, 4);
+    // The first partition is Rice coded.
+    writer.writeBits(/* riceParameter= */ 1, 4);
+    writeRiceValue(writer, /* riceParameter= */ 1, 3);
+    writeRiceValue(writer, /* riceParameter= */ 1, -2);
+    // The second partition is escaped, and has 7 bit raw values.
+    writer.writeBits(/* escapeParameter= */ 15, 4);
+    writer.writeBits(/* bits= */ 7, 5);
+    writer.writeBits(-64, 7);
+    writer.writeBits(63, 7);
+    writeFrameFooter(writer);
+
+    short[] samples = decode(/* channels= */ 1, writer.toByteArray());
+
+    assertThat(samples)
+        .asList()
+        .containsExactly((short) 3, (short) -2, (short) -64, (short) 63)
+        .inOrder();
+  }
+
+  @Test
+  public void decodeFrame_8BitSamples_outputsUnsigned8Bit() throws Exception {
+    BitWriter writer = new BitWriter();
+    writeFrameHeader(
+        writer, /* channelAssignment= */ 0, /* blockSize= */ 3, SAMPLE_SIZE_CODE_8_BIT);
+    writeSubframeHeader(writer, SUBFRAME_TYPE_VERBATIM);
+    writer.writeBits(-128, 8);
+    writer.writeBits(0, 8);
+    writer.writeBits(127, 8);
+    writeFrameFooter(writer);
+
+    byte[] output = decode(/* channels= */ 1, /* bitsPerSample= */ 8, writer.toByteArray());
+
+    assertThat(output).isEqualTo(new byte[] {0, (byte) 128, (byte) 255});
+  }
+
+  @Test
+  public void decodeFrame_24BitSamples_outputsLittleEndian24Bit() throws Exception {
+    BitWriter writer = new BitWriter();
+    writeFrameHeader(
+        writer, /* channelAssignment= */ 0, /* blockSize= */ 2, SAMPLE_SIZE_CODE_24_BIT);
+    writeSubframeHeader(writer, SUBFRAME_TYPE_VERBATIM);
+    writer.writeBits(0x123456, 24);
+    writer.writeBits(-2, 24);
+    writeFrameFooter(writer);
+
+    byte[] output = decode(/* channels= */ 1, /* bitsPerSample= */ 24, writer.toByteArray());
+
+    assertThat(output)
+        .isEqualTo(new byte[] {0x56, 0x34, 0x12, (byte) 0xFE, (byte) 0xFF, (byte) 0xFF});
+  }
+
+  @Test
+  public void decodeFrame_bearFlac_matchesStreamInfoMd5() throws Exception {
+    FakeTrackOutput trackOutput =
+        TestUtil.extractAllSamplesFromFile(
+                new FlacExtractor(), ApplicationProvider.getApplicationContext(), "flac/bear.flac")
+            .trackOutputs
+            .get(0);
+    // The initialization data is the stream marker followed by the stream info block, which has a
+    // four byte header and ends with the MD5 of the decoded audio.
+    byte[] streamInfo = trackOutput.format.initializationData.get(0);
+    FlacFrameDecoder decoder = new FlacFrameDecoder(new FlacStreamMetadata(streamInfo, 8));
+    ByteBuffer output =
+        ByteBuffer.allocate(decoder.getMaxOutputSize()).order(ByteOrder.LITTLE_ENDIAN);
+    MessageDigest md5 = MessageDigest.getInstance("MD5");
+
+    // Each sample output by the extractor is one frame.
+    for (int i = 0; i < trackOutput.getSampleCount(); i++) {
+      byte[] frame = trackOutput.getSampleData(i);
+      output.clear();
+      decoder.decodeFrame(frame, /* offset= */ 0, frame.length, output);
+      output.flip();
+      md5.update(output);
+    }
+
+    assertThat(md5.digest())
+        .isEqualTo(Arrays.copyOfRange(streamInfo, streamInfo.length - 16, streamInfo.length));
+  }
+
+  @Test
+  public void decodeFrame_withInvalidSyncCode_throws() throws Exception {
+    byte[] data = new byte[] {(byte) 0xFF, (byte) 0x00, 0x00, 0x00};
+    FlacFrameDecoder decoder = new FlacFrameDecoder(createStreamMetadata(/* channels= */ 1));
+    ByteBuffer output = ByteBuffer.allocate(decoder.getMaxOutputSize());
+    try {
+      decoder.decodeFrame(data, /* offset= */ 0, data.length, output);
+      fail();
+    } catch (ParserException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void decodeFrame_withTruncatedFrame_throws() throws Exception {
+    BitWriter writer = new BitWriter();
+    writeFrameHeader(writer, /* channelAssignment= */ 0, /* blockSize= */ 4);
+    writeSubframeHeader(writer, SUBFRAME_TYPE_VERBATIM);
+    writer.writeBits(1, 16);
+    byte[] data = writer.toByteArray();
+    FlacFrameDecoder decoder = new FlacFrameDecoder(createStreamMetadata(/* channels= */ 1));
+    ByteBuffer output = ByteBuffer.allocate(decoder.getMaxOutputSize());
+    try {
+      decoder.decodeFrame(data, /* offset= */ 0, data.length, output);
+      fail();
+    } catch (ParserException e) {
+      assertThat(e).hasMessageThat().isEqualTo("Unexpected end of frame");
+    }
+  }
+
+  @Test
+  public void getOutputPcmEncoding_returns16Bit() throws Exception {
+    FlacFrameDecoder decoder = new FlacFrameDecoder(createStreamMetadata(/* channels= */ 2));
+
+    assertThat(decoder.getOutputPcmEncoding()).isEqualTo(C.ENCODING_PCM_16BIT);
+  }
+
+  @Test
+  public void getOutputPcmEncoding_with8BitSamples_returns8Bit() throws Exception {
+    FlacFrameDecoder decoder =
+        new FlacFrameDecoder(createStreamMetadata(/* channels= */ 2, /* bitsPerSample= */ 8));
+
+    assertThat(decoder.getOutputPcmEncoding()).isEqualTo(C.ENCODING_PCM_8BIT);
+  }
+
+  @Test
+  public void getOutputPcmEncoding_with24BitSamples_returns24Bit() throws Exception {
+    FlacFrameDecoder decoder =
+        new FlacFrameDecoder(createStreamMetadata(/* channels= */ 2, /* bitsPerSample= */ 24));
+
+    assertThat(decoder.getOutputPcmEncoding()).isEqualTo(C.ENCODING_PCM_24BIT);
+  }
+
+  private static short[] decode(int channels, byte[] data) throws ParserException {
+    ByteBuffer output =
+        ByteBuffer.wrap(decode(channels, /* bitsPerSample= */ 16, data))
+            .order(ByteOrder.LITTLE_ENDIAN);
+    short[] samples = new short[output.remaining() / 2];
+    output.asShortBuffer().get(samples);
+    return samples;
+  }
+
+  private static byte[] decode(int channels, int bitsPerSample, byte[] data)
+      throws ParserException {
+    FlacFrameDecoder decoder = new FlacFrameDecoder(createStreamMetadata(channels, bitsPerSample));
+    ByteBuffer output =
+        ByteBuffer.allocate(decoder.getMaxOutputSize()).order(ByteOrder.LITTLE_ENDIAN);
+    decoder.decodeFrame(data, /* offset= */ 0, data.length, output);
+    return Arrays.copyOf(output.array(), output.position());
+  }
+
+  private static FlacStreamMetadata createStreamMetadata(int channels) {
+    return createStreamMetadata(channels, /* bitsPerSample= */ 16);
+  }
+
+  private static FlacStreamMetadata createStreamMetadata(int channels, int bitsPerSample) {
+    return new FlacStreamMetadata(
+        /* minBlockSizeSamples= */ 16,
+        /* maxBlockSizeSamples= */ 16,
+        /* minFrameSize= */ 0,
+        /* maxFrameSize= */ 0,
+        /* sampleRate= */ 44100,
+        channels,
+        bitsPerSample,
+        /* totalSamples= */ 0,
+        /* vorbisComments= */ new ArrayList<>(),
+        /* pictureFrames= */ new ArrayList<>());
+  }
+
+  private static void writeFrameHeader(BitWriter writer, int channelAssignment, int blockSize) {
+    writeFrameHeader(writer, channelAssignment, blockSize, SAMPLE_SIZE_CODE_16_BIT);
+  }
+
+  private static void writeFrameHeader(
+      BitWriter writer, int channelAssignment, int blockSize, int sampleSizeCode) {
+    writer.writeBits(0xFFF8, 16); // Sync code, reserved bit and fixed blocking strategy.
+    writer.writeBits(/* blockSizeCode= */ 6, 4); // 8 bit block size at the end of the header.
+    writer.writeBits(/* sampleRateCode= */ 0, 4); // From the stream info.
+    writer.writeBits(channelAssignment, 4);
+    writer.writeBits(sampleSizeCode, 3);
+    writer.writeBits(0, 1); // Reserved bit.
+    writer.writeBits(/* frameNumber= */ 0, 8);
+    writer.writeBits(blockSize - 1, 8);
+    writer.writeBits(/* crc8= */ 0, 8);
+  }
+
+  private static void writeSubframeHeader(BitWriter writer, int type) {
+    writeSubframeHeader(writer, type, /* wastedBits= */ 0);
+  }
+
+  private static void writeSubframeHeader(BitWriter writer, int type, int wastedBits) {
+    writer.writeBits(0, 1); // Zero padding.
+    writer.writeBits(type, 6);
+    if (wastedBits == 0) {
+      writer.writeBits(0, 1);
+    } else {
+      // The number of wasted bits is unary coded, minus one.
+      writer.writeBits(1, 1);
+      for (int i = 0; i < wastedBits - 1; i++) {
+        writer.writeBits(0, 1);
+      }
+      writer.writeBits(1, 1);
+    }
+  }
+
+  /** Writes a residual with a single Rice coded partition. */
+  private static void writeResidual(BitWriter writer, int riceParameter, int... residual) {
+    writer.writeBits(/* codingMethod= */ 0, 2);
+    writer.writeBits(/* partitionOrder= */ 0, 4);
+    writer.writeBits(riceParameter, 4);
+    for (int value : residual) {
+      writeRiceValue(writer, riceParameter, value);
+    }
+  }
+
+  private static void writeRiceValue(BitWriter writer, int riceParameter, int value) {
+    int unsignedValue = value >= 0 ? value << 1 : ((-value) << 1) - 1;
+    for (int i = 0; i < unsignedValue >> riceParameter; i++) {
+      writer.writeBits(0, 1);
+    }
+    writer.writeBits(1, 1);
+    writer.writeBits(unsignedValue & ((1 << riceParameter) - 1), riceParameter);
+  }
+
+  private static void writeFrameFooter(BitWriter writer) {
+    writer.alignToByte();
+    writer.writeBits(/* crc16= */ 0, 16);
+  }
+
+  /** Writes bits into a byte array, most significant bit first. */
+  private static final class BitWriter {
+
+    private final ByteArrayOutputStream output;
+    private int currentByte;
+    private int bitCount;
+
+    public BitWriter() {
+      output = new ByteArrayOutputStream();
+    }
+
+    public void writeBits(int value, int numBits) {
+      for (int i = numBits - 1; i >= 0; i--) {
+        currentByte = (currentByte << 1) | ((value >> i) & 1);
+        bitCount++;
+        if (bitCount == 8) {
+          output.write(currentByte);
+          currentByte = 0;
+          bitCount = 0;
+        }
+      }
+    }
+
+    public void alignToByte() {
+      if (bitCount > 0) {
+        writeBits(0, 8 - bitCount);
+      }
+    }
+
+    public byte[] toByteArray() {
+      alignToByte();
+      return output.toByteArray();
+    }
+  }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.decoder;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit test for {@link SimpleDecoder}. */
+@RunWith(AndroidJUnit4.class)
+public final class SimpleDecoderTest {
+
+  private static final long TIMEOUT_MS = 10_000;
+  private static final int BUFFER_COUNT = 20;
+
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newSingleThreadExecutor();
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdown();
+  }
+
+  @Test
+  public void testDecodeOnOwnThread_outputsBuffersInOrder() throws Exception {
+    FakeDecoder decoder = new FakeDecoder(/* decodeExecutor= */ null);
+
+    List<Long> outputTimesUs = decodeAll(decoder, /* firstTimeUs= */ 0);
+    decoder.release();
+
+    assertThat(outputTimesUs).isEqualTo(createTimesUs(/* firstTimeUs= */ 0));
+  }
+
+  @Test
+  public void testDecodersSharingExecutor_outputBuffersInOrder() throws Exception {
+    FakeDecoder decoder1 = new FakeDecoder(executor);
+    FakeDecoder decoder2 = new FakeDecoder(executor);
+
+    List<Long> outputTimesUs1 = new ArrayList<>();
+    List<Long> outputTimesUs2 = new ArrayList<>();
+    int queuedCount1 = 0;
+    int queuedCount2 = 0;
+    long deadlineMs = System.currentTimeMillis() + TIMEOUT_MS;
+    while (outputTimesUs1.size() < BUFFER_COUNT || outputTimesUs2.size() < BUFFER_COUNT) {
+      queuedCount1 = maybeQueueInput(decoder1, /* firstTimeUs= */ 0, queuedCount1);
+      queuedCount2 = maybeQueueInput(decoder2, /* firstTimeUs= */ 1000, queuedCount2);
+      maybeDequeueOutput(decoder1, outputTimesUs1);
+      maybeDequeueOutput(decoder2, outputTimesUs2);
+      assertThat(System.currentTimeMillis()).isLessThan(deadlineMs);
+    }
+    decoder1.release();
+    decoder2.release();
+
+    assertThat(outputTimesUs1).isEqualTo(createTimesUs(/* firstTimeUs= */ 0));
+    assertThat(outputTimesUs2).isEqualTo(createTimesUs(/* firstTimeUs= */ 1000));
+  }
+
+  @Test
+  public void testDecodeErrorOnExecutor_isThrown() throws Exception {
+    FakeDecoder decoder = new FakeDecoder(executor);
+    decoder.failDecoding = true;
+    DecoderInputBuffer inputBuffer = decoder.dequeueInputBuffer();
+    decoder.queueInputBuffer(inputBuffer);
+
+    long deadlineMs = System.currentTimeMillis() + TIMEOUT_MS;
+    try {
+      while (System.currentTimeMillis() < deadlineMs) {
+        decoder.dequeueOutputBuffer();
+      }
+      fail();
+    } catch (Exception e) {
+      assertThat(e).hasMessageThat().isEqualTo("Decode failed");
+    }
+    decoder.release();
+  }
+
+  @Test
+  public void testExecutorRejectingDecodeTask_throwsUnexpectedDecodeError() throws Exception {
+    executor.shutdown();
+    FakeDecoder decoder = new FakeDecoder(executor);
+    DecoderInputBuffer inputBuffer = decoder.dequeueInputBuffer();
+
+    decoder.queueInputBuffer(inputBuffer);
+
+    try {
+      decoder.dequeueOutputBuffer();
+      fail();
+    } catch (Exception e) {
+      assertThat(e).hasMessageThat().isEqualTo("Unexpected decode error");
+      assertThat(e).hasCauseThat().isInstanceOf(RejectedExecutionException.class);
+    }
+    decoder.release();
+  }
+
+  private static List<Long> decodeAll(FakeDecoder decoder, long firstTimeUs) throws Exception {
+    List<Long> outputTimesUs = new ArrayList<>();
+    int queuedCount = 0;
+    long deadlineMs = System.currentTimeMillis() + TIMEOUT_MS;
+    while (outputTimesUs.size() < BUFFER_COUNT) {
+      queuedCount = maybeQueueInput(decoder, firstTimeUs, queuedCount);
+      maybeDequeueOutput(decoder, outputTimesUs);
+      assertThat(System.currentTimeMillis()).isLessThan(deadlineMs);
+    }
+    return outputTimesUs;
+  }
+
+  private static int maybeQueueInput(FakeDecoder decoder, long firstTimeUs, int queuedCount)
+      throws Exception {
+    if (queuedCount == BUFFER_COUNT) {
+      return queuedCount;
+    }
+    @Nullable DecoderInputBuffer inputBuffer = decoder.dequeueInputBuffer();
+    if (inputBuffer == null) {
+      return queuedCount;
+    }
+    inputBuffer.timeUs = firstTimeUs + queuedCount;
+    decoder.queueInputBuffer(inputBuffer);
+    return queuedCount + 1;
+  }
+
+  private static void maybeDequeueOutput(FakeDecoder decoder, List<Long> outputTimesUs)
+      throws Exception {
+    @Nullable SimpleOutputBuffer outputBuffer = decoder.dequeueOutputBuffer();
+    if (outputBuffer != null) {
+      outputTimesUs.add(outputBuffer.timeUs);
+      outputBuffer.release();
+    }
+  }
+
+  private static List<Long> createTimesUs(long firstTimeUs) {
+    List<Long> timesUs = new ArrayList<>();
+    for (int i = 0; i < BUFFER_COUNT; i++) {
+      timesUs.add(firstTimeUs + i);
+    }
+    return timesUs;
+  }
+
+  private static final class FakeDecoder
+      extends SimpleDecoder<DecoderInputBuffer, SimpleOutputBuffer, Exception> {
+
+    private volatile boolean failDecoding;
+
+    public FakeDecoder(@Nullable ExecutorService decodeExecutor) {
+      super(new DecoderInputBuffer[2], new SimpleOutputBuffer[2], decodeExecutor);
+    }
+
+    @Override
+    public String getName() {
+      return "FakeDecoder";
+    }
+
+    @Override
+    protected DecoderInputBuffer createInputBuffer() {
+      return new DecoderInputBuffer(DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_DIRECT);
+    }
+
+    @Override
+    protected SimpleOutputBuffer createOutputBuffer() {
+      return new SimpleOutputBuffer(this);
+    }
+
+    @Override
+    protected Exception createUnexpectedDecodeException(Throwable error) {
+      return new Exception("Unexpected decode error", error);
+    }
+
+    @Nullable
+    @Override
+    protected Exception decode(
+        DecoderInputBuffer inputBuffer, SimpleOutputBuffer outputBuffer, boolean reset) {
+      if (failDecoding) {
+        return new Exception("Decode failed");
+      }
+      outputBuffer.timeUs = inputBuffer.timeUs;
+      return null;
+    }
+  }
+}
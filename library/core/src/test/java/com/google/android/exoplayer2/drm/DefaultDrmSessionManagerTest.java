@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.drm;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Handler;
+import android.os.Looper;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.drm.DrmInitData.SchemeData;
+import com.google.android.exoplayer2.drm.ExoMediaDrm.KeyRequest;
+import com.google.android.exoplayer2.drm.ExoMediaDrm.ProvisionRequest;
+import com.google.android.exoplayer2.upstream.DefaultLoadErrorHandlingPolicy;
+import com.google.android.exoplayer2.util.MimeTypes;
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.annotation.LooperMode;
+
+/** Unit tests for {@link DefaultDrmSessionManager}. */
+@RunWith(AndroidJUnit4.class)
+@LooperMode(LooperMode.Mode.PAUSED)
+public final class DefaultDrmSessionManagerTest {
+
+  private static final byte[] SESSION_ID_1 = new byte[] {1};
+  private static final byte[] SESSION_ID_2 = new byte[] {2};
+  private static final DrmInitData DRM_INIT_DATA_1 = newDrmInitData(/* data= */ 1);
+  private static final DrmInitData DRM_INIT_DATA_2 = newDrmInitData(/* data= */ 2);
+
+  @Mock private ExoMediaDrm<ExoMediaCrypto> mediaDrm;
+
+  private Looper playbackLooper;
+  private FakeMediaDrmCallback mediaDrmCallback;
+  private DefaultDrmSessionManager<ExoMediaCrypto> drmSessionManager;
+
+  @Before
+  public void setUp() throws Exception {
+    MockitoAnnotations.initMocks(this);
+    when(mediaDrm.openSession()).thenReturn(SESSION_ID_1, SESSION_ID_2);
+    when(mediaDrm.getKeyRequest(any(), any(), anyInt(), any()))
+        .thenReturn(
+            new ExoMediaDrm.KeyRequest(/* data= */ new byte[0], /* licenseServerUrl= */ ""));
+    playbackLooper = Looper.getMainLooper();
+    mediaDrmCallback = new FakeMediaDrmCallback();
+    drmSessionManager =
+        new DefaultDrmSessionManager.Builder()
+            .setUuidAndExoMediaDrmProvider(
+                C.WIDEVINE_UUID, new ExoMediaDrm.AppManagedProvider<>(mediaDrm))
+            .setMultiSession(true)
+            .setMaxPrefetchedSessionCount(1)
+            .setLoadErrorHandlingPolicy(
+                new DefaultLoadErrorHandlingPolicy(/* minimumLoadableRetryCount= */ 0))
+            .build(mediaDrmCallback);
+    drmSessionManager.prepare();
+  }
+
+  @After
+  public void tearDown() {
+    drmSessionManager.release();
+  }
+
+  @Test
+  public void acquireSession_afterPrefetch_reusesPrefetchedSession() throws Exception {
+    drmSessionManager.prefetchSession(playbackLooper, DRM_INIT_DATA_1);
+
+    DrmSession<ExoMediaCrypto> session =
+        drmSessionManager.acquireSession(playbackLooper, DRM_INIT_DATA_1);
+
+    idleMainLooperUntilKeysLoadedOrFailed(session);
+
+    verify(mediaDrm, times(1)).openSession();
+    assertThat(session.getState()).isEqualTo(DrmSession.STATE_OPENED_WITH_KEYS);
+    verify(mediaDrm, times(1)).provideKeyResponse(any(), any());
+    session.release();
+    verify(mediaDrm, never()).closeSession(any());
+  }
+
+  @Test
+  public void acquireSession_afterFailedPrefetch_releasesFailedSessionAndOpensNewSession()
+      throws Exception {
+    AtomicBoolean prefetchFailed = new AtomicBoolean();
+    drmSessionManager.addListener(
+        new Handler(playbackLooper),
+        new DefaultDrmSessionEventListener() {
+          @Override
+          public void onDrmSessionManagerError(Exception error) {
+            prefetchFailed.set(true);
+          }
+        });
+    mediaDrmCallback.failNextKeyRequest = true;
+    drmSessionManager.prefetchSession(playbackLooper, DRM_INIT_DATA_1);
+    while (!prefetchFailed.get()) {
+      shadowOf(Looper.getMainLooper()).idle();
+    }
+
+    DrmSession<ExoMediaCrypto> session =
+        drmSessionManager.acquireSession(playbackLooper, DRM_INIT_DATA_1);
+    idleMainLooperUntilKeysLoadedOrFailed(session);
+
+    // The failed prefetched session is closed, and a new session is opened for the renderer.
+    verify(mediaDrm).closeSession(SESSION_ID_1);
+    verify(mediaDrm, times(2)).openSession();
+    assertThat(session.getState()).isEqualTo(DrmSession.STATE_OPENED_WITH_KEYS);
+    verify(mediaDrm, times(1)).provideKeyResponse(any(), any());
+    verify(mediaDrm).provideKeyResponse(eq(SESSION_ID_2), any());
+    session.release();
+    verify(mediaDrm).closeSession(SESSION_ID_2);
+  }
+
+  @Test
+  public void prefetchSession_exceedingMaxCount_releasesLeastRecentlyPrefetchedSession()
+      throws Exception {
+    drmSessionManager.prefetchSession(playbackLooper, DRM_INIT_DATA_1);
+    DrmSession<ExoMediaCrypto> session =
+        drmSessionManager.acquireSession(playbackLooper, DRM_INIT_DATA_1);
+
+    drmSessionManager.prefetchSession(playbackLooper, DRM_INIT_DATA_2);
+
+    // The first session is still used, so it remains open.
+    verify(mediaDrm, times(2)).openSession();
+    verify(mediaDrm, never()).closeSession(any());
+    session.release();
+    verify(mediaDrm).closeSession(SESSION_ID_1);
+    drmSessionManager.releasePrefetchedSessions();
+    verify(mediaDrm).closeSession(SESSION_ID_2);
+  }
+
+  @Test
+  public void prefetchSession_withSameDrmInitData_keepsOneReference() throws Exception {
+    drmSessionManager.prefetchSession(playbackLooper, DRM_INIT_DATA_1);
+    drmSessionManager.prefetchSession(playbackLooper, DRM_INIT_DATA_1);
+
+    drmSessionManager.releasePrefetchedSessions();
+
+    verify(mediaDrm, times(1)).openSession();
+    verify(mediaDrm).closeSession(SESSION_ID_1);
+  }
+
+  /** Idles the main looper until the response to the key request of {@code session} is handled. */
+  private static void idleMainLooperUntilKeysLoadedOrFailed(DrmSession<?> session) {
+    // Key requests are executed on a background thread, and their responses are handled on the
+    // playback looper.
+    while (session.getState() == DrmSession.STATE_OPENED) {
+      shadowOf(Looper.getMainLooper()).idle();
+    }
+  }
+
+  private static DrmInitData newDrmInitData(int data) {
+    return new DrmInitData(
+        new SchemeData(C.WIDEVINE_UUID, MimeTypes.VIDEO_MP4, /* data= */ new byte[] {(byte) data}));
+  }
+
+  /** A {@link MediaDrmCallback} that returns an empty key response, or fails a key request. */
+  private static final class FakeMediaDrmCallback implements MediaDrmCallback {
+
+    public volatile boolean failNextKeyRequest;
+
+    @Override
+    public byte[] executeProvisionRequest(UUID uuid, ProvisionRequest request) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public byte[] executeKeyRequest(UUID uuid, KeyRequest request) throws IOException {
+      if (failNextKeyRequest) {
+        failNextKeyRequest = false;
+        throw new IOException("Key request failed");
+      }
+      return new byte[0];
+    }
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mp3;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.SeekMap.SeekPoints;
+import com.google.android.exoplayer2.extractor.SeekPoint;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Tests for {@link IndexSeeker}. */
+@RunWith(AndroidJUnit4.class)
+public final class IndexSeekerTest {
+
+  private static final long DURATION_US = 10 * C.MICROS_PER_SECOND;
+  private static final long DATA_START_POSITION = 100;
+  private static final long FRAME_DURATION_US = 26_122;
+  private static final int FRAME_SIZE = 418;
+
+  private IndexSeeker seeker;
+
+  @Before
+  public void setUp() {
+    seeker =
+        new IndexSeeker(
+            DURATION_US, DATA_START_POSITION, /* dataEndPosition= */ C.POSITION_UNSET);
+  }
+
+  @Test
+  public void testMaybeAddSeekPoint_addsPointsAtMinimumInterval() {
+    addFrames(/* frameCount= */ 40);
+
+    // 40 frames cover a little over a second, so a point is added roughly every 100 ms.
+    assertThat(seeker.getSeekPointCount()).isEqualTo(11);
+    assertThat(seeker.isTimeUsInIndex(C.MICROS_PER_SECOND)).isTrue();
+    assertThat(seeker.isTimeUsInIndex(2 * C.MICROS_PER_SECOND)).isFalse();
+  }
+
+  @Test
+  public void testGetSeekPoints_withinIndex_returnsExactFramePositions() {
+    addFrames(/* frameCount= */ 40);
+    // The fifth frame is the first one at least 100 ms after the start.
+    long timeUs = 4 * FRAME_DURATION_US;
+    long position = DATA_START_POSITION + 4 * FRAME_SIZE;
+
+    SeekPoints seekPoints = seeker.getSeekPoints(timeUs);
+
+    assertThat(seekPoints.first).isEqualTo(new SeekPoint(timeUs, position));
+    assertThat(seekPoints.second).isEqualTo(seekPoints.first);
+    assertThat(seeker.getTimeUs(position)).isEqualTo(timeUs);
+  }
+
+  @Test
+  public void testGetSeekPoints_betweenPoints_returnsSurroundingPoints() {
+    addFrames(/* frameCount= */ 40);
+
+    SeekPoints seekPoints = seeker.getSeekPoints(5 * FRAME_DURATION_US);
+
+    assertThat(seekPoints.first)
+        .isEqualTo(new SeekPoint(4 * FRAME_DURATION_US, DATA_START_POSITION + 4 * FRAME_SIZE));
+    assertThat(seekPoints.second)
+        .isEqualTo(new SeekPoint(8 * FRAME_DURATION_US, DATA_START_POSITION + 8 * FRAME_SIZE));
+  }
+
+  @Test
+  public void testGetSeekPoints_beyondIndex_returnsLastPoint() {
+    addFrames(/* frameCount= */ 40);
+
+    SeekPoints seekPoints = seeker.getSeekPoints(5 * C.MICROS_PER_SECOND);
+
+    assertThat(seekPoints.first)
+        .isEqualTo(new SeekPoint(40 * FRAME_DURATION_US, DATA_START_POSITION + 40 * FRAME_SIZE));
+    assertThat(seekPoints.second).isEqualTo(seekPoints.first);
+  }
+
+  @Test
+  public void testGetSeekPoints_withEmptyIndex_returnsDataStart() {
+    SeekPoints seekPoints = seeker.getSeekPoints(C.MICROS_PER_SECOND);
+
+    assertThat(seekPoints.first).isEqualTo(new SeekPoint(0, DATA_START_POSITION));
+    assertThat(seeker.getDurationUs()).isEqualTo(DURATION_US);
+  }
+
+  /** Adds seek points as the extractor does, for the frame after each frame that is read. */
+  private void addFrames(int frameCount) {
+    for (int i = 1; i <= frameCount; i++) {
+      seeker.maybeAddSeekPoint(i * FRAME_DURATION_US, DATA_START_POSITION + i * FRAME_SIZE);
+    }
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mp3;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.testutil.FakeExtractorOutput;
+import com.google.android.exoplayer2.testutil.FakeTrackOutput;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.DefaultDataSource;
+import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
+import com.google.android.exoplayer2.util.Util;
+import java.io.IOException;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Seeking tests for {@link Mp3Extractor} with {@link Mp3Extractor#FLAG_ENABLE_INDEX_SEEKING}. */
+@RunWith(AndroidJUnit4.class)
+public final class Mp3ExtractorSeekTest {
+
+  private static final String TEST_FILE = "mp3/bear.mp3";
+
+  private Mp3Extractor extractor;
+  private FakeExtractorOutput extractorOutput;
+  private DefaultDataSource dataSource;
+
+  @Before
+  public void setUp() throws Exception {
+    extractor = new Mp3Extractor(Mp3Extractor.FLAG_ENABLE_INDEX_SEEKING);
+    extractorOutput = new FakeExtractorOutput();
+    dataSource =
+        new DefaultDataSourceFactory(ApplicationProvider.getApplicationContext(), "UserAgent")
+            .createDataSource();
+  }
+
+  @Test
+  public void seeking_beyondIndex_skipsFramesBeforeTargetSeekTime()
+      throws IOException, InterruptedException {
+    Uri fileUri = TestUtil.buildAssetUri(TEST_FILE);
+    SeekMap seekMap = TestUtil.extractSeekMap(extractor, extractorOutput, dataSource, fileUri);
+    FakeTrackOutput trackOutput = extractorOutput.trackOutputs.get(0);
+    long targetSeekTimeUs = 1_500_000;
+    assertThat(seekMap.getSeekPoints(targetSeekTimeUs).first.timeUs).isEqualTo(0);
+
+    int extractedFrameIndex =
+        TestUtil.seekToTimeUs(
+            extractor, seekMap, targetSeekTimeUs, dataSource, trackOutput, fileUri);
+
+    // The frames read on the way to the target seek time are not output.
+    assertThat(extractedFrameIndex).isNotEqualTo(C.INDEX_UNSET);
+    assertThat(trackOutput.getSampleTimeUs(extractedFrameIndex))
+        .isGreaterThan(targetSeekTimeUs - 2 * IndexSeeker.MIN_TIME_BETWEEN_POINTS_US);
+    assertFirstFrameAfterSeekPrecedesTargetSeekTime(
+        trackOutput, targetSeekTimeUs, extractedFrameIndex);
+  }
+
+  @Test
+  public void seeking_beyondIndex_outputsFramesAfterSeekCompletes()
+      throws IOException, InterruptedException {
+    Uri fileUri = TestUtil.buildAssetUri(TEST_FILE);
+    SeekMap seekMap = TestUtil.extractSeekMap(extractor, extractorOutput, dataSource, fileUri);
+    FakeTrackOutput trackOutput = extractorOutput.trackOutputs.get(0);
+    long targetSeekTimeUs = 1_500_000;
+    int extractedFrameIndex =
+        TestUtil.seekToTimeUs(
+            extractor, seekMap, targetSeekTimeUs, dataSource, trackOutput, fileUri);
+
+    // A second seek within the frames that have been read is not skipped.
+    long secondTargetSeekTimeUs = 1_000_000;
+    int secondExtractedFrameIndex =
+        TestUtil.seekToTimeUs(
+            extractor, seekMap, secondTargetSeekTimeUs, dataSource, trackOutput, fileUri);
+
+    assertThat(secondExtractedFrameIndex).isEqualTo(extractedFrameIndex + 1);
+    assertThat(trackOutput.getSampleTimeUs(secondExtractedFrameIndex))
+        .isEqualTo(seekMap.getSeekPoints(secondTargetSeekTimeUs).first.timeUs);
+    assertFirstFrameAfterSeekPrecedesTargetSeekTime(
+        trackOutput, secondTargetSeekTimeUs, secondExtractedFrameIndex);
+  }
+
+  @Test
+  public void seeking_withinIndex_seeksToIndexedFrame() throws IOException, InterruptedException {
+    Uri fileUri = TestUtil.buildAssetUri(TEST_FILE);
+    SeekMap seekMap = TestUtil.extractSeekMap(extractor, extractorOutput, dataSource, fileUri);
+    FakeTrackOutput trackOutput = extractorOutput.trackOutputs.get(0);
+    // Index the whole stream by seeking to its end.
+    TestUtil.seekToTimeUs(
+        extractor, seekMap, seekMap.getDurationUs(), dataSource, trackOutput, fileUri);
+
+    long targetSeekTimeUs = 980_000;
+    SeekMap.SeekPoints seekPoints = seekMap.getSeekPoints(targetSeekTimeUs);
+    int extractedFrameIndex =
+        TestUtil.seekToTimeUs(
+            extractor, seekMap, targetSeekTimeUs, dataSource, trackOutput, fileUri);
+
+    assertThat(seekPoints.first.timeUs).isAtMost(targetSeekTimeUs);
+    assertThat(seekPoints.first.timeUs)
+        .isGreaterThan(targetSeekTimeUs - IndexSeeker.MIN_TIME_BETWEEN_POINTS_US);
+    assertThat(trackOutput.getSampleTimeUs(extractedFrameIndex))
+        .isEqualTo(seekPoints.first.timeUs);
+    assertFirstFrameAfterSeekPrecedesTargetSeekTime(
+        trackOutput, targetSeekTimeUs, extractedFrameIndex);
+  }
+
+  private static void assertFirstFrameAfterSeekPrecedesTargetSeekTime(
+      FakeTrackOutput trackOutput, long targetSeekTimeUs, int firstFrameIndexAfterSeek)
+      throws IOException, InterruptedException {
+    FakeTrackOutput expectedTrackOutput = getExpectedTrackOutput();
+    int expectedFrameIndex =
+        getFrameIndex(expectedTrackOutput, trackOutput.getSampleTimeUs(firstFrameIndexAfterSeek));
+
+    trackOutput.assertSample(
+        firstFrameIndexAfterSeek,
+        expectedTrackOutput.getSampleData(expectedFrameIndex),
+        expectedTrackOutput.getSampleTimeUs(expectedFrameIndex),
+        expectedTrackOutput.getSampleFlags(expectedFrameIndex),
+        expectedTrackOutput.getSampleCryptoData(expectedFrameIndex));
+    assertThat(trackOutput.getSampleTimeUs(firstFrameIndexAfterSeek)).isAtMost(targetSeekTimeUs);
+  }
+
+  private static FakeTrackOutput getExpectedTrackOutput()
+      throws IOException, InterruptedException {
+    return TestUtil.extractAllSamplesFromFile(
+            new Mp3Extractor(Mp3Extractor.FLAG_ENABLE_INDEX_SEEKING),
+            ApplicationProvider.getApplicationContext(),
+            TEST_FILE)
+        .trackOutputs
+        .get(0);
+  }
+
+  private static int getFrameIndex(FakeTrackOutput expectedTrackOutput, long timeUs) {
+    List<Long> frameTimes = expectedTrackOutput.getSampleTimesUs();
+    return Util.binarySearchFloor(
+        frameTimes, timeUs, /* inclusive= */ true, /* stayInBounds= */ false);
+  }
+}
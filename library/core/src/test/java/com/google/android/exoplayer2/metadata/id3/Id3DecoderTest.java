@@ -233,6 +233,55 @@ public final class Id3DecoderTest {
     assertThat(apicFrame.pictureData).isEqualTo(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 0});
   }
 
+  @Test
+  public void testDecodeUtf16TextInformationFrame() {
+    byte[] rawId3 =
+        buildSingleFrameTag(
+            "TIT2", new byte[] {1, (byte) 0xFF, (byte) 0xFE, 72, 0, 105, 0, 0, 0, 88, 0});
+    Id3Decoder decoder = new Id3Decoder();
+    Metadata metadata = decoder.decode(rawId3, rawId3.length);
+    assertThat(metadata.length()).isEqualTo(1);
+    TextInformationFrame textInformationFrame = (TextInformationFrame) metadata.get(0);
+    assertThat(textInformationFrame.id).isEqualTo("TIT2");
+    assertThat(textInformationFrame.value).isEqualTo("Hi");
+  }
+
+  @Test
+  public void testDecodeMultiFramesWithFramePredicate_decodesOnlyMatchingFrames() {
+    byte[] rawId3 =
+        buildMultiFramesTag(
+            new FrameSpec("TIT2", new byte[] {3, 72, 101, 108, 108, 111, 0}),
+            new FrameSpec(
+                "APIC",
+                new byte[] {
+                  3, 105, 109, 97, 103, 101, 47, 106, 112, 101, 103, 0, 16, 72, 101, 108, 108, 111,
+                  32, 87, 111, 114, 108, 100, 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 0
+                }),
+            new FrameSpec("PRIV", new byte[] {116, 101, 115, 116, 0, 1, 2, 3, 4}));
+    Id3Decoder decoder = new Id3Decoder(Id3Decoder.createFramePredicate("PRIV", "TIT2", "TT2"));
+    Metadata metadata = decoder.decode(rawId3, rawId3.length);
+    assertThat(metadata.length()).isEqualTo(2);
+    TextInformationFrame textInformationFrame = (TextInformationFrame) metadata.get(0);
+    PrivFrame privFrame = (PrivFrame) metadata.get(1);
+
+    assertThat(textInformationFrame.id).isEqualTo("TIT2");
+    assertThat(textInformationFrame.value).isEqualTo("Hello");
+    assertThat(privFrame.owner).isEqualTo("test");
+    assertThat(privFrame.privateData).isEqualTo(new byte[] {1, 2, 3, 4});
+  }
+
+  @Test
+  public void testCreateFramePredicate_matchesFrameIdsOfTagVersion() {
+    Id3Decoder.FramePredicate predicate = Id3Decoder.createFramePredicate("PRIV", "TT2");
+
+    assertThat(predicate.evaluate(/* majorVersion= */ 4, 'P', 'R', 'I', 'V')).isTrue();
+    assertThat(predicate.evaluate(/* majorVersion= */ 3, 'P', 'R', 'I', 'V')).isTrue();
+    assertThat(predicate.evaluate(/* majorVersion= */ 4, 'A', 'P', 'I', 'C')).isFalse();
+    assertThat(predicate.evaluate(/* majorVersion= */ 2, 'T', 'T', '2', 0)).isTrue();
+    assertThat(predicate.evaluate(/* majorVersion= */ 4, 'T', 'T', '2', 0)).isFalse();
+    assertThat(predicate.evaluate(/* majorVersion= */ 2, 'P', 'R', 'I', 0)).isFalse();
+  }
+
   public static byte[] buildSingleFrameTag(String frameId, byte[] frameData) {
     return buildMultiFramesTag(new FrameSpec(frameId, frameData));
   }
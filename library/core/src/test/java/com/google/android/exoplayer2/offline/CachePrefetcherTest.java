@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.offline;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link CachePrefetcher}. */
+@RunWith(AndroidJUnit4.class)
+public final class CachePrefetcherTest {
+
+  private static final long TIMEOUT_MS = 10_000;
+
+  @Test
+  public void prefetch_splitsByteBudgetBetweenRequests() throws Exception {
+    FakeDownloaderFactory downloaderFactory = new FakeDownloaderFactory(/* bytesPerPrefetch= */ 30);
+    CachePrefetcher cachePrefetcher =
+        new CachePrefetcher(
+            downloaderFactory,
+            /* maxBytes= */ 100,
+            /* durationUs= */ 2_000_000,
+            /* maxBytesPerRequest= */ 40);
+    FinishedListener listener = new FinishedListener();
+    cachePrefetcher.setListener(listener);
+
+    cachePrefetcher.prefetch(
+        Arrays.asList(
+            createRequest("uri1"),
+            createRequest("uri2"),
+            createRequest("uri3"),
+            createRequest("uri4"),
+            createRequest("uri5")));
+
+    assertThat(listener.await()).isEqualTo(100);
+    // The fifth request isn't prefetched, because the budget has been used.
+    assertThat(downloaderFactory.maxBytes).containsExactly(40L, 40L, 40L, 10L).inOrder();
+    assertThat(downloaderFactory.durationsUs)
+        .containsExactly(2_000_000L, 2_000_000L, 2_000_000L, 2_000_000L);
+    assertThat(cachePrefetcher.isPrefetching()).isFalse();
+  }
+
+  @Test
+  public void prefetch_withFailingRequest_continuesWithNextRequest() throws Exception {
+    FakeDownloaderFactory downloaderFactory = new FakeDownloaderFactory(/* bytesPerPrefetch= */ 10);
+    downloaderFactory.failingUri = Uri.parse("uri1");
+    CachePrefetcher cachePrefetcher = new CachePrefetcher(downloaderFactory, /* maxBytes= */ 100);
+    FinishedListener listener = new FinishedListener();
+    cachePrefetcher.setListener(listener);
+
+    cachePrefetcher.prefetch(Arrays.asList(createRequest("uri1"), createRequest("uri2")));
+
+    assertThat(listener.await()).isEqualTo(10);
+    assertThat(downloaderFactory.maxBytes).hasSize(2);
+  }
+
+  @Test
+  public void cancel_cancelsDownloader() throws Exception {
+    FakeDownloaderFactory downloaderFactory = new FakeDownloaderFactory(/* bytesPerPrefetch= */ 10);
+    downloaderFactory.blockingUri = Uri.parse("uri1");
+    CachePrefetcher cachePrefetcher = new CachePrefetcher(downloaderFactory, /* maxBytes= */ 100);
+    FinishedListener listener = new FinishedListener();
+    cachePrefetcher.setListener(listener);
+
+    cachePrefetcher.prefetch(Arrays.asList(createRequest("uri1"), createRequest("uri2")));
+    assertThat(downloaderFactory.blockingPrefetchStarted.await(TIMEOUT_MS, TimeUnit.MILLISECONDS))
+        .isTrue();
+    cachePrefetcher.cancel();
+
+    assertThat(listener.await()).isEqualTo(0);
+    assertThat(downloaderFactory.maxBytes).hasSize(1);
+    assertThat(cachePrefetcher.isPrefetching()).isFalse();
+  }
+
+  @Test
+  public void listener_canWaitForOtherThreadUsingPrefetcher() throws Exception {
+    CachePrefetcher cachePrefetcher =
+        new CachePrefetcher(
+            new FakeDownloaderFactory(/* bytesPerPrefetch= */ 10), /* maxBytes= */ 100);
+    AtomicBoolean otherThreadUsedPrefetcher = new AtomicBoolean();
+    CountDownLatch listenerFinished = new CountDownLatch(1);
+    cachePrefetcher.setListener(
+        (prefetcher, bytesLoaded) -> {
+          CountDownLatch otherThreadFinished = new CountDownLatch(1);
+          new Thread(
+                  () -> {
+                    prefetcher.isPrefetching();
+                    otherThreadFinished.countDown();
+                  })
+              .start();
+          try {
+            otherThreadUsedPrefetcher.set(
+                otherThreadFinished.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          listenerFinished.countDown();
+        });
+
+    cachePrefetcher.prefetch(Collections.singletonList(createRequest("uri1")));
+
+    assertThat(listenerFinished.await(2 * TIMEOUT_MS, TimeUnit.MILLISECONDS)).isTrue();
+    assertThat(otherThreadUsedPrefetcher.get()).isTrue();
+  }
+
+  private static DownloadRequest createRequest(String uri) {
+    return new DownloadRequest(
+        uri,
+        DownloadRequest.TYPE_PROGRESSIVE,
+        Uri.parse(uri),
+        /* streamKeys= */ Collections.emptyList(),
+        /* customCacheKey= */ null,
+        /* data= */ null);
+  }
+
+  private static final class FinishedListener implements CachePrefetcher.Listener {
+
+    private final CountDownLatch finished;
+
+    private volatile long bytesLoaded;
+
+    public FinishedListener() {
+      finished = new CountDownLatch(1);
+    }
+
+    @Override
+    public void onPrefetchFinished(CachePrefetcher cachePrefetcher, long bytesLoaded) {
+      this.bytesLoaded = bytesLoaded;
+      finished.countDown();
+    }
+
+    public long await() throws InterruptedException {
+      assertThat(finished.await(TIMEOUT_MS, TimeUnit.MILLISECONDS)).isTrue();
+      return bytesLoaded;
+    }
+  }
+
+  private static final class FakeDownloaderFactory implements DownloaderFactory {
+
+    public final List<Long> durationsUs;
+    public final List<Long> maxBytes;
+    public final CountDownLatch blockingPrefetchStarted;
+
+    private final long bytesPerPrefetch;
+
+    @Nullable public volatile Uri failingUri;
+    @Nullable public volatile Uri blockingUri;
+
+    public FakeDownloaderFactory(long bytesPerPrefetch) {
+      this.bytesPerPrefetch = bytesPerPrefetch;
+      durationsUs = Collections.synchronizedList(new ArrayList<>());
+      maxBytes = Collections.synchronizedList(new ArrayList<>());
+      blockingPrefetchStarted = new CountDownLatch(1);
+    }
+
+    @Override
+    public Downloader createDownloader(DownloadRequest request) {
+      return new Downloader() {
+        @Override
+        public void download(@Nullable ProgressListener progressListener) {
+          throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long prefetch(long durationUs, long maxBytes)
+            throws InterruptedException, IOException {
+          durationsUs.add(durationUs);
+          FakeDownloaderFactory.this.maxBytes.add(maxBytes);
+          if (request.uri.equals(failingUri)) {
+            throw new IOException();
+          }
+          if (request.uri.equals(blockingUri)) {
+            blockingPrefetchStarted.countDown();
+            // Blocks until the thread is interrupted.
+            new CountDownLatch(1).await();
+          }
+          return Math.min(bytesPerPrefetch, maxBytes);
+        }
+
+        @Override
+        public void cancel() {
+          // Do nothing.
+        }
+
+        @Override
+        public void remove() {
+          throw new UnsupportedOperationException();
+        }
+      };
+    }
+  }
+}
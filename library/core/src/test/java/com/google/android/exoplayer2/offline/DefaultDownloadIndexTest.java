@@ -23,6 +23,7 @@ import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.android.exoplayer2.database.DatabaseIOException;
 import com.google.android.exoplayer2.database.ExoDatabaseProvider;
 import com.google.android.exoplayer2.database.VersionTable;
+import java.util.Arrays;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -87,6 +88,8 @@ public class DefaultDownloadIndexTest {
                 new StreamKey(/* periodIndex= */ 0, /* groupIndex= */ 1, /* trackIndex= */ 2),
                 new StreamKey(/* periodIndex= */ 3, /* groupIndex= */ 4, /* trackIndex= */ 5))
             .setCustomMetadata(new byte[] {0, 1, 2, 3, 7, 8, 9, 10})
+            .setPriority(3)
+            .setDeadlineMs(1_000_000)
             .build();
     downloadIndex.putDownload(download);
     Download readDownload = downloadIndex.getDownload(id);
@@ -201,6 +204,107 @@ public class DefaultDownloadIndexTest {
         .isEqualTo(DefaultDownloadIndex.TABLE_VERSION);
   }
 
+  @Test
+  public void downloadIndex_upgradeFromVersion2_keepsDownloads() throws DatabaseIOException {
+    SQLiteDatabase writableDatabase = databaseProvider.getWritableDatabase();
+    writableDatabase.execSQL(
+        "CREATE TABLE ExoPlayerDownloads (id TEXT PRIMARY KEY NOT NULL, title TEXT NOT NULL,"
+            + " uri TEXT NOT NULL, stream_keys TEXT NOT NULL, custom_cache_key TEXT,"
+            + " data BLOB NOT NULL, state INTEGER NOT NULL, start_time_ms INTEGER NOT NULL,"
+            + " update_time_ms INTEGER NOT NULL, content_length INTEGER NOT NULL,"
+            + " stop_reason INTEGER NOT NULL, failure_reason INTEGER NOT NULL,"
+            + " percent_downloaded REAL NOT NULL, bytes_downloaded INTEGER NOT NULL)");
+    writableDatabase.execSQL(
+        "INSERT INTO ExoPlayerDownloads VALUES ('id1', 'type', 'uri', '0.1.2,3.4.300', NULL,"
+            + " x'0102', "
+            + Download.STATE_COMPLETED
+            + ", 10, 20, 100, 0, 0, 100.0, 100)");
+    VersionTable.setVersion(
+        writableDatabase, VersionTable.FEATURE_OFFLINE, EMPTY_NAME, /* version= */ 2);
+
+    downloadIndex = new DefaultDownloadIndex(databaseProvider);
+    Download download =
+        new DownloadBuilder("id1")
+            .setType("type")
+            .setUri("uri")
+            .setStreamKeys(new StreamKey(0, 1, 2), new StreamKey(3, 4, 300))
+            .setCustomMetadata(new byte[] {1, 2})
+            .setState(Download.STATE_COMPLETED)
+            .setStartTimeMs(10)
+            .setUpdateTimeMs(20)
+            .setContentLength(100)
+            .setPercentDownloaded(100)
+            .setBytesDownloaded(100)
+            .build();
+
+    Download readDownload = downloadIndex.getDownload("id1");
+    assertThat(readDownload).isNotNull();
+    assertEqual(readDownload, download);
+    assertThat(VersionTable.getVersion(writableDatabase, VersionTable.FEATURE_OFFLINE, EMPTY_NAME))
+        .isEqualTo(DefaultDownloadIndex.TABLE_VERSION);
+  }
+
+  @Test
+  public void downloadIndex_upgradeFromVersion3_keepsDownloads() throws DatabaseIOException {
+    SQLiteDatabase writableDatabase = databaseProvider.getWritableDatabase();
+    writableDatabase.execSQL(
+        "CREATE TABLE ExoPlayerDownloads (id TEXT PRIMARY KEY NOT NULL, title TEXT NOT NULL,"
+            + " uri TEXT NOT NULL, stream_keys BLOB NOT NULL, custom_cache_key TEXT,"
+            + " data BLOB NOT NULL, state INTEGER NOT NULL, start_time_ms INTEGER NOT NULL,"
+            + " update_time_ms INTEGER NOT NULL, content_length INTEGER NOT NULL,"
+            + " stop_reason INTEGER NOT NULL, failure_reason INTEGER NOT NULL,"
+            + " percent_downloaded REAL NOT NULL, bytes_downloaded INTEGER NOT NULL)");
+    // The stream keys are encoded as variable-length integers, with 300 taking two bytes.
+    writableDatabase.execSQL(
+        "INSERT INTO ExoPlayerDownloads VALUES ('id1', 'type', 'uri', x'0001020304ac02', NULL,"
+            + " x'0102', "
+            + Download.STATE_COMPLETED
+            + ", 10, 20, 100, 0, 0, 100.0, 100)");
+    VersionTable.setVersion(
+        writableDatabase, VersionTable.FEATURE_OFFLINE, EMPTY_NAME, /* version= */ 3);
+
+    downloadIndex = new DefaultDownloadIndex(databaseProvider);
+    Download download =
+        new DownloadBuilder("id1")
+            .setType("type")
+            .setUri("uri")
+            .setStreamKeys(new StreamKey(0, 1, 2), new StreamKey(3, 4, 300))
+            .setCustomMetadata(new byte[] {1, 2})
+            .setState(Download.STATE_COMPLETED)
+            .setStartTimeMs(10)
+            .setUpdateTimeMs(20)
+            .setContentLength(100)
+            .setPercentDownloaded(100)
+            .setBytesDownloaded(100)
+            .build();
+
+    Download readDownload = downloadIndex.getDownload("id1");
+    assertThat(readDownload).isNotNull();
+    assertEqual(readDownload, download);
+    assertThat(VersionTable.getVersion(writableDatabase, VersionTable.FEATURE_OFFLINE, EMPTY_NAME))
+        .isEqualTo(DefaultDownloadIndex.TABLE_VERSION);
+  }
+
+  @Test
+  public void putDownloads_addsAllDownloads() throws DatabaseIOException {
+    Download download1 =
+        new DownloadBuilder("id1")
+            .setStartTimeMs(0)
+            .setStreamKeys(new StreamKey(0, 1, 2), new StreamKey(127, 128, 1 << 30))
+            .build();
+    Download download2 = new DownloadBuilder("id2").setStartTimeMs(1).setStreamKeys().build();
+
+    downloadIndex.putDownloads(Arrays.asList(download1, download2));
+
+    try (DownloadCursor cursor = downloadIndex.getDownloads()) {
+      assertThat(cursor.getCount()).isEqualTo(2);
+      cursor.moveToNext();
+      assertEqual(cursor.getDownload(), download1);
+      cursor.moveToNext();
+      assertEqual(cursor.getDownload(), download2);
+    }
+  }
+
   @Test
   public void setStopReason_setReasonToNone() throws Exception {
     String id = "id";
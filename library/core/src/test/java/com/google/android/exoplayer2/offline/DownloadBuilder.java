@@ -39,6 +39,8 @@ import java.util.List;
   private List<StreamKey> streamKeys;
   @Nullable private String cacheKey;
   private byte[] customMetadata;
+  private int priority;
+  private long deadlineMs;
 
   @Download.State private int state;
   private long startTimeMs;
@@ -65,6 +67,8 @@ import java.util.List;
         request.streamKeys,
         request.customCacheKey,
         request.data);
+    this.priority = request.priority;
+    this.deadlineMs = request.deadlineMs;
   }
 
   /* package */ DownloadBuilder(
@@ -83,6 +87,7 @@ import java.util.List;
     this.state = Download.STATE_QUEUED;
     this.contentLength = C.LENGTH_UNSET;
     this.failureReason = Download.FAILURE_REASON_NONE;
+    this.deadlineMs = C.TIME_UNSET;
     this.progress = new DownloadProgress();
   }
 
@@ -161,9 +166,20 @@ import java.util.List;
     return this;
   }
 
+  public DownloadBuilder setPriority(int priority) {
+    this.priority = priority;
+    return this;
+  }
+
+  public DownloadBuilder setDeadlineMs(long deadlineMs) {
+    this.deadlineMs = deadlineMs;
+    return this;
+  }
+
   public Download build() {
     DownloadRequest request =
-        new DownloadRequest(id, type, uri, streamKeys, cacheKey, customMetadata);
+        new DownloadRequest(
+            id, type, uri, streamKeys, cacheKey, customMetadata, priority, deadlineMs);
     return new Download(
         request,
         state,
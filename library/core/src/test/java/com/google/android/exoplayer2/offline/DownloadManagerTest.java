@@ -325,6 +325,75 @@ public class DownloadManagerTest {
     downloadManagerListener.blockUntilTasksCompleteAndThrowAnyDownloadError();
   }
 
+  @Test
+  public void higherPriorityRequest_ifMaxDownloadIs1_preemptsLowerPriorityDownload()
+      throws Throwable {
+    setUpDownloadManager(1);
+    DownloadRunner runner1 = new DownloadRunner(uri1).postDownloadRequest();
+    FakeDownloader downloader1 = runner1.getDownloader(0);
+    downloader1.assertStarted();
+
+    DownloadRunner runner2 = new DownloadRunner(uri2).postDownloadRequestWithPriority(1);
+    FakeDownloader downloader2 = runner2.getDownloader(0);
+
+    downloader2.assertStarted();
+    downloader1.assertCanceled();
+    runner1.getTask().assertQueued();
+    downloader2.unblock();
+    runner2.getTask().assertCompleted();
+    runner1.getDownloader(1).assertStarted().unblock();
+    runner1.getTask().assertCompleted();
+    downloadManagerListener.blockUntilTasksCompleteAndThrowAnyDownloadError();
+  }
+
+  @Test
+  public void samePriorityRequest_ifMaxDownloadIs1_doesNotPreemptDownload() throws Throwable {
+    setUpDownloadManager(1);
+    DownloadRunner runner1 = new DownloadRunner(uri1).postDownloadRequestWithPriority(1);
+    DownloadRunner runner2 = new DownloadRunner(uri2).postDownloadRequestWithPriority(1);
+    FakeDownloader downloader1 = runner1.getDownloader(0);
+    FakeDownloader downloader2 = runner2.getDownloader(0);
+
+    downloader1.assertStarted();
+    downloader2.assertDoesNotStart();
+    downloader1.unblock();
+    downloader2.assertStarted();
+    downloader2.unblock();
+
+    runner1.getTask().assertCompleted();
+    runner2.getTask().assertCompleted();
+    downloadManagerListener.blockUntilTasksCompleteAndThrowAnyDownloadError();
+  }
+
+  @Test
+  public void requestWithDeadline_ifMaxDownloadIs1_startsBeforeRequestWithoutDeadline()
+      throws Throwable {
+    setUpDownloadManager(1);
+    DownloadRunner runner1 = new DownloadRunner(uri1).postDownloadRequest();
+    FakeDownloader downloader1 = runner1.getDownloader(0);
+    downloader1.assertStarted();
+    DownloadRunner runner2 = new DownloadRunner(uri2).postDownloadRequest();
+    DownloadRunner runner3 =
+        new DownloadRunner(uri3)
+            .postDownloadRequestWithPriorityAndDeadline(/* priority= */ 0, /* deadlineMs= */ 1000);
+    FakeDownloader downloader2 = runner2.getDownloader(0);
+    FakeDownloader downloader3 = runner3.getDownloader(0);
+
+    // The deadline orders the waiting downloads, but doesn't preempt the running one.
+    downloader3.assertDoesNotStart();
+    downloader1.unblock();
+    downloader3.assertStarted();
+    downloader2.assertDoesNotStart();
+    downloader3.unblock();
+    downloader2.assertStarted();
+    downloader2.unblock();
+
+    runner1.getTask().assertCompleted();
+    runner2.getTask().assertCompleted();
+    runner3.getTask().assertCompleted();
+    downloadManagerListener.blockUntilTasksCompleteAndThrowAnyDownloadError();
+  }
+
   @Test
   public void removeRequestForDifferentContent_ifMaxDownloadIs1_executedInParallel()
       throws Throwable {
@@ -632,6 +701,15 @@ public class DownloadManagerTest {
     }
 
     private DownloadRunner postDownloadRequest(StreamKey... keys) {
+      return postDownloadRequestWithPriority(/* priority= */ 0, keys);
+    }
+
+    private DownloadRunner postDownloadRequestWithPriority(int priority, StreamKey... keys) {
+      return postDownloadRequestWithPriorityAndDeadline(priority, C.TIME_UNSET, keys);
+    }
+
+    private DownloadRunner postDownloadRequestWithPriorityAndDeadline(
+        int priority, long deadlineMs, StreamKey... keys) {
       DownloadRequest downloadRequest =
           new DownloadRequest(
               id,
@@ -639,7 +717,9 @@ public class DownloadManagerTest {
               uri,
               Arrays.asList(keys),
               /* customCacheKey= */ null,
-              /* data= */ null);
+              /* data= */ null,
+              priority,
+              deadlineMs);
       runOnMainThread(() -> downloadManager.addDownload(downloadRequest));
       return this;
     }
@@ -144,7 +144,9 @@ public class DownloadRequestTest {
             uri1,
             /* streamKeys= */ Collections.emptyList(),
             "key1",
-            /* data= */ data1);
+            /* data= */ data1,
+            /* priority= */ 1,
+            /* deadlineMs= */ 1000);
     DownloadRequest request2 =
         new DownloadRequest(
             "id1",
@@ -152,18 +154,24 @@ public class DownloadRequestTest {
             uri2,
             /* streamKeys= */ Collections.emptyList(),
             "key2",
-            /* data= */ data2);
+            /* data= */ data2,
+            /* priority= */ 2,
+            /* deadlineMs= */ 2000);
 
-    // uri, customCacheKey and data should be from the request being merged.
+    // uri, customCacheKey, data, priority and deadlineMs should be from the request being merged.
     DownloadRequest mergedRequest = request1.copyWithMergedRequest(request2);
     assertThat(mergedRequest.uri).isEqualTo(uri2);
     assertThat(mergedRequest.customCacheKey).isEqualTo("key2");
     assertThat(mergedRequest.data).isEqualTo(data2);
+    assertThat(mergedRequest.priority).isEqualTo(2);
+    assertThat(mergedRequest.deadlineMs).isEqualTo(2000);
 
     mergedRequest = request2.copyWithMergedRequest(request1);
     assertThat(mergedRequest.uri).isEqualTo(uri1);
     assertThat(mergedRequest.customCacheKey).isEqualTo("key1");
     assertThat(mergedRequest.data).isEqualTo(data1);
+    assertThat(mergedRequest.priority).isEqualTo(1);
+    assertThat(mergedRequest.deadlineMs).isEqualTo(1000);
   }
 
   @Test
@@ -178,7 +186,9 @@ public class DownloadRequestTest {
             Uri.parse("https://abc.def/ghi"),
             streamKeys,
             "key",
-            new byte[] {1, 2, 3, 4, 5});
+            new byte[] {1, 2, 3, 4, 5},
+            /* priority= */ 7,
+            /* deadlineMs= */ 123_456);
     Parcel parcel = Parcel.obtain();
     requestToParcel.writeToParcel(parcel, 0);
     parcel.setDataPosition(0);
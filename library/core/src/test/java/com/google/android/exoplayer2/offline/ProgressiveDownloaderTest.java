@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.offline;
+
+import static com.google.android.exoplayer2.testutil.CacheAsserts.assertCachedData;
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.database.DatabaseProvider;
+import com.google.android.exoplayer2.testutil.FakeDataSet;
+import com.google.android.exoplayer2.testutil.FakeDataSource;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSinkFactory;
+import com.google.android.exoplayer2.upstream.cache.CacheSpan;
+import com.google.android.exoplayer2.upstream.cache.NoOpCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link ProgressiveDownloader}. */
+@RunWith(AndroidJUnit4.class)
+public final class ProgressiveDownloaderTest {
+
+  private static final String URI = "test_stream";
+  private static final int FRAGMENT_SIZE = 10;
+
+  private File cacheDir;
+  private DatabaseProvider databaseProvider;
+  private SimpleCache cache;
+  private FakeDataSet fakeDataSet;
+  private FakeDataSource upstreamDataSource;
+
+  @Before
+  public void setUp() throws Exception {
+    cacheDir =
+        Util.createTempDirectory(ApplicationProvider.getApplicationContext(), "ExoPlayerTest");
+    databaseProvider = TestUtil.getInMemoryDatabaseProvider();
+    cache = new SimpleCache(cacheDir, new NoOpCacheEvictor(), databaseProvider);
+    fakeDataSet = new FakeDataSet().setRandomData(URI, /* length= */ 3 * FRAGMENT_SIZE);
+    upstreamDataSource = new FakeDataSource(fakeDataSet);
+  }
+
+  @After
+  public void tearDown() {
+    cache.release();
+    Util.recursiveDelete(cacheDir);
+  }
+
+  @Test
+  public void download_afterCacheFileDamaged_downloadsOnlyDamagedData() throws Exception {
+    createDownloader().download(/* progressListener= */ null);
+    upstreamDataSource.getAndClearOpenedDataSpecs();
+    List<CacheSpan> spans = new ArrayList<>(cache.getCachedSpans(URI));
+    assertThat(spans).hasSize(3);
+    File damagedFile = spans.get(1).file;
+    cache.release();
+    // Damage the data of the second cache file without changing its length.
+    try (FileOutputStream outputStream = new FileOutputStream(damagedFile)) {
+      outputStream.write(new byte[FRAGMENT_SIZE]);
+    }
+    cache = new SimpleCache(cacheDir, new NoOpCacheEvictor(), databaseProvider);
+
+    createDownloader().download(/* progressListener= */ null);
+
+    DataSpec[] openedDataSpecs = upstreamDataSource.getAndClearOpenedDataSpecs();
+    assertThat(openedDataSpecs).hasLength(1);
+    assertThat(openedDataSpecs[0].absoluteStreamPosition).isEqualTo(FRAGMENT_SIZE);
+    assertThat(openedDataSpecs[0].length).isEqualTo(FRAGMENT_SIZE);
+    assertCachedData(cache, fakeDataSet);
+  }
+
+  private ProgressiveDownloader createDownloader() {
+    DownloaderConstructorHelper constructorHelper =
+        new DownloaderConstructorHelper(
+            cache,
+            () -> upstreamDataSource,
+            /* cacheReadDataSourceFactory= */ null,
+            new CacheDataSinkFactory(cache, FRAGMENT_SIZE),
+            /* priorityTaskManager= */ null);
+    return new ProgressiveDownloader(Uri.parse(URI), /* customCacheKey= */ null, constructorHelper);
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.text;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import com.google.android.exoplayer2.util.Util;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit test for {@link ChunkedSubtitle}. */
+@RunWith(AndroidJUnit4.class)
+public final class ChunkedSubtitleTest {
+
+  private static final long CUE_INTERVAL_US = C.MICROS_PER_SECOND;
+  private static final long CUE_DURATION_US = 500_000;
+
+  private ArrayDeque<Runnable> decodeAheadTasks;
+  private int decodedChunkCount;
+
+  @Before
+  public void setUp() {
+    decodeAheadTasks = new ArrayDeque<>();
+  }
+
+  @Test
+  public void create_decodesFirstChunkAndDecodesSecondChunkAhead() {
+    ChunkedSubtitle subtitle = createSubtitle(/* cueIndices...= */ 0, 1, 2, 3, 4, 5);
+
+    assertThat(subtitle.getChunkCount()).isEqualTo(3);
+    assertThat(subtitle.getDecodedChunkCount()).isEqualTo(1);
+    assertThat(decodeAheadTasks).hasSize(1);
+
+    decodeAheadTasks.remove().run();
+
+    assertThat(subtitle.getDecodedChunkCount()).isEqualTo(2);
+    assertThat(decodedChunkCount).isEqualTo(2);
+  }
+
+  @Test
+  public void getCues_withChunkDecodedAhead_decodesFollowingChunkAhead() {
+    ChunkedSubtitle subtitle = createSubtitle(/* cueIndices...= */ 0, 1, 2, 3, 4, 5);
+    decodeAheadTasks.remove().run();
+
+    assertThat(getCueText(subtitle, /* cueIndex= */ 2)).isEqualTo("2");
+
+    // The cues were read from the chunk decoded ahead, and the next chunk is now decoded ahead.
+    assertThat(decodedChunkCount).isEqualTo(2);
+    assertThat(decodeAheadTasks).hasSize(1);
+    decodeAheadTasks.remove().run();
+    assertThat(decodedChunkCount).isEqualTo(3);
+    assertThat(getCueText(subtitle, /* cueIndex= */ 4)).isEqualTo("4");
+    assertThat(decodedChunkCount).isEqualTo(3);
+    // Chunks that playback has passed are released.
+    assertThat(subtitle.getDecodedChunkCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void getCues_withChunkNotDecodedAhead_decodesChunk() {
+    ChunkedSubtitle subtitle = createSubtitle(/* cueIndices...= */ 0, 1, 2, 3, 4, 5);
+
+    assertThat(getCueText(subtitle, /* cueIndex= */ 5)).isEqualTo("5");
+
+    assertThat(decodedChunkCount).isEqualTo(2);
+    // There is no chunk after the last one to decode ahead.
+    assertThat(decodeAheadTasks).hasSize(1);
+  }
+
+  @Test
+  public void getCues_afterChunkDecodedAheadIsDiscarded_decodesChunkAheadAgain() {
+    ChunkedSubtitle subtitle = createSubtitle(/* cueIndices...= */ 0, 1, 2, 3, 4, 5);
+    decodeAheadTasks.remove().run();
+
+    // Seeking to the last chunk discards the first chunk, and seeking back discards the second.
+    assertThat(getCueText(subtitle, /* cueIndex= */ 5)).isEqualTo("5");
+    assertThat(getCueText(subtitle, /* cueIndex= */ 0)).isEqualTo("0");
+
+    assertThat(decodeAheadTasks).hasSize(1);
+    decodeAheadTasks.remove().run();
+    assertThat(getCueText(subtitle, /* cueIndex= */ 2)).isEqualTo("2");
+    assertThat(decodedChunkCount).isEqualTo(5);
+  }
+
+  @Test
+  public void release_releasesDecodedChunksAndStopsDecodingAhead() {
+    ChunkedSubtitle subtitle = createSubtitle(/* cueIndices...= */ 0, 1, 2, 3, 4, 5);
+
+    subtitle.release();
+    decodeAheadTasks.remove().run();
+
+    assertThat(subtitle.getDecodedChunkCount()).isEqualTo(0);
+    assertThat(getCueText(subtitle, /* cueIndex= */ 2)).isEqualTo("2");
+    assertThat(subtitle.getDecodedChunkCount()).isEqualTo(0);
+    assertThat(decodeAheadTasks).isEmpty();
+  }
+
+  @Test
+  public void create_withCuesOutOfOrder_returnsNull() {
+    assertThat(createSubtitle(/* cueIndices...= */ 0, 1, 2, 4, 3, 5)).isNull();
+  }
+
+  @Test
+  public void create_withTooFewCues_returnsNull() {
+    assertThat(createSubtitle(/* cueIndices...= */ 0, 1)).isNull();
+  }
+
+  /**
+   * Creates a subtitle from data that has one line per cue, with chunks of two cues. Each line
+   * holds the index of the cue, from which its timing is derived.
+   */
+  @Nullable
+  private ChunkedSubtitle createSubtitle(int... cueIndices) {
+    StringBuilder data = new StringBuilder();
+    for (int cueIndex : cueIndices) {
+      data.append(cueIndex).append('\n');
+    }
+    byte[] bytes = Util.getUtf8Bytes(data.toString());
+    return ChunkedSubtitle.create(
+        bytes,
+        bytes.length,
+        /* firstCuePosition= */ 0,
+        /* targetChunkCueCount= */ 2,
+        (cueData, cueTimesUs) -> {
+          int cuePosition = cueData.getPosition();
+          @Nullable String line = cueData.readLine();
+          if (line == null) {
+            return C.INDEX_UNSET;
+          }
+          cueTimesUs[0] = Integer.parseInt(line) * CUE_INTERVAL_US;
+          cueTimesUs[1] = cueTimesUs[0] + CUE_DURATION_US;
+          return cuePosition;
+        },
+        this::decodeChunk,
+        decodeAheadTasks::add);
+  }
+
+  private Subtitle decodeChunk(ParsableByteArray chunkData) {
+    decodedChunkCount++;
+    long firstCueTimeUs = Integer.parseInt(chunkData.readLine()) * CUE_INTERVAL_US;
+    long secondCueTimeUs = Integer.parseInt(chunkData.readLine()) * CUE_INTERVAL_US;
+    return new Subtitle() {
+      @Override
+      public int getNextEventTimeIndex(long timeUs) {
+        return C.INDEX_UNSET;
+      }
+
+      @Override
+      public int getEventTimeCount() {
+        return 0;
+      }
+
+      @Override
+      public long getEventTime(int index) {
+        throw new IndexOutOfBoundsException();
+      }
+
+      @Override
+      public List<Cue> getCues(long timeUs) {
+        long cueTimeUs = timeUs < secondCueTimeUs ? firstCueTimeUs : secondCueTimeUs;
+        return Collections.singletonList(new Cue(String.valueOf(cueTimeUs / CUE_INTERVAL_US)));
+      }
+    };
+  }
+
+  private static String getCueText(Subtitle subtitle, int cueIndex) {
+    return String.valueOf(subtitle.getCues(cueIndex * CUE_INTERVAL_US).get(0).text);
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.text;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit test for {@link TimeIntervalIndex}. */
+@RunWith(AndroidJUnit4.class)
+public final class TimeIntervalIndexTest {
+
+  @Test
+  public void query_returnsContainingIntervalsInAscendingOrder() {
+    TimeIntervalIndex index =
+        new TimeIntervalIndex(
+            /* startTimesUs= */ new long[] {30, 0, 10, 10},
+            /* endTimesUs= */ new long[] {40, 100, 20, 30});
+
+    assertThat(getResults(index, /* timeUs= */ 15)).containsExactly(1, 2, 3).inOrder();
+    assertThat(getResults(index, /* timeUs= */ 20)).containsExactly(1, 3).inOrder();
+    assertThat(getResults(index, /* timeUs= */ 30)).containsExactly(0, 1).inOrder();
+    assertThat(getResults(index, /* timeUs= */ 100)).isEmpty();
+    assertThat(getResults(index, /* timeUs= */ -1)).isEmpty();
+  }
+
+  @Test
+  public void query_withUnboundedIntervals_returnsUnboundedIntervals() {
+    TimeIntervalIndex index =
+        new TimeIntervalIndex(
+            /* startTimesUs= */ new long[] {Long.MIN_VALUE, 10, 0},
+            /* endTimesUs= */ new long[] {5, Long.MAX_VALUE, 1});
+
+    assertThat(getResults(index, /* timeUs= */ Long.MIN_VALUE)).containsExactly(0);
+    assertThat(getResults(index, /* timeUs= */ 0)).containsExactly(0, 2).inOrder();
+    assertThat(getResults(index, /* timeUs= */ Long.MAX_VALUE - 1)).containsExactly(1);
+  }
+
+  @Test
+  public void query_withoutIntervals_returnsNoIntervals() {
+    TimeIntervalIndex index =
+        new TimeIntervalIndex(/* startTimesUs= */ new long[0], /* endTimesUs= */ new long[0]);
+
+    assertThat(index.size()).isEqualTo(0);
+    assertThat(index.query(/* timeUs= */ 0)).isEqualTo(0);
+  }
+
+  @Test
+  public void query_withManyRandomIntervals_matchesLinearScan() {
+    Random random = new Random(/* seed= */ 0);
+    int intervalCount = 500;
+    long[] startTimesUs = new long[intervalCount];
+    long[] endTimesUs = new long[intervalCount];
+    for (int i = 0; i < intervalCount; i++) {
+      startTimesUs[i] = random.nextInt(1000);
+      endTimesUs[i] = startTimesUs[i] + random.nextInt(random.nextBoolean() ? 10 : 500);
+    }
+    TimeIntervalIndex index = new TimeIntervalIndex(startTimesUs, endTimesUs);
+
+    for (long timeUs = -10; timeUs < 1600; timeUs++) {
+      List<Integer> expected = new ArrayList<>();
+      for (int i = 0; i < intervalCount; i++) {
+        if (startTimesUs[i] <= timeUs && timeUs < endTimesUs[i]) {
+          expected.add(i);
+        }
+      }
+      assertThat(getResults(index, timeUs)).containsExactlyElementsIn(expected).inOrder();
+    }
+  }
+
+  private static List<Integer> getResults(TimeIntervalIndex index, long timeUs) {
+    int resultCount = index.query(timeUs);
+    List<Integer> results = new ArrayList<>();
+    for (int i = 0; i < resultCount; i++) {
+      results.add(index.getQueryResult(i));
+    }
+    return results;
+  }
+}
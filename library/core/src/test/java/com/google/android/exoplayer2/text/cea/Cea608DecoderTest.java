@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.text.cea;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.text.Cue;
+import com.google.android.exoplayer2.text.SubtitleDecoderException;
+import com.google.android.exoplayer2.text.SubtitleInputBuffer;
+import com.google.android.exoplayer2.text.SubtitleOutputBuffer;
+import com.google.android.exoplayer2.util.MimeTypes;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit test for {@link Cea608Decoder}. */
+@RunWith(AndroidJUnit4.class)
+public final class Cea608DecoderTest {
+
+  private static final byte[] RESUME_CAPTION_LOADING = {0x14, 0x20};
+  private static final byte[] END_OF_CAPTION = {0x14, 0x2F};
+  private static final byte[] ERASE_DISPLAYED_MEMORY = {0x14, 0x2C};
+
+  private Cea608Decoder decoder;
+
+  @Before
+  public void setUp() {
+    decoder = new Cea608Decoder(MimeTypes.APPLICATION_MP4CEA608, /* accessibilityChannel= */ 1);
+  }
+
+  @Test
+  public void testPopOnCaption_outputsCaption() throws Exception {
+    SubtitleOutputBuffer outputBuffer =
+        decode(/* timeUs= */ 0, RESUME_CAPTION_LOADING, createText("Hi"), END_OF_CAPTION);
+
+    assertThat(outputBuffer).isNotNull();
+    assertThat(getCueTexts(outputBuffer)).containsExactly("Hi");
+  }
+
+  @Test
+  public void testRepeatedPopOnCaption_doesNotOutputNewSubtitle() throws Exception {
+    SubtitleOutputBuffer outputBuffer =
+        decode(/* timeUs= */ 0, RESUME_CAPTION_LOADING, createText("Hi"), END_OF_CAPTION);
+    outputBuffer.release();
+
+    outputBuffer =
+        decode(/* timeUs= */ 100, RESUME_CAPTION_LOADING, createText("Hi"), END_OF_CAPTION);
+
+    assertThat(outputBuffer).isNull();
+  }
+
+  @Test
+  public void testChangedPopOnCaption_outputsNewSubtitle() throws Exception {
+    SubtitleOutputBuffer outputBuffer =
+        decode(/* timeUs= */ 0, RESUME_CAPTION_LOADING, createText("Hi"), END_OF_CAPTION);
+    outputBuffer.release();
+
+    outputBuffer =
+        decode(/* timeUs= */ 100, RESUME_CAPTION_LOADING, createText("Ho"), END_OF_CAPTION);
+
+    assertThat(outputBuffer).isNotNull();
+    assertThat(getCueTexts(outputBuffer)).containsExactly("Ho");
+  }
+
+  @Test
+  public void testEraseAfterPopOnCaption_outputsEmptySubtitle() throws Exception {
+    SubtitleOutputBuffer outputBuffer =
+        decode(/* timeUs= */ 0, RESUME_CAPTION_LOADING, createText("Hi"), END_OF_CAPTION);
+    outputBuffer.release();
+
+    outputBuffer = decode(/* timeUs= */ 100, ERASE_DISPLAYED_MEMORY);
+
+    assertThat(outputBuffer).isNotNull();
+    assertThat(getCueTexts(outputBuffer)).isEmpty();
+  }
+
+  /** Decodes a sample containing the given byte pairs, and returns any new output. */
+  @Nullable
+  private SubtitleOutputBuffer decode(long timeUs, byte[]... byteArrays)
+      throws SubtitleDecoderException {
+    SubtitleInputBuffer inputBuffer = decoder.dequeueInputBuffer();
+    int length = 0;
+    for (byte[] bytes : byteArrays) {
+      length += bytes.length;
+    }
+    inputBuffer.ensureSpaceForWrite(length);
+    for (byte[] bytes : byteArrays) {
+      for (byte value : bytes) {
+        inputBuffer.data.put(withOddParity(value));
+      }
+    }
+    inputBuffer.timeUs = timeUs;
+    inputBuffer.flip();
+    decoder.queueInputBuffer(inputBuffer);
+    decoder.setPositionUs(timeUs);
+    return decoder.dequeueOutputBuffer();
+  }
+
+  private static byte[] createText(String text) {
+    byte[] bytes = new byte[text.length() + (text.length() % 2)];
+    for (int i = 0; i < text.length(); i++) {
+      bytes[i] = (byte) text.charAt(i);
+    }
+    return bytes;
+  }
+
+  private static byte withOddParity(byte value) {
+    return Integer.bitCount(value & 0x7F) % 2 == 0 ? (byte) (value | 0x80) : value;
+  }
+
+  private static String[] getCueTexts(SubtitleOutputBuffer outputBuffer) {
+    List<Cue> cues = outputBuffer.getCues(outputBuffer.timeUs);
+    String[] cueTexts = new String[cues.size()];
+    for (int i = 0; i < cues.size(); i++) {
+      cueTexts[i] = String.valueOf(cues.get(i).text);
+    }
+    return cueTexts;
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.text.cea;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.text.Cue;
+import com.google.android.exoplayer2.text.SubtitleDecoderException;
+import com.google.android.exoplayer2.text.SubtitleInputBuffer;
+import com.google.android.exoplayer2.text.SubtitleOutputBuffer;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit test for {@link Cea708Decoder}. */
+@RunWith(AndroidJUnit4.class)
+public final class Cea708DecoderTest {
+
+  private static final int SERVICE_NUMBER = 1;
+  private static final byte END_OF_TEXT = 0x03;
+
+  private Cea708Decoder decoder;
+
+  @Before
+  public void setUp() {
+    decoder = new Cea708Decoder(SERVICE_NUMBER, /* initializationData= */ null);
+  }
+
+  @Test
+  public void testDefinedWindowWithText_outputsCaption() throws Exception {
+    SubtitleOutputBuffer outputBuffer =
+        decode(
+            /* timeUs= */ 0,
+            createDefineWindow(/* verticalAnchor= */ 0),
+            createText("Hi"),
+            new byte[] {END_OF_TEXT});
+
+    assertThat(outputBuffer).isNotNull();
+    assertThat(getCueTexts(outputBuffer)).containsExactly("Hi");
+  }
+
+  @Test
+  public void testRepeatedWindowDefinition_doesNotOutputNewSubtitle() throws Exception {
+    SubtitleOutputBuffer outputBuffer =
+        decode(
+            /* timeUs= */ 0,
+            createDefineWindow(/* verticalAnchor= */ 0),
+            createText("Hi"),
+            new byte[] {END_OF_TEXT});
+    outputBuffer.release();
+
+    outputBuffer =
+        decode(
+            /* timeUs= */ 100,
+            createDefineWindow(/* verticalAnchor= */ 0),
+            new byte[] {END_OF_TEXT});
+
+    assertThat(outputBuffer).isNull();
+  }
+
+  @Test
+  public void testMovedWindow_outputsNewSubtitle() throws Exception {
+    SubtitleOutputBuffer outputBuffer =
+        decode(
+            /* timeUs= */ 0,
+            createDefineWindow(/* verticalAnchor= */ 0),
+            createText("Hi"),
+            new byte[] {END_OF_TEXT});
+    float line = outputBuffer.getCues(/* timeUs= */ 0).get(0).line;
+    outputBuffer.release();
+
+    outputBuffer =
+        decode(
+            /* timeUs= */ 100,
+            createDefineWindow(/* verticalAnchor= */ 50),
+            new byte[] {END_OF_TEXT});
+
+    assertThat(outputBuffer).isNotNull();
+    assertThat(getCueTexts(outputBuffer)).containsExactly("Hi");
+    assertThat(outputBuffer.getCues(/* timeUs= */ 100).get(0).line).isNotEqualTo(line);
+  }
+
+  @Test
+  public void testAppendedText_outputsNewSubtitle() throws Exception {
+    SubtitleOutputBuffer outputBuffer =
+        decode(
+            /* timeUs= */ 0,
+            createDefineWindow(/* verticalAnchor= */ 0),
+            createText("Hi"),
+            new byte[] {END_OF_TEXT});
+    outputBuffer.release();
+
+    outputBuffer = decode(/* timeUs= */ 100, createText("!"), new byte[] {END_OF_TEXT});
+
+    assertThat(outputBuffer).isNotNull();
+    assertThat(getCueTexts(outputBuffer)).containsExactly("Hi!");
+  }
+
+  /**
+   * Decodes a sample containing a single DTVCC packet with a service block made of the given
+   * commands, and returns any new output.
+   */
+  @Nullable
+  private SubtitleOutputBuffer decode(long timeUs, byte[]... commands)
+      throws SubtitleDecoderException {
+    int serviceBlockSize = 0;
+    for (byte[] command : commands) {
+      serviceBlockSize += command.length;
+    }
+    // The packet data is the service block header and data, padded with NUL commands to an odd
+    // length. Its first byte is carried by the packet start, and the rest in pairs.
+    int packetSize = (serviceBlockSize + 3) / 2;
+    byte[] packetData = new byte[packetSize * 2 - 1];
+    packetData[0] = (byte) ((SERVICE_NUMBER << 5) | serviceBlockSize);
+    int position = 1;
+    for (byte[] command : commands) {
+      System.arraycopy(command, 0, packetData, position, command.length);
+      position += command.length;
+    }
+
+    SubtitleInputBuffer inputBuffer = decoder.dequeueInputBuffer();
+    inputBuffer.ensureSpaceForWrite(3 * packetSize);
+    inputBuffer.data.put(new byte[] {0x07, (byte) packetSize, packetData[0]});
+    for (int i = 1; i < packetData.length; i += 2) {
+      inputBuffer.data.put(new byte[] {0x06, packetData[i], packetData[i + 1]});
+    }
+    inputBuffer.timeUs = timeUs;
+    inputBuffer.flip();
+    decoder.queueInputBuffer(inputBuffer);
+    decoder.setPositionUs(timeUs);
+    return decoder.dequeueOutputBuffer();
+  }
+
+  /** Returns a command that defines window 0 as visible, with a fixed size and styles. */
+  private static byte[] createDefineWindow(int verticalAnchor) {
+    return new byte[] {
+      (byte) 0x98, // DefineWindow 0
+      0x20, // Visible, with priority 0.
+      (byte) verticalAnchor, // Absolute positioning.
+      0x00, // Horizontal anchor.
+      0x00, // Anchor ID and row count.
+      0x1F, // Column count.
+      0x09 // Window style 1 and pen style 1.
+    };
+  }
+
+  private static byte[] createText(String text) {
+    byte[] bytes = new byte[text.length()];
+    for (int i = 0; i < text.length(); i++) {
+      bytes[i] = (byte) text.charAt(i);
+    }
+    return bytes;
+  }
+
+  private static String[] getCueTexts(SubtitleOutputBuffer outputBuffer) {
+    List<Cue> cues = outputBuffer.getCues(outputBuffer.timeUs);
+    String[] cueTexts = new String[cues.size()];
+    for (int i = 0; i < cues.size(); i++) {
+      cueTexts[i] = String.valueOf(cues.get(i).text);
+    }
+    return cueTexts;
+  }
+}
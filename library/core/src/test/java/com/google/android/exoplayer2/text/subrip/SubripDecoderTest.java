@@ -19,10 +19,15 @@ import static com.google.common.truth.Truth.assertThat;
 
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.text.ChunkedSubtitle;
 import com.google.android.exoplayer2.text.Cue;
 import com.google.android.exoplayer2.text.Subtitle;
+import com.google.android.exoplayer2.util.Util;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -193,6 +198,59 @@ public final class SubripDecoderTest {
     assertTypicalCue3(subtitle, 4);
   }
 
+  @Test
+  public void testDecodeInChunks_matchesDecodingAllAtOnce() {
+    byte[] bytes = createSubripData(/* cueCount= */ 250);
+    Subtitle expectedSubtitle =
+        new SubripDecoder(/* chunkedDecodingThresholdBytes= */ C.LENGTH_UNSET)
+            .decode(bytes, bytes.length, /* reset= */ false);
+    Subtitle subtitle =
+        new SubripDecoder(/* chunkedDecodingThresholdBytes= */ 0)
+            .decode(bytes, bytes.length, /* reset= */ false);
+
+    assertThat(subtitle).isInstanceOf(ChunkedSubtitle.class);
+    assertThat(((ChunkedSubtitle) subtitle).getChunkCount()).isEqualTo(3);
+    assertThat(subtitle.getEventTimeCount()).isEqualTo(expectedSubtitle.getEventTimeCount());
+    for (int i = 0; i < expectedSubtitle.getEventTimeCount(); i++) {
+      long timeUs = expectedSubtitle.getEventTime(i);
+      assertThat(subtitle.getEventTime(i)).isEqualTo(timeUs);
+      assertThat(getCueTexts(subtitle.getCues(timeUs)))
+          .isEqualTo(getCueTexts(expectedSubtitle.getCues(timeUs)));
+    }
+    // Chunks that playback has passed are released.
+    assertThat(((ChunkedSubtitle) subtitle).getDecodedChunkCount()).isEqualTo(2);
+  }
+
+  private static byte[] createSubripData(int cueCount) {
+    StringBuilder subripData = new StringBuilder();
+    for (int i = 0; i < cueCount; i++) {
+      subripData
+          .append(i + 1)
+          .append('\n')
+          .append(formatTimecode(/* timeMs= */ i * 2000))
+          .append(" --> ")
+          .append(formatTimecode(/* timeMs= */ i * 2000 + 1500))
+          .append("\nSubtitle ")
+          .append(i + 1)
+          .append("\n\n");
+    }
+    return Util.getUtf8Bytes(subripData.toString());
+  }
+
+  private static String formatTimecode(long timeMs) {
+    return Util.formatInvariant(
+        "%02d:%02d:%02d,%03d",
+        timeMs / 3600000, (timeMs / 60000) % 60, (timeMs / 1000) % 60, timeMs % 1000);
+  }
+
+  private static List<String> getCueTexts(List<Cue> cues) {
+    List<String> cueTexts = new ArrayList<>();
+    for (Cue cue : cues) {
+      cueTexts.add(String.valueOf(cue.text));
+    }
+    return cueTexts;
+  }
+
   private static void assertTypicalCue1(Subtitle subtitle, int eventIndex) {
     assertThat(subtitle.getEventTime(eventIndex)).isEqualTo(0);
     assertThat(subtitle.getCues(subtitle.getEventTime(eventIndex)).get(0).text.toString())
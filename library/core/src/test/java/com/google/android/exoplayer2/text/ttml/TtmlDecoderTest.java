@@ -259,6 +259,19 @@ public final class TtmlDecoderTest {
         null);
   }
 
+  @Test
+  public void testGetCuesWithinSameInterval_returnsCachedCues()
+      throws IOException, SubtitleDecoderException {
+    TtmlSubtitle subtitle = getSubtitle(MULTIPLE_REGIONS_TTML_FILE);
+    int eventTimeIndex = subtitle.getNextEventTimeIndex(1000000);
+    long nextEventTimeUs = subtitle.getEventTime(eventTimeIndex);
+
+    List<Cue> cues = subtitle.getCues(1000000);
+
+    assertThat(subtitle.getCues(nextEventTimeUs - 1)).isSameInstanceAs(cues);
+    assertThat(subtitle.getCues(nextEventTimeUs)).isNotSameInstanceAs(cues);
+  }
+
   @Test
   public void testMultipleRegions() throws IOException, SubtitleDecoderException {
     TtmlSubtitle subtitle = getSubtitle(MULTIPLE_REGIONS_TTML_FILE);
@@ -29,9 +29,13 @@ import android.text.style.UnderlineSpan;
 import androidx.annotation.Nullable;
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.text.ChunkedSubtitle;
 import com.google.android.exoplayer2.text.Cue;
+import com.google.android.exoplayer2.text.Subtitle;
 import com.google.android.exoplayer2.text.SubtitleDecoderException;
+import com.google.android.exoplayer2.util.Util;
 import com.google.common.truth.Expect;
 import java.io.IOException;
 import java.util.List;
@@ -396,6 +400,49 @@ public class WebvttDecoderTest {
         .isEqualTo(Typeface.ITALIC);
   }
 
+  @Test
+  public void testDecodeInChunks_matchesDecodingAllAtOnce() throws Exception {
+    byte[] bytes = createWebvttData(/* cueCount= */ 250);
+    Subtitle expectedSubtitle =
+        new WebvttDecoder(/* chunkedDecodingThresholdBytes= */ C.LENGTH_UNSET)
+            .decode(bytes, bytes.length, /* reset= */ false);
+    Subtitle subtitle =
+        new WebvttDecoder(/* chunkedDecodingThresholdBytes= */ 0)
+            .decode(bytes, bytes.length, /* reset= */ false);
+
+    assertThat(subtitle).isInstanceOf(ChunkedSubtitle.class);
+    assertThat(((ChunkedSubtitle) subtitle).getChunkCount()).isEqualTo(3);
+    assertThat(subtitle.getEventTimeCount()).isEqualTo(expectedSubtitle.getEventTimeCount());
+    for (int i = 0; i < expectedSubtitle.getEventTimeCount(); i++) {
+      long timeUs = expectedSubtitle.getEventTime(i);
+      assertThat(subtitle.getEventTime(i)).isEqualTo(timeUs);
+      List<Cue> expectedCues = expectedSubtitle.getCues(timeUs);
+      List<Cue> cues = subtitle.getCues(timeUs);
+      assertThat(cues).hasSize(expectedCues.size());
+      for (int j = 0; j < cues.size(); j++) {
+        assertThat(cues.get(j).text.toString()).isEqualTo(expectedCues.get(j).text.toString());
+        assertThat(cues.get(j).line).isEqualTo(expectedCues.get(j).line);
+      }
+    }
+    // Chunks that playback has passed are released.
+    assertThat(((ChunkedSubtitle) subtitle).getDecodedChunkCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void testDecodeInChunksWithCuesOutOfOrder_decodesAllAtOnce() throws Exception {
+    byte[] bytes =
+        Util.getUtf8Bytes(
+            "WEBVTT\n\n"
+                + "00:00:02.000 --> 00:00:03.000\nSecond\n\n"
+                + "00:00:00.000 --> 00:00:01.000\nFirst\n\n");
+    Subtitle subtitle =
+        new WebvttDecoder(/* chunkedDecodingThresholdBytes= */ 0)
+            .decode(bytes, bytes.length, /* reset= */ false);
+
+    assertThat(subtitle).isInstanceOf(WebvttSubtitle.class);
+    assertThat(subtitle.getCues(/* timeUs= */ 0).get(0).text.toString()).isEqualTo("First");
+  }
+
   private WebvttSubtitle getSubtitleForTestAsset(String asset)
       throws IOException, SubtitleDecoderException {
     WebvttDecoder decoder = new WebvttDecoder();
@@ -460,4 +507,32 @@ public class WebvttDecoderTest {
 
     assertThat(expect.hasFailures()).isFalse();
   }
+
+  /**
+   * Creates WebVTT data with overlapping cues, where every tenth cue ends before the next one
+   * starts.
+   */
+  private static byte[] createWebvttData(int cueCount) {
+    StringBuilder webvttData = new StringBuilder("WEBVTT\n\n");
+    for (int i = 0; i < cueCount; i++) {
+      long startTimeMs = i * 1000;
+      long endTimeMs = startTimeMs + (i % 10 == 9 ? 500 : 1500);
+      webvttData
+          .append(formatTimestamp(startTimeMs))
+          .append(" --> ")
+          .append(formatTimestamp(endTimeMs))
+          .append(" line:")
+          .append(i % 2)
+          .append("\nCue ")
+          .append(i + 1)
+          .append("\n\n");
+    }
+    return Util.getUtf8Bytes(webvttData.toString());
+  }
+
+  private static String formatTimestamp(long timeMs) {
+    return Util.formatInvariant(
+        "%02d:%02d:%02d.%03d",
+        timeMs / 3600000, (timeMs / 60000) % 60, (timeMs / 1000) % 60, timeMs % 1000);
+  }
 }
@@ -226,6 +226,46 @@ public class WebvttSubtitleTest {
     assertSingleCueEmpty(nestedSubtitle.getCues(Long.MAX_VALUE));
   }
 
+  @Test
+  public void testManyOverlappingCues_matchesLinearScan() {
+    ArrayList<WebvttCue> cues = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      // Cues of varying length, some spanning many later cues, added out of start time order.
+      long startTimeUs = ((i * 37) % 200) * 1000000L;
+      long endTimeUs = startTimeUs + (1 + (i % 7) * (i % 3)) * 1000000L;
+      cues.add(
+          new WebvttCue.Builder()
+              .setStartTime(startTimeUs)
+              .setEndTime(endTimeUs)
+              .setText("cue " + i)
+              .build());
+    }
+    WebvttSubtitle subtitle = new WebvttSubtitle(cues);
+
+    for (long timeUs = 0; timeUs < 220000000L; timeUs += 250000) {
+      StringBuilder expectedText = new StringBuilder();
+      for (WebvttCue cue : cues) {
+        if (cue.startTime <= timeUs && timeUs < cue.endTime) {
+          expectedText.append(expectedText.length() == 0 ? "" : "\n").append(cue.text);
+        }
+      }
+      List<Cue> actualCues = subtitle.getCues(timeUs);
+      if (expectedText.length() == 0) {
+        assertThat(actualCues).isEmpty();
+      } else {
+        assertSingleCueTextEquals(expectedText.toString(), actualCues);
+      }
+    }
+  }
+
+  @Test
+  public void testGetCuesWithinSameInterval_returnsCachedCues() {
+    List<Cue> cues = overlappingSubtitle.getCues(2000000);
+
+    assertThat(overlappingSubtitle.getCues(2999999)).isSameInstanceAs(cues);
+    assertThat(overlappingSubtitle.getCues(3000000)).isNotSameInstanceAs(cues);
+  }
+
   private void testSubtitleEventTimesHelper(WebvttSubtitle subtitle) {
     assertThat(subtitle.getEventTime(0)).isEqualTo(1000000);
     assertThat(subtitle.getEventTime(1)).isEqualTo(2000000);
@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Looper;
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.upstream.Loader.LoadErrorAction;
+import com.google.android.exoplayer2.upstream.Loader.Loadable;
+import com.google.android.exoplayer2.upstream.Loader.UnexpectedLoaderException;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.LooperMode;
+
+/** Unit test for {@link Loader}. */
+@RunWith(AndroidJUnit4.class)
+@LooperMode(LooperMode.Mode.PAUSED)
+public final class LoaderTest {
+
+  private static final long TIMEOUT_MS = 10_000;
+
+  private List<String> events;
+  private ArrayDeque<Runnable> sharedExecutorTasks;
+
+  @Before
+  public void setUp() {
+    events = new ArrayList<>();
+    sharedExecutorTasks = new ArrayDeque<>();
+  }
+
+  @Test
+  public void startLoading_withSharedExecutor_runsLoadsOnSharedExecutor() {
+    Loader loader = new Loader("Loader:Test", sharedExecutorTasks::add);
+
+    loader.startLoading(new RecordingLoadable("load"), new RecordingCallback(), 0);
+    assertThat(sharedExecutorTasks).hasSize(1);
+    sharedExecutorTasks.remove().run();
+    shadowOf(Looper.getMainLooper()).idle();
+
+    assertThat(events).containsExactly("load", "completed:load").inOrder();
+    assertThat(loader.isLoading()).isFalse();
+  }
+
+  @Test
+  public void release_withSharedExecutor_callsReleaseCallbackAfterCanceledLoad() {
+    Loader loader = new Loader("Loader:Test", sharedExecutorTasks::add);
+    loader.startLoading(new RecordingLoadable("load"), new RecordingCallback(), 0);
+
+    loader.release(() -> events.add("released"));
+
+    // The release task waits for the canceled load to finish before it's passed to the executor.
+    assertThat(sharedExecutorTasks).hasSize(1);
+    sharedExecutorTasks.remove().run();
+    assertThat(sharedExecutorTasks).hasSize(1);
+    sharedExecutorTasks.remove().run();
+    assertThat(events).containsExactly("canceled:load", "released").inOrder();
+  }
+
+  @Test
+  public void startLoading_withSharedExecutorRejectingLoad_reportsLoadError() {
+    Loader loader = new Loader("Loader:Test", new RejectingExecutor());
+    RecordingCallback callback = new RecordingCallback();
+
+    loader.startLoading(new RecordingLoadable("load"), callback, 0);
+    shadowOf(Looper.getMainLooper()).idle();
+
+    assertThat(events).containsExactly("error:load");
+    assertThat(callback.lastError).isInstanceOf(UnexpectedLoaderException.class);
+    assertThat(callback.lastError).hasCauseThat().isInstanceOf(RejectedExecutionException.class);
+    assertThat(loader.isLoading()).isFalse();
+  }
+
+  @Test
+  public void startLoading_withSharedExecutorRejectingLaterTask_reportsLoadErrorAndReleases() {
+    RejectingExecutor rejectingExecutor = new RejectingExecutor();
+    rejectingExecutor.acceptedTaskCount = 1;
+    Loader loader = new Loader("Loader:Test", rejectingExecutor);
+    loader.startLoading(new RecordingLoadable("first"), new RecordingCallback(), 0);
+    rejectingExecutor.acceptedTasks.remove().run();
+    shadowOf(Looper.getMainLooper()).idle();
+
+    loader.startLoading(new RecordingLoadable("second"), new RecordingCallback(), 0);
+    shadowOf(Looper.getMainLooper()).idle();
+    loader.release(() -> events.add("released"));
+
+    assertThat(events)
+        .containsExactly("first", "completed:first", "error:second", "released")
+        .inOrder();
+  }
+
+  @Test
+  public void release_afterLoadFinishedOnSharedExecutor_doesNotInterruptOtherLoad()
+      throws Exception {
+    ExecutorService sharedExecutor = Executors.newSingleThreadExecutor();
+    Loader finishedLoader = new Loader("Loader:Test", sharedExecutor);
+    Loader otherLoader = new Loader("Loader:Test", sharedExecutor);
+    BlockingLoadable finishedLoadable = new BlockingLoadable();
+    finishedLoadable.allowLoadToFinish.countDown();
+    finishedLoader.startLoading(finishedLoadable, new NoOpCallback(), 0);
+    assertThat(finishedLoadable.loadFinished.await(TIMEOUT_MS, MILLISECONDS)).isTrue();
+    // The other load runs on the thread that ran the finished load.
+    BlockingLoadable otherLoadable = new BlockingLoadable();
+    otherLoader.startLoading(otherLoadable, new NoOpCallback(), 0);
+    assertThat(otherLoadable.loadStarted.await(TIMEOUT_MS, MILLISECONDS)).isTrue();
+
+    // The finished load's completion hasn't been handled, so releasing the loader cancels it.
+    finishedLoader.release();
+    otherLoadable.allowLoadToFinish.countDown();
+
+    assertThat(otherLoadable.loadFinished.await(TIMEOUT_MS, MILLISECONDS)).isTrue();
+    assertThat(otherLoadable.interrupted).isFalse();
+    otherLoader.release();
+    sharedExecutor.shutdown();
+  }
+
+  private final class RecordingLoadable implements Loadable {
+
+    private final String name;
+
+    public RecordingLoadable(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public void cancelLoad() {}
+
+    @Override
+    public void load() {
+      events.add(name);
+    }
+  }
+
+  private final class RecordingCallback implements Loader.Callback<RecordingLoadable> {
+
+    @Nullable public IOException lastError;
+
+    @Override
+    public void onLoadCompleted(
+        RecordingLoadable loadable, long elapsedRealtimeMs, long loadDurationMs) {
+      events.add("completed:" + loadable.name);
+    }
+
+    @Override
+    public void onLoadCanceled(
+        RecordingLoadable loadable, long elapsedRealtimeMs, long loadDurationMs, boolean released) {
+      events.add("canceled:" + loadable.name);
+    }
+
+    @Override
+    public LoadErrorAction onLoadError(
+        RecordingLoadable loadable,
+        long elapsedRealtimeMs,
+        long loadDurationMs,
+        IOException error,
+        int errorCount) {
+      events.add("error:" + loadable.name);
+      lastError = error;
+      return Loader.DONT_RETRY;
+    }
+  }
+
+  /** A loadable that blocks until it's allowed to finish, and records whether it's interrupted. */
+  private static final class BlockingLoadable implements Loadable {
+
+    public final CountDownLatch loadStarted;
+    public final CountDownLatch allowLoadToFinish;
+    public final CountDownLatch loadFinished;
+
+    public volatile boolean interrupted;
+
+    public BlockingLoadable() {
+      loadStarted = new CountDownLatch(1);
+      allowLoadToFinish = new CountDownLatch(1);
+      loadFinished = new CountDownLatch(1);
+    }
+
+    @Override
+    public void cancelLoad() {}
+
+    @Override
+    public void load() {
+      loadStarted.countDown();
+      try {
+        allowLoadToFinish.await();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+      loadFinished.countDown();
+    }
+  }
+
+  private static final class NoOpCallback implements Loader.Callback<BlockingLoadable> {
+
+    @Override
+    public void onLoadCompleted(
+        BlockingLoadable loadable, long elapsedRealtimeMs, long loadDurationMs) {}
+
+    @Override
+    public void onLoadCanceled(
+        BlockingLoadable loadable, long elapsedRealtimeMs, long loadDurationMs, boolean released) {}
+
+    @Override
+    public LoadErrorAction onLoadError(
+        BlockingLoadable loadable,
+        long elapsedRealtimeMs,
+        long loadDurationMs,
+        IOException error,
+        int errorCount) {
+      return Loader.DONT_RETRY;
+    }
+  }
+
+  /** An executor that accepts a number of tasks, and rejects tasks after that. */
+  private static final class RejectingExecutor implements Executor {
+
+    public final ArrayDeque<Runnable> acceptedTasks;
+    public int acceptedTaskCount;
+
+    public RejectingExecutor() {
+      acceptedTasks = new ArrayDeque<>();
+    }
+
+    @Override
+    public void execute(Runnable command) {
+      if (acceptedTaskCount == 0) {
+        throw new RejectedExecutionException();
+      }
+      acceptedTaskCount--;
+      acceptedTasks.add(command);
+    }
+  }
+}
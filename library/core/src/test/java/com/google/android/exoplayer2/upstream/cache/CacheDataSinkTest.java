@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.database.DatabaseProvider;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.util.Map;
+import java.util.zip.CRC32;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link CacheDataSink}. */
+@RunWith(AndroidJUnit4.class)
+public final class CacheDataSinkTest {
+
+  private static final String KEY = "key";
+
+  private File cacheDir;
+  private DatabaseProvider databaseProvider;
+  private SimpleCache cache;
+
+  @Before
+  public void setUp() throws Exception {
+    cacheDir =
+        Util.createTempDirectory(ApplicationProvider.getApplicationContext(), "ExoPlayerTest");
+    databaseProvider = TestUtil.getInMemoryDatabaseProvider();
+    cache = new SimpleCache(cacheDir, new NoOpCacheEvictor(), databaseProvider);
+  }
+
+  @After
+  public void tearDown() {
+    cache.release();
+    Util.recursiveDelete(cacheDir);
+  }
+
+  @Test
+  public void write_withFragmentation_commitsEachFileWithChecksumOfItsData() throws Exception {
+    byte[] data = TestUtil.buildTestData(/* length= */ 25);
+    CacheDataSink cacheDataSink = new CacheDataSink(cache, /* fragmentSize= */ 10);
+
+    cacheDataSink.open(
+        new DataSpec(
+            Uri.EMPTY,
+            /* absoluteStreamPosition= */ 0,
+            C.LENGTH_UNSET,
+            KEY,
+            DataSpec.FLAG_ALLOW_CACHE_FRAGMENTATION));
+    // Writes that span the boundaries of the cache files.
+    cacheDataSink.write(data, /* offset= */ 0, /* length= */ 7);
+    cacheDataSink.write(data, /* offset= */ 7, /* length= */ 7);
+    cacheDataSink.write(data, /* offset= */ 14, /* length= */ 11);
+    cacheDataSink.close();
+
+    CacheFileMetadataIndex fileIndex = new CacheFileMetadataIndex(databaseProvider);
+    fileIndex.initialize(cache.getUid());
+    Map<String, CacheFileMetadata> fileMetadata = fileIndex.getAll();
+    assertThat(fileMetadata).hasSize(3);
+    for (CacheSpan span : cache.getCachedSpans(KEY)) {
+      CRC32 expectedChecksum = new CRC32();
+      expectedChecksum.update(data, (int) span.position, (int) span.length);
+      assertThat(fileMetadata.get(span.file.getName()).checksum)
+          .isEqualTo(expectedChecksum.getValue());
+    }
+  }
+
+  @Test
+  public void write_withFragmentation_committedFilesPassVerification() throws Exception {
+    byte[] data = TestUtil.buildTestData(/* length= */ 25);
+    CacheDataSink cacheDataSink = new CacheDataSink(cache, /* fragmentSize= */ 10);
+    cacheDataSink.open(
+        new DataSpec(
+            Uri.EMPTY,
+            /* absoluteStreamPosition= */ 0,
+            C.LENGTH_UNSET,
+            KEY,
+            DataSpec.FLAG_ALLOW_CACHE_FRAGMENTATION));
+    cacheDataSink.write(data, /* offset= */ 0, data.length);
+    cacheDataSink.close();
+    cache.release();
+
+    // Files loaded from the index are verified against their checksums.
+    cache = new SimpleCache(cacheDir, new NoOpCacheEvictor(), databaseProvider);
+
+    assertThat(cache.verifySpans(KEY)).isEqualTo(0);
+    assertThat(cache.getCachedSpans(KEY)).hasSize(3);
+    assertThat(cache.getCachedLength(KEY, /* position= */ 0, /* length= */ 100)).isEqualTo(25);
+  }
+}
@@ -30,13 +30,17 @@ import com.google.android.exoplayer2.testutil.FakeDataSource;
 import com.google.android.exoplayer2.testutil.TestUtil;
 import com.google.android.exoplayer2.upstream.DataSpec;
 import com.google.android.exoplayer2.upstream.FileDataSource;
+import com.google.android.exoplayer2.upstream.crypto.AesCipherDataSink;
+import com.google.android.exoplayer2.upstream.crypto.AesCipherDataSource;
 import com.google.android.exoplayer2.util.Util;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.NavigableSet;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -328,6 +332,175 @@ public final class CacheDataSourceTest {
     assertThat(cache.getKeys()).isEmpty();
   }
 
+  @Test
+  public void testCoalesceReadsWaitsForDataWrittenByAnotherWriter() throws Exception {
+    // Lock the content, as if another data source were writing it.
+    CacheSpan holeSpan = cache.startReadWriteNonBlocking(defaultCacheKey, 0);
+    Thread writer =
+        new Thread(
+            () -> {
+              try {
+                File file = cache.startFile(defaultCacheKey, 0, TEST_DATA.length);
+                try (FileOutputStream outputStream = new FileOutputStream(file)) {
+                  outputStream.write(TEST_DATA);
+                }
+                cache.commitFile(file, TEST_DATA.length);
+              } catch (IOException e) {
+                throw new IllegalStateException(e);
+              } finally {
+                cache.releaseHoleSpan(holeSpan);
+              }
+            });
+    CacheDataSource cacheDataSource =
+        createCacheDataSource(false, false, CacheDataSource.FLAG_COALESCE_READS);
+
+    writer.start();
+    CacheAsserts.assertReadData(cacheDataSource, boundedDataSpec, TEST_DATA);
+    writer.join();
+
+    assertThat(upstreamDataSource.getAndClearOpenedDataSpecs()).isEmpty();
+  }
+
+  @Test
+  public void testCoalesceReadsWritesDataIfAnotherWriterReleasesLock() throws Exception {
+    // Lock the content, as if another data source were writing it.
+    CacheSpan holeSpan = cache.startReadWriteNonBlocking(defaultCacheKey, 0);
+    Thread writer = new Thread(() -> cache.releaseHoleSpan(holeSpan));
+    CacheDataSource cacheDataSource =
+        createCacheDataSource(false, false, CacheDataSource.FLAG_COALESCE_READS);
+
+    writer.start();
+    CacheAsserts.assertReadData(cacheDataSource, boundedDataSpec, TEST_DATA);
+    writer.join();
+
+    assertThat(upstreamDataSource.getAndClearOpenedDataSpecs()).hasLength(1);
+    assertThat(cache.getCachedLength(defaultCacheKey, 0, TEST_DATA.length))
+        .isEqualTo(TEST_DATA.length);
+  }
+
+  @Test
+  public void testCoalesceReadsReadsUpstreamIfAnotherWriterIsBehindCachedData() throws Exception {
+    writeCacheFile(/* position= */ 4, /* length= */ 2);
+    // Lock the content, as if another data source were writing it from the start.
+    CacheSpan holeSpan = cache.startReadWriteNonBlocking(defaultCacheKey, 0);
+    AtomicBoolean stopWriter = new AtomicBoolean();
+    Thread writer = startSpanCyclingWriter(holeSpan, /* position= */ 0, stopWriter);
+    CacheDataSource cacheDataSource =
+        createCacheDataSource(false, false, CacheDataSource.FLAG_COALESCE_READS);
+
+    // The writer's hole ends where the cached data starts, so it won't reach the read position.
+    CacheAsserts.assertReadData(
+        cacheDataSource,
+        buildDataSpec(/* position= */ 8, /* length= */ 2),
+        Arrays.copyOfRange(TEST_DATA, 8, 10));
+    stopWriter.set(true);
+    writer.join();
+
+    assertThat(upstreamDataSource.getAndClearOpenedDataSpecs()).isNotEmpty();
+  }
+
+  @Test
+  public void testCoalesceReadsReadsUpstreamIfAnotherWriterIsAfterReadPosition()
+      throws Exception {
+    // Lock the content, as if another data source were writing it from the middle.
+    CacheSpan holeSpan = cache.startReadWriteNonBlocking(defaultCacheKey, 5);
+    AtomicBoolean stopWriter = new AtomicBoolean();
+    Thread writer = startSpanCyclingWriter(holeSpan, /* position= */ 5, stopWriter);
+    CacheDataSource cacheDataSource =
+        createCacheDataSource(false, false, CacheDataSource.FLAG_COALESCE_READS);
+
+    CacheAsserts.assertReadData(cacheDataSource, boundedDataSpec, TEST_DATA);
+    stopWriter.set(true);
+    writer.join();
+
+    assertThat(upstreamDataSource.getAndClearOpenedDataSpecs()).isNotEmpty();
+  }
+
+  @Test
+  public void testMemoryCacheTierIsFilledOnWriteAndRead() throws Exception {
+    upstreamDataSource.getDataSet().setData(testDataUri, TEST_DATA);
+    MemoryCacheTier memoryCacheTier = new MemoryCacheTier(/* maxBytes= */ 1024);
+    MemoryCacheTierListener listener = new MemoryCacheTierListener();
+    CacheDataSource cacheDataSource =
+        new CacheDataSource(
+            cache,
+            upstreamDataSource,
+            new FileDataSource(),
+            new CacheDataSink(cache, CACHE_FRAGMENT_SIZE, /* bufferSize= */ 0, memoryCacheTier),
+            /* flags= */ 0,
+            listener,
+            /* cacheKeyFactory= */ null,
+            memoryCacheTier);
+
+    // Write the data into the cache. The spans are put in memory as they're committed.
+    CacheAsserts.assertReadData(cacheDataSource, boundedDataSpec, TEST_DATA);
+    assertThat(memoryCacheTier.getCurrentBytes()).isEqualTo(TEST_DATA.length);
+    CacheAsserts.assertReadData(cacheDataSource, boundedDataSpec, TEST_DATA);
+    assertThat(listener.hits).isEqualTo(4);
+    assertThat(listener.misses).isEqualTo(0);
+
+    // Read the spans from the cache files, which puts them in memory again.
+    memoryCacheTier.clear();
+    CacheAsserts.assertReadData(cacheDataSource, boundedDataSpec, TEST_DATA);
+    CacheAsserts.assertReadData(cacheDataSource, boundedDataSpec, TEST_DATA);
+    assertThat(listener.hits).isEqualTo(8);
+    assertThat(listener.misses).isEqualTo(4);
+    assertThat(upstreamDataSource.getAndClearOpenedDataSpecs()).hasLength(1);
+  }
+
+  @Test
+  public void testMemoryCacheTierWithEncryptedCache_holdsDecryptedData() throws Exception {
+    byte[] secretKey = Util.getUtf8Bytes("testsecretkey!!!");
+    upstreamDataSource.getDataSet().setData(testDataUri, TEST_DATA);
+    MemoryCacheTier memoryCacheTier = new MemoryCacheTier(/* maxBytes= */ 1024);
+    MemoryCacheTierListener listener = new MemoryCacheTierListener();
+    CacheDataSource cacheDataSource =
+        new CacheDataSource(
+            cache,
+            upstreamDataSource,
+            new AesCipherDataSource(secretKey, new FileDataSource()),
+            new AesCipherDataSink(secretKey, new CacheDataSink(cache, CACHE_FRAGMENT_SIZE)),
+            /* flags= */ 0,
+            listener,
+            /* cacheKeyFactory= */ null,
+            memoryCacheTier);
+
+    CacheAsserts.assertReadData(cacheDataSource, boundedDataSpec, TEST_DATA);
+    // The spans are decrypted as they're read from the cache files and put in memory.
+    CacheAsserts.assertReadData(cacheDataSource, boundedDataSpec, TEST_DATA);
+    CacheAsserts.assertReadData(cacheDataSource, boundedDataSpec, TEST_DATA);
+
+    assertThat(listener.misses).isEqualTo(4);
+    assertThat(listener.hits).isEqualTo(4);
+  }
+
+  @Test
+  public void testMemoryCacheTierWithPartialSpanRead_doesNotPutSpanInMemory() throws Exception {
+    upstreamDataSource.getDataSet().setData(testDataUri, TEST_DATA);
+    MemoryCacheTier memoryCacheTier = new MemoryCacheTier(/* maxBytes= */ 1024);
+    MemoryCacheTierListener listener = new MemoryCacheTierListener();
+    CacheDataSource cacheDataSource =
+        new CacheDataSource(
+            cache,
+            upstreamDataSource,
+            new FileDataSource(),
+            new CacheDataSink(cache, CACHE_FRAGMENT_SIZE),
+            /* flags= */ 0,
+            listener,
+            /* cacheKeyFactory= */ null,
+            memoryCacheTier);
+    CacheAsserts.assertReadData(cacheDataSource, boundedDataSpec, TEST_DATA);
+
+    // Read the middle byte of the first span.
+    CacheAsserts.assertReadData(
+        cacheDataSource,
+        buildDataSpec(/* position= */ 1, /* length= */ 1),
+        new byte[] {TEST_DATA[1]});
+
+    assertThat(listener.misses).isEqualTo(1);
+    assertThat(memoryCacheTier.getCurrentBytes()).isEqualTo(0);
+  }
+
   @Test
   public void testReadOnlyCache() throws Exception {
     CacheDataSource cacheDataSource = createCacheDataSource(false, false, 0, null);
@@ -615,6 +788,75 @@ public final class CacheDataSourceTest {
         cacheKeyFactory);
   }
 
+  private static final class MemoryCacheTierListener implements CacheDataSource.EventListener {
+
+    public int hits;
+    public int misses;
+
+    @Override
+    public void onCachedBytesRead(long cacheSizeBytes, long cachedBytesRead) {
+      // Do nothing.
+    }
+
+    @Override
+    public void onCacheIgnored(@CacheDataSource.CacheIgnoredReason int reason) {
+      // Do nothing.
+    }
+
+    @Override
+    public void onMemoryCacheTierAccess(boolean hit, long spanLength) {
+      if (hit) {
+        hits++;
+      } else {
+        misses++;
+      }
+    }
+  }
+
+  private void writeCacheFile(long position, int length) throws IOException {
+    CacheSpan holeSpan = cache.startReadWriteNonBlocking(defaultCacheKey, position);
+    try {
+      commitCacheFile(position, length);
+    } finally {
+      cache.releaseHoleSpan(holeSpan);
+    }
+  }
+
+  private void commitCacheFile(long position, int length) throws IOException {
+    File file = cache.startFile(defaultCacheKey, position, length);
+    try (FileOutputStream outputStream = new FileOutputStream(file)) {
+      outputStream.write(TEST_DATA, (int) position, length);
+    }
+    cache.commitFile(file, length);
+  }
+
+  /**
+   * Starts a writer that holds {@code holeSpan} and repeatedly adds and removes a one byte span at
+   * {@code position}, as if it were making progress there, until {@code stop} is set.
+   */
+  private Thread startSpanCyclingWriter(CacheSpan holeSpan, long position, AtomicBoolean stop) {
+    Thread writer =
+        new Thread(
+            () -> {
+              try {
+                while (!stop.get()) {
+                  commitCacheFile(position, /* length= */ 1);
+                  for (CacheSpan span : cache.getCachedSpans(defaultCacheKey)) {
+                    if (span.position == position) {
+                      cache.removeSpan(span);
+                    }
+                  }
+                }
+              } catch (IOException e) {
+                throw new IllegalStateException(e);
+              } finally {
+                cache.releaseHoleSpan(holeSpan);
+              }
+            });
+    writer.start();
+    return writer;
+  }
+
   private DataSpec buildDataSpec(boolean unbounded, @Nullable String key) {
     return buildDataSpec(/* position= */ 0, unbounded ? C.LENGTH_UNSET : TEST_DATA.length, key);
   }
@@ -20,6 +20,7 @@ import static com.google.common.truth.Truth.assertThat;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.android.exoplayer2.database.DatabaseIOException;
 import com.google.android.exoplayer2.testutil.TestUtil;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import org.junit.Test;
@@ -39,8 +40,8 @@ public class CacheFileMetadataIndexTest {
   public void insert() throws DatabaseIOException {
     CacheFileMetadataIndex index = newInitializedIndex();
 
-    index.set("name1", /* length= */ 123, /* lastTouchTimestamp= */ 456);
-    index.set("name2", /* length= */ 789, /* lastTouchTimestamp= */ 123);
+    index.set("name1", /* directory= */ "0", /* length= */ 123, /* lastTouchTimestamp= */ 456);
+    index.set("name2", /* directory= */ "", /* length= */ 789, /* lastTouchTimestamp= */ 123);
 
     Map<String, CacheFileMetadata> all = index.getAll();
     assertThat(all.size()).isEqualTo(2);
@@ -63,8 +64,8 @@ public class CacheFileMetadataIndexTest {
   public void insertAndRemove() throws DatabaseIOException {
     CacheFileMetadataIndex index = newInitializedIndex();
 
-    index.set("name1", /* length= */ 123, /* lastTouchTimestamp= */ 456);
-    index.set("name2", /* length= */ 789, /* lastTouchTimestamp= */ 123);
+    index.set("name1", /* directory= */ "0", /* length= */ 123, /* lastTouchTimestamp= */ 456);
+    index.set("name2", /* directory= */ "", /* length= */ 789, /* lastTouchTimestamp= */ 123);
 
     index.remove("name1");
 
@@ -92,8 +93,8 @@ public class CacheFileMetadataIndexTest {
   public void insertAndRemoveAll() throws DatabaseIOException {
     CacheFileMetadataIndex index = newInitializedIndex();
 
-    index.set("name1", /* length= */ 123, /* lastTouchTimestamp= */ 456);
-    index.set("name2", /* length= */ 789, /* lastTouchTimestamp= */ 123);
+    index.set("name1", /* directory= */ "0", /* length= */ 123, /* lastTouchTimestamp= */ 456);
+    index.set("name2", /* directory= */ "", /* length= */ 789, /* lastTouchTimestamp= */ 123);
 
     HashSet<String> namesToRemove = new HashSet<>();
     namesToRemove.add("name1");
@@ -114,8 +115,8 @@ public class CacheFileMetadataIndexTest {
   public void insertAndReplace() throws DatabaseIOException {
     CacheFileMetadataIndex index = newInitializedIndex();
 
-    index.set("name1", /* length= */ 123, /* lastTouchTimestamp= */ 456);
-    index.set("name1", /* length= */ 789, /* lastTouchTimestamp= */ 123);
+    index.set("name1", /* directory= */ "0", /* length= */ 123, /* lastTouchTimestamp= */ 456);
+    index.set("name1", /* directory= */ "0", /* length= */ 789, /* lastTouchTimestamp= */ 123);
 
     Map<String, CacheFileMetadata> all = index.getAll();
     assertThat(all.size()).isEqualTo(1);
@@ -126,6 +127,86 @@ public class CacheFileMetadataIndexTest {
     assertThat(metadata.lastTouchTimestamp).isEqualTo(123);
   }
 
+  @Test
+  public void insertStoresDirectory() throws DatabaseIOException {
+    CacheFileMetadataIndex index = newInitializedIndex();
+
+    index.set("name1", /* directory= */ "0", /* length= */ 123, /* lastTouchTimestamp= */ 456);
+    index.set("name2", /* directory= */ "", /* length= */ 789, /* lastTouchTimestamp= */ 123);
+
+    Map<String, CacheFileMetadata> all = index.getAll();
+    assertThat(all.get("name1").directory).isEqualTo("0");
+    assertThat(all.get("name2").directory).isEmpty();
+  }
+
+  @Test
+  public void insertStoresChecksum() throws DatabaseIOException {
+    CacheFileMetadataIndex index = newInitializedIndex();
+
+    index.set(
+        "name1",
+        /* directory= */ "0",
+        /* length= */ 123,
+        /* lastTouchTimestamp= */ 456,
+        /* checksum= */ 0xFFFFFFFFL);
+    index.set("name2", /* directory= */ "", /* length= */ 789, /* lastTouchTimestamp= */ 123);
+
+    Map<String, CacheFileMetadata> all = index.getAll();
+    assertThat(all.get("name1").checksum).isEqualTo(0xFFFFFFFFL);
+    assertThat(all.get("name2").checksum).isEqualTo(CacheFileMetadata.CHECKSUM_UNSET);
+  }
+
+  @Test
+  public void setLastTouchTimestamp_keepsOtherMetadata() throws DatabaseIOException {
+    CacheFileMetadataIndex index = newInitializedIndex();
+    index.set(
+        "name1",
+        /* directory= */ "0",
+        /* length= */ 123,
+        /* lastTouchTimestamp= */ 456,
+        /* checksum= */ 789);
+
+    index.setLastTouchTimestamp("name1", /* lastTouchTimestamp= */ 1000);
+
+    CacheFileMetadata metadata = index.getAll().get("name1");
+    assertThat(metadata.directory).isEqualTo("0");
+    assertThat(metadata.length).isEqualTo(123);
+    assertThat(metadata.lastTouchTimestamp).isEqualTo(1000);
+    assertThat(metadata.checksum).isEqualTo(789);
+  }
+
+  @Test
+  public void insertAll() throws DatabaseIOException {
+    CacheFileMetadataIndex index = newInitializedIndex();
+    index.set("name1", /* directory= */ "0", /* length= */ 123, /* lastTouchTimestamp= */ 456);
+
+    Map<String, CacheFileMetadata> fileMetadata = new HashMap<>();
+    fileMetadata.put(
+        "name1",
+        new CacheFileMetadata(
+            /* directory= */ "1", /* length= */ 789, /* lastTouchTimestamp= */ 1));
+    fileMetadata.put(
+        "name2",
+        new CacheFileMetadata(
+            /* directory= */ "2", /* length= */ 12, /* lastTouchTimestamp= */ 3));
+    index.setAll(fileMetadata);
+
+    Map<String, CacheFileMetadata> all = index.getAll();
+    assertThat(all.size()).isEqualTo(2);
+
+    CacheFileMetadata metadata = all.get("name1");
+    assertThat(metadata).isNotNull();
+    assertThat(metadata.directory).isEqualTo("1");
+    assertThat(metadata.length).isEqualTo(789);
+    assertThat(metadata.lastTouchTimestamp).isEqualTo(1);
+
+    metadata = all.get("name2");
+    assertThat(metadata).isNotNull();
+    assertThat(metadata.directory).isEqualTo("2");
+    assertThat(metadata.length).isEqualTo(12);
+    assertThat(metadata.lastTouchTimestamp).isEqualTo(3);
+  }
+
   private static CacheFileMetadataIndex newInitializedIndex() throws DatabaseIOException {
     CacheFileMetadataIndex index =
         new CacheFileMetadataIndex(TestUtil.getInMemoryDatabaseProvider());
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link MemoryCacheTier}. */
+@RunWith(AndroidJUnit4.class)
+public final class MemoryCacheTierTest {
+
+  @Test
+  public void put_evictsLeastRecentlyUsedSpans() {
+    MemoryCacheTier memoryCacheTier = new MemoryCacheTier(/* maxBytes= */ 30);
+    byte[] data1 = TestUtil.buildTestData(10);
+    byte[] data2 = TestUtil.buildTestData(10);
+    byte[] data3 = TestUtil.buildTestData(10);
+    memoryCacheTier.put("key", /* position= */ 0, data1);
+    memoryCacheTier.put("key", /* position= */ 10, data2);
+    memoryCacheTier.put("key", /* position= */ 20, data3);
+
+    // Access the first span, so that the second span is the least recently used.
+    assertThat(memoryCacheTier.get("key", /* position= */ 0, /* length= */ 10))
+        .isSameInstanceAs(data1);
+    memoryCacheTier.put("key", /* position= */ 30, TestUtil.buildTestData(10));
+
+    assertThat(memoryCacheTier.get("key", /* position= */ 10, /* length= */ 10)).isNull();
+    assertThat(memoryCacheTier.get("key", /* position= */ 0, /* length= */ 10))
+        .isSameInstanceAs(data1);
+    assertThat(memoryCacheTier.get("key", /* position= */ 20, /* length= */ 10))
+        .isSameInstanceAs(data3);
+    assertThat(memoryCacheTier.getCurrentBytes()).isEqualTo(30);
+  }
+
+  @Test
+  public void put_withSpanLargerThanMaxSpanSize_doesNothing() {
+    MemoryCacheTier memoryCacheTier =
+        new MemoryCacheTier(/* maxBytes= */ 100, /* maxSpanSize= */ 10);
+
+    memoryCacheTier.put("key", /* position= */ 0, TestUtil.buildTestData(11));
+
+    assertThat(memoryCacheTier.get("key", /* position= */ 0, /* length= */ 11)).isNull();
+    assertThat(memoryCacheTier.getCurrentBytes()).isEqualTo(0);
+  }
+
+  @Test
+  public void get_withDifferentLength_removesSpan() {
+    MemoryCacheTier memoryCacheTier = new MemoryCacheTier(/* maxBytes= */ 100);
+    memoryCacheTier.put("key", /* position= */ 0, TestUtil.buildTestData(10));
+
+    assertThat(memoryCacheTier.get("key", /* position= */ 0, /* length= */ 5)).isNull();
+    assertThat(memoryCacheTier.get("key", /* position= */ 0, /* length= */ 10)).isNull();
+    assertThat(memoryCacheTier.getCurrentBytes()).isEqualTo(0);
+  }
+
+  @Test
+  public void removeContent_removesOnlySpansOfContent() {
+    MemoryCacheTier memoryCacheTier = new MemoryCacheTier(/* maxBytes= */ 100);
+    byte[] data = TestUtil.buildTestData(10);
+    memoryCacheTier.put("key1", /* position= */ 0, TestUtil.buildTestData(10));
+    memoryCacheTier.put("key1", /* position= */ 10, TestUtil.buildTestData(10));
+    memoryCacheTier.put("key2", /* position= */ 0, data);
+
+    memoryCacheTier.removeContent("key1");
+
+    assertThat(memoryCacheTier.get("key1", /* position= */ 0, /* length= */ 10)).isNull();
+    assertThat(memoryCacheTier.get("key2", /* position= */ 0, /* length= */ 10))
+        .isSameInstanceAs(data);
+    assertThat(memoryCacheTier.getCurrentBytes()).isEqualTo(10);
+  }
+}
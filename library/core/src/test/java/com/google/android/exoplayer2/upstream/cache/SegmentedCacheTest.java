@@ -0,0 +1,421 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.testutil.CacheAsserts;
+import com.google.android.exoplayer2.testutil.FakeDataSource;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.FileDataSource;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.NavigableSet;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link SegmentedCache}. */
+@RunWith(AndroidJUnit4.class)
+public final class SegmentedCacheTest {
+
+  private static final String KEY_1 = "key1";
+  private static final String KEY_2 = "key2";
+
+  private File cacheDir;
+
+  @Before
+  public void setUp() throws Exception {
+    cacheDir = Util.createTempFile(ApplicationProvider.getApplicationContext(), "ExoPlayerTest");
+    // Delete the file. SegmentedCache initialization should create a directory with the same name.
+    assertThat(cacheDir.delete()).isTrue();
+  }
+
+  @After
+  public void tearDown() {
+    Util.recursiveDelete(cacheDir);
+  }
+
+  @Test
+  public void commitFile_appendsSpansToSegmentFile() throws Exception {
+    SegmentedCache cache = getSegmentedCache(SegmentedCache.DEFAULT_MAX_SEGMENT_SIZE);
+
+    addCache(cache, KEY_1, 0, 15);
+    addCache(cache, KEY_1, 15, 15);
+    addCache(cache, KEY_2, 0, 10);
+
+    assertThat(cache.getSegmentCount()).isEqualTo(1);
+    assertThat(cache.getCacheSpace()).isEqualTo(40);
+    assertThat(cache.getKeys()).containsExactly(KEY_1, KEY_2);
+    NavigableSet<CacheSpan> spans = cache.getCachedSpans(KEY_1);
+    assertThat(spans).hasSize(2);
+    assertThat(spans.first().fileOffset).isEqualTo(0);
+    assertThat(spans.last().fileOffset).isEqualTo(15);
+    assertThat(spans.last().file).isEqualTo(spans.first().file);
+    assertCachedDataReadCorrect(spans.first());
+    assertCachedDataReadCorrect(spans.last());
+    assertCachedDataReadCorrect(cache.startReadWrite(KEY_2, 5));
+    assertThat(cache.getCachedLength(KEY_1, 0, 40)).isEqualTo(30);
+    cache.release();
+  }
+
+  @Test
+  public void reloadCache() throws Exception {
+    SegmentedCache cache = getSegmentedCache(SegmentedCache.DEFAULT_MAX_SEGMENT_SIZE);
+    long uid = cache.getUid();
+    addCache(cache, KEY_1, 0, 15);
+    addCache(cache, KEY_1, 15, 15);
+    ContentMetadataMutations mutations = new ContentMetadataMutations();
+    ContentMetadataMutations.setContentLength(mutations, 30);
+    cache.applyContentMetadataMutations(KEY_1, mutations);
+    cache.removeSpan(cache.getCachedSpans(KEY_1).first());
+    cache.release();
+
+    cache = getSegmentedCache(SegmentedCache.DEFAULT_MAX_SEGMENT_SIZE);
+
+    assertThat(cache.getUid()).isEqualTo(uid);
+    assertThat(ContentMetadata.getContentLength(cache.getContentMetadata(KEY_1))).isEqualTo(30);
+    NavigableSet<CacheSpan> spans = cache.getCachedSpans(KEY_1);
+    assertThat(spans).hasSize(1);
+    assertThat(spans.first().position).isEqualTo(15);
+    assertCachedDataReadCorrect(spans.first());
+    cache.release();
+  }
+
+  @Test
+  public void removeSpan_compactsSegmentFile() throws Exception {
+    SegmentedCache cache = getSegmentedCache(/* maxSegmentSize= */ 30);
+    addCache(cache, KEY_1, 0, 10);
+    addCache(cache, KEY_1, 10, 10);
+    addCache(cache, KEY_1, 20, 10);
+    // The first segment file is full, so this span is written to a new one.
+    addCache(cache, KEY_1, 30, 10);
+    assertThat(cache.getSegmentCount()).isEqualTo(2);
+    File firstSegmentFile = cache.getCachedSpans(KEY_1).first().file;
+
+    cache.removeSpan(cache.getCachedSpans(KEY_1).first());
+    assertThat(cache.getSegmentCount()).isEqualTo(2);
+    // Removing a second span leaves less than half of the first segment file in use.
+    cache.removeSpan(cache.getCachedSpans(KEY_1).first());
+    cache.awaitCompactions();
+
+    // The remaining span of the first segment file is moved to a new segment file.
+    assertThat(cache.getSegmentCount()).isEqualTo(2);
+    assertThat(firstSegmentFile.exists()).isFalse();
+    NavigableSet<CacheSpan> spans = cache.getCachedSpans(KEY_1);
+    assertThat(spans).hasSize(2);
+    CacheSpan movedSpan = spans.first();
+    assertThat(movedSpan.position).isEqualTo(20);
+    assertThat(movedSpan.file).isNotEqualTo(firstSegmentFile);
+    assertThat(movedSpan.file).isNotEqualTo(spans.last().file);
+    assertThat(movedSpan.fileOffset).isEqualTo(0);
+    assertCachedDataReadCorrect(movedSpan);
+    assertThat(cache.getCacheSpace()).isEqualTo(20);
+
+    cache.release();
+    cache = getSegmentedCache(/* maxSegmentSize= */ 30);
+    assertCachedDataReadCorrect(cache.getCachedSpans(KEY_1).first());
+    cache.release();
+  }
+
+  @Test
+  public void removeSpan_ofSegmentBeingCompacted_keepsCacheConsistent() throws Exception {
+    SegmentedCache cache = getSegmentedCache(/* maxSegmentSize= */ 40);
+    addCache(cache, KEY_1, 0, 10);
+    addCache(cache, KEY_1, 10, 10);
+    addCache(cache, KEY_1, 20, 10);
+    addCache(cache, KEY_1, 30, 10);
+    addCache(cache, KEY_1, 40, 10);
+    File firstSegmentFile = cache.getCachedSpans(KEY_1).first().file;
+    cache.removeSpan(cache.getCachedSpans(KEY_1).first());
+    cache.removeSpan(cache.getCachedSpans(KEY_1).first());
+    // Removing a third span schedules compaction of the first segment file.
+    cache.removeSpan(cache.getCachedSpans(KEY_1).first());
+
+    // Remove the last span of the first segment file, before or after it's been moved.
+    cache.removeSpan(cache.getCachedSpans(KEY_1).first());
+    cache.awaitCompactions();
+
+    assertThat(firstSegmentFile.exists()).isFalse();
+    assertThat(cache.getSegmentCount()).isEqualTo(1);
+    NavigableSet<CacheSpan> spans = cache.getCachedSpans(KEY_1);
+    assertThat(spans).hasSize(1);
+    assertThat(spans.first().position).isEqualTo(40);
+    assertThat(cache.getCacheSpace()).isEqualTo(10);
+    cache.release();
+  }
+
+  @Test
+  public void release_withCompactionScheduled_waitsForCompaction() throws Exception {
+    SegmentedCache cache = getSegmentedCache(/* maxSegmentSize= */ 30);
+    addCache(cache, KEY_1, 0, 10);
+    addCache(cache, KEY_1, 10, 10);
+    addCache(cache, KEY_1, 20, 10);
+    addCache(cache, KEY_1, 30, 10);
+    cache.removeSpan(cache.getCachedSpans(KEY_1).first());
+    // Removing a second span schedules compaction of the first segment file.
+    cache.removeSpan(cache.getCachedSpans(KEY_1).first());
+
+    cache.release();
+
+    // The compaction has either completed or deleted its staging file.
+    File[] stagingFiles = new File(cacheDir, "staging").listFiles();
+    assertThat(stagingFiles == null ? new File[0] : stagingFiles).isEmpty();
+    cache = getSegmentedCache(/* maxSegmentSize= */ 30);
+    NavigableSet<CacheSpan> spans = cache.getCachedSpans(KEY_1);
+    assertThat(spans).hasSize(2);
+    assertCachedDataReadCorrect(spans.first());
+    assertCachedDataReadCorrect(spans.last());
+    cache.release();
+  }
+
+  @Test
+  public void removeAllSpans_deletesSegmentFile() throws Exception {
+    SegmentedCache cache = getSegmentedCache(/* maxSegmentSize= */ 10);
+    addCache(cache, KEY_1, 0, 10);
+    addCache(cache, KEY_1, 10, 10);
+    File firstSegmentFile = cache.getCachedSpans(KEY_1).first().file;
+
+    cache.removeSpan(cache.getCachedSpans(KEY_1).first());
+
+    assertThat(firstSegmentFile.exists()).isFalse();
+    assertThat(cache.getSegmentCount()).isEqualTo(1);
+    cache.release();
+  }
+
+  @Test
+  public void reloadCache_withTruncatedJournal_keepsCompleteRecords() throws Exception {
+    SegmentedCache cache = getSegmentedCache(SegmentedCache.DEFAULT_MAX_SEGMENT_SIZE);
+    addCache(cache, KEY_1, 0, 15);
+    addCache(cache, KEY_2, 0, 15);
+    cache.release();
+    File journalFile = new File(cacheDir, "journal");
+    try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+      file.setLength(file.length() - 1);
+    }
+
+    cache = getSegmentedCache(SegmentedCache.DEFAULT_MAX_SEGMENT_SIZE);
+
+    assertThat(cache.getKeys()).containsExactly(KEY_1);
+    assertCachedDataReadCorrect(cache.getCachedSpans(KEY_1).first());
+    assertThat(cache.getCacheSpace()).isEqualTo(15);
+    cache.release();
+  }
+
+  @Test
+  public void cacheDataSource_readsDataAtFileOffsets() throws Exception {
+    SegmentedCache cache = getSegmentedCache(SegmentedCache.DEFAULT_MAX_SEGMENT_SIZE);
+    Uri uri = Uri.parse("https://www.test.com/data");
+    byte[] data = TestUtil.buildTestData(/* length= */ 100);
+    FakeDataSource upstream = new FakeDataSource();
+    upstream.getDataSet().setData(uri, data);
+    CacheDataSource writingDataSource =
+        new CacheDataSource(
+            cache,
+            upstream,
+            new FileDataSource(),
+            new CacheDataSink(cache, /* fragmentSize= */ 30),
+            /* flags= */ 0,
+            /* eventListener= */ null);
+    CacheAsserts.assertReadData(
+        writingDataSource,
+        new DataSpec(
+            uri,
+            /* absoluteStreamPosition= */ 0,
+            C.LENGTH_UNSET,
+            /* key= */ null,
+            DataSpec.FLAG_ALLOW_CACHE_FRAGMENTATION),
+        data);
+    String key = CacheUtil.DEFAULT_CACHE_KEY_FACTORY.buildCacheKey(new DataSpec(uri));
+    NavigableSet<CacheSpan> spans = cache.getCachedSpans(key);
+    assertThat(spans).hasSize(4);
+    assertThat(spans.last().fileOffset).isEqualTo(90);
+
+    // Read across spans stored in the middle of the segment file, without access to upstream.
+    CacheDataSource readingDataSource = new CacheDataSource(cache, new FakeDataSource());
+    CacheAsserts.assertReadData(
+        readingDataSource,
+        new DataSpec(uri, /* absoluteStreamPosition= */ 45, /* length= */ 40, /* key= */ null),
+        Arrays.copyOfRange(data, 45, 85));
+    cache.release();
+  }
+
+  @Test
+  public void cacheDataSource_readingSpanWhileItsSegmentIsCompacted_readsData() throws Exception {
+    SegmentedCache cache = getSegmentedCache(/* maxSegmentSize= */ 30);
+    addCache(cache, KEY_1, 0, 10);
+    addCache(cache, KEY_1, 10, 10);
+    addCache(cache, KEY_1, 20, 10);
+    addCache(cache, KEY_1, 30, 10);
+    File firstSegmentFile = cache.getCachedSpans(KEY_1).first().file;
+    CacheDataSource dataSource = new CacheDataSource(cache, new FakeDataSource());
+    dataSource.open(
+        new DataSpec(
+            Uri.parse("https://www.test.com/data"),
+            /* absoluteStreamPosition= */ 20,
+            /* length= */ 10,
+            KEY_1));
+    byte[] firstHalf = TestUtil.readExactly(dataSource, /* length= */ 5);
+
+    // Move the span being read to a new segment file, and delete the first segment file.
+    cache.removeSpan(cache.getCachedSpans(KEY_1).first());
+    cache.removeSpan(cache.getCachedSpans(KEY_1).first());
+    cache.awaitCompactions();
+    assertThat(firstSegmentFile.exists()).isFalse();
+    byte[] secondHalf = TestUtil.readToEnd(dataSource);
+    dataSource.close();
+
+    assertThat(TestUtil.joinByteArrays(firstHalf, secondHalf))
+        .isEqualTo(generateData(KEY_1, /* position= */ 20, /* length= */ 10));
+    cache.release();
+  }
+
+  @Test
+  public void cacheDataSource_openingSpanMovedByCompaction_readsDataFromNewSegment()
+      throws Exception {
+    SegmentedCache cache = getSegmentedCache(/* maxSegmentSize= */ 30);
+    addCache(cache, KEY_1, 0, 10);
+    addCache(cache, KEY_1, 10, 10);
+    addCache(cache, KEY_1, 20, 10);
+    addCache(cache, KEY_1, 30, 10);
+    // Compacts the first segment file after CacheDataSource has looked up the span to read, but
+    // before it opens the span's file.
+    DataSource cacheReadDataSource =
+        new DataSourceWithOpenAction(
+            new FileDataSource(),
+            () -> {
+              cache.removeSpan(cache.getCachedSpans(KEY_1).first());
+              cache.removeSpan(cache.getCachedSpans(KEY_1).first());
+              cache.awaitCompactions();
+            });
+    CacheDataSource dataSource =
+        new CacheDataSource(
+            cache,
+            new FakeDataSource(),
+            cacheReadDataSource,
+            /* cacheWriteDataSink= */ null,
+            /* flags= */ 0,
+            /* eventListener= */ null);
+
+    CacheAsserts.assertReadData(
+        dataSource,
+        new DataSpec(
+            Uri.parse("https://www.test.com/data"),
+            /* absoluteStreamPosition= */ 20,
+            /* length= */ 10,
+            KEY_1),
+        generateData(KEY_1, /* position= */ 20, /* length= */ 10));
+    cache.release();
+  }
+
+  private SegmentedCache getSegmentedCache(long maxSegmentSize) {
+    return new SegmentedCache(cacheDir, new NoOpCacheEvictor(), maxSegmentSize);
+  }
+
+  private static void addCache(SegmentedCache cache, String key, int position, int length)
+      throws Exception {
+    CacheSpan holeSpan = cache.startReadWrite(key, position);
+    File file = cache.startFile(key, position, length);
+    try (FileOutputStream fos = new FileOutputStream(file)) {
+      fos.write(generateData(key, position, length));
+    }
+    cache.commitFile(file, length);
+    cache.releaseHoleSpan(holeSpan);
+  }
+
+  private static void assertCachedDataReadCorrect(CacheSpan cacheSpan) throws IOException {
+    assertThat(cacheSpan.isCached).isTrue();
+    byte[] expected = generateData(cacheSpan.key, (int) cacheSpan.position, (int) cacheSpan.length);
+    byte[] actual = new byte[(int) cacheSpan.length];
+    try (RandomAccessFile file = new RandomAccessFile(cacheSpan.file, "r")) {
+      file.seek(cacheSpan.fileOffset);
+      file.readFully(actual);
+    }
+    assertThat(actual).isEqualTo(expected);
+  }
+
+  /** A {@link DataSource} that runs an action before it's opened for the first time. */
+  private static final class DataSourceWithOpenAction implements DataSource {
+
+    /** An action run before opening the data source. */
+    private interface OpenAction {
+      void run() throws Exception;
+    }
+
+    private final DataSource dataSource;
+    @Nullable private OpenAction openAction;
+
+    public DataSourceWithOpenAction(DataSource dataSource, OpenAction openAction) {
+      this.dataSource = dataSource;
+      this.openAction = openAction;
+    }
+
+    @Override
+    public void addTransferListener(TransferListener transferListener) {
+      dataSource.addTransferListener(transferListener);
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+      @Nullable OpenAction openAction = this.openAction;
+      if (openAction != null) {
+        this.openAction = null;
+        try {
+          openAction.run();
+        } catch (Exception e) {
+          throw new IllegalStateException(e);
+        }
+      }
+      return dataSource.open(dataSpec);
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) throws IOException {
+      return dataSource.read(buffer, offset, readLength);
+    }
+
+    @Nullable
+    @Override
+    public Uri getUri() {
+      return dataSource.getUri();
+    }
+
+    @Override
+    public void close() throws IOException {
+      dataSource.close();
+    }
+  }
+
+  private static byte[] generateData(String key, int position, int length) {
+    byte[] bytes = new byte[length];
+    new Random((long) (key.hashCode() ^ position)).nextBytes(bytes);
+    return bytes;
+  }
+}
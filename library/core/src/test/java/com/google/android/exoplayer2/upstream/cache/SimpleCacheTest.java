@@ -23,6 +23,7 @@ import static org.mockito.Mockito.doAnswer;
 
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.database.DatabaseProvider;
 import com.google.android.exoplayer2.testutil.TestUtil;
 import com.google.android.exoplayer2.upstream.cache.Cache.CacheException;
 import com.google.android.exoplayer2.util.Util;
@@ -33,6 +34,7 @@ import java.io.IOException;
 import java.util.NavigableSet;
 import java.util.Random;
 import java.util.Set;
+import java.util.zip.CRC32;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -225,6 +227,99 @@ public class SimpleCacheTest {
     Util.recursiveDelete(cacheDir2);
   }
 
+  @Test
+  public void testReloadCacheWithTrustedIndex() throws Exception {
+    DatabaseProvider databaseProvider = TestUtil.getInMemoryDatabaseProvider();
+    SimpleCache simpleCache = getTrustedIndexSimpleCache(databaseProvider);
+
+    // Write data.
+    CacheSpan cacheSpan1 = simpleCache.startReadWrite(KEY_1, 0);
+    addCache(simpleCache, KEY_1, 0, 15);
+    addCache(simpleCache, KEY_1, 15, 15);
+    simpleCache.releaseHoleSpan(cacheSpan1);
+    simpleCache.release();
+
+    // Reload the cache from the index.
+    simpleCache = getTrustedIndexSimpleCache(databaseProvider);
+
+    assertThat(simpleCache.getCachedLength(KEY_1, 0, 100)).isEqualTo(30);
+    CacheSpan cacheSpan2 = simpleCache.startReadWrite(KEY_1, 15);
+    assertCachedDataReadCorrect(cacheSpan2);
+  }
+
+  @Test
+  public void testReconcileCacheFilesWithTrustedIndex() throws Exception {
+    DatabaseProvider databaseProvider = TestUtil.getInMemoryDatabaseProvider();
+    SimpleCache simpleCache = getTrustedIndexSimpleCache(databaseProvider);
+    CacheSpan holeSpan = simpleCache.startReadWrite(KEY_1, 0);
+    addCache(simpleCache, KEY_1, 0, 15);
+    addCache(simpleCache, KEY_1, 15, 15);
+    simpleCache.releaseHoleSpan(holeSpan);
+    NavigableSet<CacheSpan> cachedSpans = simpleCache.getCachedSpans(KEY_1);
+    File firstFile = cachedSpans.first().file;
+    int id = SimpleCacheSpan.getCacheFileId(firstFile.getName());
+    simpleCache.release();
+
+    // Delete the file of the first span, add a cache file that's missing from the index and add an
+    // unrecognized file.
+    assertThat(firstFile.delete()).isTrue();
+    File directory = new File(cacheDir, "0");
+    directory.mkdir();
+    File unindexedFile =
+        SimpleCacheSpan.getCacheFile(
+            directory, id, /* position= */ 30, /* timestamp= */ System.currentTimeMillis());
+    try (FileOutputStream fos = new FileOutputStream(unindexedFile)) {
+      fos.write(generateData(KEY_1, 30, 10));
+    }
+    File unrecognizedFile = new File(directory, "unrecognized.exo");
+    assertThat(unrecognizedFile.createNewFile()).isTrue();
+
+    simpleCache = getTrustedIndexSimpleCache(databaseProvider);
+    simpleCache.reconcileCacheFiles();
+
+    assertThat(simpleCache.getCachedLength(KEY_1, 0, 100)).isEqualTo(-15);
+    assertThat(simpleCache.getCachedLength(KEY_1, 15, 100)).isEqualTo(25);
+    assertThat(simpleCache.getCacheSpace()).isEqualTo(25);
+    assertCachedDataReadCorrect(simpleCache.startReadWrite(KEY_1, 30));
+    assertThat(unrecognizedFile.exists()).isFalse();
+
+    // The file that was missing from the index has been added to it.
+    long uid = simpleCache.getUid();
+    simpleCache.release();
+    CacheFileMetadataIndex fileIndex = new CacheFileMetadataIndex(databaseProvider);
+    fileIndex.initialize(uid);
+    CacheFileMetadata metadata = fileIndex.getAll().get(unindexedFile.getName());
+    assertThat(metadata).isNotNull();
+    assertThat(metadata.directory).isEqualTo("0");
+    assertThat(metadata.length).isEqualTo(10);
+  }
+
+  @Test
+  public void testVerifySpansRemovesDamagedFiles() throws Exception {
+    DatabaseProvider databaseProvider = TestUtil.getInMemoryDatabaseProvider();
+    SimpleCache simpleCache = new SimpleCache(cacheDir, new NoOpCacheEvictor(), databaseProvider);
+    CacheSpan holeSpan = simpleCache.startReadWrite(KEY_1, 0);
+    addCacheWithChecksum(simpleCache, KEY_1, 0, 15);
+    addCacheWithChecksum(simpleCache, KEY_1, 15, 15);
+    simpleCache.releaseHoleSpan(holeSpan);
+    // Files committed by the cache instance aren't verified again.
+    assertThat(simpleCache.verifySpans(KEY_1)).isEqualTo(0);
+    File firstFile = simpleCache.getCachedSpans(KEY_1).first().file;
+    simpleCache.release();
+
+    // Damage the data of the first file without changing its length.
+    try (FileOutputStream fos = new FileOutputStream(firstFile)) {
+      fos.write(new byte[15]);
+    }
+    simpleCache = new SimpleCache(cacheDir, new NoOpCacheEvictor(), databaseProvider);
+
+    assertThat(simpleCache.verifySpans(KEY_1)).isEqualTo(15);
+    assertThat(simpleCache.getCachedLength(KEY_1, 0, 100)).isEqualTo(-15);
+    assertThat(simpleCache.getCachedLength(KEY_1, 15, 100)).isEqualTo(15);
+    assertThat(firstFile.exists()).isFalse();
+    assertThat(simpleCache.verifySpans(KEY_1)).isEqualTo(0);
+  }
+
   @Test
   public void testEncryptedIndex() throws Exception {
     byte[] key = Util.getUtf8Bytes("Bar12345Bar12345"); // 128 bit key
@@ -394,6 +489,17 @@ public class SimpleCacheTest {
     return new SimpleCache(cacheDir, new NoOpCacheEvictor());
   }
 
+  private SimpleCache getTrustedIndexSimpleCache(DatabaseProvider databaseProvider) {
+    return new SimpleCache(
+        cacheDir,
+        new NoOpCacheEvictor(),
+        databaseProvider,
+        /* legacyIndexSecretKey= */ null,
+        /* legacyIndexEncrypt= */ false,
+        /* preferLegacyIndex= */ false,
+        /* trustIndex= */ true);
+  }
+
   private SimpleCache getEncryptedSimpleCache(byte[] secretKey) {
     return new SimpleCache(cacheDir, new NoOpCacheEvictor(), secretKey);
   }
@@ -407,6 +513,18 @@ public class SimpleCacheTest {
     simpleCache.commitFile(file, length);
   }
 
+  private static void addCacheWithChecksum(
+      SimpleCache simpleCache, String key, int position, int length) throws IOException {
+    File file = simpleCache.startFile(key, position, length);
+    byte[] data = generateData(key, position, length);
+    try (FileOutputStream fos = new FileOutputStream(file)) {
+      fos.write(data);
+    }
+    CRC32 checksum = new CRC32();
+    checksum.update(data);
+    simpleCache.commitFile(file, length, checksum.getValue());
+  }
+
   private static void assertCachedDataReadCorrect(CacheSpan cacheSpan) throws IOException {
     assertThat(cacheSpan.isCached).isTrue();
     byte[] expected = generateData(cacheSpan.key, (int) cacheSpan.position, (int) cacheSpan.length);
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+/** Unit tests for {@link TinyLfuCacheEvictor}. */
+@RunWith(AndroidJUnit4.class)
+public final class TinyLfuCacheEvictorTest {
+
+  private static final int MAX_BYTES = 100;
+  private static final int SPAN_LENGTH = 10;
+
+  @Mock private Cache cache;
+
+  private CacheEvictor evictor;
+  private Set<CacheSpan> cachedSpans;
+  private long cachedBytes;
+  private long touchTimestamp;
+
+  @Before
+  public void setUp() throws Exception {
+    MockitoAnnotations.initMocks(this);
+    evictor =
+        new TinyLfuCacheEvictor(
+            MAX_BYTES, /* windowFraction= */ 0.1f, /* expectedSpanSize= */ SPAN_LENGTH);
+    cachedSpans = new HashSet<>();
+    doAnswer(
+            invocation -> {
+              CacheSpan span = invocation.getArgument(0);
+              if (cachedSpans.remove(span)) {
+                cachedBytes -= span.length;
+                evictor.onSpanRemoved(cache, span);
+              }
+              return null;
+            })
+        .when(cache)
+        .removeSpan(any());
+    evictor.onCacheInitialized();
+  }
+
+  @Test
+  public void addSpans_keepsCacheWithinMaxBytes() {
+    for (int i = 0; i < 50; i++) {
+      addSpan("key", i * SPAN_LENGTH);
+      assertThat(cachedBytes).isAtMost(MAX_BYTES);
+    }
+  }
+
+  @Test
+  public void addSpansOnce_keepsFrequentlyAccessedSpans() {
+    Set<CacheSpan> frequentlyAccessedSpans = new HashSet<>();
+    for (int i = 0; i < 5; i++) {
+      CacheSpan span = addSpan("frequent", i * SPAN_LENGTH);
+      for (int j = 0; j < 3; j++) {
+        span = touchSpan(span);
+      }
+      frequentlyAccessedSpans.add(span);
+    }
+
+    // Write a large amount of data that's only accessed once.
+    for (int i = 0; i < 50; i++) {
+      addSpan("download", i * SPAN_LENGTH);
+    }
+
+    assertThat(cachedSpans).containsAtLeastElementsIn(frequentlyAccessedSpans);
+    assertThat(cachedBytes).isAtMost(MAX_BYTES);
+  }
+
+  @Test
+  public void addSpan_afterRepeatedMisses_admitsSpan() {
+    for (int i = 0; i < 10; i++) {
+      addSpan("once", i * SPAN_LENGTH);
+    }
+    for (int i = 0; i < 3; i++) {
+      evictor.onStartFile(cache, "popular", /* position= */ 0, SPAN_LENGTH);
+    }
+
+    CacheSpan popularSpan = addSpan("popular", /* position= */ 0);
+    // Push the span out of the window, so that it competes for admission.
+    addSpan("once", 10 * SPAN_LENGTH);
+
+    assertThat(cachedSpans).contains(popularSpan);
+    assertThat(cachedBytes).isAtMost(MAX_BYTES);
+  }
+
+  @Test
+  public void moveSpan_isNotCountedAsAccess() {
+    // The first span is the first candidate for eviction once the cache is full.
+    CacheSpan movedSpan = addSpan("once", /* position= */ 0);
+    for (int i = 1; i < 10; i++) {
+      addSpan("once", i * SPAN_LENGTH);
+    }
+    for (int i = 0; i < 3; i++) {
+      movedSpan = moveSpan(movedSpan);
+    }
+    for (int i = 0; i < 2; i++) {
+      evictor.onStartFile(cache, "popular", /* position= */ 0, SPAN_LENGTH);
+    }
+
+    CacheSpan popularSpan = addSpan("popular", /* position= */ 0);
+    // Push the span out of the window, so that it competes with the moved span for admission.
+    addSpan("once", 10 * SPAN_LENGTH);
+
+    assertThat(cachedSpans).contains(popularSpan);
+    assertThat(cachedSpans).doesNotContain(movedSpan);
+  }
+
+  @Test
+  public void replayWithScans_keepsFrequentlyAccessedSpansUnlikeLeastRecentlyUsed() {
+    int tinyLfuHitCount = replayFrequentAccessesWithScans();
+    evictor = new LeastRecentlyUsedCacheEvictor(MAX_BYTES);
+    cachedSpans.clear();
+    cachedBytes = 0;
+    evictor.onCacheInitialized();
+    int leastRecentlyUsedHitCount = replayFrequentAccessesWithScans();
+
+    // Each scan is as large as the cache, so it evicts all other spans from an LRU cache.
+    assertThat(tinyLfuHitCount).isAtLeast(90);
+    assertThat(leastRecentlyUsedHitCount).isEqualTo(0);
+  }
+
+  /**
+   * Replays 20 rounds, each of which reads the same 5 spans and then 10 spans that are only read
+   * once. Returns how many of the 100 reads of the first 5 spans hit the cache.
+   */
+  private int replayFrequentAccessesWithScans() {
+    int hitCount = 0;
+    long scanPosition = 0;
+    for (int round = 0; round < 20; round++) {
+      for (int i = 0; i < 5; i++) {
+        if (readSpan("frequent", i * SPAN_LENGTH)) {
+          hitCount++;
+        }
+      }
+      for (int i = 0; i < 10; i++) {
+        readSpan("scan", scanPosition);
+        scanPosition += SPAN_LENGTH;
+      }
+    }
+    return hitCount;
+  }
+
+  /** Reads a span, adding it to the cache if it's not cached. Returns whether it was cached. */
+  private boolean readSpan(String key, long position) {
+    @Nullable CacheSpan cachedSpan = null;
+    for (CacheSpan span : cachedSpans) {
+      if (span.key.equals(key) && span.position == position) {
+        cachedSpan = span;
+      }
+    }
+    if (cachedSpan == null) {
+      addSpan(key, position);
+      return false;
+    }
+    touchSpan(cachedSpan);
+    return true;
+  }
+
+  private CacheSpan addSpan(String key, long position) {
+    evictor.onStartFile(cache, key, position, SPAN_LENGTH);
+    CacheSpan span = createSpan(key, position);
+    cachedSpans.add(span);
+    cachedBytes += span.length;
+    evictor.onSpanAdded(cache, span);
+    return span;
+  }
+
+  private CacheSpan touchSpan(CacheSpan span) {
+    CacheSpan newSpan = createSpan(span.key, span.position);
+    cachedSpans.remove(span);
+    cachedSpans.add(newSpan);
+    evictor.onSpanTouched(cache, span, newSpan);
+    return newSpan;
+  }
+
+  private CacheSpan moveSpan(CacheSpan span) {
+    CacheSpan newSpan =
+        new CacheSpan(
+            span.key,
+            span.position,
+            span.length,
+            span.lastTouchTimestamp,
+            new File(span.key + "." + span.position + ".moved"),
+            /* fileOffset= */ 0);
+    cachedSpans.remove(span);
+    cachedSpans.add(newSpan);
+    evictor.onSpanMoved(cache, span, newSpan);
+    return newSpan;
+  }
+
+  private CacheSpan createSpan(String key, long position) {
+    return new CacheSpan(
+        key, position, SPAN_LENGTH, ++touchTimestamp, new File(key + "." + position));
+  }
+}
@@ -58,6 +58,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.checkerframework.checker.nullness.compatqual.NullableType;
@@ -85,6 +86,7 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
   private final IdentityHashMap<ChunkSampleStream<DashChunkSource>, PlayerTrackEmsgHandler>
       trackEmsgHandlerBySampleStream;
   private final EventDispatcher eventDispatcher;
+  @Nullable private final Executor loaderExecutor;
 
   @Nullable private Callback callback;
   private ChunkSampleStream<DashChunkSource>[] sampleStreams;
@@ -108,7 +110,8 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
       LoaderErrorThrower manifestLoaderErrorThrower,
       Allocator allocator,
       CompositeSequenceableLoaderFactory compositeSequenceableLoaderFactory,
-      PlayerEmsgCallback playerEmsgCallback) {
+      PlayerEmsgCallback playerEmsgCallback,
+      @Nullable Executor loaderExecutor) {
     this.id = id;
     this.manifest = manifest;
     this.periodIndex = periodIndex;
@@ -121,6 +124,7 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
     this.manifestLoaderErrorThrower = manifestLoaderErrorThrower;
     this.allocator = allocator;
     this.compositeSequenceableLoaderFactory = compositeSequenceableLoaderFactory;
+    this.loaderExecutor = loaderExecutor;
     playerEmsgHandler = new PlayerEmsgHandler(manifest, playerEmsgCallback, allocator);
     sampleStreams = newSampleStreamArray(0);
     eventSampleStreams = new EventSampleStream[0];
@@ -730,7 +734,8 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
             positionUs,
             drmSessionManager,
             loadErrorHandlingPolicy,
-            eventDispatcher);
+            eventDispatcher,
+            loaderExecutor);
     synchronized (this) {
       // The map is also accessed on the loading thread so synchronize access.
       trackEmsgHandlerBySampleStream.put(stream, trackPlayerEmsgHandler);
@@ -65,6 +65,7 @@ import java.text.SimpleDateFormat;
 import java.util.List;
 import java.util.Locale;
 import java.util.TimeZone;
+import java.util.concurrent.Executor;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -88,6 +89,7 @@ public final class DashMediaSource extends BaseMediaSource {
     private LoadErrorHandlingPolicy loadErrorHandlingPolicy;
     private long livePresentationDelayMs;
     private boolean livePresentationDelayOverridesManifest;
+    @Nullable private Executor loaderExecutor;
     private boolean isCreateCalled;
     @Nullable private Object tag;
 
@@ -236,6 +238,23 @@ public final class DashMediaSource extends BaseMediaSource {
       return this;
     }
 
+    /**
+     * Sets an executor on which the media source loads manifests and media, instead of each loader
+     * creating its own loading thread. Passing the same executor to the sources of several players
+     * bounds the number of loading threads used by those players. The default value is null,
+     * meaning each loader creates its own thread.
+     *
+     * @param loaderExecutor The executor on which to load manifests and media, or null for each
+     *     loader to create its own thread. See {@link Loader#Loader(String, Executor)}.
+     * @return This factory, for convenience.
+     * @throws IllegalStateException If one of the {@code create} methods has already been called.
+     */
+    public Factory setLoaderExecutor(@Nullable Executor loaderExecutor) {
+      Assertions.checkState(!isCreateCalled);
+      this.loaderExecutor = loaderExecutor;
+      return this;
+    }
+
     /**
      * Returns a new {@link DashMediaSource} using the current parameters and the specified
      * sideloaded manifest.
@@ -261,6 +280,7 @@ public final class DashMediaSource extends BaseMediaSource {
           loadErrorHandlingPolicy,
           livePresentationDelayMs,
           livePresentationDelayOverridesManifest,
+          loaderExecutor,
           tag);
     }
 
@@ -337,6 +357,7 @@ public final class DashMediaSource extends BaseMediaSource {
           loadErrorHandlingPolicy,
           livePresentationDelayMs,
           livePresentationDelayOverridesManifest,
+          loaderExecutor,
           tag);
     }
 
@@ -395,6 +416,7 @@ public final class DashMediaSource extends BaseMediaSource {
   private final Runnable simulateManifestRefreshRunnable;
   private final PlayerEmsgCallback playerEmsgCallback;
   private final LoaderErrorThrower manifestLoadErrorThrower;
+  @Nullable private final Executor loaderExecutor;
   @Nullable private final Object tag;
 
   private DataSource dataSource;
@@ -469,6 +491,7 @@ public final class DashMediaSource extends BaseMediaSource {
         new DefaultLoadErrorHandlingPolicy(minLoadableRetryCount),
         DEFAULT_LIVE_PRESENTATION_DELAY_MS,
         /* livePresentationDelayOverridesManifest= */ false,
+        /* loaderExecutor= */ null,
         /* tag= */ null);
     if (eventHandler != null && eventListener != null) {
       addEventListener(eventHandler, eventListener);
@@ -585,6 +608,7 @@ public final class DashMediaSource extends BaseMediaSource {
             ? DEFAULT_LIVE_PRESENTATION_DELAY_MS
             : livePresentationDelayMs,
         livePresentationDelayMs != DEFAULT_LIVE_PRESENTATION_DELAY_PREFER_MANIFEST_MS,
+        /* loaderExecutor= */ null,
         /* tag= */ null);
     if (eventHandler != null && eventListener != null) {
       addEventListener(eventHandler, eventListener);
@@ -602,6 +626,7 @@ public final class DashMediaSource extends BaseMediaSource {
       LoadErrorHandlingPolicy loadErrorHandlingPolicy,
       long livePresentationDelayMs,
       boolean livePresentationDelayOverridesManifest,
+      @Nullable Executor loaderExecutor,
       @Nullable Object tag) {
     this.initialManifestUri = manifestUri;
     this.manifest = manifest;
@@ -614,6 +639,7 @@ public final class DashMediaSource extends BaseMediaSource {
     this.livePresentationDelayMs = livePresentationDelayMs;
     this.livePresentationDelayOverridesManifest = livePresentationDelayOverridesManifest;
     this.compositeSequenceableLoaderFactory = compositeSequenceableLoaderFactory;
+    this.loaderExecutor = loaderExecutor;
     this.tag = tag;
     sideloadedManifest = manifest != null;
     manifestEventDispatcher = createEventDispatcher(/* mediaPeriodId= */ null);
@@ -663,7 +689,7 @@ public final class DashMediaSource extends BaseMediaSource {
       processManifest(false);
     } else {
       dataSource = manifestDataSourceFactory.createDataSource();
-      loader = new Loader("Loader:DashMediaSource");
+      loader = new Loader("Loader:DashMediaSource", loaderExecutor);
       handler = new Handler();
       startLoadingManifest();
     }
@@ -694,7 +720,8 @@ public final class DashMediaSource extends BaseMediaSource {
             manifestLoadErrorThrower,
             allocator,
             compositeSequenceableLoaderFactory,
-            playerEmsgCallback);
+            playerEmsgCallback,
+            loaderExecutor);
     periodsById.put(mediaPeriod.id, mediaPeriod);
     return mediaPeriod;
   }
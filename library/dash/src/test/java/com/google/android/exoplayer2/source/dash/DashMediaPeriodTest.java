@@ -128,7 +128,8 @@ public final class DashMediaPeriodTest {
                 mock(LoaderErrorThrower.class),
                 mock(Allocator.class),
                 mock(CompositeSequenceableLoaderFactory.class),
-                mock(PlayerEmsgCallback.class));
+                mock(PlayerEmsgCallback.class),
+                /* loaderExecutor= */ null);
 
     // Ignore embedded metadata as we don't want to select primary group just to get embedded track.
     MediaPeriodAsserts.assertGetStreamKeysAndManifestFilterIntegration(
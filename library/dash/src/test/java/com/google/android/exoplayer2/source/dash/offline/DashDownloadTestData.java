@@ -89,6 +89,25 @@ import java.nio.charset.Charset;
               + "</MPD>")
           .getBytes(Charset.forName(C.UTF8_NAME));
 
+  byte[] TEST_MPD_SINGLE_FILE =
+      ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+              + "<MPD xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" type=\"static\" "
+              + "    mediaPresentationDuration=\"PT15S\">\n"
+              + "    <Period>\n"
+              + "        <AdaptationSet>\n"
+              + "            <Representation>\n"
+              + "                <SegmentList duration=\"5\">\n"
+              + "                    <Initialization range=\"0-9\" sourceURL=\"audio_data\" />\n"
+              + "                    <SegmentURL media=\"audio_data\" mediaRange=\"10-13\" />\n"
+              + "                    <SegmentURL media=\"audio_data\" mediaRange=\"14-18\" />\n"
+              + "                    <SegmentURL media=\"audio_data\" mediaRange=\"19-24\" />\n"
+              + "                </SegmentList>\n"
+              + "            </Representation>\n"
+              + "        </AdaptationSet>\n"
+              + "    </Period>\n"
+              + "</MPD>")
+          .getBytes(Charset.forName(C.UTF8_NAME));
+
   byte[] TEST_MPD_NO_INDEX =
       ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
               + "<MPD xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" type=\"dynamic\">\n"
@@ -17,6 +17,7 @@ package com.google.android.exoplayer2.source.dash.offline;
 
 import static com.google.android.exoplayer2.source.dash.offline.DashDownloadTestData.TEST_MPD;
 import static com.google.android.exoplayer2.source.dash.offline.DashDownloadTestData.TEST_MPD_NO_INDEX;
+import static com.google.android.exoplayer2.source.dash.offline.DashDownloadTestData.TEST_MPD_SINGLE_FILE;
 import static com.google.android.exoplayer2.source.dash.offline.DashDownloadTestData.TEST_MPD_URI;
 import static com.google.android.exoplayer2.testutil.CacheAsserts.assertCacheEmpty;
 import static com.google.android.exoplayer2.testutil.CacheAsserts.assertCachedData;
@@ -54,6 +55,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.AdditionalAnswers;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
@@ -235,6 +237,27 @@ public class DashDownloaderTest {
     assertThat(openedDataSpecs[7].uri.getPath()).isEqualTo("period_2_segment_3");
   }
 
+  @Test
+  public void testDownloadSingleFileRepresentation_verifiesFileOnce() throws Exception {
+    FakeDataSet fakeDataSet =
+        new FakeDataSet()
+            .setData(TEST_MPD_URI, TEST_MPD_SINGLE_FILE)
+            .setRandomData("audio_data", 25);
+    Cache delegatingCache = mock(Cache.class, AdditionalAnswers.delegatesTo(cache));
+
+    DashDownloader dashDownloader =
+        new DashDownloader(
+            TEST_MPD_URI,
+            keysList(new StreamKey(0, 0, 0)),
+            new DownloaderConstructorHelper(
+                delegatingCache, new Factory().setFakeDataSet(fakeDataSet)));
+    dashDownloader.download(progressListener);
+
+    // The initialization data and the three segments are all stored in the same file.
+    Mockito.verify(delegatingCache).verifySpans("audio_data");
+    progressListener.assertBytesDownloaded(25);
+  }
+
   @Test
   public void testDownloadRepresentationFailure() throws Exception {
     FakeDataSet fakeDataSet =
@@ -288,6 +311,72 @@ public class DashDownloaderTest {
     progressListener.assertBytesDownloaded(10 + 4 + 5 + 6);
   }
 
+  @Test
+  public void testPrefetch() throws Exception {
+    FakeDataSet fakeDataSet =
+        new FakeDataSet()
+            .setData(TEST_MPD_URI, TEST_MPD)
+            .setRandomData("audio_init_data", 10)
+            .setRandomData("audio_segment_1", 4)
+            .setRandomData("audio_segment_2", 5)
+            .setRandomData("audio_segment_3", 6)
+            .setRandomData("text_segment_1", 1)
+            .setRandomData("text_segment_2", 2)
+            .setRandomData("text_segment_3", 3);
+
+    DashDownloader dashDownloader =
+        getDashDownloader(fakeDataSet, new StreamKey(0, 0, 0), new StreamKey(0, 1, 0));
+    long bytesLoaded = dashDownloader.prefetch(/* durationUs= */ 6_000_000, Long.MAX_VALUE);
+
+    assertThat(bytesLoaded).isEqualTo(10 + 4 + 1 + 5);
+    assertCachedData(
+        cache,
+        new RequestSet(fakeDataSet)
+            .subset(
+                TEST_MPD_URI,
+                Uri.parse("audio_init_data"),
+                Uri.parse("audio_segment_1"),
+                Uri.parse("text_segment_1"),
+                Uri.parse("audio_segment_2"))
+            .useBoundedDataSpecFor("audio_init_data"));
+  }
+
+  @Test
+  public void testPrefetchWithByteBudget() throws Exception {
+    FakeDataSet fakeDataSet =
+        new FakeDataSet()
+            .setData(TEST_MPD_URI, TEST_MPD)
+            .setRandomData("audio_init_data", 10)
+            .setRandomData("audio_segment_1", 4)
+            .setRandomData("audio_segment_2", 5)
+            .setRandomData("audio_segment_3", 6);
+
+    DashDownloader dashDownloader = getDashDownloader(fakeDataSet, new StreamKey(0, 0, 0));
+    long bytesLoaded = dashDownloader.prefetch(/* durationUs= */ 31_000_000, /* maxBytes= */ 12);
+
+    // The first segment, whose length is unknown, is only loaded up to the budget.
+    assertThat(bytesLoaded).isEqualTo(12);
+    assertThat(cache.getCachedLength("audio_segment_1", /* position= */ 0, /* length= */ 4))
+        .isEqualTo(2);
+    assertThat(cache.getCachedSpans("audio_segment_2")).isEmpty();
+  }
+
+  @Test
+  public void testPrefetchWithoutStreamKeys_onlyCachesManifest() throws Exception {
+    FakeDataSet fakeDataSet =
+        new FakeDataSet()
+            .setData(TEST_MPD_URI, TEST_MPD)
+            .setRandomData("audio_init_data", 10)
+            .setRandomData("audio_segment_1", 4)
+            .setRandomData("text_segment_1", 1);
+
+    DashDownloader dashDownloader = getDashDownloader(fakeDataSet);
+    long bytesLoaded = dashDownloader.prefetch(/* durationUs= */ 6_000_000, Long.MAX_VALUE);
+
+    assertThat(bytesLoaded).isEqualTo(0);
+    assertCachedData(cache, new RequestSet(fakeDataSet).subset(TEST_MPD_URI));
+  }
+
   @Test
   public void testRemove() throws Exception {
     FakeDataSet fakeDataSet =
@@ -145,7 +145,7 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
               ? previousChunk.extractor
               : null;
     } else {
-      id3Decoder = new Id3Decoder();
+      id3Decoder = new Id3Decoder(PRIV_FRAME_PREDICATE);
       scratchId3Data = new ParsableByteArray(Id3Decoder.ID3_HEADER_LENGTH);
       shouldSpliceIn = false;
     }
@@ -179,6 +179,9 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
 
   public static final String PRIV_TIMESTAMP_FRAME_OWNER =
       "com.apple.streaming.transportStreamTimestamp";
+  /** Predicate that matches the PRIV frames from which the segment timestamp is read. */
+  private static final Id3Decoder.FramePredicate PRIV_FRAME_PREDICATE =
+      Id3Decoder.createFramePredicate(PrivFrame.ID);
   private static final PositionHolder DUMMY_POSITION_HOLDER = new PositionHolder();
 
   private static final AtomicInteger uidSource = new AtomicInteger();
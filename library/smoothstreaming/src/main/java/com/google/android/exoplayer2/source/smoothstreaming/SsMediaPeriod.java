@@ -38,6 +38,7 @@ import com.google.android.exoplayer2.upstream.TransferListener;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 import org.checkerframework.checker.nullness.compatqual.NullableType;
 
 /** A SmoothStreaming {@link MediaPeriod}. */
@@ -53,6 +54,7 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
   private final Allocator allocator;
   private final TrackGroupArray trackGroups;
   private final CompositeSequenceableLoaderFactory compositeSequenceableLoaderFactory;
+  @Nullable private final Executor loaderExecutor;
 
   @Nullable private Callback callback;
   private SsManifest manifest;
@@ -69,7 +71,8 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
       LoadErrorHandlingPolicy loadErrorHandlingPolicy,
       EventDispatcher eventDispatcher,
       LoaderErrorThrower manifestLoaderErrorThrower,
-      Allocator allocator) {
+      Allocator allocator,
+      @Nullable Executor loaderExecutor) {
     this.manifest = manifest;
     this.chunkSourceFactory = chunkSourceFactory;
     this.transferListener = transferListener;
@@ -79,6 +82,7 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
     this.eventDispatcher = eventDispatcher;
     this.allocator = allocator;
     this.compositeSequenceableLoaderFactory = compositeSequenceableLoaderFactory;
+    this.loaderExecutor = loaderExecutor;
     trackGroups = buildTrackGroups(manifest, drmSessionManager);
     sampleStreams = newSampleStreamArray(0);
     compositeSequenceableLoader =
@@ -255,7 +259,8 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
         positionUs,
         drmSessionManager,
         loadErrorHandlingPolicy,
-        eventDispatcher);
+        eventDispatcher,
+        loaderExecutor);
   }
 
   private static TrackGroupArray buildTrackGroups(
@@ -53,6 +53,7 @@ import com.google.android.exoplayer2.util.Assertions;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /** A SmoothStreaming {@link MediaSource}. */
 public final class SsMediaSource extends BaseMediaSource
@@ -74,6 +75,7 @@ public final class SsMediaSource extends BaseMediaSource
     private DrmSessionManager<?> drmSessionManager;
     private LoadErrorHandlingPolicy loadErrorHandlingPolicy;
     private long livePresentationDelayMs;
+    @Nullable private Executor loaderExecutor;
     private boolean isCreateCalled;
     @Nullable private Object tag;
 
@@ -203,6 +205,23 @@ public final class SsMediaSource extends BaseMediaSource
       return this;
     }
 
+    /**
+     * Sets an executor on which the media source loads manifests and media, instead of each loader
+     * creating its own loading thread. Passing the same executor to the sources of several players
+     * bounds the number of loading threads used by those players. The default value is null,
+     * meaning each loader creates its own thread.
+     *
+     * @param loaderExecutor The executor on which to load manifests and media, or null for each
+     *     loader to create its own thread. See {@link Loader#Loader(String, Executor)}.
+     * @return This factory, for convenience.
+     * @throws IllegalStateException If one of the {@code create} methods has already been called.
+     */
+    public Factory setLoaderExecutor(@Nullable Executor loaderExecutor) {
+      Assertions.checkState(!isCreateCalled);
+      this.loaderExecutor = loaderExecutor;
+      return this;
+    }
+
     /**
      * Returns a new {@link SsMediaSource} using the current parameters and the specified sideloaded
      * manifest.
@@ -227,6 +246,7 @@ public final class SsMediaSource extends BaseMediaSource
           drmSessionManager,
           loadErrorHandlingPolicy,
           livePresentationDelayMs,
+          loaderExecutor,
           tag);
     }
 
@@ -302,6 +322,7 @@ public final class SsMediaSource extends BaseMediaSource
           drmSessionManager,
           loadErrorHandlingPolicy,
           livePresentationDelayMs,
+          loaderExecutor,
           tag);
     }
 
@@ -345,6 +366,7 @@ public final class SsMediaSource extends BaseMediaSource
   private final EventDispatcher manifestEventDispatcher;
   private final ParsingLoadable.Parser<? extends SsManifest> manifestParser;
   private final ArrayList<SsMediaPeriod> mediaPeriods;
+  @Nullable private final Executor loaderExecutor;
   @Nullable private final Object tag;
 
   private DataSource manifestDataSource;
@@ -408,6 +430,7 @@ public final class SsMediaSource extends BaseMediaSource
         DrmSessionManager.getDummyDrmSessionManager(),
         new DefaultLoadErrorHandlingPolicy(minLoadableRetryCount),
         DEFAULT_LIVE_PRESENTATION_DELAY_MS,
+        /* loaderExecutor= */ null,
         /* tag= */ null);
     if (eventHandler != null && eventListener != null) {
       addEventListener(eventHandler, eventListener);
@@ -509,6 +532,7 @@ public final class SsMediaSource extends BaseMediaSource
         DrmSessionManager.getDummyDrmSessionManager(),
         new DefaultLoadErrorHandlingPolicy(minLoadableRetryCount),
         livePresentationDelayMs,
+        /* loaderExecutor= */ null,
         /* tag= */ null);
     if (eventHandler != null && eventListener != null) {
       addEventListener(eventHandler, eventListener);
@@ -525,6 +549,7 @@ public final class SsMediaSource extends BaseMediaSource
       DrmSessionManager<?> drmSessionManager,
       LoadErrorHandlingPolicy loadErrorHandlingPolicy,
       long livePresentationDelayMs,
+      @Nullable Executor loaderExecutor,
       @Nullable Object tag) {
     Assertions.checkState(manifest == null || !manifest.isLive);
     this.manifest = manifest;
@@ -537,6 +562,7 @@ public final class SsMediaSource extends BaseMediaSource
     this.loadErrorHandlingPolicy = loadErrorHandlingPolicy;
     this.livePresentationDelayMs = livePresentationDelayMs;
     this.manifestEventDispatcher = createEventDispatcher(/* mediaPeriodId= */ null);
+    this.loaderExecutor = loaderExecutor;
     this.tag = tag;
     sideloadedManifest = manifest != null;
     mediaPeriods = new ArrayList<>();
@@ -559,7 +585,7 @@ public final class SsMediaSource extends BaseMediaSource
       processManifest();
     } else {
       manifestDataSource = manifestDataSourceFactory.createDataSource();
-      manifestLoader = new Loader("Loader:Manifest");
+      manifestLoader = new Loader("Loader:Manifest", loaderExecutor);
       manifestLoaderErrorThrower = manifestLoader;
       manifestRefreshHandler = new Handler();
       startLoadingManifest();
@@ -584,7 +610,8 @@ public final class SsMediaSource extends BaseMediaSource
             loadErrorHandlingPolicy,
             eventDispatcher,
             manifestLoaderErrorThrower,
-            allocator);
+            allocator,
+            loaderExecutor);
     mediaPeriods.add(period);
     return period;
   }
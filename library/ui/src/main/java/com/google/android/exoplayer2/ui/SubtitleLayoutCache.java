@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.ui;
+
+import android.graphics.Typeface;
+import android.text.Layout.Alignment;
+import android.text.StaticLayout;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.util.Util;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of the most recently used text layouts of subtitle cues, shared by the {@link
+ * SubtitlePainter}s of a {@link SubtitleView}.
+ *
+ * <p>Measuring text is the most expensive part of drawing a text cue. Caching the layouts avoids
+ * measuring the same text again when it moves between painters, for example when CEA-608 captions
+ * roll up, or when cues are redrawn with unchanged styling.
+ *
+ * <p>Each cached layout has its own {@link android.text.TextPaint}, which must be used to draw it.
+ */
+/* package */ final class SubtitleLayoutCache {
+
+  /** The default maximum number of cached layouts. */
+  public static final int DEFAULT_MAX_SIZE = 32;
+
+  /** Identifies a text layout by everything that affects how the text is measured. */
+  public static final class Key {
+
+    private final CharSequence text;
+    private final Alignment textAlignment;
+    private final int width;
+    private final float textSizePx;
+    private final float cueTextSizePx;
+    @Nullable private final Typeface typeface;
+    private final boolean applyEmbeddedStyles;
+    private final boolean applyEmbeddedFontSizes;
+    private final int backgroundColor;
+    private final int hashCode;
+
+    /**
+     * @param text The unstyled cue text.
+     * @param textAlignment The alignment of the text.
+     * @param width The width of the layout, in pixels.
+     * @param textSizePx The default text size, in pixels.
+     * @param cueTextSizePx The embedded text size of the cue, in pixels.
+     * @param typeface The typeface, or {@code null} for the default typeface.
+     * @param applyEmbeddedStyles Whether styling embedded within the cue is applied.
+     * @param applyEmbeddedFontSizes Whether font sizes embedded within the cue are applied.
+     * @param backgroundColor The background color of the text.
+     */
+    public Key(
+        CharSequence text,
+        Alignment textAlignment,
+        int width,
+        float textSizePx,
+        float cueTextSizePx,
+        @Nullable Typeface typeface,
+        boolean applyEmbeddedStyles,
+        boolean applyEmbeddedFontSizes,
+        int backgroundColor) {
+      this.text = text;
+      this.textAlignment = textAlignment;
+      this.width = width;
+      this.textSizePx = textSizePx;
+      this.cueTextSizePx = cueTextSizePx;
+      this.typeface = typeface;
+      this.applyEmbeddedStyles = applyEmbeddedStyles;
+      this.applyEmbeddedFontSizes = applyEmbeddedFontSizes;
+      this.backgroundColor = backgroundColor;
+      int result = text.hashCode();
+      result = 31 * result + textAlignment.hashCode();
+      result = 31 * result + width;
+      result = 31 * result + Float.floatToIntBits(textSizePx);
+      result = 31 * result + Float.floatToIntBits(cueTextSizePx);
+      result = 31 * result + (typeface != null ? typeface.hashCode() : 0);
+      result = 31 * result + (applyEmbeddedStyles ? 1 : 0);
+      result = 31 * result + (applyEmbeddedFontSizes ? 1 : 0);
+      result = 31 * result + backgroundColor;
+      hashCode = result;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (obj == null || getClass() != obj.getClass()) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return hashCode == other.hashCode
+          && width == other.width
+          && textSizePx == other.textSizePx
+          && cueTextSizePx == other.cueTextSizePx
+          && applyEmbeddedStyles == other.applyEmbeddedStyles
+          && applyEmbeddedFontSizes == other.applyEmbeddedFontSizes
+          && backgroundColor == other.backgroundColor
+          && textAlignment == other.textAlignment
+          && Util.areEqual(typeface, other.typeface)
+          && text.equals(other.text);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  private final LinkedHashMap<Key, StaticLayout> layouts;
+
+  /** Creates a cache holding up to {@link #DEFAULT_MAX_SIZE} layouts. */
+  public SubtitleLayoutCache() {
+    this(DEFAULT_MAX_SIZE);
+  }
+
+  /** @param maxSize The maximum number of cached layouts. */
+  public SubtitleLayoutCache(int maxSize) {
+    layouts =
+        new LinkedHashMap<Key, StaticLayout>(
+            /* initialCapacity= */ maxSize + 1, /* loadFactor= */ 1, /* accessOrder= */ true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Key, StaticLayout> eldest) {
+            return size() > maxSize;
+          }
+        };
+  }
+
+  /** Returns the cached layout for the given key, or {@code null} if there is none. */
+  @Nullable
+  public StaticLayout get(Key key) {
+    return layouts.get(key);
+  }
+
+  /** Caches a layout, evicting the least recently used layout if the cache is full. */
+  public void put(Key key, StaticLayout layout) {
+    layouts.put(key, layout);
+  }
+
+  /** Returns the number of cached layouts. */
+  public int size() {
+    return layouts.size();
+  }
+
+  /** Removes all cached layouts. */
+  public void clear() {
+    layouts.clear();
+  }
+}
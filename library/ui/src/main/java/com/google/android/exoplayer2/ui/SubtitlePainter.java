@@ -65,6 +65,7 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
 
   private final TextPaint textPaint;
   private final Paint paint;
+  private final SubtitleLayoutCache layoutCache;
 
   // Previous input variables.
   @Nullable private CharSequence cueText;
@@ -97,14 +98,30 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
   private int parentBottom;
 
   // Derived drawing variables.
-  private @MonotonicNonNull StaticLayout textLayout;
+  @Nullable private StaticLayout textLayout;
   private int textLeft;
   private int textTop;
   private int textPaddingX;
   private @MonotonicNonNull Rect bitmapRect;
+  /**
+   * The styled cue text, or null if it has not been computed for the current cue. Only computed if
+   * a layout of the text is not cached.
+   */
+  @Nullable private CharSequence styledCueText;
+  /**
+   * The text layout rendered into a bitmap, or null if the text layout has not yet been drawn more
+   * than once.
+   */
+  @Nullable private Bitmap renderedTextBitmap;
+  private int renderedTextMargin;
 
+  /**
+   * @param context The context.
+   * @param layoutCache The cache of text layouts, which may be shared with other painters.
+   */
   @SuppressWarnings("ResourceType")
-  public SubtitlePainter(Context context) {
+  public SubtitlePainter(Context context, SubtitleLayoutCache layoutCache) {
+    this.layoutCache = layoutCache;
     int[] viewAttr = {android.R.attr.lineSpacingExtra, android.R.attr.lineSpacingMultiplier};
     TypedArray styledAttributes = context.obtainStyledAttributes(null, viewAttr, 0, 0);
     spacingAdd = styledAttributes.getDimensionPixelSize(0, 0);
@@ -132,7 +149,8 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
    *
    * <p>A call to this method is able to use cached results of calculations made during the previous
    * call, and so an instance of this class is able to optimize repeated calls to this method in
-   * which the same parameters are passed.
+   * which the same parameters are passed. When a text cue is drawn again with the same parameters,
+   * it is rendered into a bitmap once, and the bitmap is drawn from then on.
    *
    * @param cue The cue to draw.
    * @param applyEmbeddedStyles Whether styling embedded within the cue should be applied.
@@ -198,7 +216,7 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
         && this.parentRight == cueBoxRight
         && this.parentBottom == cueBoxBottom) {
       // We can use the cached layout.
-      drawLayout(canvas, isTextCue);
+      drawLayout(canvas, isTextCue, /* isRedraw= */ true);
       return;
     }
 
@@ -235,12 +253,15 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
       Assertions.checkNotNull(cueBitmap);
       setupBitmapLayout();
     }
-    drawLayout(canvas, isTextCue);
+    drawLayout(canvas, isTextCue, /* isRedraw= */ false);
   }
 
   @RequiresNonNull("cueText")
   private void setupTextLayout() {
-    CharSequence cueText = this.cueText;
+    // The previously drawn layout is no longer valid.
+    textLayout = null;
+    styledCueText = null;
+    renderedTextBitmap = null;
     int parentWidth = parentRight - parentLeft;
     int parentHeight = parentBottom - parentTop;
 
@@ -256,46 +277,8 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
       return;
     }
 
-    // Remove embedded styling or font size if requested.
-    if (!applyEmbeddedStyles) {
-      cueText = cueText.toString(); // Equivalent to erasing all spans.
-    } else if (!applyEmbeddedFontSizes) {
-      SpannableStringBuilder newCueText = new SpannableStringBuilder(cueText);
-      int cueLength = newCueText.length();
-      AbsoluteSizeSpan[] absSpans = newCueText.getSpans(0, cueLength, AbsoluteSizeSpan.class);
-      RelativeSizeSpan[] relSpans = newCueText.getSpans(0, cueLength, RelativeSizeSpan.class);
-      for (AbsoluteSizeSpan absSpan : absSpans) {
-        newCueText.removeSpan(absSpan);
-      }
-      for (RelativeSizeSpan relSpan : relSpans) {
-        newCueText.removeSpan(relSpan);
-      }
-      cueText = newCueText;
-    } else {
-      // Apply embedded styles & font size.
-      if (cueTextSizePx > 0) {
-        // Use a SpannableStringBuilder encompassing the whole cue text to apply the default
-        // cueTextSizePx.
-        SpannableStringBuilder newCueText = new SpannableStringBuilder(cueText);
-        newCueText.setSpan(
-            new AbsoluteSizeSpan((int) cueTextSizePx),
-            /* start= */ 0,
-            /* end= */ newCueText.length(),
-            Spanned.SPAN_PRIORITY);
-        cueText = newCueText;
-      }
-    }
-
-    if (Color.alpha(backgroundColor) > 0) {
-      SpannableStringBuilder newCueText = new SpannableStringBuilder(cueText);
-      newCueText.setSpan(
-          new BackgroundColorSpan(backgroundColor), 0, newCueText.length(), Spanned.SPAN_PRIORITY);
-      cueText = newCueText;
-    }
-
     Alignment textAlignment = cueTextAlignment == null ? Alignment.ALIGN_CENTER : cueTextAlignment;
-    textLayout = new StaticLayout(cueText, textPaint, availableWidth, textAlignment, spacingMult,
-        spacingAdd, true);
+    StaticLayout textLayout = getTextLayout(availableWidth, textAlignment);
     int textHeight = textLayout.getHeight();
     int textWidth = 0;
     int lineCount = textLayout.getLineCount();
@@ -364,13 +347,95 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
     }
 
     // Update the derived drawing variables.
-    this.textLayout = new StaticLayout(cueText, textPaint, textWidth, textAlignment, spacingMult,
-        spacingAdd, true);
+    this.textLayout =
+        textWidth == availableWidth ? textLayout : getTextLayout(textWidth, textAlignment);
     this.textLeft = textLeft;
     this.textTop = textTop;
     this.textPaddingX = textPaddingX;
   }
 
+  /**
+   * Returns a layout of the cue text with the given width, from the layout cache if possible.
+   * {@link #textPaint} must have the text size and typeface of the cue.
+   */
+  @RequiresNonNull("cueText")
+  private StaticLayout getTextLayout(int width, Alignment textAlignment) {
+    SubtitleLayoutCache.Key key =
+        new SubtitleLayoutCache.Key(
+            cueText,
+            textAlignment,
+            width,
+            defaultTextSizePx,
+            cueTextSizePx,
+            textPaint.getTypeface(),
+            applyEmbeddedStyles,
+            applyEmbeddedFontSizes,
+            backgroundColor);
+    @Nullable StaticLayout layout = layoutCache.get(key);
+    if (layout == null) {
+      @Nullable CharSequence styledCueText = this.styledCueText;
+      if (styledCueText == null) {
+        styledCueText = getStyledCueText(cueText);
+        this.styledCueText = styledCueText;
+      }
+      // The layout draws with its own paint, so that it is unaffected by later changes to the
+      // text size and typeface of this painter.
+      layout =
+          new StaticLayout(
+              styledCueText,
+              new TextPaint(textPaint),
+              width,
+              textAlignment,
+              spacingMult,
+              spacingAdd,
+              /* includepad= */ true);
+      layoutCache.put(key, layout);
+    }
+    return layout;
+  }
+
+  /** Returns the cue text with the embedded styling and the background color applied. */
+  private CharSequence getStyledCueText(CharSequence cueText) {
+    // Remove embedded styling or font size if requested.
+    if (!applyEmbeddedStyles) {
+      cueText = cueText.toString(); // Equivalent to erasing all spans.
+    } else if (!applyEmbeddedFontSizes) {
+      SpannableStringBuilder newCueText = new SpannableStringBuilder(cueText);
+      int cueLength = newCueText.length();
+      AbsoluteSizeSpan[] absSpans = newCueText.getSpans(0, cueLength, AbsoluteSizeSpan.class);
+      RelativeSizeSpan[] relSpans = newCueText.getSpans(0, cueLength, RelativeSizeSpan.class);
+      for (AbsoluteSizeSpan absSpan : absSpans) {
+        newCueText.removeSpan(absSpan);
+      }
+      for (RelativeSizeSpan relSpan : relSpans) {
+        newCueText.removeSpan(relSpan);
+      }
+      cueText = newCueText;
+    } else {
+      // Apply embedded styles & font size.
+      if (cueTextSizePx > 0) {
+        // Use a SpannableStringBuilder encompassing the whole cue text to apply the default
+        // cueTextSizePx.
+        SpannableStringBuilder newCueText = new SpannableStringBuilder(cueText);
+        newCueText.setSpan(
+            new AbsoluteSizeSpan((int) cueTextSizePx),
+            /* start= */ 0,
+            /* end= */ newCueText.length(),
+            Spanned.SPAN_PRIORITY);
+        cueText = newCueText;
+      }
+    }
+
+    if (Color.alpha(backgroundColor) > 0) {
+      SpannableStringBuilder newCueText = new SpannableStringBuilder(cueText);
+      newCueText.setSpan(
+          new BackgroundColorSpan(backgroundColor), 0, newCueText.length(), Spanned.SPAN_PRIORITY);
+      cueText = newCueText;
+    }
+
+    return cueText;
+  }
+
   @RequiresNonNull("cueBitmap")
   private void setupBitmapLayout() {
     Bitmap cueBitmap = this.cueBitmap;
@@ -394,9 +459,9 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
     bitmapRect = new Rect(x, y, x + width, y + height);
   }
 
-  private void drawLayout(Canvas canvas, boolean isTextCue) {
+  private void drawLayout(Canvas canvas, boolean isTextCue, boolean isRedraw) {
     if (isTextCue) {
-      drawTextLayout(canvas);
+      drawTextLayout(canvas, isRedraw);
     } else {
       Assertions.checkNotNull(bitmapRect);
       Assertions.checkNotNull(cueBitmap);
@@ -404,16 +469,52 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
     }
   }
 
-  private void drawTextLayout(Canvas canvas) {
-    StaticLayout layout = textLayout;
+  private void drawTextLayout(Canvas canvas, boolean isRedraw) {
+    @Nullable StaticLayout layout = textLayout;
     if (layout == null) {
       // Nothing to draw.
       return;
     }
 
+    if (isRedraw) {
+      // The same layout is drawn repeatedly, so render it once and draw the rendered bitmap.
+      @Nullable Bitmap renderedTextBitmap = this.renderedTextBitmap;
+      if (renderedTextBitmap == null) {
+        renderedTextBitmap = renderTextLayout(layout);
+        this.renderedTextBitmap = renderedTextBitmap;
+      }
+      canvas.drawBitmap(
+          renderedTextBitmap,
+          /* left= */ textLeft - textPaddingX - renderedTextMargin,
+          /* top= */ textTop - renderedTextMargin,
+          /* paint= */ null);
+      return;
+    }
+
     int saveCount = canvas.save();
     canvas.translate(textLeft, textTop);
+    drawTextLayout(canvas, layout);
+    canvas.restoreToCount(saveCount);
+  }
+
+  /** Renders a text layout, including its window and edges, into a new bitmap. */
+  private Bitmap renderTextLayout(StaticLayout layout) {
+    // Leave room for the text edges, which may extend beyond the window.
+    renderedTextMargin = (int) Math.ceil(outlineWidth + shadowRadius + shadowOffset);
+    Bitmap bitmap =
+        Bitmap.createBitmap(
+            layout.getWidth() + 2 * (textPaddingX + renderedTextMargin),
+            layout.getHeight() + 2 * renderedTextMargin,
+            Bitmap.Config.ARGB_8888);
+    Canvas bitmapCanvas = new Canvas(bitmap);
+    bitmapCanvas.translate(textPaddingX + renderedTextMargin, renderedTextMargin);
+    drawTextLayout(bitmapCanvas, layout);
+    return bitmap;
+  }
 
+  /** Draws a text layout, with the canvas translated to the top left of the text. */
+  private void drawTextLayout(Canvas canvas, StaticLayout layout) {
+    TextPaint layoutPaint = layout.getPaint();
     if (Color.alpha(windowColor) > 0) {
       paint.setColor(windowColor);
       canvas.drawRect(-textPaddingX, 0, layout.getWidth() + textPaddingX, layout.getHeight(),
@@ -421,32 +522,30 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
     }
 
     if (edgeType == CaptionStyleCompat.EDGE_TYPE_OUTLINE) {
-      textPaint.setStrokeJoin(Join.ROUND);
-      textPaint.setStrokeWidth(outlineWidth);
-      textPaint.setColor(edgeColor);
-      textPaint.setStyle(Style.FILL_AND_STROKE);
+      layoutPaint.setStrokeJoin(Join.ROUND);
+      layoutPaint.setStrokeWidth(outlineWidth);
+      layoutPaint.setColor(edgeColor);
+      layoutPaint.setStyle(Style.FILL_AND_STROKE);
       layout.draw(canvas);
     } else if (edgeType == CaptionStyleCompat.EDGE_TYPE_DROP_SHADOW) {
-      textPaint.setShadowLayer(shadowRadius, shadowOffset, shadowOffset, edgeColor);
+      layoutPaint.setShadowLayer(shadowRadius, shadowOffset, shadowOffset, edgeColor);
     } else if (edgeType == CaptionStyleCompat.EDGE_TYPE_RAISED
         || edgeType == CaptionStyleCompat.EDGE_TYPE_DEPRESSED) {
       boolean raised = edgeType == CaptionStyleCompat.EDGE_TYPE_RAISED;
       int colorUp = raised ? Color.WHITE : edgeColor;
       int colorDown = raised ? edgeColor : Color.WHITE;
       float offset = shadowRadius / 2f;
-      textPaint.setColor(foregroundColor);
-      textPaint.setStyle(Style.FILL);
-      textPaint.setShadowLayer(shadowRadius, -offset, -offset, colorUp);
+      layoutPaint.setColor(foregroundColor);
+      layoutPaint.setStyle(Style.FILL);
+      layoutPaint.setShadowLayer(shadowRadius, -offset, -offset, colorUp);
       layout.draw(canvas);
-      textPaint.setShadowLayer(shadowRadius, offset, offset, colorDown);
+      layoutPaint.setShadowLayer(shadowRadius, offset, offset, colorDown);
     }
 
-    textPaint.setColor(foregroundColor);
-    textPaint.setStyle(Style.FILL);
+    layoutPaint.setColor(foregroundColor);
+    layoutPaint.setStyle(Style.FILL);
     layout.draw(canvas);
-    textPaint.setShadowLayer(0, 0, 0, 0);
-
-    canvas.restoreToCount(saveCount);
+    layoutPaint.setShadowLayer(0, 0, 0, 0);
   }
 
   @RequiresNonNull({"cueBitmap", "bitmapRect"})
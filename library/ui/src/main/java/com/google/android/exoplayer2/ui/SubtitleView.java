@@ -52,6 +52,7 @@ public final class SubtitleView extends View implements TextOutput {
   public static final float DEFAULT_BOTTOM_PADDING_FRACTION = 0.08f;
 
   private final List<SubtitlePainter> painters;
+  private final SubtitleLayoutCache layoutCache;
 
   @Nullable private List<Cue> cues;
   @Cue.TextSizeType private int textSizeType;
@@ -68,6 +69,7 @@ public final class SubtitleView extends View implements TextOutput {
   public SubtitleView(Context context, @Nullable AttributeSet attrs) {
     super(context, attrs);
     painters = new ArrayList<>();
+    layoutCache = new SubtitleLayoutCache();
     textSizeType = Cue.TEXT_SIZE_TYPE_FRACTIONAL;
     textSize = DEFAULT_TEXT_SIZE_FRACTION;
     applyEmbeddedStyles = true;
@@ -94,7 +96,7 @@ public final class SubtitleView extends View implements TextOutput {
     // Ensure we have sufficient painters.
     int cueCount = (cues == null) ? 0 : cues.size();
     while (painters.size() < cueCount) {
-      painters.add(new SubtitlePainter(getContext()));
+      painters.add(new SubtitlePainter(getContext(), layoutCache));
     }
     // Invalidate to trigger drawing.
     invalidate();
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.ui;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.graphics.Color;
+import android.text.Layout.Alignment;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link SubtitleLayoutCache}. */
+@RunWith(AndroidJUnit4.class)
+public final class SubtitleLayoutCacheTest {
+
+  @Test
+  public void testGet_withEqualKey_returnsCachedLayout() {
+    SubtitleLayoutCache cache = new SubtitleLayoutCache();
+    StaticLayout layout = createLayout("text");
+
+    cache.put(createKey("text", /* width= */ 100), layout);
+
+    assertThat(cache.get(createKey("text", /* width= */ 100))).isSameInstanceAs(layout);
+    assertThat(cache.get(createKey("text", /* width= */ 101))).isNull();
+    assertThat(cache.get(createKey("other text", /* width= */ 100))).isNull();
+  }
+
+  @Test
+  public void testPut_whenFull_evictsLeastRecentlyUsedLayout() {
+    SubtitleLayoutCache cache = new SubtitleLayoutCache(/* maxSize= */ 2);
+    cache.put(createKey("first", /* width= */ 100), createLayout("first"));
+    cache.put(createKey("second", /* width= */ 100), createLayout("second"));
+
+    // Use the first layout, so that the second layout is the least recently used.
+    cache.get(createKey("first", /* width= */ 100));
+    cache.put(createKey("third", /* width= */ 100), createLayout("third"));
+
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.get(createKey("first", /* width= */ 100))).isNotNull();
+    assertThat(cache.get(createKey("second", /* width= */ 100))).isNull();
+    assertThat(cache.get(createKey("third", /* width= */ 100))).isNotNull();
+  }
+
+  private static SubtitleLayoutCache.Key createKey(String text, int width) {
+    return new SubtitleLayoutCache.Key(
+        text,
+        Alignment.ALIGN_CENTER,
+        width,
+        /* textSizePx= */ 20,
+        /* cueTextSizePx= */ 0,
+        /* typeface= */ null,
+        /* applyEmbeddedStyles= */ true,
+        /* applyEmbeddedFontSizes= */ true,
+        /* backgroundColor= */ Color.BLACK);
+  }
+
+  private static StaticLayout createLayout(String text) {
+    return new StaticLayout(
+        text,
+        new TextPaint(),
+        /* width= */ 100,
+        Alignment.ALIGN_CENTER,
+        /* spacingmult= */ 1,
+        /* spacingadd= */ 0,
+        /* includepad= */ true);
+  }
+}